@@ -0,0 +1,153 @@
+package benchmark;
+
+import model.Inventory;
+import model.Product;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contention benchmark for branch inventory.
+ * Several "cashier" threads sell and restock products of one branch concurrently, and the
+ * benchmark reports total operations per second for 1..2x the number of cores.
+ * Each run is done twice: against Inventory (ConcurrentHashMap + CAS counters) and against
+ * the previous design (one synchronized HashMap guarding every operation), so the scaling
+ * difference is visible side by side.
+ *
+ * Usage: java -cp out benchmark.InventoryContentionBenchmark [products] [millisPerRun]
+ *
+ * @author FinalProject
+ */
+public class InventoryContentionBenchmark {
+
+    /** Minimal interface over the two inventory implementations being compared */
+    private interface StockOps {
+        void sell(Product product) throws Exception;
+        void restock(Product product, int quantity) throws Exception;
+    }
+
+    /** The previous design: one monitor for every read and write */
+    private static class SynchronizedMapInventory implements StockOps {
+        private final Map<Product, Integer> products = Collections.synchronizedMap(new HashMap<>());
+
+        public void sell(Product product) {
+            synchronized (products) {
+                Integer current = products.get(product);
+                if (current == null || current < 1) {
+                    throw new IllegalStateException("Not enough stock for product");
+                }
+                products.put(product, current - 1);
+            }
+        }
+
+        public void restock(Product product, int quantity) {
+            synchronized (products) {
+                Integer current = products.get(product);
+                products.put(product, current == null ? quantity : current + quantity);
+            }
+        }
+    }
+
+    private static final int RESTOCK_EVERY = 64;
+
+    public static void main(String[] args) throws Exception {
+        int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        long millisPerRun = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        Product[] products = new Product[productCount];
+        for (int i = 0; i < productCount; i++) {
+            products[i] = new Product("P" + i, "Product " + i, "Bench", 10.0);
+        }
+
+        System.out.println("Inventory contention benchmark - " + cores + " cores, "
+                + productCount + " products, " + millisPerRun + " ms per run");
+        System.out.printf("%-8s %-10s %18s %18s %8s%n", "threads", "scenario", "cas ops/s", "synchronized ops/s", "ratio");
+
+        for (String scenario : new String[] {"spread", "hot"}) {
+            Product[] targets = scenario.equals("hot") ? new Product[] {products[0]} : products;
+            for (int threads = 1; threads <= cores * 2; threads *= 2) {
+                double cas = run(newCasInventory(targets), targets, threads, millisPerRun);
+                double sync = run(newSynchronizedInventory(targets), targets, threads, millisPerRun);
+                System.out.printf("%-8d %-10s %18.0f %18.0f %8.2f%n", threads, scenario, cas, sync, cas / sync);
+            }
+        }
+    }
+
+    private static StockOps newCasInventory(Product[] products) {
+        Inventory inventory = new Inventory();
+        for (Product product : products) {
+            inventory.loadProduct(product, 1_000_000);
+        }
+        return new StockOps() {
+            public void sell(Product product) throws Exception {
+                inventory.sellProduct(product, 1);
+            }
+
+            public void restock(Product product, int quantity) throws Exception {
+                inventory.addProduct(product, quantity);
+            }
+        };
+    }
+
+    private static StockOps newSynchronizedInventory(Product[] products) {
+        SynchronizedMapInventory inventory = new SynchronizedMapInventory();
+        for (Product product : products) {
+            inventory.restock(product, 1_000_000);
+        }
+        return inventory;
+    }
+
+    /**
+     * Runs the workload on the given number of threads and returns operations per second.
+     */
+    private static double run(StockOps ops, Product[] products, int threads, long millis) throws InterruptedException {
+        // Warm-up so the JIT has compiled the hot path before measuring
+        measure(ops, products, threads, Math.max(100, millis / 4));
+        return measure(ops, products, threads, millis);
+    }
+
+    private static double measure(StockOps ops, Product[] products, int threads, long millis) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long local = 0;
+                try {
+                    start.await();
+                    while (running.get()) {
+                        Product product = products[random.nextInt(products.length)];
+                        ops.sell(product);
+                        if (++local % RESTOCK_EVERY == 0) {
+                            ops.restock(product, RESTOCK_EVERY);
+                        }
+                    }
+                } catch (Exception e) {
+                    System.err.println("Benchmark worker failed: " + e.getMessage());
+                } finally {
+                    operations.add(local);
+                    done.countDown();
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        running.set(false);
+        done.await();
+        double seconds = (System.nanoTime() - begin) / 1_000_000_000.0;
+        return operations.sum() / seconds;
+    }
+}
@@ -0,0 +1,196 @@
+package benchmark;
+
+import model.Product;
+import model.ReportEntry;
+import model.Sale;
+import model.managers.SalesColumns;
+import model.managers.SalesManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Scan benchmark for sales reports.
+ * Loads a sales log with generated sales and times a full group-by scan two ways: over the
+ * column store (SalesColumns - primitive arrays and dictionary ordinals) and over the Sale
+ * objects (one Product/String lookup and a hash map update per row), and reports rows per
+ * second for each grouping on one thread.
+ * It then times the reports themselves (per branch, per category, one product per branch and
+ * day, and one month per product, branch and day), as SalesManager runs them on its
+ * SalesScanEngine, with parallelism 1, 2, 4 ... cores, and reports the speedup over one
+ * thread, checking that every run gives the one-thread results.
+ *
+ * Usage: java -cp out benchmark.SalesScanBenchmark [rows] [runs] [maxParallelism]
+ *
+ * @author FinalProject
+ */
+public class SalesScanBenchmark {
+
+    private static final int PRODUCTS = 500;
+    private static final int CATEGORIES = 12;
+    private static final int BRANCHES = 8;
+    private static final int DAYS = 365;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        SalesManager salesManager = load(rows, 1);
+        SalesColumns columns = salesManager.getColumns();
+        // Sale objects as the sales log used to hold them, for the row-by-row comparison
+        List<Sale> sales = new ArrayList<>(salesManager.getSales());
+
+        System.out.println("Sales scan benchmark - " + rows + " rows, best of " + runs + " runs");
+        System.out.printf("%-10s %18s %18s %8s%n", "groupBy", "columns rows/s", "objects rows/s", "ratio");
+
+        for (SalesColumns.Dimension by : SalesColumns.Dimension.values()) {
+            long checksum = 0;
+            long bestColumns = Long.MAX_VALUE;
+            long bestObjects = Long.MAX_VALUE;
+            for (int run = 0; run < runs + 1; run++) {
+                long begin = System.nanoTime();
+                SalesColumns.GroupTotals totals = columns.totals(by, Integer.MIN_VALUE, Integer.MAX_VALUE, -1);
+                long columnsTime = System.nanoTime() - begin;
+                checksum += totals.quantity[0];
+
+                begin = System.nanoTime();
+                Map<String, long[]> groups = scanObjects(sales, by);
+                long objectsTime = System.nanoTime() - begin;
+                checksum += groups.size();
+
+                // The first run is a warm-up so the JIT has compiled both loops
+                if (run > 0) {
+                    bestColumns = Math.min(bestColumns, columnsTime);
+                    bestObjects = Math.min(bestObjects, objectsTime);
+                }
+            }
+            double columnsRate = rows / (bestColumns / 1_000_000_000.0);
+            double objectsRate = rows / (bestObjects / 1_000_000_000.0);
+            System.out.printf("%-10s %18.0f %18.0f %8.2f%n", by, columnsRate, objectsRate, columnsRate / objectsRate);
+            if (checksum == 42) {
+                System.out.println();
+            }
+        }
+
+        // The reports as REPORT_* runs them, at parallelism 1, 2, 4 ... cores
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxParallelism = args.length > 2 ? Integer.parseInt(args[2]) : cores;
+        salesManager.shutdown();
+        salesManager = null;
+        columns = null;
+        sales = null;
+        System.out.println();
+        System.out.println("Reports - " + cores + " cores, ms (best of " + runs + ")");
+        System.out.printf("%-12s %10s %10s %10s %10s %8s%n",
+                "parallelism", "branch", "category", "product", "range", "speedup");
+        long fromDay = LocalDate.of(2025, 6, 1).toEpochDay();
+        long toDay = LocalDate.of(2025, 6, 30).toEpochDay();
+        List<List<ReportEntry>> expected = null;
+        double single = 0;
+        for (int parallelism = 1; parallelism <= maxParallelism; parallelism *= 2) {
+            SalesManager reports = load(rows, parallelism);
+            long[] best = new long[4];
+            Arrays.fill(best, Long.MAX_VALUE);
+            List<List<ReportEntry>> results = new ArrayList<>();
+            for (int run = 0; run < runs + 1; run++) {
+                results.clear();
+                for (int report = 0; report < best.length; report++) {
+                    long begin = System.nanoTime();
+                    switch (report) {
+                        case 0: results.add(reports.getTotalsByBranch(null)); break;
+                        case 1: results.add(reports.getTotalsByCategory(null)); break;
+                        case 2: results.add(reports.getTotalsByProduct("P7")); break;
+                        default: results.add(reports.getTotalsBetween(fromDay, toDay, null)); break;
+                    }
+                    long time = System.nanoTime() - begin;
+                    if (run > 0) {
+                        best[report] = Math.min(best[report], time);
+                    }
+                }
+            }
+            reports.shutdown();
+            if (expected == null) {
+                expected = new ArrayList<>(results);
+            } else if (!sameReports(expected, results)) {
+                throw new IllegalStateException("Parallel reports differ at parallelism " + parallelism);
+            }
+            long total = best[0] + best[1] + best[2] + best[3];
+            if (parallelism == 1) {
+                single = total;
+            }
+            System.out.printf("%-12d %10.2f %10.2f %10.2f %10.2f %8.2f%n", parallelism,
+                    best[0] / 1e6, best[1] / 1e6, best[2] / 1e6, best[3] / 1e6, single / total);
+        }
+    }
+
+    private static boolean sameReports(List<List<ReportEntry>> expected, List<List<ReportEntry>> actual) {
+        for (int report = 0; report < expected.size(); report++) {
+            List<ReportEntry> a = expected.get(report);
+            List<ReportEntry> b = actual.get(report);
+            if (a.size() != b.size()) {
+                return false;
+            }
+            for (int i = 0; i < a.size(); i++) {
+                if (a.get(i).getQuantity() != b.get(i).getQuantity()
+                        || a.get(i).getTotalRevenue() != b.get(i).getTotalRevenue()
+                        || !a.get(i).getDate().equals(b.get(i).getDate())
+                        || !a.get(i).getBranchId().equals(b.get(i).getBranchId())
+                        || !a.get(i).getProductId().equals(b.get(i).getProductId())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static SalesManager load(int rows, int parallelism) {
+        Random random = new Random(42);
+        Product[] products = new Product[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            products[i] = new Product("P" + i, "Product " + i, "Category " + (i % CATEGORIES), 10.0 + i % 90);
+        }
+        String[] dates = new String[DAYS];
+        LocalDate first = LocalDate.of(2025, 1, 1);
+        for (int i = 0; i < DAYS; i++) {
+            dates[i] = first.plusDays(i) + "T12:00:00";
+        }
+
+        SalesManager salesManager = new SalesManager(parallelism);
+        List<Sale> batch = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            Product product = products[random.nextInt(PRODUCTS)];
+            int quantity = 1 + random.nextInt(5);
+            double price = product.getPrice() * quantity;
+            batch.add(new Sale(product, quantity, "B" + (1 + random.nextInt(BRANCHES)), "E1", "",
+                    dates[random.nextInt(DAYS)], price, price));
+            if (batch.size() == 1024) {
+                salesManager.addSales(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        salesManager.addSales(batch);
+        return salesManager;
+    }
+
+    /** The row-by-row way: read each Sale and update a map keyed by the group's string */
+    private static Map<String, long[]> scanObjects(List<Sale> sales, SalesColumns.Dimension by) {
+        Map<String, long[]> groups = new HashMap<>();
+        for (Sale sale : sales) {
+            String key;
+            switch (by) {
+                case PRODUCT: key = sale.getProduct().getProductId(); break;
+                case BRANCH: key = sale.getBranchId(); break;
+                default: key = sale.getProduct().getCategory(); break;
+            }
+            long[] totals = groups.computeIfAbsent(key, k -> new long[2]);
+            totals[0] += sale.getQuantity();
+            totals[1] += Math.round(sale.getFinalPrice() * 100);
+        }
+        return groups;
+    }
+}
@@ -4,6 +4,7 @@ import model.managers.*;
 import model.managers.PermissionChecker;
 import model.exceptions.*;
 import model.Customer;
+import model.LogAction;
 import model.LogEntry;
 import model.Sale;
 import model.Branch;
@@ -12,19 +13,21 @@ import model.User;
 import model.Employee;
 import model.Inventory;
 import model.ReportEntry;
+import model.StockHold;
 import model.ChatMessage;
 import model.ChatSession;
 import model.ChatUserStatus;
 import model.ChatRequest;
 import storage.*;
+import util.Snapshot;
 import java.net.Socket;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.IOException;
-import java.io.FileWriter;
 
 /**
  * Central controller for the entire system.
@@ -48,6 +51,7 @@ public class SystemController {
     private ChatManager chatManager;
     private DiscountManager discountManager;
     private StorageManager storageManager;
+    private final AtomicLong cartCounter = new AtomicLong();
 
     /**
      * Constructs a new SystemController.
@@ -59,13 +63,33 @@ public class SystemController {
         customerManager = new CustomerManager();
         inventoryManager = new InventoryManager();
         salesManager = new SalesManager();
-        logManager = new LogManager();
+        logManager = new LogManager(storageManager::appendLogs);
         productManager = new ProductManager();
         branchManager = new BranchManager();
         authenticationManager = new AuthenticationManager();
         sessionManager = new SessionManager();
         employeeManager = new EmployeeManager();
-        chatManager = new ChatManager(sessionManager);
+        chatManager = new ChatManager(sessionManager, new ChatManager.TranscriptStore() {
+            @Override
+            public void append(String chatId, List<model.ChatMessage> messages) throws IOException {
+                storageManager.appendChatTranscript(chatId, messages);
+            }
+            
+            @Override
+            public List<model.ChatMessage> read(String chatId, long fromSequence, long toSequence) throws IOException {
+                return storageManager.loadChatTranscript(chatId, fromSequence, toSequence);
+            }
+            
+            @Override
+            public void saveSession(model.ChatSession session) throws IOException {
+                storageManager.saveChatSession(session);
+            }
+            
+            @Override
+            public model.ChatSession loadSession(String chatId) throws IOException {
+                return storageManager.loadChatSession(chatId);
+            }
+        }, ChatManager.DEFAULT_BUFFER_CAPACITY);
         discountManager = new DiscountManager();
         
         // Set DiscountManager for Customer classes
@@ -138,7 +162,7 @@ public class SystemController {
             saveProducts();
             saveInventory();
             saveSales();
-            saveLogs();
+            logManager.flush();
             saveBranches();
             saveDiscounts();
         } catch (IOException e) {
@@ -244,7 +268,7 @@ public class SystemController {
     private void loadLogs() throws IOException {
         List<LogEntry> logs = storageManager.loadLogs();
         for (LogEntry log : logs) {
-            logManager.addLog(log);
+            logManager.restoreLog(log);
         }
     }
     
@@ -280,11 +304,6 @@ public class SystemController {
         storageManager.saveSales(sales);
     }
     
-    private void saveLogs() throws IOException {
-        List<LogEntry> logs = logManager.getLogs();
-        storageManager.saveLogs(logs);
-    }
-    
     private void saveBranches() throws IOException {
         List<String> branchIds = branchManager.getBranchIds();
         storageManager.saveBranches(branchIds);
@@ -314,17 +333,10 @@ public class SystemController {
             socket
         );
         
-        LogEntry entry = new LogEntry(
-            "LOGIN",
-            "User " + username + " (" + user.getRole() + ") logged in from " + socket.getRemoteSocketAddress(),
-            LocalDateTime.now().toString()
-        );
+        chatManager.userLoggedIn(session.getUsername(), session.getBranchId());
+        
+        LogEntry entry = LogEntry.login(username, user.getRole(), String.valueOf(socket.getRemoteSocketAddress()));
         logManager.addLog(entry);
-        try {
-            saveLogs();
-        } catch (IOException e) {
-            System.err.println("Error saving logs: " + e.getMessage());
-        }
         
         return session;
     }
@@ -337,17 +349,9 @@ public class SystemController {
     public void logout(Socket socket) {
         Session session = sessionManager.getSession(socket);
         if (session != null) {
-            LogEntry entry = new LogEntry(
-                "LOGOUT",
-                "User " + session.getUsername() + " logged out",
-                LocalDateTime.now().toString()
-            );
+            LogEntry entry = LogEntry.logout(session.getUsername());
             logManager.addLog(entry);
-            try {
-                saveLogs();
-            } catch (IOException e) {
-                System.err.println("Error saving logs: " + e.getMessage());
-            }
+            chatManager.userLoggedOut(session.getUsername());
         }
         sessionManager.removeSession(socket);
     }
@@ -411,18 +415,11 @@ public class SystemController {
                 customerType
         );
 
-        LogEntry entry = new LogEntry(
-                "ADD_CUSTOMER",
-                "Customer added: " + fullName +
-                        ", id=" + idNumber +
-                        ", type=" + customerType,
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.customer(LogAction.ADD_CUSTOMER, idNumber, fullName, customerType);
 
         logManager.addLog(entry);
         try {
             saveCustomers();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
@@ -442,18 +439,11 @@ public class SystemController {
                                String customerType) {
         customerManager.updateCustomer(idNumber, fullName, phone, customerType);
         
-        LogEntry entry = new LogEntry(
-                "UPDATE_CUSTOMER",
-                "Customer updated: id=" + idNumber +
-                        ", name=" + fullName +
-                        ", type=" + customerType,
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.customer(LogAction.UPDATE_CUSTOMER, idNumber, fullName, customerType);
         
         logManager.addLog(entry);
         try {
             saveCustomers();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
@@ -467,16 +457,11 @@ public class SystemController {
     public void deleteCustomer(String idNumber) {
         customerManager.deleteCustomer(idNumber);
         
-        LogEntry entry = new LogEntry(
-                "DELETE_CUSTOMER",
-                "Customer deleted: id=" + idNumber,
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.customer(LogAction.DELETE_CUSTOMER, idNumber, null, null);
         
         logManager.addLog(entry);
         try {
             saveCustomers();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
@@ -503,18 +488,12 @@ public class SystemController {
         Product product = productManager.getProduct(productId, name, category, price);
         Branch branch = branchManager.getBranch(branchId);
         inventoryManager.addProduct(branch, product, quantity);
-        LogEntry entry = new LogEntry(
-                "ADD_PRODUCT",
-                "Product " + productId + " (" + name + ") added to inventory of branch " + branchId +
-                        " (qty=" + quantity + ", price=" + price + ")",
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.product(LogAction.ADD_PRODUCT, productId, name, branchId, quantity, price);
         
         logManager.addLog(entry);
         try {
             saveProducts();
             saveInventory();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
@@ -537,18 +516,11 @@ public class SystemController {
         Product product = productManager.getExistingProduct(productId);
         Branch branch = branchManager.getBranch(branchId);
         inventoryManager.addProduct(branch, product, quantity);
-        LogEntry entry = new LogEntry(
-                "ADD_PRODUCT_TO_INVENTORY",
-                "Product " + productId +
-                        " added to inventory of branch " + branchId +
-                        " (qty=" + quantity + ")",
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.product(LogAction.ADD_PRODUCT_TO_INVENTORY, productId, null, branchId, quantity, 0);
 
         logManager.addLog(entry);
         try {
             saveInventory();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
@@ -570,18 +542,11 @@ public class SystemController {
         Product product = productManager.getExistingProduct(productId);
         Branch branch = branchManager.getBranch(branchId);
         inventoryManager.removeProduct(branch, product, quantity);
-        LogEntry entry = new LogEntry(
-                "REMOVE_FROM_INVENTORY",
-                "Product " + productId +
-                        " removed from inventory of branch " + branchId +
-                        " (qty=" + quantity + ")",
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.product(LogAction.REMOVE_FROM_INVENTORY, productId, null, branchId, quantity, 0);
         
         logManager.addLog(entry);
         try {
             saveInventory();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
@@ -612,17 +577,12 @@ public class SystemController {
             }
         }
         productManager.deleteProduct(productId);
-        LogEntry entry = new LogEntry(
-                "DELETE_PRODUCT",
-                "Product " + productId + " deleted from system",
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.product(LogAction.DELETE_PRODUCT, productId, null, null, 0, 0);
         
         logManager.addLog(entry);
         try {
             saveProducts();
             saveInventory();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
@@ -648,40 +608,196 @@ public class SystemController {
                             String customerId)
             throws InvalidQuantityException,
             InsufficientStockException {
+        sellProduct(productId, quantity, branchId, employeeNumber, customerId, null, null);
+    }
+
+    /**
+     * Sells a product to a customer, using a stock hold if one was taken at price calculation.
+     * If the hold has expired or does not match the sale, the sale uses available stock as usual.
+     * 
+     * @param productId the product ID
+     * @param quantity the quantity to sell
+     * @param branchId the branch ID where the sale occurs
+     * @param employeeNumber the employee number making the sale
+     * @param customerId the customer ID making the purchase
+     * @param holdId the stock hold to consume (null for none)
+     * @param username the user making the sale (owner of the hold)
+     * @throws InvalidQuantityException if quantity is less than or equal to 0
+     * @throws InsufficientStockException if there is not enough stock
+     */
+    public void sellProduct(String productId,
+                            int quantity,
+                            String branchId,
+                            String employeeNumber,
+                            String customerId,
+                            String holdId,
+                            String username)
+            throws InvalidQuantityException,
+            InsufficientStockException {
         Product product = productManager.getExistingProduct(productId);
         Branch branch = branchManager.getBranch(branchId);
         Customer customer = customerManager.getCustomerById(customerId);
-        inventoryManager.sellProduct(branch, product, quantity);
+        if (holdId != null) {
+            inventoryManager.sellProduct(branch, product, quantity, holdId, username);
+        } else {
+            inventoryManager.sellProduct(branch, product, quantity);
+        }
         double basePrice = product.getPrice() * quantity;
         double finalPrice = customer.calculatePrice(basePrice);
         String dateTime = LocalDateTime.now().toString();
         Sale sale = new Sale(product, quantity, branchId, employeeNumber, customerId, dateTime, basePrice, finalPrice);
         salesManager.addSale(sale);
         String customerType = customer.getCustomerType();
-        LogEntry entry = new LogEntry(
-                "SALE",
-                "Sold product " + productId +
-                        " (price=" + product.getPrice() + ")" +
-                        ", qty=" + quantity +
-                        ", basePrice=" + basePrice +
-                        ", finalPrice=" + finalPrice +
-                        ", branch=" + branchId +
-                        ", customerId=" + customerId +
-                        ", customerType=" + customerType +
-                        ", employeeNumber=" + employeeNumber,
-                dateTime
-        );
+        LogEntry entry = LogEntry.sale(productId, product.getPrice(), quantity, basePrice, finalPrice,
+                branchId, customerId, customerType, employeeNumber);
 
         logManager.addLog(entry);
         try {
             saveSales();
             saveInventory();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
     }
     
+    /**
+     * Sells a whole cart in one step (all lines or none).
+     * Stock for every line is reserved atomically, the basket is priced with a single
+     * customer.calculatePrice() call on the combined base price, and the discounted total is
+     * spread over the lines in proportion to their base price. Each line is recorded as its own
+     * Sale; the lines share one sale group ID and are logged as one SALE_CART entry.
+     * Afterwards sales.json and inventory.json are saved one after the other, as for a single
+     * SELL - the two files are not written atomically together - and the log entry is written
+     * by the log writer.
+     * 
+     * @param items productId to quantity, in cart order (quantities must be greater than 0)
+     * @param branchId the branch to sell from
+     * @param employeeNumber the employee making the sale
+     * @param customerId the customer ID
+     * @return the sale lines that were recorded
+     * @throws InvalidQuantityException if the cart is empty or a quantity is less than or equal to 0
+     * @throws InsufficientStockException if any line does not have enough stock (nothing is sold)
+     * @throws IllegalArgumentException if a product or the customer is not found
+     */
+    public List<Sale> sellCart(Map<String, Integer> items,
+                               String branchId,
+                               String employeeNumber,
+                               String customerId)
+            throws InvalidQuantityException,
+            InsufficientStockException {
+        if (items == null || items.isEmpty()) {
+            throw new InvalidQuantityException("Cart is empty");
+        }
+        Branch branch = branchManager.getBranch(branchId);
+        if (branch == null) {
+            throw new IllegalArgumentException("Branch not found: " + branchId);
+        }
+        Customer customer = customerManager.getCustomerById(customerId);
+        if (customer == null) {
+            throw new IllegalArgumentException("Customer not found: " + customerId);
+        }
+
+        Map<Product, Integer> lines = new LinkedHashMap<>();
+        double basketBase = 0;
+        for (Map.Entry<String, Integer> item : items.entrySet()) {
+            Product product = productManager.getExistingProduct(item.getKey());
+            if (product == null) {
+                throw new IllegalArgumentException("Product not found: " + item.getKey());
+            }
+            lines.put(product, item.getValue());
+            basketBase += product.getPrice() * item.getValue();
+        }
+
+        inventoryManager.sellProducts(branch, lines);
+
+        double basketFinal = customer.calculatePrice(basketBase);
+        double ratio = basketBase > 0 ? basketFinal / basketBase : 1.0;
+        String dateTime = LocalDateTime.now().toString();
+        String saleGroupId = "CART_" + System.currentTimeMillis() + "_" + cartCounter.incrementAndGet();
+
+        List<Sale> sales = new ArrayList<>();
+        StringBuilder lineSummary = new StringBuilder();
+        double allocated = 0;
+        int index = 0;
+        for (Map.Entry<Product, Integer> line : lines.entrySet()) {
+            Product product = line.getKey();
+            int quantity = line.getValue();
+            double basePrice = product.getPrice() * quantity;
+            // The last line takes the rounding remainder so the lines add up to the basket total
+            double finalPrice = (++index == lines.size()) ? basketFinal - allocated : basePrice * ratio;
+            allocated += finalPrice;
+            sales.add(new Sale(product, quantity, branchId, employeeNumber, customerId, dateTime,
+                    basePrice, finalPrice, saleGroupId));
+            if (lineSummary.length() > 0) {
+                lineSummary.append(", ");
+            }
+            lineSummary.append(product.getProductId()).append("x").append(quantity);
+        }
+        salesManager.addSales(sales);
+
+        LogEntry entry = LogEntry.cartSale(saleGroupId, lineSummary.toString(), basketBase, basketFinal,
+                branchId, customerId, customer.getCustomerType(), employeeNumber);
+
+        logManager.addLog(entry);
+        try {
+            saveSales();
+            saveInventory();
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+        }
+        return sales;
+    }
+    
+    /**
+     * Reserves stock for a sale that is about to happen.
+     * The hold expires after InventoryManager.HOLD_TTL_MS unless it is sold or released first.
+     * Holds are not persisted and are not logged - only the sale that consumes them is.
+     * 
+     * @param productId the product ID
+     * @param quantity the quantity to hold
+     * @param branchId the branch ID
+     * @param username the user creating the hold
+     * @return the new hold
+     * @throws InvalidQuantityException if quantity is less than or equal to 0
+     * @throws InsufficientStockException if there is not enough available stock
+     * @throws IllegalArgumentException if the product or branch is not found
+     */
+    public StockHold holdStock(String productId, int quantity, String branchId, String username)
+            throws InvalidQuantityException,
+            InsufficientStockException {
+        Product product = productManager.getExistingProduct(productId);
+        if (product == null) {
+            throw new IllegalArgumentException("Product not found: " + productId);
+        }
+        Branch branch = branchManager.getBranch(branchId);
+        if (branch == null) {
+            throw new IllegalArgumentException("Branch not found: " + branchId);
+        }
+        return inventoryManager.holdStock(branch, product, quantity, username);
+    }
+
+    /**
+     * Releases a stock hold before it expires.
+     * 
+     * @param holdId the hold ID
+     * @param username the user releasing the hold (must be its owner)
+     * @return true if the hold was released, false if it was unknown or already finished
+     */
+    public boolean releaseHold(String holdId, String username) {
+        return inventoryManager.releaseHold(holdId, username);
+    }
+
+    /**
+     * Stops background threads owned by the managers (the stock hold timer).
+     * Called when an embedded server is stopped.
+     */
+    public void shutdown() {
+        inventoryManager.shutdown();
+        salesManager.shutdown();
+        chatManager.shutdown();
+        logManager.shutdown();
+    }
+
     /**
      * Calculates the final price for a sale (before executing the sale).
      * Uses customer's calculatePrice() method to apply appropriate discount (polymorphism).
@@ -734,15 +850,10 @@ public class SystemController {
         
         authenticationManager.createUser(username, password, role, branchId);
         
-        LogEntry entry = new LogEntry(
-                "CREATE_USER",
-                "User created: " + username + ", role=" + role + ", branch=" + branchId,
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.user(LogAction.CREATE_USER, username, role, branchId);
         logManager.addLog(entry);
         try {
             saveUsers();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
@@ -765,29 +876,12 @@ public class SystemController {
                           Boolean active)
             throws UserNotFoundException, WeakPasswordException {
         
-        User user = authenticationManager.getUser(username);
-        if (user == null) {
-            throw new UserNotFoundException("User " + username + " not found");
-        }
-        if (newPassword != null && !newPassword.trim().isEmpty()) {
-            user.setPassword(newPassword);
-        }
-        if (newBranchId != null && !newBranchId.trim().isEmpty()) {
-            user.setBranchId(newBranchId);
-        }
-        if (active != null) {
-            user.setActive(active);
-        }
+        authenticationManager.updateUser(username, newPassword, newBranchId, active);
         
-        LogEntry entry = new LogEntry(
-                "UPDATE_USER",
-                "User updated: " + username,
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.user(LogAction.UPDATE_USER, username, null, null);
         logManager.addLog(entry);
         try {
             saveUsers();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
@@ -813,24 +907,29 @@ public class SystemController {
         if (!active) {
             Session session = sessionManager.getSessionByUsername(username);
             if (session != null) {
+                chatManager.userLoggedOut(session.getUsername());
                 sessionManager.removeSession(session.getSocket());
             }
         }
         
-        LogEntry entry = new LogEntry(
-                "SET_USER_ACTIVE",
-                "User " + username + " set to " + (active ? "active" : "inactive"),
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.userActive(username, active);
         logManager.addLog(entry);
         try {
             saveUsers();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
     }
     
+    /**
+     * Gets the current users snapshot and its version (admin only).
+     * 
+     * @return the immutable users snapshot
+     */
+    public Snapshot<String, User> getUsersSnapshot() {
+        return authenticationManager.getSnapshot();
+    }
+    
     /**
      * Gets all users (admin only).
      * 
@@ -870,20 +969,16 @@ public class SystemController {
         }
         Session session = sessionManager.getSessionByUsername(username);
         if (session != null) {
+            chatManager.userLoggedOut(session.getUsername());
             sessionManager.removeSession(session.getSocket());
         }
         
         authenticationManager.deleteUser(username);
         
-        LogEntry entry = new LogEntry(
-                "DELETE_USER",
-                "User deleted: " + username,
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.user(LogAction.DELETE_USER, username, null, null);
         logManager.addLog(entry);
         try {
             saveUsers();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
@@ -940,16 +1035,11 @@ public class SystemController {
             throw e;
         }
         
-        LogEntry entry = new LogEntry(
-                "CREATE_EMPLOYEE",
-                "Employee created: " + fullName + ", number=" + employeeNumber + ", role=" + role + ", branch=" + branchId + ", username=" + username,
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.employee(LogAction.CREATE_EMPLOYEE, employeeNumber, fullName, role, branchId, username);
         logManager.addLog(entry);
         try {
             saveEmployees();
             saveUsers();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
@@ -977,15 +1067,10 @@ public class SystemController {
         
         employeeManager.updateEmployee(employeeNumber, fullName, phone, bankAccount, role, branchId);
         
-        LogEntry entry = new LogEntry(
-                "UPDATE_EMPLOYEE",
-                "Employee updated: " + employeeNumber,
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.employee(LogAction.UPDATE_EMPLOYEE, employeeNumber, null, null, null, null);
         logManager.addLog(entry);
         try {
             saveEmployees();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
@@ -1003,20 +1088,24 @@ public class SystemController {
         
         employeeManager.deleteEmployee(employeeNumber);
         
-        LogEntry entry = new LogEntry(
-                "DELETE_EMPLOYEE",
-                "Employee deleted: " + employeeNumber,
-                LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.employee(LogAction.DELETE_EMPLOYEE, employeeNumber, null, null, null, null);
         logManager.addLog(entry);
         try {
             saveEmployees();
-            saveLogs();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
     }
     
+    /**
+     * Gets the current employees snapshot and its version.
+     * 
+     * @return the immutable employees snapshot
+     */
+    public Snapshot<String, Employee> getEmployeesSnapshot() {
+        return employeeManager.getSnapshot();
+    }
+    
     /**
      * Gets all employees (admin only).
      * 
@@ -1050,6 +1139,15 @@ public class SystemController {
     
     // ========== List Methods for GUI ==========
     
+    /**
+     * Gets the current customers snapshot and its version.
+     * 
+     * @return the immutable customers snapshot
+     */
+    public Snapshot<String, Customer> getCustomersSnapshot() {
+        return customerManager.getSnapshot();
+    }
+    
     /**
      * Gets all customers (for display in GUI).
      * 
@@ -1070,7 +1168,8 @@ public class SystemController {
     
     /**
      * Gets inventory quantity for a product and branch.
-     * If branchId = "ALL", returns the sum from all branches (admin only).
+     * If branchId = "ALL", returns the sum from all branches (admin only), read from the
+     * maintained cross-branch totals instead of visiting every branch.
      * 
      * @param productId the product ID
      * @param branchId the branch ID, or "ALL" for sum from all branches
@@ -1083,13 +1182,7 @@ public class SystemController {
         }
         
         if (branchId.equals("ALL")) {
-            int total = 0;
-            Map<String, Branch> branches = branchManager.getAllBranches();
-            for (Branch branch : branches.values()) {
-                Inventory inventory = branch.getInventory();
-                total += inventory.getProductQuantity(product);
-            }
-            return total;
+            return branchManager.getTotalQuantity(productId);
         } else {
             Branch branch = branchManager.getBranch(branchId);
             if (branch == null) {
@@ -1105,147 +1198,87 @@ public class SystemController {
     /**
      * Generates a sales report by branch.
      * Returns a list of ReportEntry objects summarizing sales by branch.
+     * Computed by one scan of the sales columns.
      * 
      * @param branchId the branch ID to filter by, or null/"ALL" for all branches
      * @return a list of ReportEntry objects
      */
     public List<ReportEntry> getSalesReportByBranch(String branchId) {
-        List<Sale> allSales = salesManager.getSales();
-        Map<String, ReportEntry> summary = new HashMap<>();
-        
-        for (Sale sale : allSales) {
-            if (branchId != null && !branchId.isEmpty() && !branchId.equals("ALL")) {
-                if (!sale.getBranchId().equals(branchId)) {
-                    continue;
-                }
-            }
-            
-            String key = sale.getBranchId();
-            Product product = sale.getProduct();
-            
-            if (summary.containsKey(key)) {
-                ReportEntry entry = summary.get(key);
-                summary.put(key, new ReportEntry(
-                    entry.getBranchId(),
-                    "",
-                    "",
-                    "",
-                    entry.getQuantity() + sale.getQuantity(),
-                    entry.getTotalRevenue() + sale.getFinalPrice(),
-                    entry.getDate()
-                ));
-            } else {
-                summary.put(key, new ReportEntry(sale.getBranchId(), "", "", "", sale.getQuantity(), sale.getFinalPrice(), ""));
-            }
-        }
-        return new ArrayList<>(summary.values());
+        return salesManager.getTotalsByBranch(branchId);
     }
     
+    /**
+     * Generates a sales report by product.
+     * Returns one ReportEntry per product, branch and day with the totals of that day.
+     * 
+     * @param productId the product ID to filter by, or null/empty for all products
+     * @return a list of ReportEntry objects
+     */
     public List<ReportEntry> getSalesReportByProduct(String productId) {
-        List<Sale> allSales = salesManager.getSales();
-        List<ReportEntry> result = new ArrayList<>();
-        for (Sale sale : allSales) {
-            if (productId == null || productId.isEmpty() || sale.getProduct().getProductId().equals(productId)) {
-                result.add(new ReportEntry(
-                    sale.getBranchId(),
-                    sale.getProduct().getProductId(),
-                    sale.getProduct().getName(),
-                    sale.getProduct().getCategory(),
-                    sale.getQuantity(),
-                    sale.getFinalPrice(),
-                    sale.getDateTime().split("T")[0]
-                ));
-            }
-        }
-        
-        return result;
+        return salesManager.getTotalsByProduct(productId);
     }
     
     /**
      * Generates a sales report by category.
      * Returns a list of ReportEntry objects summarizing sales by product category.
+     * Computed by one scan of the sales columns.
      * 
      * @param category the category to filter by, or null/empty for all categories
      * @return a list of ReportEntry objects
      */
     public List<ReportEntry> getSalesReportByCategory(String category) {
-        List<Sale> allSales = salesManager.getSales();
-        Map<String, ReportEntry> summary = new HashMap<>();
-        
-        for (Sale sale : allSales) {
-            String saleCategory = sale.getProduct().getCategory();
-            if (category != null && !category.isEmpty()) {
-                if (!saleCategory.equals(category)) {
-                    continue;
-                }
-            }
-            
-            String key = saleCategory;
-            
-            if (summary.containsKey(key)) {
-                ReportEntry entry = summary.get(key);
-                summary.put(key, new ReportEntry(
-                    entry.getBranchId(),
-                    entry.getProductId(),
-                    entry.getProductName(),
-                    entry.getCategory(),
-                    entry.getQuantity() + sale.getQuantity(),
-                    entry.getTotalRevenue() + sale.getFinalPrice(),
-                    entry.getDate()
-                ));
-            } else {
-                summary.put(key, new ReportEntry(
-                    "",
-                    "",
-                    "",
-                    saleCategory,
-                    sale.getQuantity(),
-                    sale.getFinalPrice(),
-                    ""
-                ));
-            }
-        }
-        
-        return new ArrayList<>(summary.values());
+        return salesManager.getTotalsByCategory(category);
     }
     
     /**
      * Generates a daily sales report (by date).
-     * Filters sales by date and optionally by branch.
+     * Returns one ReportEntry per product and branch with the totals of the day,
+     * optionally for one branch only.
      * 
      * @param date the date to filter by (format: YYYY-MM-DD), or null/empty for all dates
      * @param branchId the branch ID to filter by, or null/"ALL" for all branches
      * @return a list of ReportEntry objects
      */
     public List<ReportEntry> getDailySalesReport(String date, String branchId) {
-        List<Sale> allSales = salesManager.getSales();
-        List<ReportEntry> result = new ArrayList<>();
-        
-        for (Sale sale : allSales) {
-            String saleDate = sale.getDateTime().split("T")[0];
-            if (date != null && !date.isEmpty()) {
-                if (!saleDate.equals(date)) {
-                    continue;
-                }
-            }
-            if (branchId != null && !branchId.isEmpty() && !branchId.equals("ALL")) {
-                if (!sale.getBranchId().equals(branchId)) {
-                    continue;
-                }
-            }
-            
-            result.add(new ReportEntry(
-                sale.getBranchId(),
-                sale.getProduct().getProductId(),
-                sale.getProduct().getName(),
-                sale.getProduct().getCategory(),
-                sale.getQuantity(),
-                sale.getFinalPrice(),
-                saleDate
-            ));
+        return salesManager.getDailyTotals(date, branchId);
+    }
+    
+    /**
+     * Generates a sales report for a range of days.
+     * Returns one ReportEntry per product, branch and day in the range; chunks of sales
+     * without any day in the range are skipped.
+     * 
+     * @param fromDate the first date to include (YYYY-MM-DD), or null/empty for no lower bound
+     * @param toDate the last date to include (YYYY-MM-DD), or null/empty for no upper bound
+     * @param branchId the branch ID to filter by, or null/"ALL" for all branches
+     * @return a list of ReportEntry objects, in date order
+     * @throws IllegalArgumentException if a date is not a valid YYYY-MM-DD date
+     */
+    public List<ReportEntry> getSalesReportByDateRange(String fromDate, String toDate, String branchId) {
+        long fromDay = parseReportDay(fromDate, Long.MIN_VALUE + 1);
+        long toDay = parseReportDay(toDate, Long.MAX_VALUE);
+        return salesManager.getTotalsBetween(fromDay, toDay, branchId);
+    }
+    
+    /**
+     * Gets the sales version, which grows whenever sales are recorded.
+     * Lets callers tell whether a report result they hold is still current.
+     * 
+     * @return the sales version
+     */
+    public long getSalesVersion() {
+        return salesManager.getVersion();
+    }
+    
+    private long parseReportDay(String date, long openValue) {
+        if (date == null || date.isEmpty()) {
+            return openValue;
         }
-        
-        return result;
+        long day = Sale.epochDayOf(date);
+        if (day == Long.MIN_VALUE || date.length() != 10) {
+            throw new IllegalArgumentException("Invalid date (expected YYYY-MM-DD): " + date);
+        }
+        return day;
     }
     
     // ========== Chat Methods ==========
@@ -1260,32 +1293,17 @@ public class SystemController {
      */
     public String requestChat(String username, String branchId) {
         String result = chatManager.requestChat(username, branchId);
-        LogEntry entry = new LogEntry(
-            "CHAT_REQUESTED",
-            "User " + username + " requested chat from branch " + branchId,
-            LocalDateTime.now().toString(),
-            null
-        );
+        LogEntry entry = LogEntry.chatRequested(username, branchId);
         logManager.addLog(entry);
         if (result != null && result.startsWith("OK;MATCHED")) {
             String[] parts = result.split(";");
             if (parts.length > 2) {
                 String chatId = parts[2];
-                LogEntry startEntry = new LogEntry(
-                    "CHAT_STARTED",
-                    "Chat " + chatId + " started for user " + username,
-                    LocalDateTime.now().toString(),
-                    chatId
-                );
+                LogEntry startEntry = LogEntry.chat(LogAction.CHAT_STARTED, chatId, username);
                 logManager.addLog(startEntry);
             }
         }
         
-        try {
-            saveLogs();
-        } catch (IOException e) {
-            System.err.println("Error saving logs: " + e.getMessage());
-        }
         
         return result;
     }
@@ -1298,19 +1316,8 @@ public class SystemController {
      * @param message the message content
      */
     public void sendChatMessage(String chatId, String sender, String message) {
+        // The message goes to the chat's transcript - the audit log only records session events
         chatManager.addMessage(chatId, sender, message);
-        LogEntry entry = new LogEntry(
-            "CHAT_MESSAGE",
-            "Chat " + chatId + ": " + sender + " sent: " + message,
-            LocalDateTime.now().toString(),
-            chatId
-        );
-        logManager.addLog(entry);
-        try {
-            saveLogs();
-        } catch (IOException e) {
-            System.err.println("Error saving logs: " + e.getMessage());
-        }
     }
     
     /**
@@ -1320,18 +1327,8 @@ public class SystemController {
      */
     public void endChat(String chatId) {
         chatManager.endChat(chatId);
-        LogEntry entry = new LogEntry(
-            "CHAT_ENDED",
-            "Chat " + chatId + " ended",
-            LocalDateTime.now().toString(),
-            chatId
-        );
+        LogEntry entry = LogEntry.chat(LogAction.CHAT_ENDED, chatId, null);
         logManager.addLog(entry);
-        try {
-            saveLogs();
-        } catch (IOException e) {
-            System.err.println("Error saving logs: " + e.getMessage());
-        }
     }
     
     /**
@@ -1343,18 +1340,8 @@ public class SystemController {
      */
     public void joinChatAsManager(String chatId, String managerUsername) {
         chatManager.joinChatAsManager(chatId, managerUsername);
-        LogEntry entry = new LogEntry(
-            "MANAGER_JOINED",
-            "Manager " + managerUsername + " joined chat " + chatId,
-            LocalDateTime.now().toString(),
-            chatId
-        );
+        LogEntry entry = LogEntry.chat(LogAction.MANAGER_JOINED, chatId, managerUsername);
         logManager.addLog(entry);
-        try {
-            saveLogs();
-        } catch (IOException e) {
-            System.err.println("Error saving logs: " + e.getMessage());
-        }
     }
     
     /**
@@ -1386,25 +1373,62 @@ public class SystemController {
                     chatId = parts[2];
                 }
             }
-            LogEntry entry = new LogEntry(
-                "CHAT_ACCEPTED",
-                "User " + acceptingUsername + " accepted chat request " + requestId,
-                LocalDateTime.now().toString(),
-                chatId
-            );
+            LogEntry entry = LogEntry.chatAccepted(acceptingUsername, requestId, chatId);
             logManager.addLog(entry);
-            try {
-                saveLogs();
-            } catch (IOException e) {
-                System.err.println("Error saving logs: " + e.getMessage());
-            }
         }
         
         return result;
     }
     
+    /**
+     * Gets all messages of a chat from its transcript.
+     * Chats from before transcripts existed are rebuilt from their CHAT_MESSAGE log entries.
+     * 
+     * @param chatId the chat ID
+     * @return the messages, oldest first
+     */
     public List<model.ChatMessage> getChatHistory(String chatId) {
-        return chatManager.getChatHistory(chatId);
+        List<model.ChatMessage> messages = chatManager.getChatHistory(chatId);
+        if (!messages.isEmpty()) {
+            return messages;
+        }
+        return legacyChatMessages(getChatLogs(chatId));
+    }
+    
+    /**
+     * Rebuilds the messages of an old chat from its CHAT_MESSAGE log entries.
+     */
+    private List<model.ChatMessage> legacyChatMessages(List<LogEntry> chatLogs) {
+        List<model.ChatMessage> messages = new ArrayList<>();
+        for (LogEntry log : chatLogs) {
+            if (log.getAction() == LogAction.CHAT_MESSAGE && log.getUsername() != null) {
+                messages.add(new model.ChatMessage(log.getChatId(), log.getUsername(), log.getText(),
+                    model.ChatMessage.MessageType.TEXT, messages.size() + 1, log.getTimestamp()));
+            }
+        }
+        return messages;
+    }
+    
+    /**
+     * Gets the messages of a chat that are newer than a given sequence number.
+     * 
+     * @param chatId the chat ID
+     * @param afterSequence the last sequence number the caller already has (0 for all messages)
+     * @return the newer messages, oldest first
+     */
+    public List<model.ChatMessage> getChatMessagesSince(String chatId, long afterSequence) {
+        return chatManager.getChatMessagesSince(chatId, afterSequence);
+    }
+    
+    /**
+     * Waits for chat events of a user (long-poll).
+     * 
+     * @param username the user
+     * @param timeoutMs the longest time to wait, in milliseconds
+     * @return the events, or empty list on timeout
+     */
+    public List<String> waitChatEvents(String username, long timeoutMs) {
+        return chatManager.awaitEvents(username, timeoutMs);
     }
     
     public model.ChatSession getUserChat(String username) {
@@ -1432,41 +1456,38 @@ public class SystemController {
         return logManager.getLogs();
     }
     
+    /**
+     * Gets log entries of the given action types (e.g. "SALE", "ADD_CUSTOMER").
+     * Read from the action type index - only the matching entries are touched.
+     * 
+     * @param actionTypes the action type names
+     * @return a list of the matching LogEntry objects, in log order
+     */
+    public List<LogEntry> getLogsByActionTypes(List<String> actionTypes) {
+        return logManager.getLogsByActionTypes(actionTypes);
+    }
+    
     /**
      * Gets log entries for a specific chat.
-     * Filters logs by chatId.
+     * Read from the chatId index - only the chat's entries are touched.
      * 
      * @param chatId the chat ID
-     * @return a list of LogEntry objects related to the chat
+     * @return a list of LogEntry objects related to the chat, in log order
      */
     public List<LogEntry> getChatLogs(String chatId) {
-        List<LogEntry> allLogs = logManager.getLogs();
-        List<LogEntry> chatLogs = new ArrayList<>();
-        for (LogEntry log : allLogs) {
-            if (chatId.equals(log.getChatId())) {
-                chatLogs.add(log);
-            }
-        }
-        return chatLogs;
+        return logManager.getLogsByChatId(chatId);
     }
     
     /**
-     * Gets complete chat details (logs + ChatSession if exists).
-     * Returns a JSON string with chat information including session details and log entries.
+     * Gets complete chat details (session events, transcript and ChatSession if exists).
+     * Returns a JSON string with chat information including session details, log entries and messages.
      * 
      * @param chatId the chat ID
      * @return a JSON string with chat details
      */
     public String getChatDetails(String chatId) {
         List<LogEntry> chatLogs = getChatLogs(chatId);
-        model.ChatSession session = null;
-        Map<String, model.ChatSession> allChats = chatManager.getAllActiveChats();
-        for (model.ChatSession s : allChats.values()) {
-            if (s.getChatId().equals(chatId)) {
-                session = s;
-                break;
-            }
-        }
+        model.ChatSession session = chatManager.findChat(chatId);
         StringBuilder json = new StringBuilder("{\"chatId\":\"").append(escapeJson(chatId)).append("\"");
         
         if (session != null) {
@@ -1484,9 +1505,25 @@ public class SystemController {
         }
         
         json.append(",\"logs\":[");
-        for (int i = 0; i < chatLogs.size(); i++) {
+        boolean firstLog = true;
+        for (LogEntry log : chatLogs) {
+            if (log.getAction() == LogAction.CHAT_MESSAGE) {
+                continue; // Old message lines are listed with the messages
+            }
+            if (!firstLog) json.append(",");
+            json.append(toJsonLogEntry(log));
+            firstLog = false;
+        }
+        json.append("]");
+        
+        List<model.ChatMessage> messages = chatManager.getChatHistory(chatId);
+        if (messages.isEmpty()) {
+            messages = legacyChatMessages(chatLogs);
+        }
+        json.append(",\"messages\":[");
+        for (int i = 0; i < messages.size(); i++) {
             if (i > 0) json.append(",");
-            json.append(toJsonLogEntry(chatLogs.get(i)));
+            json.append(messages.get(i).toJson());
         }
         json.append("]}");
         
@@ -1494,131 +1531,34 @@ public class SystemController {
     }
     
     /**
-     * Saves a chat conversation to an RTF file.
-     * Collects all chat logs and messages, creates an RTF document with Hebrew support.
+     * Exports a chat conversation to a document in data/exports.
+     * The chat's transcript is streamed into the document and merged with the session
+     * events from the log in one pass.
+     * Messages still queued for the transcript are written first.
      * 
-     * @param chatId the chat ID to save
-     * @return the filename of the created RTF file
+     * @param chatId the chat ID to export
+     * @param format the document format
+     * @return the path of the created document
      * @throws IOException if file creation fails
-     * @throws IllegalArgumentException if no logs found for the chat
+     * @throws IllegalArgumentException if nothing is recorded for the chat
      */
-    public String saveChatToRTF(String chatId) throws IOException {
-        List<LogEntry> chatLogs = getChatLogs(chatId);
-        if (chatLogs.isEmpty()) {
-            throw new IllegalArgumentException("No logs found for chat: " + chatId);
-        }
-        List<model.ChatMessage> messages = chatManager.getChatHistory(chatId);
-        model.ChatSession session = null;
-        Map<String, model.ChatSession> allChats = chatManager.getAllActiveChats();
-        for (model.ChatSession s : allChats.values()) {
-            if (s.getChatId().equals(chatId)) {
-                session = s;
-                break;
-            }
-        }
-        String dateStr = java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd"));
-        String fileName = "chat_" + chatId.replace("CHAT_", "") + "_" + dateStr + ".rtf";
-        createChatRTFDocument(fileName, chatId, chatLogs, messages, session);
-        
-        return fileName;
-    }
-    
-    private void createChatRTFDocument(String fileName, String chatId, List<LogEntry> chatLogs, 
-                                      List<model.ChatMessage> messages, model.ChatSession session) throws IOException {
-        try (FileWriter writer = new FileWriter(fileName, java.nio.charset.Charset.forName("Windows-1255"))) {
-            writer.write("{\\rtf1\\ansi\\ansicpg1255\\deff0\\nouicompat\\deflang1037{\\fonttbl{\\f0\\fnil\\fcharset177 Arial;}}\n");
-            writer.write("{\\colortbl ;\\red0\\green0\\blue0;}\n");
-            writer.write("\\viewkind4\\uc1\n");
-            writer.write("\\pard\\sa200\\sl276\\slmult1\\f0\\fs22\\lang1037\\cf1\n");
-            writer.write(escapeRTFWithUnicode("תוכן שיחה - " + chatId) + "\\par\n");
-            writer.write("\\par\n");
-            if (session != null) {
-                writer.write(escapeRTFWithUnicode("תאריך התחלה: " + session.getStartTime()) + "\\par\n");
-                writer.write(escapeRTFWithUnicode("משתתפים: "));
-                boolean first = true;
-                for (String participant : session.getParticipants()) {
-                    if (!first) writer.write(", ");
-                    writer.write(escapeRTFWithUnicode(participant));
-                    first = false;
-                }
-                writer.write("\\par\n");
-            } else {
-                if (!chatLogs.isEmpty()) {
-                    writer.write(escapeRTFWithUnicode("תאריך התחלה: " + chatLogs.get(0).getDateTime()) + "\\par\n");
-                }
-            }
-            writer.write("\\par\n");
-            writer.write(escapeRTFWithUnicode("הודעות:") + "\\par\n");
-            writer.write("\\par\n");
-            chatLogs.sort((a, b) -> a.getDateTime().compareTo(b.getDateTime()));
-            for (LogEntry log : chatLogs) {
-                if ("CHAT_MESSAGE".equals(log.getActionType())) {
-                    String desc = log.getDescription();
-                    int colonIdx = desc.indexOf(": ");
-                    if (colonIdx > 0) {
-                        String afterChat = desc.substring(colonIdx + 2);
-                        int sentIdx = afterChat.indexOf(" sent: ");
-                        if (sentIdx > 0) {
-                            String sender = afterChat.substring(0, sentIdx);
-                            String message = afterChat.substring(sentIdx + 7);
-                            writer.write(escapeRTFWithUnicode("[" + log.getDateTime() + "] " + sender + ": " + message) + "\\par\n");
-                        }
-                    }
-                } else if ("CHAT_STARTED".equals(log.getActionType()) || 
-                          "CHAT_ENDED".equals(log.getActionType()) ||
-                          "MANAGER_JOINED".equals(log.getActionType())) {
-                    writer.write(escapeRTFWithUnicode("[" + log.getDateTime() + "] [מערכת]: " + log.getDescription()) + "\\par\n");
-                }
-            }
-            if (messages != null && !messages.isEmpty()) {
-                for (model.ChatMessage msg : messages) {
-                    boolean found = false;
-                    for (LogEntry log : chatLogs) {
-                        if ("CHAT_MESSAGE".equals(log.getActionType()) && 
-                            log.getDescription().contains(msg.getSenderUsername()) &&
-                            log.getDescription().contains(msg.getMessage())) {
-                            found = true;
-                            break;
-                        }
-                    }
-                    if (!found) {
-                        if (msg.getMessageType() == model.ChatMessage.MessageType.SYSTEM) {
-                            writer.write(escapeRTFWithUnicode("[" + msg.getTimestamp() + "] [מערכת]: " + msg.getMessage()) + "\\par\n");
-                        } else {
-                            writer.write(escapeRTFWithUnicode("[" + msg.getTimestamp() + "] " + msg.getSenderUsername() + ": " + msg.getMessage()) + "\\par\n");
-                        }
-                    }
-                }
-            }
-            
-            writer.write("}\n");
+    public String exportChat(String chatId, ChatExporter.Format format) throws IOException {
+        if (!chatManager.flushTranscript(chatId)) {
+            throw new IOException("Chat transcript " + chatId + " could not be written");
         }
+        return storageManager.exportChat(chatId, format, chatManager.findChat(chatId), getChatLogs(chatId));
     }
     
-    private String escapeRTFWithUnicode(String text) {
-        if (text == null) return "";
-        StringBuilder result = new StringBuilder();
-        for (char c : text.toCharArray()) {
-            if (c < 128) {
-                // ASCII characters - escape special RTF characters
-                if (c == '\\') {
-                    result.append("\\\\");
-                } else if (c == '{') {
-                    result.append("\\{");
-                } else if (c == '}') {
-                    result.append("\\}");
-                } else if (c == '\n') {
-                    result.append("\\par\n");
-                } else {
-                    result.append(c);
-                }
-            } else {
-                // Unicode characters (including Hebrew) - use RTF unicode escape
-                char backslash = '\\';
-                result.append(backslash).append("u").append((int)c).append("?");
-            }
-        }
-        return result.toString();
+    /**
+     * Saves a chat conversation to an RTF file with Hebrew support.
+     * 
+     * @param chatId the chat ID to save
+     * @return the path of the created RTF file
+     * @throws IOException if file creation fails
+     * @throws IllegalArgumentException if nothing is recorded for the chat
+     */
+    public String saveChatToRTF(String chatId) throws IOException {
+        return exportChat(chatId, ChatExporter.Format.RTF);
     }
     
     private String escapeJson(String text) {
@@ -1662,13 +1602,8 @@ public class SystemController {
         saveDiscounts();
         
         // Log the change
-        LogEntry entry = new LogEntry(
-                "UPDATE_DISCOUNT",
-                "Discount for " + customerType + " customers updated to " + discountPercentage + "%",
-                java.time.LocalDateTime.now().toString()
-        );
+        LogEntry entry = LogEntry.discount(customerType, discountPercentage);
         logManager.addLog(entry);
-        saveLogs();
     }
     
     /**
@@ -0,0 +1,146 @@
+package gui;
+
+import javax.swing.SwingUtilities;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Receives chat events from the server by long-polling.
+ * Runs on its own socket, attached to the login session with the channel token, so a parked
+ * WAIT_CHAT_EVENTS never delays the interactive or background channels. Each response lists
+ * the events that happened since the previous one (e.g. "MESSAGE:chatId", "WAITING");
+ * the client fetches only what those events say has changed. An idle client sends one
+ * request per wait period and the server does no work for it in between.
+ * Callbacks always run on the Swing EDT.
+ *
+ * @author FinalProject
+ */
+public class ChatEventListener {
+
+    /** How long the server may hold one WAIT_CHAT_EVENTS request */
+    private static final long WAIT_TIMEOUT_MS = 25000;
+
+    /** Read timeout on the socket - above the wait period so only a dead server trips it */
+    private static final int READ_TIMEOUT_MS = (int) WAIT_TIMEOUT_MS + 10000;
+
+    private final ClientConnection connection;
+    private final Consumer<List<String>> onEvents;
+    private final Runnable onUnavailable;
+    private volatile boolean running = false;
+    private volatile Socket socket;
+    private PrintWriter out;
+    private BufferedReader in;
+    private Thread thread;
+
+    /**
+     * Constructs a new ChatEventListener.
+     *
+     * @param connection the logged-in connection
+     * @param onEvents called on the EDT with each batch of events
+     * @param onUnavailable called on the EDT if events cannot be received (the caller should poll instead)
+     */
+    public ChatEventListener(ClientConnection connection, Consumer<List<String>> onEvents, Runnable onUnavailable) {
+        this.connection = connection;
+        this.onEvents = onEvents;
+        this.onUnavailable = onUnavailable;
+    }
+
+    /**
+     * Starts listening on a background thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::listen, "chat-events");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops listening and closes the socket.
+     */
+    public synchronized void stop() {
+        running = false;
+        closeSocket();
+    }
+
+    private void listen() {
+        try {
+            if (!open()) {
+                unavailable();
+                return;
+            }
+            while (running) {
+                out.println("WAIT_CHAT_EVENTS;" + WAIT_TIMEOUT_MS);
+                String response = in.readLine();
+                if (response == null) {
+                    throw new IOException("Server disconnected");
+                }
+                if (response.startsWith("RETRY_AFTER;")) {
+                    Thread.sleep(Long.parseLong(response.substring(12)));
+                    continue;
+                }
+                if (response.startsWith("OK;EVENTS;")) {
+                    List<String> events = Arrays.asList(response.substring(10).split("\\|"));
+                    SwingUtilities.invokeLater(() -> onEvents.accept(events));
+                } else if (!response.startsWith("OK;")) {
+                    // Session expired or the server does not support events
+                    unavailable();
+                    return;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            unavailable();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSocket();
+        }
+    }
+
+    private boolean open() throws IOException {
+        String token = connection.getSessionToken();
+        if (token == null) {
+            return false;
+        }
+        Socket opened = new Socket(connection.getServerHost(), connection.getServerPort());
+        opened.setSoTimeout(READ_TIMEOUT_MS);
+        socket = opened;
+        out = new PrintWriter(opened.getOutputStream(), true);
+        in = new BufferedReader(new InputStreamReader(opened.getInputStream()));
+        if (!"CONNECTED".equals(in.readLine())) {
+            return false;
+        }
+        out.println("ATTACH;" + token);
+        String response = in.readLine();
+        return response != null && response.startsWith("ATTACH_SUCCESS");
+    }
+
+    private void unavailable() {
+        if (running) {
+            running = false;
+            SwingUtilities.invokeLater(onUnavailable);
+        }
+    }
+
+    private void closeSocket() {
+        Socket current = socket;
+        socket = null;
+        if (current == null || current.isClosed()) {
+            return;
+        }
+        try {
+            current.close();
+        } catch (IOException e) {
+            System.err.println("Error closing chat event channel: " + e.getMessage());
+        }
+    }
+}
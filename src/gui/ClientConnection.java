@@ -5,8 +5,17 @@ import java.io.File;
 import java.net.Socket;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Consumer;
 
 
+/**
+ * Connection to the server.
+ * sendCommand is a blocking request/response call on the login socket and is synchronized,
+ * so calls from several threads never interleave their responses.
+ * After login, sendAsync and sendBackground queue commands on the RequestDispatcher and
+ * deliver responses on the Swing EDT. streamBackground does the same for commands answered
+ * with several lines (REPORT_STREAM).
+ */
 public class ClientConnection {
     
     private static final String DEFAULT_SERVER_HOST = "localhost"; // Fallback for local development
@@ -18,6 +27,9 @@ public class ClientConnection {
     private PrintWriter out;
     private BufferedReader in;
     private boolean connected = false;
+    private volatile String sessionToken;
+    private RequestDispatcher dispatcher;
+    private final Object dispatcherLock = new Object(); // separate from the sendCommand monitor so the EDT never waits on a response
     
     /**
      * Constructs a new ClientConnection.
@@ -127,6 +139,7 @@ public class ClientConnection {
      */
     public void disconnect() {
         connected = false;
+        shutdownDispatcher();
         try {
             if (out != null) {
                 out.println("EXIT");
@@ -153,7 +166,7 @@ public class ClientConnection {
      * @return the response string from the server
      * @throws IOException if not connected, server disconnected, or communication error
      */
-    public String sendCommand(String command) throws IOException {
+    public synchronized String sendCommand(String command) throws IOException {
         if (!connected || socket == null || socket.isClosed()) {
             throw new IOException("Not connected to server");
         }
@@ -173,17 +186,73 @@ public class ClientConnection {
         }
     }
     
+    /**
+     * Sends a command whose response is streamed over several lines, on the login socket.
+     * See readStream for the line format.
+     * 
+     * @param command the command string to send
+     * @param onLine called on this thread with the header line and each ROWS line
+     * @return the END line, or the single response line if the command was not streamed
+     * @throws IOException if not connected, server disconnected, or communication error
+     */
+    public synchronized String sendStreaming(String command, Consumer<String> onLine) throws IOException {
+        if (!connected || socket == null || socket.isClosed()) {
+            throw new IOException("Not connected to server");
+        }
+        
+        try {
+            out.println(command);
+            return readStream(in, onLine);
+        } catch (IOException e) {
+            connected = false;
+            throw new IOException("Communication error: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Reads a streamed response: "OK;BEGIN;header", any number of "ROWS;..." lines and
+     * "END;total". A response that does not start with OK;BEGIN (an error or a retry
+     * request) is a single line and is returned as is.
+     * 
+     * @param in the socket input
+     * @param onLine called with the header line and each ROWS line, in order
+     * @return the END line, or the single response line
+     * @throws IOException if the server disconnected mid-stream
+     */
+    static String readStream(BufferedReader in, Consumer<String> onLine) throws IOException {
+        String line = in.readLine();
+        if (line == null) {
+            throw new IOException("Server disconnected");
+        }
+        if (!line.startsWith("OK;BEGIN;")) {
+            return line;
+        }
+        onLine.accept(line);
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith("END;")) {
+                return line;
+            }
+            onLine.accept(line);
+        }
+        throw new IOException("Server disconnected");
+    }
+    
     /**
      * Logs in with username and password.
      * 
      * @param username the username
      * @param password the password
-     * @return the server response (format: "LOGIN_SUCCESS;role;branchId" or "AUTH_ERROR;...")
+     * @return the server response (format: "LOGIN_SUCCESS;role;branchId;channelToken" or "AUTH_ERROR;...")
      * @throws IOException if communication error occurs
      */
     public String login(String username, String password) throws IOException {
         String command = "LOGIN;" + username + ";" + password;
-        return sendCommand(command);
+        String response = sendCommand(command);
+        String[] parts = response.split(";");
+        if (parts[0].equals("LOGIN_SUCCESS") && parts.length > 3) {
+            sessionToken = parts[3];
+        }
+        return response;
     }
     
     /**
@@ -193,9 +262,87 @@ public class ClientConnection {
      * @throws IOException if communication error occurs
      */
     public String logout() throws IOException {
+        shutdownDispatcher();
+        sessionToken = null;
         return sendCommand("LOGOUT");
     }
     
+    /**
+     * Queues a user action on the interactive channel.
+     * 
+     * @param command the command string to send
+     * @param onResponse called on the EDT with the server response
+     * @param onError called on the EDT if communication failed (may be null)
+     */
+    public void sendAsync(String command, Consumer<String> onResponse, Consumer<IOException> onError) {
+        getDispatcher().submit(RequestDispatcher.Channel.INTERACTIVE, command, onResponse, onError);
+    }
+    
+    /**
+     * Queues a refresh on the background channel.
+     * 
+     * @param command the command string to send
+     * @param onResponse called on the EDT with the server response
+     * @param onError called on the EDT if communication failed (may be null)
+     */
+    public void sendBackground(String command, Consumer<String> onResponse, Consumer<IOException> onError) {
+        getDispatcher().submit(RequestDispatcher.Channel.BACKGROUND, command, onResponse, onError);
+    }
+    
+    /**
+     * Queues a streamed command (REPORT_STREAM) on the background channel.
+     * 
+     * @param command the command string to send
+     * @param onLine called on the EDT with the header line and each ROWS line, as they arrive
+     * @param onEnd called on the EDT with the END line, or the single response line on error
+     * @param onError called on the EDT if communication failed (may be null)
+     */
+    public void streamBackground(String command, Consumer<String> onLine, Consumer<String> onEnd, Consumer<IOException> onError) {
+        getDispatcher().submitStream(command, onLine, onEnd, onError);
+    }
+    
+    /**
+     * Gets the request dispatcher, creating it on first use.
+     * 
+     * @return the RequestDispatcher for this connection
+     */
+    public RequestDispatcher getDispatcher() {
+        synchronized (dispatcherLock) {
+            if (dispatcher == null) {
+                dispatcher = new RequestDispatcher(this);
+            }
+            return dispatcher;
+        }
+    }
+    
+    private void shutdownDispatcher() {
+        RequestDispatcher current;
+        synchronized (dispatcherLock) {
+            current = dispatcher;
+            dispatcher = null;
+        }
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+    
+    /**
+     * Gets the channel token received at login, used to attach the background channel.
+     * 
+     * @return the token, or null if not logged in or the server did not send one
+     */
+    String getSessionToken() {
+        return sessionToken;
+    }
+    
+    String getServerHost() {
+        return serverHost;
+    }
+    
+    int getServerPort() {
+        return SERVER_PORT;
+    }
+    
     /**
      * Checks if connected to the server.
      * 
@@ -1,7 +1,11 @@
 package gui;
 
 import controller.SystemController;
+import server.AdmissionController;
 import server.ClientHandler;
+import server.CommandScheduler;
+import server.ReportJobManager;
+import server.ExportJobManager;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.Vector;
@@ -17,6 +21,10 @@ public class LocalServerRunner extends Thread {
     private SystemController controller;
     private ServerSocket serverSocket;
     private Vector<Socket> connectedClients;
+    private AdmissionController admissionController;
+    private CommandScheduler scheduler;
+    private ReportJobManager reportJobManager;
+    private ExportJobManager exportJobManager;
     private boolean running = false;
     
     /**
@@ -49,12 +57,16 @@ public class LocalServerRunner extends Thread {
     private LocalServerRunner() {
         setDaemon(true);
         connectedClients = new Vector<>();
+        scheduler = new CommandScheduler();
+        admissionController = new AdmissionController(scheduler::getQueuedCount);
     }
     
     @Override
     public void run() {
         try {
             controller = new SystemController();
+            reportJobManager = new ReportJobManager(controller);
+            exportJobManager = new ExportJobManager(controller);
             serverSocket = new ServerSocket(PORT);
             running = true;
             
@@ -68,7 +80,11 @@ public class LocalServerRunner extends Thread {
                     ClientHandler handler = new ClientHandler(
                         clientSocket, 
                         controller, 
-                        connectedClients
+                        connectedClients,
+                        admissionController,
+                        scheduler,
+                        reportJobManager,
+                        exportJobManager
                     );
                     new Thread(handler).start();
                 } catch (java.net.SocketException e) {
@@ -101,9 +117,18 @@ public class LocalServerRunner extends Thread {
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
             }
+            scheduler.shutdown();
+            if (reportJobManager != null) {
+                reportJobManager.shutdown();
+            }
+            if (exportJobManager != null) {
+                exportJobManager.shutdown();
+            }
             if (controller != null) {
                 controller.saveAllData();
+                controller.shutdown();
             }
+            System.out.println(scheduler.getLatencySummary());
         } catch (Exception e) {
             System.err.println("Error stopping local server: " + e.getMessage());
         }
@@ -202,6 +202,12 @@ public class LoginWindow extends JFrame {
                     "שגיאת התחברות",
                     JOptionPane.ERROR_MESSAGE);
             passwordField.setText("");
+        } else if (parts[0].equals("RETRY_AFTER")) {
+            long seconds = parts.length > 1 ? Math.max(1, (Long.parseLong(parts[1]) + 999) / 1000) : 1;
+            JOptionPane.showMessageDialog(this,
+                    "יותר מדי ניסיונות התחברות. נסה שוב בעוד " + seconds + " שניות",
+                    "שגיאת התחברות",
+                    JOptionPane.WARNING_MESSAGE);
         } else {
             JOptionPane.showMessageDialog(this,
                     "תגובה לא מוכרת מהשרת: " + response,
@@ -0,0 +1,246 @@
+package gui;
+
+import javax.swing.SwingUtilities;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous request layer on top of ClientConnection.
+ * Requests are queued on one of two channels and answered through CompletableFutures:
+ * <ul>
+ *   <li>INTERACTIVE - user actions (sales, chat messages, edits), sent on the login socket.</li>
+ *   <li>BACKGROUND - periodic tab refreshes, sent on a second socket attached to the same
+ *       session with the channel token returned at login. A large GET_LOGS transfer on this
+ *       channel therefore never delays a sale on the interactive one.</li>
+ * </ul>
+ * Each channel has its own single request thread, so requests on a channel keep their order.
+ * Identical background requests that are still waiting in the queue are coalesced, so slow
+ * responses cannot pile up timer-driven refreshes. Streamed responses (REPORT_STREAM) are
+ * read on the background channel and handed to the EDT line by line as they arrive.
+ * Callbacks always run on the Swing EDT.
+ *
+ * @author FinalProject
+ */
+public class RequestDispatcher {
+
+    /** Logical channel a request is sent on */
+    public enum Channel {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    private final ClientConnection connection;
+    private final ExecutorService interactiveQueue;
+    private final ExecutorService backgroundQueue;
+    private final Map<String, CompletableFuture<String>> queuedBackground = new ConcurrentHashMap<>();
+
+    // Background socket - only touched by the background request thread
+    private Socket backgroundSocket;
+    private PrintWriter backgroundOut;
+    private BufferedReader backgroundIn;
+    private boolean backgroundUnavailable = false;
+
+    /**
+     * Constructs a new RequestDispatcher for a logged-in connection.
+     *
+     * @param connection the logged-in connection
+     */
+    public RequestDispatcher(ClientConnection connection) {
+        this.connection = connection;
+        this.interactiveQueue = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "client-interactive"));
+        this.backgroundQueue = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "client-background"));
+    }
+
+    /**
+     * Queues a command on a channel.
+     *
+     * @param channel the channel to send the command on
+     * @param command the command string
+     * @return a future completed with the server response, or exceptionally with an IOException
+     */
+    public CompletableFuture<String> submit(Channel channel, String command) {
+        if (channel == Channel.INTERACTIVE) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            interactiveQueue.execute(() -> complete(future, () -> connection.sendCommand(command)));
+            return future;
+        }
+
+        // Coalesce with an identical request that has not been sent yet
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> queued = queuedBackground.putIfAbsent(command, created);
+        if (queued != null) {
+            return queued;
+        }
+        backgroundQueue.execute(() -> {
+            queuedBackground.remove(command, created);
+            complete(created, () -> sendBackground(command));
+        });
+        return created;
+    }
+
+    /**
+     * Queues a command and delivers the result on the Swing EDT.
+     *
+     * @param channel the channel to send the command on
+     * @param command the command string
+     * @param onResponse called on the EDT with the server response
+     * @param onError called on the EDT if communication failed (may be null to ignore errors)
+     */
+    public void submit(Channel channel, String command, Consumer<String> onResponse, Consumer<IOException> onError) {
+        submit(channel, command).whenComplete((response, error) -> SwingUtilities.invokeLater(() -> {
+            if (error == null) {
+                onResponse.accept(response);
+            } else if (onError != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                onError.accept(cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause));
+            }
+        }));
+    }
+
+    /**
+     * Queues a streamed command on the background channel. Streamed requests are not coalesced.
+     *
+     * @param command the command string
+     * @param onLine called on the EDT with the header line and each ROWS line, in order
+     * @param onEnd called on the EDT after the last line with the END line, or with the
+     *              single response line if the command was not streamed
+     * @param onError called on the EDT if communication failed (may be null to ignore errors)
+     */
+    public void submitStream(String command, Consumer<String> onLine, Consumer<String> onEnd, Consumer<IOException> onError) {
+        backgroundQueue.execute(() -> {
+            try {
+                String end = streamBackground(command, line -> SwingUtilities.invokeLater(() -> onLine.accept(line)));
+                SwingUtilities.invokeLater(() -> onEnd.accept(end));
+            } catch (IOException e) {
+                if (onError != null) {
+                    SwingUtilities.invokeLater(() -> onError.accept(e));
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops both request threads and closes the background socket.
+     * Requests still in the queues are dropped.
+     */
+    public void shutdown() {
+        interactiveQueue.shutdownNow();
+        backgroundQueue.shutdownNow();
+        closeBackground();
+    }
+
+    /** A request body that may fail with an IOException */
+    private interface Request {
+        String send() throws IOException;
+    }
+
+    private static void complete(CompletableFuture<String> future, Request request) {
+        try {
+            future.complete(request.send());
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Sends a command on the background socket, opening and attaching it on first use.
+     * Falls back to the interactive socket if the server does not support a second channel.
+     */
+    private String sendBackground(String command) throws IOException {
+        if (backgroundUnavailable || connection.getSessionToken() == null) {
+            return connection.sendCommand(command);
+        }
+        if (backgroundSocket == null || backgroundSocket.isClosed()) {
+            openBackground();
+            if (backgroundUnavailable) {
+                return connection.sendCommand(command);
+            }
+        }
+        try {
+            backgroundOut.println(command);
+            String response = backgroundIn.readLine();
+            if (response == null) {
+                throw new IOException("Server disconnected");
+            }
+            return response;
+        } catch (IOException e) {
+            closeBackground();
+            throw new IOException("Communication error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends a streamed command on the background socket, like sendBackground.
+     */
+    private String streamBackground(String command, Consumer<String> onLine) throws IOException {
+        if (backgroundUnavailable || connection.getSessionToken() == null) {
+            return connection.sendStreaming(command, onLine);
+        }
+        if (backgroundSocket == null || backgroundSocket.isClosed()) {
+            openBackground();
+            if (backgroundUnavailable) {
+                return connection.sendStreaming(command, onLine);
+            }
+        }
+        try {
+            backgroundOut.println(command);
+            return ClientConnection.readStream(backgroundIn, onLine);
+        } catch (IOException e) {
+            closeBackground();
+            throw new IOException("Communication error: " + e.getMessage());
+        }
+    }
+
+    private void openBackground() throws IOException {
+        Socket socket = new Socket(connection.getServerHost(), connection.getServerPort());
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        if (!"CONNECTED".equals(in.readLine())) {
+            socket.close();
+            throw new IOException("Background channel handshake failed");
+        }
+        out.println("ATTACH;" + connection.getSessionToken());
+        String response = in.readLine();
+        if (response == null || !response.startsWith("ATTACH_SUCCESS")) {
+            // Older server or expired session - keep using the login socket
+            socket.close();
+            backgroundUnavailable = true;
+            return;
+        }
+        backgroundSocket = socket;
+        backgroundOut = out;
+        backgroundIn = in;
+    }
+
+    private void closeBackground() {
+        try {
+            if (backgroundOut != null) {
+                backgroundOut.println("EXIT");
+            }
+            if (backgroundSocket != null && !backgroundSocket.isClosed()) {
+                backgroundSocket.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing background channel: " + e.getMessage());
+        } finally {
+            backgroundSocket = null;
+            backgroundOut = null;
+            backgroundIn = null;
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
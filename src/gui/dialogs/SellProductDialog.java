@@ -5,13 +5,15 @@ import gui.MainWindow;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.IOException;
 
 /**
  * Dialog for performing a product sale.
  * Calculates price based on customer type (polymorphism) and allows sale execution.
  * Employee number is automatically determined from the logged-in user.
  * For admin: allows selecting branch.
+ * After a successful price calculation the stock is held on the server (HOLD_STOCK),
+ * so it cannot be sold to someone else before the sale is completed. The hold is
+ * consumed by the sale, or released when the dialog is closed without selling.
  * 
  * @author FinalProject
  */
@@ -31,6 +33,10 @@ public class SellProductDialog extends JDialog {
     private JButton sellButton;
     private JButton cancelButton;
     
+    // מלאי שמור לחישוב המחיר האחרון (null אם אין)
+    private String holdId;
+    private String holdKey;
+    
     public SellProductDialog(MainWindow parent, ClientConnection connection, String role, String branchId) {
         super(parent, "ביצוע מכירה", true);
         this.connection = connection;
@@ -40,6 +46,7 @@ public class SellProductDialog extends JDialog {
         
         setSize(450, 350);
         setLocationRelativeTo(parent);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
         createUI();
     }
     
@@ -176,56 +183,70 @@ public class SellProductDialog extends JDialog {
                 return;
             }
             
+            String selectedBranchId = "admin".equals(role) ?
+                    (String) branchCombo.getSelectedItem() : branchId;
             String command = "CALCULATE_PRICE;" + productId + ";" + quantity + ";" + customerId;
-            String response = connection.sendCommand(command);
-            
-            if (response == null) {
-                JOptionPane.showMessageDialog(this,
-                        "אין תגובה מהשרת",
-                        "שגיאה",
-                        JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-            
-            response = response.trim();
-            
-            if (response.startsWith("OK;")) {
-                String priceStr = response.substring(3);
-                try {
-                    double finalPrice = Double.parseDouble(priceStr);
-                    priceLabel.setText(String.format("%.2f ₪", finalPrice));
-                    priceLabel.setForeground(Color.BLUE);
-                } catch (NumberFormatException e) {
+            connection.sendAsync(command, response -> {
+                if (handlePriceResponse(response)) {
+                    holdStock(productId, quantity, selectedBranchId);
+                }
+            }, e ->
                     JOptionPane.showMessageDialog(this,
-                            "תגובה לא תקינה מהשרת: " + priceStr,
+                            "שגיאה בתקשורת: " + e.getMessage(),
                             "שגיאה",
-                            JOptionPane.ERROR_MESSAGE);
-                }
-            } else if (response.startsWith("ERROR") || response.startsWith("AUTH_ERROR")) {
-                String errorMsg = response.contains(";") ? response.split(";", 2)[1] : response;
-                JOptionPane.showMessageDialog(this,
-                        "שגיאה בחישוב מחיר:\n" + errorMsg,
-                        "שגיאה",
-                        JOptionPane.ERROR_MESSAGE);
-                priceLabel.setText("0.00 ₪");
-                priceLabel.setForeground(Color.BLACK);
-            } else {
+                            JOptionPane.ERROR_MESSAGE));
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this,
+                    "כמות חייבת להיות מספר",
+                    "שגיאה",
+                    JOptionPane.WARNING_MESSAGE);
+        }
+    }
+    
+    /**
+     * Shows the calculated price.
+     *
+     * @return true if a price was received
+     */
+    private boolean handlePriceResponse(String response) {
+        if (response == null) {
+            JOptionPane.showMessageDialog(this,
+                    "אין תגובה מהשרת",
+                    "שגיאה",
+                    JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        
+        response = response.trim();
+        
+        if (response.startsWith("OK;")) {
+            String priceStr = response.substring(3);
+            try {
+                double finalPrice = Double.parseDouble(priceStr);
+                priceLabel.setText(String.format("%.2f ₪", finalPrice));
+                priceLabel.setForeground(Color.BLUE);
+                return true;
+            } catch (NumberFormatException e) {
                 JOptionPane.showMessageDialog(this,
-                        "תגובה לא מוכרת מהשרת: " + response,
+                        "תגובה לא תקינה מהשרת: " + priceStr,
                         "שגיאה",
                         JOptionPane.ERROR_MESSAGE);
             }
-        } catch (NumberFormatException e) {
+        } else if (response.startsWith("ERROR") || response.startsWith("AUTH_ERROR")) {
+            String errorMsg = response.contains(";") ? response.split(";", 2)[1] : response;
             JOptionPane.showMessageDialog(this,
-                    "כמות חייבת להיות מספר",
+                    "שגיאה בחישוב מחיר:\n" + errorMsg,
                     "שגיאה",
-                    JOptionPane.WARNING_MESSAGE);
-        } catch (IOException e) {
+                    JOptionPane.ERROR_MESSAGE);
+            priceLabel.setText("0.00 ₪");
+            priceLabel.setForeground(Color.BLACK);
+        } else {
             JOptionPane.showMessageDialog(this,
-                    "שגיאה בתקשורת: " + e.getMessage(),
+                    "תגובה לא מוכרת מהשרת: " + response,
                     "שגיאה",
                     JOptionPane.ERROR_MESSAGE);
         }
+        return false;
     }
     
     private void performSale() {
@@ -255,34 +276,84 @@ public class SellProductDialog extends JDialog {
             
             // Employee number is automatically determined by the server from the logged-in user
             String command = "SELL;" + productId + ";" + quantity + ";" + selectedBranchId + ";" + customerId;
-            String response = connection.sendCommand(command);
-            
-            if (response.startsWith("OK")) {
-                mainWindow.setStatus("מכירה בוצעה בהצלחה", Color.GREEN);
-                mainWindow.refreshAllTabs();
-                dispose();
-            } else if (response.startsWith("ERROR") || response.startsWith("AUTH_ERROR")) {
-                String errorMsg = response.contains(";") ? response.split(";", 2)[1] : response;
-                JOptionPane.showMessageDialog(this,
-                        "שגיאה בביצוע מכירה:\n" + errorMsg,
-                        "שגיאה",
-                        JOptionPane.ERROR_MESSAGE);
-            } else {
-                JOptionPane.showMessageDialog(this,
-                        "תגובה לא מוכרת: " + response,
-                        "שגיאה",
-                        JOptionPane.ERROR_MESSAGE);
+            if (holdId != null && holdKey.equals(holdKey(productId, quantity, selectedBranchId))) {
+                command += ";" + holdId;
             }
+            connection.sendAsync(command, this::handleSaleResponse, e ->
+                    JOptionPane.showMessageDialog(this,
+                            "שגיאה בתקשורת: " + e.getMessage(),
+                            "שגיאה",
+                            JOptionPane.ERROR_MESSAGE));
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this,
                     "כמות חייבת להיות מספר",
                     "שגיאה",
                     JOptionPane.WARNING_MESSAGE);
-        } catch (IOException e) {
+        }
+    }
+    
+    private void handleSaleResponse(String response) {
+        if (response.startsWith("OK")) {
+            holdId = null;  // המלאי השמור נמכר
+            mainWindow.setStatus("מכירה בוצעה בהצלחה", Color.GREEN);
+            mainWindow.refreshAllTabs();
+            dispose();
+        } else if (response.startsWith("ERROR") || response.startsWith("AUTH_ERROR")) {
+            String errorMsg = response.contains(";") ? response.split(";", 2)[1] : response;
             JOptionPane.showMessageDialog(this,
-                    "שגיאה בתקשורת: " + e.getMessage(),
+                    "שגיאה בביצוע מכירה:\n" + errorMsg,
                     "שגיאה",
                     JOptionPane.ERROR_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(this,
+                    "תגובה לא מוכרת: " + response,
+                    "שגיאה",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Holds the stock for the priced sale, replacing any previous hold from this dialog.
+     */
+    private void holdStock(String productId, int quantity, String selectedBranchId) {
+        releaseHold();
+        String key = holdKey(productId, quantity, selectedBranchId);
+        connection.sendAsync("HOLD_STOCK;" + productId + ";" + quantity + ";" + selectedBranchId, response -> {
+            if (response.startsWith("OK;")) {
+                String[] parts = response.split(";");
+                if (!isDisplayable()) {
+                    // הדיאלוג נסגר לפני שהתשובה הגיעה - משחררים מיד
+                    connection.sendAsync("RELEASE_HOLD;" + parts[1], ignored -> { }, null);
+                    return;
+                }
+                holdId = parts[1];
+                holdKey = key;
+            } else if (response.startsWith("ERROR")) {
+                String errorMsg = response.contains(";") ? response.split(";", 2)[1] : response;
+                JOptionPane.showMessageDialog(this,
+                        "שים לב - לא ניתן לשמור את המלאי למכירה:\n" + errorMsg,
+                        "אזהרה",
+                        JOptionPane.WARNING_MESSAGE);
+            }
+            // RETRY_AFTER / AUTH_ERROR - המכירה תתבצע ללא שמירת מלאי
+        }, null);
+    }
+    
+    private void releaseHold() {
+        if (holdId != null) {
+            connection.sendAsync("RELEASE_HOLD;" + holdId, ignored -> { }, null);
+            holdId = null;
+            holdKey = null;
         }
     }
+    
+    private static String holdKey(String productId, int quantity, String selectedBranchId) {
+        return productId + ";" + quantity + ";" + selectedBranchId;
+    }
+    
+    @Override
+    public void dispose() {
+        releaseHold();
+        super.dispose();
+    }
 }
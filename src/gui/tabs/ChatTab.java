@@ -1,5 +1,6 @@
 package gui.tabs;
 
+import gui.ChatEventListener;
 import gui.ClientConnection;
 import gui.MainWindow;
 import model.ChatMessage;
@@ -9,14 +10,14 @@ import model.ChatUserStatus;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
 
 /**
  * Tab for managing inter-branch chat.
  * Displays waiting requests, active chats, and message area.
- * Implements auto-refresh every 500ms (0.5 seconds) to keep UI updated with minimal server load.
+ * Stays up to date through chat events pushed by the server (long-poll on a separate channel),
+ * fetching only the messages and lists an event reports as changed.
  * Managers can join existing chats.
  * 
  * @author FinalProject
@@ -43,11 +44,17 @@ public class ChatTab extends JPanel {
     private JButton cancelRequestButton; // For canceling request
     
     private String currentChatId;
-    private Timer refreshTimer;
+    private Timer refreshTimer; // רק אם אין ערוץ אירועים
+    private ChatEventListener eventListener;
+    
+    // הצ'אט שמוצג כעת ומספר ההודעה האחרונה שהתקבלה - נטען רק מה שחדש
+    private String displayedChatId;
+    private long lastSequence;
     
     /**
      * Constructs a new ChatTab.
-     * Starts auto-refresh timer to keep UI updated.
+     * Listens for chat events from the server to keep UI updated;
+     * falls back to a refresh timer if the event channel is not available.
      * 
      * @param connection the ClientConnection to the server
      * @param mainWindow the parent MainWindow
@@ -174,44 +181,37 @@ public class ChatTab extends JPanel {
     
     private void requestChat() {
         // שליחת בקשה לצ'אט
-        new Thread(() -> {
-            try {
-                String response = connection.sendCommand("REQUEST_CHAT");
-                SwingUtilities.invokeLater(() -> {
-                    if (response != null && response.startsWith("OK;")) {
-                        String[] parts = response.split(";");
-                        if (parts.length > 1 && parts[1].equals("MATCHED")) {
-                            // נמצאה התאמה
-                            String chatId = parts[2];
-                            String user1 = parts[3];
-                            String user2 = parts[4];
-                            currentChatId = chatId;
-                            loadChat(chatId);
-                            mainWindow.setStatus("צ'אט התחיל עם " + (user1.equals(currentUsername) ? user2 : user1), Color.GREEN);
-                        } else if (parts.length > 1 && parts[1].equals("QUEUE")) {
-                            // נוסף לתור
-                            mainWindow.setStatus("נוסף לתור, ממתין לעובד פנוי...", Color.BLUE);
-                            cancelRequestButton.setEnabled(true);
-                        } else {
-                            mainWindow.setStatus("בקשה נשלחה", Color.GREEN);
-                        }
-                        refresh();
-                    } else {
-                        String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה בבקשת צ'אט";
-                        JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
-                        mainWindow.setStatus("שגיאה בבקשת צ'אט", Color.RED);
-                    }
-                });
-            } catch (IOException e) {
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(this,
-                            "שגיאה בתקשורת: " + e.getMessage(),
-                            "שגיאה",
-                            JOptionPane.ERROR_MESSAGE);
-                    mainWindow.setStatus("שגיאה בתקשורת", Color.RED);
-                });
+        connection.sendAsync("REQUEST_CHAT", response -> {
+            if (response != null && response.startsWith("OK;")) {
+                String[] parts = response.split(";");
+                if (parts.length > 1 && parts[1].equals("MATCHED")) {
+                    // נמצאה התאמה
+                    String chatId = parts[2];
+                    String user1 = parts[3];
+                    String user2 = parts[4];
+                    currentChatId = chatId;
+                    loadChat(chatId);
+                    mainWindow.setStatus("צ'אט התחיל עם " + (user1.equals(currentUsername) ? user2 : user1), Color.GREEN);
+                } else if (parts.length > 1 && parts[1].equals("QUEUE")) {
+                    // נוסף לתור
+                    mainWindow.setStatus("נוסף לתור, ממתין לעובד פנוי...", Color.BLUE);
+                    cancelRequestButton.setEnabled(true);
+                } else {
+                    mainWindow.setStatus("בקשה נשלחה", Color.GREEN);
+                }
+                refresh();
+            } else {
+                String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה בבקשת צ'אט";
+                JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
+                mainWindow.setStatus("שגיאה בבקשת צ'אט", Color.RED);
             }
-        }).start();
+        }, e -> {
+            JOptionPane.showMessageDialog(this,
+                    "שגיאה בתקשורת: " + e.getMessage(),
+                    "שגיאה",
+                    JOptionPane.ERROR_MESSAGE);
+            mainWindow.setStatus("שגיאה בתקשורת", Color.RED);
+        });
     }
     
     private void sendMessage() {
@@ -222,27 +222,20 @@ public class ChatTab extends JPanel {
         String message = messageField.getText().trim();
         messageField.setText("");
         
-        new Thread(() -> {
-            try {
-                String response = connection.sendCommand("SEND_MESSAGE;" + currentChatId + ";" + message);
-                SwingUtilities.invokeLater(() -> {
-                    if (response != null && response.startsWith("OK;")) {
-                        // רענון הודעות
-                        loadChat(currentChatId);
-                    } else {
-                        String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה בשליחת הודעה";
-                        JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
-                    }
-                });
-            } catch (IOException e) {
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(this,
-                            "שגיאה בתקשורת: " + e.getMessage(),
-                            "שגיאה",
-                            JOptionPane.ERROR_MESSAGE);
-                });
+        connection.sendAsync("SEND_MESSAGE;" + currentChatId + ";" + message, response -> {
+            if (response != null && response.startsWith("OK;")) {
+                // רענון הודעות
+                loadChat(currentChatId);
+            } else {
+                String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה בשליחת הודעה";
+                JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
             }
-        }).start();
+        }, e -> {
+            JOptionPane.showMessageDialog(this,
+                    "שגיאה בתקשורת: " + e.getMessage(),
+                    "שגיאה",
+                    JOptionPane.ERROR_MESSAGE);
+        });
     }
     
     private void endChat() {
@@ -256,43 +249,36 @@ public class ChatTab extends JPanel {
                 JOptionPane.YES_NO_OPTION);
         
         if (confirm == JOptionPane.YES_OPTION) {
-            new Thread(() -> {
-                try {
-                    String response = connection.sendCommand("END_CHAT;" + currentChatId);
-                    SwingUtilities.invokeLater(() -> {
-                        if (response != null && response.startsWith("OK;")) {
-                            // בדיקה אם יש משתמשים שמחכים
-                            String[] parts = response.split(";");
-                            if (parts.length > 2 && parts[2].equals("WAITING")) {
-                                String waitingRequests = parts.length > 3 ? parts[3] : "";
-                                if (!waitingRequests.isEmpty()) {
-                                    // רענון רשימת בקשות ממתינות
-                                    refreshWaitingRequests();
-                                    showNotification("יש בקשות ממתינות לצ'אט! בדוק את הרשימה.");
-                                }
-                            }
-                            
-                            currentChatId = null;
-                            messagesArea.setText("");
-                            sendButton.setEnabled(false);
-                            endChatButton.setEnabled(false);
-                            messageField.setEnabled(false);
-                            mainWindow.setStatus("צ'אט הסתיים", Color.GREEN);
-                            refresh();
-                        } else {
-                            String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה בסיום צ'אט";
-                            JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
+            connection.sendAsync("END_CHAT;" + currentChatId, response -> {
+                if (response != null && response.startsWith("OK;")) {
+                    // בדיקה אם יש משתמשים שמחכים
+                    String[] parts = response.split(";");
+                    if (parts.length > 2 && parts[2].equals("WAITING")) {
+                        String waitingRequests = parts.length > 3 ? parts[3] : "";
+                        if (!waitingRequests.isEmpty()) {
+                            // רענון רשימת בקשות ממתינות
+                            refreshWaitingRequests();
+                            showNotification("יש בקשות ממתינות לצ'אט! בדוק את הרשימה.");
                         }
-                    });
-                } catch (IOException e) {
-                    SwingUtilities.invokeLater(() -> {
-                        JOptionPane.showMessageDialog(this,
-                                "שגיאה בתקשורת: " + e.getMessage(),
-                                "שגיאה",
-                                JOptionPane.ERROR_MESSAGE);
-                    });
+                    }
+
+                    currentChatId = null;
+                    clearDisplayedChat();
+                    sendButton.setEnabled(false);
+                    endChatButton.setEnabled(false);
+                    messageField.setEnabled(false);
+                    mainWindow.setStatus("צ'אט הסתיים", Color.GREEN);
+                    refresh();
+                } else {
+                    String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה בסיום צ'אט";
+                    JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
                 }
-            }).start();
+            }, e -> {
+                JOptionPane.showMessageDialog(this,
+                        "שגיאה בתקשורת: " + e.getMessage(),
+                        "שגיאה",
+                        JOptionPane.ERROR_MESSAGE);
+            });
         }
     }
     
@@ -308,76 +294,75 @@ public class ChatTab extends JPanel {
         
         String chatId = selected.split(" - ")[0];
         
-        new Thread(() -> {
-            try {
-                String response = connection.sendCommand("JOIN_CHAT;" + chatId);
-                SwingUtilities.invokeLater(() -> {
-                    if (response != null && response.startsWith("OK;")) {
-                        currentChatId = chatId;
-                        loadChat(chatId);
-                        mainWindow.setStatus("הצטרפת לצ'אט", Color.GREEN);
-                        refresh();
-                    } else {
-                        String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה בהצטרפות לצ'אט";
-                        JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
-                    }
-                });
-            } catch (IOException e) {
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(this,
-                            "שגיאה בתקשורת: " + e.getMessage(),
-                            "שגיאה",
-                            JOptionPane.ERROR_MESSAGE);
-                });
+        connection.sendAsync("JOIN_CHAT;" + chatId, response -> {
+            if (response != null && response.startsWith("OK;")) {
+                currentChatId = chatId;
+                loadChat(chatId);
+                mainWindow.setStatus("הצטרפת לצ'אט", Color.GREEN);
+                refresh();
+            } else {
+                String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה בהצטרפות לצ'אט";
+                JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
             }
-        }).start();
+        }, e -> {
+            JOptionPane.showMessageDialog(this,
+                    "שגיאה בתקשורת: " + e.getMessage(),
+                    "שגיאה",
+                    JOptionPane.ERROR_MESSAGE);
+        });
     }
     
     private void loadChat(String chatId) {
         currentChatId = chatId;
-        new Thread(() -> {
-            try {
-                String response = connection.sendCommand("GET_CHAT_MESSAGES;" + chatId);
-                SwingUtilities.invokeLater(() -> {
-                    if (response != null && response.startsWith("OK;")) {
-                        // פרסור JSON (פשוט)
-                        parseAndDisplayMessages(response.substring(3)); // הסרת "OK;"
-                        sendButton.setEnabled(true);
-                        endChatButton.setEnabled(true);
-                        messageField.setEnabled(true);
-                    } else {
-                        messagesArea.setText("שגיאה בטעינת הודעות");
-                    }
-                });
-            } catch (IOException e) {
-                SwingUtilities.invokeLater(() -> {
-                    messagesArea.setText("שגיאה בתקשורת: " + e.getMessage());
-                });
+        if (!chatId.equals(displayedChatId)) {
+            // צ'אט אחר - מתחילים מההתחלה
+            displayedChatId = chatId;
+            lastSequence = 0;
+            messagesArea.setText("");
+        }
+        connection.sendBackground("GET_CHAT_MESSAGES_SINCE;" + chatId + ";" + lastSequence, response -> {
+            if (!chatId.equals(displayedChatId)) {
+                return; // תשובה לצ'אט שכבר לא מוצג
             }
-        }).start();
+            if (response != null && response.startsWith("OK;")) {
+                // פרסור JSON (פשוט)
+                appendNewMessages(response.substring(3)); // הסרת "OK;"
+                sendButton.setEnabled(true);
+                endChatButton.setEnabled(true);
+                messageField.setEnabled(true);
+            } else {
+                messagesArea.setText("שגיאה בטעינת הודעות");
+                displayedChatId = null; // הטעינה הבאה תתחיל מחדש
+            }
+        }, e -> {
+            messagesArea.setText("שגיאה בתקשורת: " + e.getMessage());
+            displayedChatId = null; // הטעינה הבאה תתחיל מחדש
+        });
     }
     
-    private void parseAndDisplayMessages(String json) {
+    private void clearDisplayedChat() {
+        displayedChatId = null;
+        lastSequence = 0;
         messagesArea.setText("");
+    }
+    
+    private void appendNewMessages(String json) {
         // פרסור בסיסי של JSON
-        // format: {"chatId":"...","messages":[{...},...]}
+        // format: {"chatId":"...","lastSequence":N,"messages":[{...},...]}
         try {
             int messagesStart = json.indexOf("\"messages\":[");
             if (messagesStart == -1) {
-                messagesArea.setText("אין הודעות");
                 return;
             }
             
             int arrayStart = messagesStart + 12; // אחרי "messages":[
             int arrayEnd = json.lastIndexOf("]");
             if (arrayEnd == -1) {
-                messagesArea.setText("אין הודעות");
                 return;
             }
             
             String messagesJson = json.substring(arrayStart, arrayEnd);
             if (messagesJson.trim().isEmpty()) {
-                messagesArea.setText("אין הודעות");
                 return;
             }
             
@@ -408,8 +393,13 @@ public class ChatTab extends JPanel {
                 }
             }
             
-            // הצגת הודעות
+            // הוספת הודעות חדשות בלבד - בקשות חופפות עלולות להחזיר הודעות שכבר הוצגו
             for (String msgJson : messages) {
+                long sequence = extractJsonLong(msgJson, "sequence");
+                if (sequence <= lastSequence) {
+                    continue;
+                }
+                lastSequence = sequence;
                 String sender = extractJsonValue(msgJson, "senderUsername");
                 String message = extractJsonValue(msgJson, "message");
                 String type = extractJsonValue(msgJson, "messageType");
@@ -424,9 +414,24 @@ public class ChatTab extends JPanel {
             messagesArea.setCaretPosition(messagesArea.getDocument().getLength());
         } catch (Exception e) {
             messagesArea.setText("שגיאה בפרסור הודעות: " + e.getMessage());
+            displayedChatId = null; // הטעינה הבאה תתחיל מחדש
         }
     }
     
+    private long extractJsonLong(String json, String key) {
+        String searchKey = "\"" + key + "\":";
+        int keyIndex = json.indexOf(searchKey);
+        if (keyIndex == -1) return 0;
+        
+        int valueStart = keyIndex + searchKey.length();
+        int valueEnd = valueStart;
+        while (valueEnd < json.length() && Character.isDigit(json.charAt(valueEnd))) {
+            valueEnd++;
+        }
+        if (valueEnd == valueStart) return 0;
+        return Long.parseLong(json.substring(valueStart, valueEnd));
+    }
+    
     private String extractJsonValue(String json, String key) {
         String searchKey = "\"" + key + "\":";
         int keyIndex = json.indexOf(searchKey);
@@ -472,57 +477,46 @@ public class ChatTab extends JPanel {
     }
     
     private void checkUserStatus() {
-        new Thread(() -> {
-            try {
-                String response = connection.sendCommand("GET_USER_CHAT_STATUS");
-                SwingUtilities.invokeLater(() -> {
-                    if (response != null && response.startsWith("OK;")) {
-                        String status = response.substring(3);
-                        if ("IN_QUEUE".equals(status)) {
-                            cancelRequestButton.setEnabled(true);
-                        } else {
-                            cancelRequestButton.setEnabled(false);
-                        }
-                    }
-                });
-            } catch (IOException e) {
-                // ignore
+        connection.sendBackground("GET_USER_CHAT_STATUS", response -> {
+            if (response != null && response.startsWith("OK;")) {
+                String status = response.substring(3);
+                if ("IN_QUEUE".equals(status)) {
+                    cancelRequestButton.setEnabled(true);
+                } else {
+                    cancelRequestButton.setEnabled(false);
+                }
             }
-        }).start();
+        }, null);
     }
     
     private void refreshWaitingRequests() {
-        new Thread(() -> {
-            try {
-                String response = connection.sendCommand("GET_WAITING_REQUESTS");
-                SwingUtilities.invokeLater(() -> {
-                    waitingRequestsModel.clear();
-                    acceptRequestButton.setEnabled(false);
-                    if (response != null && response.startsWith("OK;")) {
-                        String requestsStr = response.substring(3);
-                        if (!requestsStr.isEmpty()) {
-                            String[] requests = requestsStr.split("\\|");
-                            for (String request : requests) {
-                                if (!request.isEmpty()) {
-                                    // פורמט: requestId:requesterUsername
-                                    String[] parts = request.split(":");
-                                    if (parts.length >= 2) {
-                                        String requestId = parts[0];
-                                        String requester = parts[1];
-                                        waitingRequestsModel.addElement(requester + " (" + requestId + ")");
-                                    }
-                                }
-                            }
-                            if (waitingRequestsModel.getSize() > 0) {
-                                acceptRequestButton.setEnabled(true);
+        connection.sendBackground("GET_WAITING_REQUESTS", response -> {
+            if (response != null && response.startsWith("RETRY_AFTER")) {
+                return; // השרת הגביל את קצב הבקשות - נשמור את הרשימה הנוכחית
+            }
+            waitingRequestsModel.clear();
+            acceptRequestButton.setEnabled(false);
+            if (response != null && response.startsWith("OK;")) {
+                String requestsStr = response.substring(3);
+                if (!requestsStr.isEmpty()) {
+                    String[] requests = requestsStr.split("\\|");
+                    for (String request : requests) {
+                        if (!request.isEmpty()) {
+                            // פורמט: requestId:requesterUsername
+                            String[] parts = request.split(":");
+                            if (parts.length >= 2) {
+                                String requestId = parts[0];
+                                String requester = parts[1];
+                                waitingRequestsModel.addElement(requester + " (" + requestId + ")");
                             }
                         }
                     }
-                });
-            } catch (IOException e) {
-                // ignore
+                    if (waitingRequestsModel.getSize() > 0) {
+                        acceptRequestButton.setEnabled(true);
+                    }
+                }
             }
-        }).start();
+        }, null);
     }
     
     private void showNotification(String message) {
@@ -533,31 +527,85 @@ public class ChatTab extends JPanel {
     }
     
     private void refreshActiveChats() {
-        new Thread(() -> {
-            try {
-                String response = connection.sendCommand("GET_USER_CHAT");
-                SwingUtilities.invokeLater(() -> {
-                    activeChatsModel.clear();
-                    if (response != null && response.startsWith("OK;")) {
-                        String[] parts = response.split(";");
-                        if (parts.length > 1 && parts[1].equals("CHAT")) {
-                            String chatId = parts[2];
-                            String participants = "";
-                            if (parts.length > 5) {
-                                participants = parts[5].replace(",", ", ");
-                            }
-                            activeChatsModel.addElement(chatId + " - " + participants);
-                        }
+        connection.sendBackground("GET_USER_CHAT", response -> {
+            if (response != null && response.startsWith("RETRY_AFTER")) {
+                return; // השרת הגביל את קצב הבקשות - נשמור את הרשימה הנוכחית
+            }
+            activeChatsModel.clear();
+            if (response != null && response.startsWith("OK;")) {
+                String[] parts = response.split(";");
+                if (parts.length > 1 && parts[1].equals("CHAT")) {
+                    String chatId = parts[2];
+                    String participants = "";
+                    if (parts.length > 5) {
+                        participants = parts[5].replace(",", ", ");
                     }
-                });
-            } catch (IOException e) {
-                // ignore
+                    activeChatsModel.addElement(chatId + " - " + participants);
+                }
             }
-        }).start();
+        }, null);
     }
     
     private void startAutoRefresh() {
-        // רענון אוטומטי כל 500ms (0.5 שניות) - איזון טוב בין ביצועים לחוויית משתמש
+        // השרת מודיע על הודעות, התאמות, הצטרפות, סיום ושינויים בתור - אין צורך בסקירה תקופתית
+        eventListener = new ChatEventListener(connection, this::handleChatEvents, this::startPolling);
+        eventListener.start();
+    }
+    
+    private void handleChatEvents(List<String> events) {
+        boolean refreshAll = false;
+        boolean refreshWaiting = false;
+        for (String event : events) {
+            String[] parts = event.split(":", 2);
+            String type = parts[0];
+            String chatId = parts.length > 1 ? parts[1] : null;
+            switch (type) {
+                case "MESSAGE":
+                    if (chatId != null && chatId.equals(currentChatId)) {
+                        loadChat(chatId);
+                    }
+                    break;
+                case "MATCHED":
+                    // בקשה שלנו נענתה או שמישהו קיבל אותה
+                    currentChatId = chatId;
+                    loadChat(chatId);
+                    mainWindow.setStatus("צ'אט התחיל", Color.GREEN);
+                    refreshAll = true;
+                    break;
+                case "ENDED":
+                    if (chatId != null && chatId.equals(currentChatId)) {
+                        currentChatId = null;
+                        clearDisplayedChat();
+                        sendButton.setEnabled(false);
+                        endChatButton.setEnabled(false);
+                        messageField.setEnabled(false);
+                        mainWindow.setStatus("צ'אט הסתיים", Color.GREEN);
+                    }
+                    refreshAll = true;
+                    break;
+                case "JOINED":
+                    refreshActiveChats();
+                    break;
+                case "WAITING":
+                    refreshWaiting = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (refreshAll) {
+            refresh();
+        } else if (refreshWaiting) {
+            refreshWaitingRequests();
+            checkUserStatus();
+        }
+    }
+    
+    private void startPolling() {
+        // השרת לא תומך בערוץ אירועים - רענון אוטומטי כל 500ms
+        if (refreshTimer != null) {
+            return;
+        }
         refreshTimer = new Timer(500, e -> {
             if (currentChatId != null) {
                 loadChat(currentChatId);
@@ -569,28 +617,21 @@ public class ChatTab extends JPanel {
     }
     
     private void cancelChatRequest() {
-        new Thread(() -> {
-            try {
-                String response = connection.sendCommand("CANCEL_CHAT_REQUEST");
-                SwingUtilities.invokeLater(() -> {
-                    if (response != null && response.startsWith("OK;")) {
-                        cancelRequestButton.setEnabled(false);
-                        mainWindow.setStatus("בקשה בוטלה", Color.GREEN);
-                        refresh();
-                    } else {
-                        String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה בביטול בקשה";
-                        JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
-                    }
-                });
-            } catch (IOException e) {
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(this,
-                            "שגיאה בתקשורת: " + e.getMessage(),
-                            "שגיאה",
-                            JOptionPane.ERROR_MESSAGE);
-                });
+        connection.sendAsync("CANCEL_CHAT_REQUEST", response -> {
+            if (response != null && response.startsWith("OK;")) {
+                cancelRequestButton.setEnabled(false);
+                mainWindow.setStatus("בקשה בוטלה", Color.GREEN);
+                refresh();
+            } else {
+                String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה בביטול בקשה";
+                JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
             }
-        }).start();
+        }, e -> {
+            JOptionPane.showMessageDialog(this,
+                    "שגיאה בתקשורת: " + e.getMessage(),
+                    "שגיאה",
+                    JOptionPane.ERROR_MESSAGE);
+        });
     }
     
     private void acceptChatRequest() {
@@ -622,42 +663,38 @@ public class ChatTab extends JPanel {
         // העתקה למשתנה final לשימוש ב-lambda
         final String finalRequestId = requestId;
         
-        new Thread(() -> {
-            try {
-                String response = connection.sendCommand("ACCEPT_CHAT_REQUEST;" + finalRequestId);
-                SwingUtilities.invokeLater(() -> {
-                    if (response != null && response.startsWith("OK;")) {
-                        String[] parts = response.split(";");
-                        if (parts.length > 1 && parts[1].equals("MATCHED")) {
-                            String chatId = parts[2];
-                            String user1 = parts[3];
-                            String user2 = parts[4];
-                            currentChatId = chatId;
-                            loadChat(chatId);
-                            mainWindow.setStatus("צ'אט התחיל עם " + (user1.equals(currentUsername) ? user2 : user1), Color.GREEN);
-                            refresh();
-                        } else {
-                            mainWindow.setStatus("בקשה אושרה", Color.GREEN);
-                            refresh();
-                        }
-                    } else {
-                        String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה באישור בקשה";
-                        JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
-                    }
-                });
-            } catch (IOException e) {
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(this,
-                            "שגיאה בתקשורת: " + e.getMessage(),
-                            "שגיאה",
-                            JOptionPane.ERROR_MESSAGE);
-                });
+        connection.sendAsync("ACCEPT_CHAT_REQUEST;" + finalRequestId, response -> {
+            if (response != null && response.startsWith("OK;")) {
+                String[] parts = response.split(";");
+                if (parts.length > 1 && parts[1].equals("MATCHED")) {
+                    String chatId = parts[2];
+                    String user1 = parts[3];
+                    String user2 = parts[4];
+                    currentChatId = chatId;
+                    loadChat(chatId);
+                    mainWindow.setStatus("צ'אט התחיל עם " + (user1.equals(currentUsername) ? user2 : user1), Color.GREEN);
+                    refresh();
+                } else {
+                    mainWindow.setStatus("בקשה אושרה", Color.GREEN);
+                    refresh();
+                }
+            } else {
+                String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה באישור בקשה";
+                JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
             }
-        }).start();
+        }, e -> {
+            JOptionPane.showMessageDialog(this,
+                    "שגיאה בתקשורת: " + e.getMessage(),
+                    "שגיאה",
+                    JOptionPane.ERROR_MESSAGE);
+        });
     }
     
     @Override
     public void removeNotify() {
+        if (eventListener != null) {
+            eventListener.stop();
+        }
         if (refreshTimer != null) {
             refreshTimer.stop();
         }
@@ -238,24 +238,22 @@ class CustomersManagementTab extends JPanel {
      * רענון רשימת הלקוחות מהשרת
      */
     public void refresh() {
-        SwingUtilities.invokeLater(() -> {
+        // ערוץ הרקע - לא חוסם את ה-EDT ולא מעכב פעולות של המשתמש
+        connection.sendBackground("LIST_CUSTOMERS", response -> {
+            if (response != null && response.startsWith("RETRY_AFTER")) {
+                return; // השרת הגביל את קצב הבקשות - נשמור את הטבלה הנוכחית
+            }
             tableModel.setRowCount(0);
-            mainWindow.setStatus("טוען לקוחות...");
-            
-            try {
-                String response = connection.sendCommand("LIST_CUSTOMERS");
-                if (response != null) {
-                    response = response.trim();
-                    parseAndUpdateTable(response);
-                }
-                mainWindow.setStatus("מוכן", Color.BLACK);
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this,
-                        "שגיאה בטעינת לקוחות:\n" + e.getMessage(),
-                        "שגיאה",
-                        JOptionPane.ERROR_MESSAGE);
-                mainWindow.setStatus("שגיאה בטעינת לקוחות", Color.RED);
+            if (response != null) {
+                parseAndUpdateTable(response.trim());
             }
+            mainWindow.setStatus("מוכן", Color.BLACK);
+        }, e -> {
+            JOptionPane.showMessageDialog(this,
+                    "שגיאה בטעינת לקוחות:\n" + e.getMessage(),
+                    "שגיאה",
+                    JOptionPane.ERROR_MESSAGE);
+            mainWindow.setStatus("שגיאה בטעינת לקוחות", Color.RED);
         });
     }
     
@@ -463,24 +461,21 @@ class DiscountSettingsTab extends JPanel {
      * רענון אחוזי ההנחה מהשרת
      */
     public void refresh() {
-        SwingUtilities.invokeLater(() -> {
-            mainWindow.setStatus("טוען הגדרות הנחות...");
-            
-            try {
-                String response = connection.sendCommand("GET_DISCOUNTS");
-                if (response != null && response.startsWith("OK;")) {
-                    parseAndUpdateFields(response);
-                    mainWindow.setStatus("מוכן", Color.BLACK);
-                } else {
-                    mainWindow.setStatus("שגיאה בטעינת הגדרות הנחות", Color.RED);
-                }
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this,
-                        "שגיאה בטעינת הגדרות הנחות:\n" + e.getMessage(),
-                        "שגיאה",
-                        JOptionPane.ERROR_MESSAGE);
+        connection.sendBackground("GET_DISCOUNTS", response -> {
+            if (response != null && response.startsWith("OK;")) {
+                parseAndUpdateFields(response);
+                mainWindow.setStatus("מוכן", Color.BLACK);
+            } else if (response != null && response.startsWith("RETRY_AFTER")) {
+                // השרת הגביל את קצב הבקשות - הרענון הבא ינסה שוב
+            } else {
                 mainWindow.setStatus("שגיאה בטעינת הגדרות הנחות", Color.RED);
             }
+        }, e -> {
+            JOptionPane.showMessageDialog(this,
+                    "שגיאה בטעינת הגדרות הנחות:\n" + e.getMessage(),
+                    "שגיאה",
+                    JOptionPane.ERROR_MESSAGE);
+            mainWindow.setStatus("שגיאה בטעינת הגדרות הנחות", Color.RED);
         });
     }
     
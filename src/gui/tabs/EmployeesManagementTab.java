@@ -179,36 +179,31 @@ public class EmployeesManagementTab extends JPanel {
      * רענון רשימת העובדים
      */
     public void refresh() {
-        SwingUtilities.invokeLater(() -> {
-            tableModel.setRowCount(0);
-            mainWindow.setStatus("טוען עובדים...");
-            
-            try {
-                String response;
-                // Cashier רואה רק את הסניף שלו, Admin רואה הכל
-                if ("cashier".equals(role) && branchId != null) {
-                    response = connection.sendCommand("LIST_EMPLOYEES_BY_BRANCH;" + branchId);
-                } else {
-                    response = connection.sendCommand("LIST_EMPLOYEES");
-                }
-                
-                if (response.startsWith("OK")) {
-                    parseAndUpdateTable(response);
-                    mainWindow.setStatus("מוכן", Color.BLACK);
-                } else {
-                    mainWindow.setStatus("שגיאה בטעינת עובדים", Color.RED);
-                    JOptionPane.showMessageDialog(this,
-                            "שגיאה בטעינת עובדים: " + response,
-                            "שגיאה",
-                            JOptionPane.ERROR_MESSAGE);
-                }
-            } catch (IOException e) {
-                mainWindow.setStatus("שגיאה בתקשורת", Color.RED);
+        // Cashier רואה רק את הסניף שלו, Admin רואה הכל
+        String command = ("cashier".equals(role) && branchId != null)
+                ? "LIST_EMPLOYEES_BY_BRANCH;" + branchId
+                : "LIST_EMPLOYEES";
+        connection.sendBackground(command, response -> {
+            if (response.startsWith("RETRY_AFTER")) {
+                return; // השרת הגביל את קצב הבקשות - נשמור את הטבלה הנוכחית
+            }
+            if (response.startsWith("OK")) {
+                tableModel.setRowCount(0);
+                parseAndUpdateTable(response);
+                mainWindow.setStatus("מוכן", Color.BLACK);
+            } else {
+                mainWindow.setStatus("שגיאה בטעינת עובדים", Color.RED);
                 JOptionPane.showMessageDialog(this,
-                        "שגיאה בתקשורת: " + e.getMessage(),
+                        "שגיאה בטעינת עובדים: " + response,
                         "שגיאה",
                         JOptionPane.ERROR_MESSAGE);
             }
+        }, e -> {
+            mainWindow.setStatus("שגיאה בתקשורת", Color.RED);
+            JOptionPane.showMessageDialog(this,
+                    "שגיאה בתקשורת: " + e.getMessage(),
+                    "שגיאה",
+                    JOptionPane.ERROR_MESSAGE);
         });
     }
     
@@ -17,12 +17,15 @@ import java.util.List;
 /**
  * Tab for managing system logs (admin only).
  * Displays logs filtered by action type (employee registration, customer registration, sales, chat details).
- * Provides option to save chat conversation content to RTF file.
+ * Provides option to save chat conversation content to an RTF, text or HTML file (exported by the server as a job).
  * 
  * @author FinalProject
  */
 public class LogsTab extends JPanel {
     
+    /** מרווח בין בדיקות מצב של ייצוא שיחה */
+    private static final int EXPORT_STATUS_POLL_MS = 300;
+    
     private ClientConnection connection;
     private MainWindow mainWindow;
     
@@ -105,22 +108,16 @@ public class LogsTab extends JPanel {
     }
     
     private void refresh() {
-        new Thread(() -> {
-            try {
-                String response = connection.sendCommand("GET_LOGS");
-                SwingUtilities.invokeLater(() -> {
-                    if (response != null && response.startsWith("OK;")) {
-                        parseAndDisplayLogs(response.substring(3));
-                    } else {
-                        mainWindow.setStatus("שגיאה בטעינת לוגים", Color.RED);
-                    }
-                });
-            } catch (IOException e) {
-                SwingUtilities.invokeLater(() -> {
-                    mainWindow.setStatus("שגיאה בתקשורת: " + e.getMessage(), Color.RED);
-                });
+        // ערוץ הרקע - העברת לוגים גדולה לא מעכבת פעולות של המשתמש
+        connection.sendBackground("GET_LOGS", response -> {
+            if (response != null && response.startsWith("OK;")) {
+                parseAndDisplayLogs(response.substring(3));
+            } else if (response != null && response.startsWith("RETRY_AFTER")) {
+                // השרת הגביל את קצב הבקשות - הרענון הבא ינסה שוב
+            } else {
+                mainWindow.setStatus("שגיאה בטעינת לוגים", Color.RED);
             }
-        }).start();
+        }, e -> mainWindow.setStatus("שגיאה בתקשורת: " + e.getMessage(), Color.RED));
     }
     
     private void parseAndDisplayLogs(String json) {
@@ -306,39 +303,82 @@ public class LogsTab extends JPanel {
         }
         
         String chatId = selectedLog.getChatId();
+        String[] formats = {"RTF", "TXT", "HTML"};
+        int choice = JOptionPane.showOptionDialog(this,
+                "בחר פורמט לשמירת השיחה:",
+                "שמירת שיחה",
+                JOptionPane.DEFAULT_OPTION,
+                JOptionPane.QUESTION_MESSAGE,
+                null, formats, formats[0]);
+        if (choice < 0) {
+            return;
+        }
         
-        new Thread(() -> {
-            try {
-                String response = connection.sendCommand("SAVE_CHAT_TO_RTF;" + chatId);
-                SwingUtilities.invokeLater(() -> {
-                    if (response != null && response.startsWith("OK;Saved;")) {
-                        String[] parts = response.split(";");
-                        if (parts.length > 2) {
-                            String fileName = parts[2];
-                            JOptionPane.showMessageDialog(this,
-                                    "השיחה נשמרה בהצלחה לקובץ:\n" + fileName,
-                                    "שמירה הושלמה",
-                                    JOptionPane.INFORMATION_MESSAGE);
-                            mainWindow.setStatus("שיחה נשמרה: " + fileName, Color.GREEN);
-                        } else {
-                            mainWindow.setStatus("שיחה נשמרה", Color.GREEN);
-                        }
-                    } else {
-                        String errorMsg = response != null && response.contains(";") ? 
-                            response.split(";", 2)[1] : "שגיאה בשמירת שיחה";
-                        JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
-                        mainWindow.setStatus("שגיאה בשמירת שיחה", Color.RED);
-                    }
-                });
-            } catch (IOException e) {
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(this,
-                            "שגיאה בתקשורת: " + e.getMessage(),
-                            "שגיאה",
-                            JOptionPane.ERROR_MESSAGE);
-                    mainWindow.setStatus("שגיאה בתקשורת", Color.RED);
-                });
+        // הייצוא רץ בשרת כ-job: שליחה ומעקב עם EXPORT_STATUS עד שהקובץ מוכן
+        saveChatButton.setEnabled(false);
+        connection.sendAsync("EXPORT_CHAT;" + chatId + ";" + formats[choice], response -> {
+            if (response != null && response.startsWith("OK;")) {
+                mainWindow.setStatus("שמירת השיחה בתהליך...", Color.BLUE);
+                pollExport(response.substring(3));
+            } else if (response != null && response.startsWith("RETRY_AFTER")) {
+                saveChatButton.setEnabled(true);
+                mainWindow.setStatus("השרת עמוס - נסה לשמור שוב בעוד מספר שניות", Color.ORANGE);
+            } else {
+                saveChatButton.setEnabled(true);
+                showSaveError(response);
             }
-        }).start();
+        }, e -> {
+            saveChatButton.setEnabled(true);
+            showCommunicationError(e);
+        });
+    }
+    
+    /**
+     * בדיקת מצב הייצוא עד לסיומו (בקשה אחת בכל פעם, ללא חסימת ה-GUI)
+     */
+    private void pollExport(String jobId) {
+        Timer pollTimer = new Timer(EXPORT_STATUS_POLL_MS, e ->
+            connection.sendBackground("EXPORT_STATUS;" + jobId, response -> {
+                if (response != null && (response.startsWith("OK;PENDING") || response.startsWith("OK;RUNNING")
+                        || response.startsWith("RETRY_AFTER"))) {
+                    pollExport(jobId);
+                    return;
+                }
+                saveChatButton.setEnabled(true);
+                // OK;status;completed/total;files[;errors]
+                String[] parts = response != null ? response.split(";", -1) : new String[0];
+                if (parts.length > 3 && "DONE".equals(parts[1]) && !parts[3].isEmpty()) {
+                    String fileName = parts[3];
+                    JOptionPane.showMessageDialog(this,
+                            "השיחה נשמרה בהצלחה לקובץ:\n" + fileName,
+                            "שמירה הושלמה",
+                            JOptionPane.INFORMATION_MESSAGE);
+                    mainWindow.setStatus("שיחה נשמרה: " + fileName, Color.GREEN);
+                } else if (parts.length > 4) {
+                    showSaveError("ERROR;" + parts[4]);
+                } else {
+                    showSaveError(response);
+                }
+            }, ex -> {
+                saveChatButton.setEnabled(true);
+                showCommunicationError(ex);
+            }));
+        pollTimer.setRepeats(false);
+        pollTimer.start();
+    }
+    
+    private void showSaveError(String response) {
+        String errorMsg = response != null && response.contains(";") ? 
+            response.split(";", 2)[1] : "שגיאה בשמירת שיחה";
+        JOptionPane.showMessageDialog(this, errorMsg, "שגיאה", JOptionPane.ERROR_MESSAGE);
+        mainWindow.setStatus("שגיאה בשמירת שיחה", Color.RED);
+    }
+    
+    private void showCommunicationError(IOException e) {
+        JOptionPane.showMessageDialog(this,
+                "שגיאה בתקשורת: " + e.getMessage(),
+                "שגיאה",
+                JOptionPane.ERROR_MESSAGE);
+        mainWindow.setStatus("שגיאה בתקשורת", Color.RED);
     }
 }
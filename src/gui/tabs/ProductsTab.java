@@ -146,23 +146,21 @@ public class ProductsTab extends JPanel {
         }
         
         public void refresh() {
-            SwingUtilities.invokeLater(() -> {
-                tableModel.setRowCount(0);
-                mainWindow.setStatus("טוען מוצרים...");
-                
-                try {
-                    // שליחת פקודה עם branchId
-                    String command = "LIST_PRODUCTS_BY_BRANCH;" + branchId;
-                    String response = connection.sendCommand(command);
-                    parseAndUpdateTable(response);
-                    mainWindow.setStatus("מוכן", Color.BLACK);
-                } catch (IOException e) {
-                    JOptionPane.showMessageDialog(this,
-                            "שגיאה בטעינת מוצרים:\n" + e.getMessage(),
-                            "שגיאה",
-                            JOptionPane.ERROR_MESSAGE);
-                    mainWindow.setStatus("שגיאה בטעינת מוצרים", Color.RED);
+            // שליחת פקודה עם branchId בערוץ הרקע - התשובה מטופלת ב-EDT
+            String command = "LIST_PRODUCTS_BY_BRANCH;" + branchId;
+            connection.sendBackground(command, response -> {
+                if (response != null && response.startsWith("RETRY_AFTER")) {
+                    return; // השרת הגביל את קצב הבקשות - נשמור את הטבלה הנוכחית
                 }
+                tableModel.setRowCount(0);
+                parseAndUpdateTable(response);
+                mainWindow.setStatus("מוכן", Color.BLACK);
+            }, e -> {
+                JOptionPane.showMessageDialog(this,
+                        "שגיאה בטעינת מוצרים:\n" + e.getMessage(),
+                        "שגיאה",
+                        JOptionPane.ERROR_MESSAGE);
+                mainWindow.setStatus("שגיאה בטעינת מוצרים", Color.RED);
             });
         }
         
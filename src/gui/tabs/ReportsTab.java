@@ -6,12 +6,13 @@ import gui.windows.ReportViewWindow;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.IOException;
+import java.time.LocalDate;
 
 /**
  * Tab for generating and viewing sales reports.
- * Provides buttons for different report types: by branch, by product, by category, daily.
- * Opens ReportViewWindow to display report data.
+ * Provides buttons for different report types: by branch, by product, by category, daily, date range.
+ * Reports are requested with REPORT_STREAM on the background channel: ReportViewWindow opens
+ * when the header arrives and fills in as the row batches are received.
  * 
  * @author FinalProject
  */
@@ -57,12 +58,14 @@ public class ReportsTab extends JPanel {
             addReportButton(reportsPanel, gbc, "דוח מכירות - לפי מוצר", 1, () -> showSalesByProductReport());
             addReportButton(reportsPanel, gbc, "דוח מכירות - לפי קטגוריה", 2, () -> showSalesByCategoryReport());
             addReportButton(reportsPanel, gbc, "דוח מכירות יומי", 3, () -> showDailySalesReport());
+            addReportButton(reportsPanel, gbc, "דוח מכירות - לפי טווח תאריכים", 4, () -> showSalesRangeReport());
         } else {
             // דוחות לעובד
             addReportButton(reportsPanel, gbc, "דוח מכירות - לפי סניף", 0, () -> showSalesByBranchReport());
             addReportButton(reportsPanel, gbc, "דוח מכירות - לפי מוצר", 1, () -> showSalesByProductReport());
             addReportButton(reportsPanel, gbc, "דוח מכירות - לפי קטגוריה", 2, () -> showSalesByCategoryReport());
             addReportButton(reportsPanel, gbc, "דוח מכירות יומי", 3, () -> showDailySalesReport());
+            addReportButton(reportsPanel, gbc, "דוח מכירות - לפי טווח תאריכים", 4, () -> showSalesRangeReport());
         }
         
         add(reportsPanel, BorderLayout.CENTER);
@@ -173,37 +176,156 @@ public class ReportsTab extends JPanel {
         }
     }
     
+    private void showSalesRangeReport() {
+        // דיאלוג לבחירת טווח תאריכים וסניף - ברירת מחדל: 7 הימים האחרונים
+        JPanel panel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.anchor = GridBagConstraints.EAST;
+        
+        LocalDate today = LocalDate.now();
+        JTextField fromField = new JTextField(today.minusDays(6).toString(), 20);
+        JTextField toField = new JTextField(today.toString(), 20);
+        JComboBox<String> lastDaysCombo = new JComboBox<>(new String[]{"7 ימים אחרונים", "30 ימים אחרונים", "90 ימים אחרונים"});
+        lastDaysCombo.addActionListener(e -> {
+            int[] days = {7, 30, 90};
+            LocalDate now = LocalDate.now();
+            fromField.setText(now.minusDays(days[lastDaysCombo.getSelectedIndex()] - 1).toString());
+            toField.setText(now.toString());
+        });
+        
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        panel.add(new JLabel("טווח מהיר:"), gbc);
+        gbc.gridx = 1;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.weightx = 1.0;
+        panel.add(lastDaysCombo, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.fill = GridBagConstraints.NONE;
+        gbc.weightx = 0;
+        panel.add(new JLabel("מתאריך (YYYY-MM-DD, או ריק):"), gbc);
+        gbc.gridx = 1;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.weightx = 1.0;
+        panel.add(fromField, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        gbc.fill = GridBagConstraints.NONE;
+        gbc.weightx = 0;
+        panel.add(new JLabel("עד תאריך (YYYY-MM-DD, או ריק):"), gbc);
+        gbc.gridx = 1;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.weightx = 1.0;
+        panel.add(toField, gbc);
+        
+        // סניף (רק לאדמין)
+        JComboBox<String> branchCombo = null;
+        if ("admin".equals(role)) {
+            gbc.gridx = 0;
+            gbc.gridy = 3;
+            gbc.fill = GridBagConstraints.NONE;
+            gbc.weightx = 0;
+            panel.add(new JLabel("סניף:"), gbc);
+            gbc.gridx = 1;
+            gbc.fill = GridBagConstraints.HORIZONTAL;
+            gbc.weightx = 1.0;
+            branchCombo = new JComboBox<>(new String[]{"כל הסניפים", "B1", "B2"});
+            panel.add(branchCombo, gbc);
+        }
+        
+        int result = JOptionPane.showConfirmDialog(this,
+                panel,
+                "דוח מכירות לפי טווח תאריכים",
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.QUESTION_MESSAGE);
+        
+        if (result == JOptionPane.OK_OPTION) {
+            String selectedBranchId = "";
+            if ("admin".equals(role) && branchCombo != null) {
+                String branchChoice = (String) branchCombo.getSelectedItem();
+                if ("B1".equals(branchChoice)) selectedBranchId = "B1";
+                else if ("B2".equals(branchChoice)) selectedBranchId = "B2";
+            }
+            
+            loadAndShowReport("REPORT_SALES_RANGE", "SALES_RANGE",
+                    fromField.getText().trim() + ";" + toField.getText().trim() + ";" + selectedBranchId);
+        }
+    }
+    
     private void loadAndShowReport(String command, String reportType, String parameters) {
-        // הרצת הרשת ב-thread נפרד כדי לא לחסום את ה-GUI
-        new Thread(() -> {
-            try {
-                String fullCommand = command + (parameters != null && !parameters.isEmpty() ? ";" + parameters : "");
-                String response = connection.sendCommand(fullCommand);
-                
-                SwingUtilities.invokeLater(() -> {
-                    if (response != null && response.startsWith("OK;")) {
-                        ReportViewWindow window = new ReportViewWindow(mainWindow, connection, reportType, response);
-                        window.setVisible(true);
+        // הדוח מוזרם בערוץ הרקע: כותרת, קבוצות שורות וסיום - החלון נפתח עם הכותרת ומתמלא בהדרגה
+        String fullCommand = "REPORT_STREAM;" + command + (parameters != null && !parameters.isEmpty() ? ";" + parameters : "");
+        mainWindow.setStatus("הדוח בהכנה...", Color.BLUE);
+        ReportViewWindow[] window = new ReportViewWindow[1];
+        connection.streamBackground(fullCommand,
+                line -> {
+                    if (line.startsWith("OK;BEGIN;")) {
+                        window[0] = new ReportViewWindow(mainWindow, connection, reportType);
+                        window[0].setExpectedRows(parseStreamTotal(line));
+                        // החלון מודאלי - מציגים אותו אחרי שה-callback חוזר, והשורות ממשיכות להגיע בזמן שהוא פתוח
+                        SwingUtilities.invokeLater(() -> window[0].setVisible(true));
+                    } else if (line.startsWith("ROWS;") && window[0] != null) {
+                        window[0].appendRows(line.substring(5));
+                    }
+                },
+                end -> {
+                    if (end.startsWith("END;") && window[0] != null) {
+                        window[0].finishLoading();
                         mainWindow.setStatus("דוח נטען בהצלחה", Color.GREEN);
                     } else {
-                        String errorMsg = response != null && response.contains(";") ? response.split(";", 2)[1] : "שגיאה בטעינת דוח";
-                        JOptionPane.showMessageDialog(this,
-                                "שגיאה בטעינת דוח:\n" + errorMsg,
-                                "שגיאה",
-                                JOptionPane.ERROR_MESSAGE);
-                        mainWindow.setStatus("שגיאה בטעינת דוח", Color.RED);
+                        showReportError(end);
+                    }
+                },
+                e -> {
+                    if (window[0] != null) {
+                        window[0].failLoading(e.getMessage());
                     }
-                });
-            } catch (IOException e) {
-                SwingUtilities.invokeLater(() -> {
                     JOptionPane.showMessageDialog(this,
                             "שגיאה בתקשורת: " + e.getMessage(),
                             "שגיאה",
                             JOptionPane.ERROR_MESSAGE);
                     mainWindow.setStatus("שגיאה בתקשורת", Color.RED);
                 });
+    }
+    
+    /**
+     * חילוץ מספר השורות מכותרת הדוח המוזרם ("OK;BEGIN;{...,"total":N}")
+     * 
+     * @param header שורת הכותרת
+     * @return מספר השורות, או -1 אם לא נמצא
+     */
+    private static int parseStreamTotal(String header) {
+        int totalStart = header.lastIndexOf("\"total\":");
+        if (totalStart == -1) {
+            return -1;
+        }
+        int valueStart = totalStart + 8;
+        int valueEnd = valueStart;
+        while (valueEnd < header.length() && Character.isDigit(header.charAt(valueEnd))) {
+            valueEnd++;
+        }
+        return valueEnd > valueStart ? Integer.parseInt(header.substring(valueStart, valueEnd)) : -1;
+    }
+    
+    private void showReportError(String response) {
+        SwingUtilities.invokeLater(() -> {
+            if (response != null && response.startsWith("RETRY_AFTER")) {
+                String[] retryParts = response.split(";");
+                long retryMs = retryParts.length > 1 ? Long.parseLong(retryParts[1]) : 1000;
+                mainWindow.setStatus("השרת עמוס, נסה שוב בעוד " + Math.max(1, (retryMs + 999) / 1000) + " שניות", Color.ORANGE);
+                return;
             }
-        }).start();
+            String errorMsg = response != null && response.contains(";") ? response.substring(response.lastIndexOf(';') + 1) : "שגיאה בטעינת דוח";
+            JOptionPane.showMessageDialog(this,
+                    "שגיאה בטעינת דוח:\n" + errorMsg,
+                    "שגיאה",
+                    JOptionPane.ERROR_MESSAGE);
+            mainWindow.setStatus("שגיאה בטעינת דוח", Color.RED);
+        });
     }
     
     /**
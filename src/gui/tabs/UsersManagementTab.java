@@ -209,30 +209,27 @@ public class UsersManagementTab extends JPanel {
      * רענון רשימת המשתמשים
      */
     public void refresh() {
-        SwingUtilities.invokeLater(() -> {
-            tableModel.setRowCount(0);
-            mainWindow.setStatus("טוען משתמשים...");
-            
-            try {
-                String response = connection.sendCommand("LIST_USERS");
-                
-                if (response.startsWith("OK")) {
-                    parseAndUpdateTable(response);
-                    mainWindow.setStatus("מוכן", Color.BLACK);
-                } else {
-                    mainWindow.setStatus("שגיאה בטעינת משתמשים", Color.RED);
-                    JOptionPane.showMessageDialog(this,
-                            "שגיאה בטעינת משתמשים: " + response,
-                            "שגיאה",
-                            JOptionPane.ERROR_MESSAGE);
-                }
-            } catch (IOException e) {
-                mainWindow.setStatus("שגיאה בתקשורת", Color.RED);
+        connection.sendBackground("LIST_USERS", response -> {
+            if (response.startsWith("RETRY_AFTER")) {
+                return; // השרת הגביל את קצב הבקשות - נשמור את הטבלה הנוכחית
+            }
+            if (response.startsWith("OK")) {
+                tableModel.setRowCount(0);
+                parseAndUpdateTable(response);
+                mainWindow.setStatus("מוכן", Color.BLACK);
+            } else {
+                mainWindow.setStatus("שגיאה בטעינת משתמשים", Color.RED);
                 JOptionPane.showMessageDialog(this,
-                        "שגיאה בתקשורת: " + e.getMessage(),
+                        "שגיאה בטעינת משתמשים: " + response,
                         "שגיאה",
                         JOptionPane.ERROR_MESSAGE);
             }
+        }, e -> {
+            mainWindow.setStatus("שגיאה בתקשורת", Color.RED);
+            JOptionPane.showMessageDialog(this,
+                    "שגיאה בתקשורת: " + e.getMessage(),
+                    "שגיאה",
+                    JOptionPane.ERROR_MESSAGE);
         });
     }
     
@@ -4,51 +4,96 @@ import gui.ClientConnection;
 import gui.MainWindow;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Window for displaying sales reports.
  * Shows report data in a table and provides option to export to RTF format.
  * Supports different report types: by branch, by product, by category, daily.
+ * The window opens as soon as the report header arrives and rows are appended batch by batch
+ * as they are streamed (REPORT_STREAM). Each batch is parsed on its own and added with a single
+ * table event; JTable paints only the visible rows, so long reports stay responsive while loading.
  * 
  * @author FinalProject
  */
 public class ReportViewWindow extends JDialog {
     
+    /**
+     * Table model over a growing list of rows.
+     * Unlike DefaultTableModel it adds a whole batch with one insert event.
+     */
+    private static final class ReportTableModel extends AbstractTableModel {
+        private final String[] columns;
+        private final List<Object[]> rows = new ArrayList<>();
+        
+        ReportTableModel(String[] columns) {
+            this.columns = columns;
+        }
+        
+        void addRows(List<Object[]> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            int first = rows.size();
+            rows.addAll(batch);
+            fireTableRowsInserted(first, rows.size() - 1);
+        }
+        
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+        
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows.get(row)[column];
+        }
+    }
+    
     private ClientConnection connection;
     private MainWindow mainWindow;
     private String reportType;
-    private String jsonData;
+    private int expectedRows = -1;
     
     private JTable reportTable;
-    private DefaultTableModel tableModel;
+    private ReportTableModel tableModel;
+    private JLabel progressLabel;
     private JButton exportRtfButton;
     private JButton closeButton;
     
     /**
-     * Constructs a new ReportViewWindow.
+     * Constructs a new, empty ReportViewWindow. Rows are added with appendRows as they arrive.
      * 
      * @param parent the parent MainWindow
      * @param connection the ClientConnection to the server
      * @param reportType the type of report (SALES_BY_BRANCH, SALES_BY_PRODUCT, etc.)
-     * @param jsonData the report data in JSON format
      */
-    public ReportViewWindow(MainWindow parent, ClientConnection connection, String reportType, String jsonData) {
+    public ReportViewWindow(MainWindow parent, ClientConnection connection, String reportType) {
         super(parent, "דוח: " + getReportTypeName(reportType), true);
         this.connection = connection;
         this.mainWindow = parent;
         this.reportType = reportType;
-        this.jsonData = jsonData;
         
         setSize(900, 600);
         setLocationRelativeTo(parent);
         createUI();
-        parseAndDisplayReport(jsonData);
     }
     
     private static String getReportTypeName(String reportType) {
@@ -57,6 +102,7 @@ public class ReportViewWindow extends JDialog {
             case "SALES_BY_PRODUCT": return "מכירות לפי מוצר";
             case "SALES_BY_CATEGORY": return "מכירות לפי קטגוריה";
             case "DAILY_SALES": return "מכירות יומי";
+            case "SALES_RANGE": return "מכירות לפי טווח תאריכים";
             default: return "דוח";
         }
     }
@@ -69,32 +115,32 @@ public class ReportViewWindow extends JDialog {
         titleLabel.setFont(new Font("Arial", Font.BOLD, 16));
         add(titleLabel, BorderLayout.NORTH);
         
-        // טבלה
-        String[] columns = getColumnsForReportType(reportType);
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // רק קריאה
-            }
-        };
+        // טבלה - מודל שמתמלא בהדרגה
+        tableModel = new ReportTableModel(getColumnsForReportType(reportType));
         reportTable = new JTable(tableModel);
         reportTable.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS);
         
         JScrollPane scrollPane = new JScrollPane(reportTable);
         add(scrollPane, BorderLayout.CENTER);
         
-        // כפתורים
+        // כפתורים ומצב טעינה
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        progressLabel = new JLabel("טוען דוח...", SwingConstants.CENTER);
+        bottomPanel.add(progressLabel, BorderLayout.NORTH);
+        
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         
         exportRtfButton = new JButton("ייצא ל-Word");
         exportRtfButton.addActionListener(e -> exportToRTF());
+        exportRtfButton.setEnabled(false); // זמין רק אחרי שכל השורות הגיעו
         buttonPanel.add(exportRtfButton);
         
         closeButton = new JButton("סגור");
         closeButton.addActionListener(e -> dispose());
         buttonPanel.add(closeButton);
         
-        add(buttonPanel, BorderLayout.SOUTH);
+        bottomPanel.add(buttonPanel, BorderLayout.SOUTH);
+        add(bottomPanel, BorderLayout.SOUTH);
     }
     
     private String[] getColumnsForReportType(String reportType) {
@@ -106,63 +152,36 @@ public class ReportViewWindow extends JDialog {
             case "SALES_BY_CATEGORY":
                 return new String[]{"קטגוריה", "כמות", "סכום כולל (₪)"};
             case "DAILY_SALES":
+            case "SALES_RANGE":
                 return new String[]{"סניף", "קוד מוצר", "שם מוצר", "קטגוריה", "כמות", "סכום (₪)", "תאריך"};
             default:
                 return new String[]{"נתונים"};
         }
     }
     
-    private void parseAndDisplayReport(String jsonData) {
-        // הסרת "OK;" מהתחלה
-        if (jsonData.startsWith("OK;")) {
-            jsonData = jsonData.substring(3);
-        }
-        
+    /**
+     * Sets the number of rows the report will have (from the stream header).
+     * 
+     * @param total the row count announced by the server
+     */
+    public void setExpectedRows(int total) {
+        expectedRows = total;
+        updateProgress();
+    }
+    
+    /**
+     * Appends one streamed batch of rows.
+     * 
+     * @param rowsJson a JSON array of report entries: [{...},{...}]
+     */
+    public void appendRows(String rowsJson) {
         try {
-            // פשוט מאוד - נפרס את ה-JSON באופן בסיסי
-            // format: {"reportType":"...","entries":[{...},...]}
-            
-            // בואו נמצא את ה-entries
-            int entriesStart = jsonData.indexOf("\"entries\":[");
-            if (entriesStart == -1) {
-                JOptionPane.showMessageDialog(this,
-                        "פורמט דוח לא תקין: entries לא נמצא",
-                        "שגיאה",
-                        JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-            
-            // חילוץ ה-entries array
-            int arrayStart = entriesStart + 10; // אחרי "entries":[
-            int braceLevel = 0;
-            int arrayEnd = -1;
-            boolean inString = false;
-            
-            for (int i = arrayStart; i < jsonData.length(); i++) {
-                char c = jsonData.charAt(i);
-                if (c == '"' && (i == 0 || jsonData.charAt(i - 1) != '\\')) {
-                    inString = !inString;
-                } else if (!inString) {
-                    if (c == '{') braceLevel++;
-                    else if (c == '}') braceLevel--;
-                    else if (c == ']' && braceLevel == 0) {
-                        arrayEnd = i;
-                        break;
-                    }
-                }
-            }
-            
-            if (arrayEnd == -1) {
-                JOptionPane.showMessageDialog(this,
-                        "פורמט דוח לא תקין: סוף array לא נמצא",
-                        "שגיאה",
-                        JOptionPane.ERROR_MESSAGE);
-                return;
+            String entriesJson = rowsJson.trim();
+            if (entriesJson.startsWith("[") && entriesJson.endsWith("]")) {
+                entriesJson = entriesJson.substring(1, entriesJson.length() - 1);
             }
-            
-            String entriesJson = jsonData.substring(arrayStart + 1, arrayEnd); // +1 לדילוג על [
-            parseJsonEntries(entriesJson);
-            
+            tableModel.addRows(parseJsonEntries(entriesJson));
+            updateProgress();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this,
                     "שגיאה בפרסור דוח: " + e.getMessage(),
@@ -172,11 +191,37 @@ public class ReportViewWindow extends JDialog {
         }
     }
     
-    private void parseJsonEntries(String entriesJson) {
-        // פרסור entries - חיפוש כל אובייקט {...}
+    /**
+     * Marks the report as fully loaded and enables exporting.
+     */
+    public void finishLoading() {
+        progressLabel.setText("נטענו " + tableModel.getRowCount() + " שורות");
+        exportRtfButton.setEnabled(true);
+    }
+    
+    /**
+     * Marks the report as incomplete after the stream failed.
+     * 
+     * @param message the error to show
+     */
+    public void failLoading(String message) {
+        progressLabel.setText("טעינת הדוח נכשלה אחרי " + tableModel.getRowCount() + " שורות: " + message);
+    }
+    
+    private void updateProgress() {
+        if (expectedRows >= 0) {
+            progressLabel.setText("טוען דוח... " + tableModel.getRowCount() + " מתוך " + expectedRows + " שורות");
+        } else {
+            progressLabel.setText("טוען דוח... " + tableModel.getRowCount() + " שורות");
+        }
+    }
+    
+    private List<Object[]> parseJsonEntries(String entriesJson) {
+        // פרסור entries של batch אחד - חיפוש כל אובייקט {...}
+        List<Object[]> batch = new ArrayList<>();
         entriesJson = entriesJson.trim();
         if (entriesJson.isEmpty()) {
-            return; // אין entries
+            return batch; // אין entries
         }
         
         int braceLevel = 0;
@@ -198,15 +243,16 @@ public class ReportViewWindow extends JDialog {
                     if (braceLevel == 0 && entryStart != -1) {
                         // מצאנו entry מלא
                         String entryJson = entriesJson.substring(entryStart, i);
-                        parseSingleEntry(entryJson);
+                        batch.add(parseSingleEntry(entryJson));
                         entryStart = -1;
                     }
                 }
             }
         }
+        return batch;
     }
     
-    private void parseSingleEntry(String entryJson) {
+    private Object[] parseSingleEntry(String entryJson) {
         // פרסור entry אחד
         // format: "key":"value","key2":value2
         
@@ -219,30 +265,16 @@ public class ReportViewWindow extends JDialog {
             String totalRevenue = extractJsonValue(entryJson, "totalRevenue");
             row[0] = branchId;
             row[1] = quantity;
-            row[2] = String.format("%.2f", Double.parseDouble(totalRevenue));
-        } else if (reportType.equals("SALES_BY_PRODUCT")) {
-            String branchId = extractJsonValue(entryJson, "branchId");
-            String productId = extractJsonValue(entryJson, "productId");
-            String productName = extractJsonValue(entryJson, "productName");
-            String category = extractJsonValue(entryJson, "category");
-            String quantity = extractJsonValue(entryJson, "quantity");
-            String totalRevenue = extractJsonValue(entryJson, "totalRevenue");
-            String date = extractJsonValue(entryJson, "date");
-            row[0] = branchId;
-            row[1] = productId;
-            row[2] = productName;
-            row[3] = category;
-            row[4] = quantity;
-            row[5] = String.format("%.2f", Double.parseDouble(totalRevenue));
-            row[6] = date;
+            row[2] = totalRevenue;
         } else if (reportType.equals("SALES_BY_CATEGORY")) {
             String category = extractJsonValue(entryJson, "category");
             String quantity = extractJsonValue(entryJson, "quantity");
             String totalRevenue = extractJsonValue(entryJson, "totalRevenue");
             row[0] = category;
             row[1] = quantity;
-            row[2] = String.format("%.2f", Double.parseDouble(totalRevenue));
-        } else if (reportType.equals("DAILY_SALES")) {
+            row[2] = totalRevenue;
+        } else if (reportType.equals("SALES_BY_PRODUCT") || reportType.equals("DAILY_SALES")
+                || reportType.equals("SALES_RANGE")) {
             String branchId = extractJsonValue(entryJson, "branchId");
             String productId = extractJsonValue(entryJson, "productId");
             String productName = extractJsonValue(entryJson, "productName");
@@ -255,11 +287,11 @@ public class ReportViewWindow extends JDialog {
             row[2] = productName;
             row[3] = category;
             row[4] = quantity;
-            row[5] = String.format("%.2f", Double.parseDouble(totalRevenue));
+            row[5] = totalRevenue;
             row[6] = date;
         }
         
-        tableModel.addRow(row);
+        return row;
     }
     
     private String extractJsonValue(String json, String key) {
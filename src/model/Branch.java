@@ -13,8 +13,18 @@ public class Branch {
 
  
     public Branch(String branchId) {
+        this(branchId, new StockIndex());
+    }
+
+    /**
+     * Constructs a branch whose inventory reports to shared cross-branch totals.
+     * 
+     * @param branchId the branch ID
+     * @param stockIndex the cross-branch stock totals
+     */
+    public Branch(String branchId, StockIndex stockIndex) {
         this.branchId = branchId;
-        this.inventory = new Inventory();
+        this.inventory = new Inventory(stockIndex);
     }
 
     
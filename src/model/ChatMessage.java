@@ -13,6 +13,7 @@ public class ChatMessage {
     private String message;
     private long timestamp;
     private MessageType messageType;
+    private long sequence;
     
     /**
      * Enumeration of message types.
@@ -38,6 +39,36 @@ public class ChatMessage {
         this.messageType = messageType;
     }
     
+    /**
+     * Constructs a new ChatMessage with its position in the chat.
+     * 
+     * @param chatId the chat ID this message belongs to
+     * @param senderUsername the username of the sender (or "SYSTEM" for system messages)
+     * @param message the message content
+     * @param messageType the type of message (TEXT or SYSTEM)
+     * @param sequence the message's sequence number in the chat (1 for the first message)
+     */
+    public ChatMessage(String chatId, String senderUsername, String message, MessageType messageType, long sequence) {
+        this(chatId, senderUsername, message, messageType);
+        this.sequence = sequence;
+    }
+    
+    /**
+     * Constructs a stored ChatMessage (loaded from a chat archive).
+     * 
+     * @param chatId the chat ID this message belongs to
+     * @param senderUsername the username of the sender
+     * @param message the message content
+     * @param messageType the type of message
+     * @param sequence the message's sequence number in the chat
+     * @param timestamp the original timestamp (milliseconds since epoch)
+     */
+    public ChatMessage(String chatId, String senderUsername, String message, MessageType messageType,
+                       long sequence, long timestamp) {
+        this(chatId, senderUsername, message, messageType, sequence);
+        this.timestamp = timestamp;
+    }
+    
     
     public String getChatId() {
         return chatId;
@@ -68,6 +99,15 @@ public class ChatMessage {
         return messageType;
     }
     
+    /**
+     * Gets the message's sequence number in its chat.
+     * Sequence numbers start at 1 and grow by one per message, so a client that remembers
+     * the last number it received can ask for newer messages only.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    
     /**
      * Converts this message to JSON format.
      * Used for serialization when sending messages to clients.
@@ -78,6 +118,7 @@ public class ChatMessage {
         StringBuilder json = new StringBuilder();
         json.append("{");
         json.append("\"chatId\":\"").append(escapeJson(chatId)).append("\",");
+        json.append("\"sequence\":").append(sequence).append(",");
         json.append("\"senderUsername\":\"").append(escapeJson(senderUsername)).append("\",");
         json.append("\"message\":\"").append(escapeJson(message)).append("\",");
         json.append("\"timestamp\":").append(timestamp).append(",");
@@ -12,7 +12,8 @@ public class ChatSession {
     private String chatId;
     private Set<String> participants;  // usernames of all participants
     private long startTime;
-    private SessionStatus status;
+    private volatile long endTime;  // 0 while the chat is active
+    private volatile SessionStatus status;
     
     /**
      * Enumeration of possible chat session statuses.
@@ -38,6 +39,22 @@ public class ChatSession {
         this.status = SessionStatus.ACTIVE;
     }
     
+    /**
+     * Constructs an ended ChatSession loaded from the chat archive.
+     * 
+     * @param chatId the unique chat identifier
+     * @param participants the usernames of all participants
+     * @param startTime the start time (milliseconds since epoch)
+     * @param endTime the end time (milliseconds since epoch)
+     */
+    public ChatSession(String chatId, Set<String> participants, long startTime, long endTime) {
+        this.chatId = chatId;
+        this.participants = new HashSet<>(participants);
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.status = SessionStatus.ENDED;
+    }
+    
     /**
      * Gets the chat ID.
      * 
@@ -66,6 +83,15 @@ public class ChatSession {
         return startTime;
     }
     
+    /**
+     * Gets the chat end time as a timestamp (milliseconds since epoch).
+     * 
+     * @return the end time, or 0 if the chat is still active
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+    
     /**
      * Gets the current session status.
      * 
@@ -114,10 +140,17 @@ public class ChatSession {
     
     /**
      * Ends the chat session.
-     * Marks the session as ENDED.
+     * Marks the session as ENDED and records the end time.
+     * 
+     * @return true if this call ended the session, false if it had already ended
      */
-    public void end() {
+    public synchronized boolean end() {
+        if (status != SessionStatus.ACTIVE) {
+            return false;
+        }
+        this.endTime = System.currentTimeMillis();
         this.status = SessionStatus.ENDED;
+        return true;
     }
     
     /**
@@ -1,28 +1,55 @@
 package model;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import model.exceptions.InvalidQuantityException;
 import model.exceptions.InsufficientStockException;
 
 /**
  * Manages the inventory for a single branch.
- * Tracks product quantities using a Map structure.
- * Provides methods for adding products, selling products, and removing products from inventory.
+ * Tracks product quantities in a ConcurrentHashMap from productId to an AtomicLong that packs
+ * two counters: the quantity available for sale (low 32 bits) and the quantity reserved by
+ * stock holds (high 32 bits). Packing both into one word lets a hold move units from available
+ * to reserved - and a sale consume them - with a single compare-and-set, so cashiers selling
+ * different products in the same branch never wait for each other and the two counters can
+ * never be observed out of step.
+ * Counters are keyed by productId (not by the mutable Product object) and are kept at 0 when
+ * stock runs out instead of being removed, so a concurrent add can never be lost.
+ * Every change of an available quantity is also reported to the shared StockIndex, right
+ * after its compare-and-set. The index is advisory (it can briefly lag the packed counters);
+ * every decision here reads the packed counter, never the index.
  * 
  * @author FinalProject
  */
 public class Inventory {
 
-    private Map<Product, Integer> products;
+    private static final long AVAILABLE_MASK = 0xFFFFFFFFL;
+
+    /** productId -> packed (reserved << 32 | available) */
+    private final Map<String, AtomicLong> stock;
+    private final StockIndex stockIndex;
 
     /**
-     * Constructs a new empty Inventory.
+     * Constructs a new empty Inventory that is not part of a cross-branch index.
      */
     public Inventory() {
-        this.products = Collections.synchronizedMap(new HashMap<>());
+        this(new StockIndex());
+    }
+
+    /**
+     * Constructs a new empty Inventory that reports its changes to a shared index.
+     * 
+     * @param stockIndex the cross-branch totals to keep up to date
+     */
+    public Inventory(StockIndex stockIndex) {
+        this.stock = new ConcurrentHashMap<>();
+        this.stockIndex = stockIndex;
     }
 
     /**
@@ -40,12 +67,7 @@ public class Inventory {
             throw new InvalidQuantityException("Quantity must be greater than 0");
         }
 
-        // Synchronize for atomic read-modify-write operation
-        synchronized (products) {
-            Integer currentQuantity = products.get(product);
-            products.put(product,
-                    currentQuantity == null ? quantity : currentQuantity + quantity);
-        }
+        addAvailable(product.getProductId(), counter(product.getProductId()), quantity);
     }
 
     /**
@@ -65,20 +87,43 @@ public class Inventory {
             throw new InvalidQuantityException("Quantity must be greater than 0");
         }
 
-        // Synchronize for atomic check-and-update operation
-        synchronized (products) {
-            Integer currentQuantity = products.get(product);
+        if (!tryDecrement(product.getProductId(), quantity)) {
+            throw new InsufficientStockException("Not enough stock for product");
+        }
+    }
 
-            if (currentQuantity == null || currentQuantity < quantity) {
-                throw new InsufficientStockException("Not enough stock for product");
+    /**
+     * Sells several products as one unit - either every line is taken from stock or none is.
+     * Lines are reserved in ascending productId order with the same compare-and-set decrement
+     * as sellProduct; if any line is short, the lines already taken are put back and the
+     * inventory is left as it was. The fixed order means two carts sharing products always
+     * contend on them in the same sequence.
+     * 
+     * @param items the products to sell and their quantities (each must be greater than 0)
+     * @throws InvalidQuantityException if any quantity is less than or equal to 0
+     * @throws InsufficientStockException if there is not enough stock for any of the lines
+     */
+    public void sellProducts(Map<Product, Integer> items)
+            throws InvalidQuantityException,
+            InsufficientStockException {
+
+        TreeMap<String, Integer> ordered = new TreeMap<>();
+        for (Map.Entry<Product, Integer> item : items.entrySet()) {
+            if (item.getValue() == null || item.getValue() <= 0) {
+                throw new InvalidQuantityException("Quantity must be greater than 0");
             }
+            ordered.merge(item.getKey().getProductId(), item.getValue(), Integer::sum);
+        }
 
-            int newQuantity = currentQuantity - quantity;
-            if (newQuantity == 0) {
-                products.remove(product);
-            } else {
-                products.put(product, newQuantity);
+        List<Map.Entry<String, Integer>> taken = new ArrayList<>();
+        for (Map.Entry<String, Integer> line : ordered.entrySet()) {
+            if (!tryDecrement(line.getKey(), line.getValue())) {
+                for (Map.Entry<String, Integer> reserved : taken) {
+                    addAvailable(reserved.getKey(), stock.get(reserved.getKey()), reserved.getValue());
+                }
+                throw new InsufficientStockException("Not enough stock for product " + line.getKey());
             }
+            taken.add(line);
         }
     }
 
@@ -89,15 +134,91 @@ public class Inventory {
      * @return the quantity available, or 0 if the product is not in inventory
      */
     public int getProductQuantity(Product product) {
-        synchronized (products) {
-            Integer quantity = products.get(product);
-            return quantity == null ? 0 : quantity;
+        return getProductQuantity(product.getProductId());
+    }
+
+    /**
+     * Gets the current quantity of a product in inventory by its ID.
+     * Units reserved by stock holds are not included.
+     * 
+     * @param productId the product ID to check
+     * @return the quantity available, or 0 if the product is not in inventory
+     */
+    public int getProductQuantity(String productId) {
+        AtomicLong counter = stock.get(productId);
+        return counter == null ? 0 : available(counter.get());
+    }
+
+    /**
+     * Gets the quantity of a product currently reserved by stock holds.
+     * 
+     * @param productId the product ID to check
+     * @return the reserved quantity, or 0 if nothing is held
+     */
+    public int getReservedQuantity(String productId) {
+        AtomicLong counter = stock.get(productId);
+        return counter == null ? 0 : reserved(counter.get());
+    }
+
+    /**
+     * Reserves stock for a hold - moves units from available to reserved.
+     * 
+     * @param productId the product to hold
+     * @param quantity the quantity to hold (must be greater than 0)
+     * @throws InvalidQuantityException if quantity is less than or equal to 0
+     * @throws InsufficientStockException if there is not enough available stock
+     */
+    public void reserve(String productId, int quantity)
+            throws InvalidQuantityException, InsufficientStockException {
+
+        if (quantity <= 0) {
+            throw new InvalidQuantityException("Quantity must be greater than 0");
         }
+        AtomicLong counter = stock.get(productId);
+        if (counter != null) {
+            while (true) {
+                long current = counter.get();
+                if (available(current) < quantity) {
+                    break;
+                }
+                if (counter.compareAndSet(current, pack(reserved(current) + quantity, available(current) - quantity))) {
+                    stockIndex.add(productId, -quantity);
+                    return;
+                }
+            }
+        }
+        throw new InsufficientStockException("Not enough stock for product");
+    }
+
+    /**
+     * Returns held units to available stock (hold released or expired).
+     * 
+     * @param productId the held product
+     * @param quantity the held quantity
+     */
+    public void releaseReserved(String productId, int quantity) {
+        settleReserved(productId, quantity, 0);
+    }
+
+    /**
+     * Sells stock that was held. The held units are consumed; if fewer units are sold than were
+     * held the rest go back to available, and if more are sold the difference is taken from
+     * available stock in the same atomic step.
+     * 
+     * @param productId the held product
+     * @param heldQuantity the quantity that was held
+     * @param soldQuantity the quantity being sold
+     * @return true if the sale was applied, false if the extra units were not available
+     *         (in that case the counts do not change: the held units are still counted as
+     *         reserved, and the caller - whose hold is already finished - must return them
+     *         with releaseReserved)
+     */
+    public boolean sellReserved(String productId, int heldQuantity, int soldQuantity) {
+        return settleReserved(productId, heldQuantity, soldQuantity);
     }
     
     /**
      * Removes a specified quantity of a product from inventory.
-     * If the resulting quantity is 0, the product is removed from the inventory map.
      * 
      * @param product the product to remove
      * @param quantity the quantity to remove (must be greater than 0)
@@ -111,59 +232,123 @@ public class Inventory {
             throw new InvalidQuantityException("Quantity must be greater than 0");
         }
         
-        // Synchronize for atomic check-and-update operation
-        synchronized (products) {
-            Integer currentQuantity = products.get(product);
-            
-            if (currentQuantity == null || currentQuantity < quantity) {
-                throw new InsufficientStockException("Not enough stock to remove");
-            }
-            
-            int newQuantity = currentQuantity - quantity;
-            if (newQuantity == 0) {
-                products.remove(product);
-            } else {
-                products.put(product, newQuantity);
-            }
+        if (!tryDecrement(product.getProductId(), quantity)) {
+            throw new InsufficientStockException("Not enough stock to remove");
         }
     }
     
     /**
-     * Gets all products and their quantities in the inventory.
-     * Returns a defensive copy to prevent external modification.
+     * Gets the on-hand quantities of all products in stock (available plus held).
+     * Held units are included so that persisting the inventory never loses stock that is
+     * only reserved; holds themselves are transient and do not survive a restart.
+     * Returns a new map; products with zero quantity are omitted.
      * 
-     * @return a Map of Product to quantity
+     * @return a Map of productId to quantity
      */
-    public Map<Product, Integer> getAllProducts() {
-        synchronized (products) {
-            return new HashMap<>(products);
+    public Map<String, Integer> getAllQuantities() {
+        Map<String, Integer> quantities = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : stock.entrySet()) {
+            long current = entry.getValue().get();
+            int quantity = available(current) + reserved(current);
+            if (quantity > 0) {
+                quantities.put(entry.getKey(), quantity);
+            }
         }
+        return quantities;
     }
     
     /**
-     * Sets the entire inventory from a provided map.
-     * Used for loading inventory from storage.
+     * Loads a product into inventory with a specific quantity.
+     * Used during data loading - does not validate quantity (allows 0 for data integrity).
+     * The quantity is on-hand stock, as getAllQuantities() saves it. Units currently held stay
+     * held: the reserved count is kept and only the rest of the quantity becomes available.
      * 
-     * @param products the map of products and quantities to set
+     * @param product the product to load
+     * @param quantity the on-hand quantity to set (available plus held)
      */
-    public void setProducts(Map<Product, Integer> products) {
-        synchronized (this.products) {
-            this.products = Collections.synchronizedMap(new HashMap<>(products));
+    public void loadProduct(Product product, int quantity) {
+        if (product != null && quantity >= 0) {
+            AtomicLong counter = counter(product.getProductId());
+            while (true) {
+                long current = counter.get();
+                int reserved = reserved(current);
+                int available = Math.max(0, quantity - reserved);
+                if (counter.compareAndSet(current, pack(reserved, available))) {
+                    stockIndex.add(product.getProductId(), available - available(current));
+                    return;
+                }
+            }
         }
     }
-    
+
+    private AtomicLong counter(String productId) {
+        AtomicLong counter = stock.get(productId);
+        if (counter == null) {
+            counter = stock.computeIfAbsent(productId, id -> new AtomicLong());
+        }
+        return counter;
+    }
+
+    private void addAvailable(String productId, AtomicLong counter, int quantity) {
+        while (true) {
+            long current = counter.get();
+            if (counter.compareAndSet(current, pack(reserved(current), available(current) + quantity))) {
+                stockIndex.add(productId, quantity);
+                return;
+            }
+        }
+    }
+
+    private boolean settleReserved(String productId, int heldQuantity, int soldQuantity) {
+        AtomicLong counter = stock.get(productId);
+        if (counter == null) {
+            return false;
+        }
+        while (true) {
+            long current = counter.get();
+            int reserved = reserved(current);
+            int available = available(current) + heldQuantity - soldQuantity;
+            if (reserved < heldQuantity || available < 0) {
+                return false;
+            }
+            if (counter.compareAndSet(current, pack(reserved - heldQuantity, available))) {
+                stockIndex.add(productId, heldQuantity - soldQuantity);
+                return true;
+            }
+        }
+    }
+
     /**
-     * Loads a product into inventory with a specific quantity.
-     * Used during data loading - does not validate quantity (allows 0 or negative for data integrity).
+     * Decrements the available quantity only if it holds at least that much.
      * 
-     * @param product the product to load
-     * @param quantity the quantity to set
+     * @return true if the stock was taken, false if there was not enough
      */
-    public void loadProduct(Product product, int quantity) {
-        if (product != null && quantity >= 0) {
-            synchronized (products) {
-                products.put(product, quantity);
+    private boolean tryDecrement(String productId, int quantity) {
+        AtomicLong counter = stock.get(productId);
+        if (counter == null) {
+            return false;
+        }
+        while (true) {
+            long current = counter.get();
+            if (available(current) < quantity) {
+                return false;
+            }
+            if (counter.compareAndSet(current, pack(reserved(current), available(current) - quantity))) {
+                stockIndex.add(productId, -quantity);
+                return true;
             }
         }
     }
+
+    private static long pack(int reserved, int available) {
+        return ((long) reserved << 32) | (available & AVAILABLE_MASK);
+    }
+
+    private static int available(long packed) {
+        return (int) (packed & AVAILABLE_MASK);
+    }
+
+    private static int reserved(long packed) {
+        return (int) (packed >>> 32);
+    }
 }
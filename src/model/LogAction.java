@@ -0,0 +1,216 @@
+package model;
+
+/**
+ * Types of actions recorded in the system log.
+ * Each action knows how to describe an entry from its typed fields, so the text is built
+ * only when an entry is displayed or exported - never when the action is performed.
+ *
+ * @author FinalProject
+ */
+public enum LogAction {
+
+    LOGIN {
+        @Override
+        String describe(LogEntry e) {
+            return "User " + e.getUsername() + " (" + e.getRole() + ") logged in from " + e.getText();
+        }
+    },
+    LOGOUT {
+        @Override
+        String describe(LogEntry e) {
+            return "User " + e.getUsername() + " logged out";
+        }
+    },
+    ADD_CUSTOMER {
+        @Override
+        String describe(LogEntry e) {
+            return "Customer added: " + e.getName() + ", id=" + e.getCustomerId() + ", type=" + e.getCustomerType();
+        }
+    },
+    UPDATE_CUSTOMER {
+        @Override
+        String describe(LogEntry e) {
+            return "Customer updated: id=" + e.getCustomerId() + ", name=" + e.getName() + ", type=" + e.getCustomerType();
+        }
+    },
+    DELETE_CUSTOMER {
+        @Override
+        String describe(LogEntry e) {
+            return "Customer deleted: id=" + e.getCustomerId();
+        }
+    },
+    ADD_PRODUCT {
+        @Override
+        String describe(LogEntry e) {
+            return "Product " + e.getProductId() + " (" + e.getName() + ") added to inventory of branch " + e.getBranchId() +
+                    " (qty=" + e.getQuantity() + ", price=" + e.getPrice() + ")";
+        }
+    },
+    ADD_PRODUCT_TO_INVENTORY {
+        @Override
+        String describe(LogEntry e) {
+            return "Product " + e.getProductId() + " added to inventory of branch " + e.getBranchId() +
+                    " (qty=" + e.getQuantity() + ")";
+        }
+    },
+    REMOVE_FROM_INVENTORY {
+        @Override
+        String describe(LogEntry e) {
+            return "Product " + e.getProductId() + " removed from inventory of branch " + e.getBranchId() +
+                    " (qty=" + e.getQuantity() + ")";
+        }
+    },
+    DELETE_PRODUCT {
+        @Override
+        String describe(LogEntry e) {
+            return "Product " + e.getProductId() + " deleted from system";
+        }
+    },
+    SALE {
+        @Override
+        String describe(LogEntry e) {
+            return "Sold product " + e.getProductId() +
+                    " (price=" + e.getPrice() + ")" +
+                    ", qty=" + e.getQuantity() +
+                    ", basePrice=" + e.getBasePrice() +
+                    ", finalPrice=" + e.getFinalPrice() +
+                    ", branch=" + e.getBranchId() +
+                    ", customerId=" + e.getCustomerId() +
+                    ", customerType=" + e.getCustomerType() +
+                    ", employeeNumber=" + e.getEmployeeNumber();
+        }
+    },
+    SALE_CART {
+        @Override
+        String describe(LogEntry e) {
+            return "Sold cart " + e.getReferenceId() +
+                    " [" + e.getText() + "]" +
+                    ", basePrice=" + e.getBasePrice() +
+                    ", finalPrice=" + e.getFinalPrice() +
+                    ", branch=" + e.getBranchId() +
+                    ", customerId=" + e.getCustomerId() +
+                    ", customerType=" + e.getCustomerType() +
+                    ", employeeNumber=" + e.getEmployeeNumber();
+        }
+    },
+    CREATE_USER {
+        @Override
+        String describe(LogEntry e) {
+            return "User created: " + e.getUsername() + ", role=" + e.getRole() + ", branch=" + e.getBranchId();
+        }
+    },
+    UPDATE_USER {
+        @Override
+        String describe(LogEntry e) {
+            return "User updated: " + e.getUsername();
+        }
+    },
+    SET_USER_ACTIVE {
+        @Override
+        String describe(LogEntry e) {
+            return "User " + e.getUsername() + " set to " + e.getText();
+        }
+    },
+    DELETE_USER {
+        @Override
+        String describe(LogEntry e) {
+            return "User deleted: " + e.getUsername();
+        }
+    },
+    CREATE_EMPLOYEE {
+        @Override
+        String describe(LogEntry e) {
+            return "Employee created: " + e.getName() + ", number=" + e.getEmployeeNumber() + ", role=" + e.getRole() +
+                    ", branch=" + e.getBranchId() + ", username=" + e.getUsername();
+        }
+    },
+    UPDATE_EMPLOYEE {
+        @Override
+        String describe(LogEntry e) {
+            return "Employee updated: " + e.getEmployeeNumber();
+        }
+    },
+    DELETE_EMPLOYEE {
+        @Override
+        String describe(LogEntry e) {
+            return "Employee deleted: " + e.getEmployeeNumber();
+        }
+    },
+    CHAT_REQUESTED {
+        @Override
+        String describe(LogEntry e) {
+            return "User " + e.getUsername() + " requested chat from branch " + e.getBranchId();
+        }
+    },
+    CHAT_ACCEPTED {
+        @Override
+        String describe(LogEntry e) {
+            return "User " + e.getUsername() + " accepted chat request " + e.getReferenceId();
+        }
+    },
+    CHAT_STARTED {
+        @Override
+        String describe(LogEntry e) {
+            return "Chat " + e.getChatId() + " started for user " + e.getUsername();
+        }
+    },
+    /** Chat line - only in logs written before chats had their own transcript files */
+    CHAT_MESSAGE {
+        @Override
+        String describe(LogEntry e) {
+            return "Chat " + e.getChatId() + ": " + e.getUsername() + " sent: " + e.getText();
+        }
+    },
+    CHAT_ENDED {
+        @Override
+        String describe(LogEntry e) {
+            return "Chat " + e.getChatId() + " ended";
+        }
+    },
+    MANAGER_JOINED {
+        @Override
+        String describe(LogEntry e) {
+            return "Manager " + e.getUsername() + " joined chat " + e.getChatId();
+        }
+    },
+    UPDATE_DISCOUNT {
+        @Override
+        String describe(LogEntry e) {
+            return "Discount for " + e.getCustomerType() + " customers updated to " + e.getPercentage() + "%";
+        }
+    };
+
+    /**
+     * Builds the human-readable description of an entry of this type.
+     *
+     * @param e the entry
+     * @return the description
+     */
+    abstract String describe(LogEntry e);
+
+    /**
+     * Finds an action by its name.
+     *
+     * @param name the action name (e.g. "SALE")
+     * @return the action, or null if the name is not a known action
+     */
+    public static LogAction fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether this action belongs to a chat session.
+     *
+     * @return true for CHAT_* actions and MANAGER_JOINED
+     */
+    public boolean isChatAction() {
+        return name().startsWith("CHAT_") || this == MANAGER_JOINED;
+    }
+}
@@ -1,16 +1,51 @@
 package model;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 
+/**
+ * A single entry in the system log.
+ * Entries created by the server carry a LogAction, an epoch-millis timestamp and the typed
+ * fields of the action (product, quantity, branch, customer, chat, sender...). The description
+ * and the date string are built from those fields only when first asked for, so recording an
+ * action costs no string formatting. Entries from older log files (and entries the client
+ * builds from server responses) keep their stored text instead.
+ *
+ * @author FinalProject
+ */
 public class LogEntry {
 
-    private String actionType;
+    private final LogAction action;
+    private final String actionType;
+    private final long timestamp;
+    private final boolean structured;
+    private String chatId; // Optional - null if not related to a chat
+
+    // Typed fields - null / 0 when not relevant to the action
+    private String username;
+    private String role;
+    private String branchId;
+    private String productId;
+    private String customerId;
+    private String customerType;
+    private String employeeNumber;
+    private String name;
+    private String referenceId;
+    private String text;
+    private int quantity;
+    private double price;
+    private double basePrice;
+    private double finalPrice;
+    private double percentage;
+
+    // Rendered on first use (or stored, for entries loaded as text)
     private String description;
     private String dateTime;
-    private String chatId; // Optional - null if not related to a chat
 
     /**
      * Constructs a new LogEntry without a chatId.
-     * 
+     *
      * @param actionType the type of action (e.g., "LOGIN", "SALE", "ADD_CUSTOMER")
      * @param description a detailed description of the action
      * @param dateTime the date and time when the action occurred (ISO format string)
@@ -23,7 +58,8 @@ public class LogEntry {
 
     /**
      * Constructs a new LogEntry with an optional chatId.
-     * 
+     * Used for entries that exist only as text (older log files, server responses).
+     *
      * @param actionType the type of action (e.g., "CHAT_STARTED", "CHAT_MESSAGE", "CHAT_ENDED")
      * @param description a detailed description of the action
      * @param dateTime the date and time when the action occurred (ISO format string)
@@ -34,27 +70,454 @@ public class LogEntry {
                     String dateTime,
                     String chatId) {
 
+        this.action = LogAction.fromName(actionType);
         this.actionType = actionType;
+        this.timestamp = parseTimestamp(dateTime);
+        this.structured = false;
         this.description = description;
         this.dateTime = dateTime;
         this.chatId = chatId;
     }
 
-    
+    private LogEntry(LogAction action, long timestamp) {
+        this.action = action;
+        this.actionType = action.name();
+        this.timestamp = timestamp;
+        this.structured = true;
+    }
+
+    private static LogEntry now(LogAction action) {
+        return new LogEntry(action, System.currentTimeMillis());
+    }
+
+    // ========== Factories ==========
+
+    /**
+     * Creates a LOGIN entry.
+     *
+     * @param username the user who logged in
+     * @param role the user's role
+     * @param address the client's remote address
+     * @return the entry
+     */
+    public static LogEntry login(String username, String role, String address) {
+        LogEntry e = now(LogAction.LOGIN);
+        e.username = username;
+        e.role = role;
+        e.text = address;
+        return e;
+    }
+
+    /**
+     * Creates a LOGOUT entry.
+     *
+     * @param username the user who logged out
+     * @return the entry
+     */
+    public static LogEntry logout(String username) {
+        LogEntry e = now(LogAction.LOGOUT);
+        e.username = username;
+        return e;
+    }
+
+    /**
+     * Creates an ADD_CUSTOMER, UPDATE_CUSTOMER or DELETE_CUSTOMER entry.
+     *
+     * @param action the customer action
+     * @param customerId the customer's ID number
+     * @param fullName the customer's name (null for deletes)
+     * @param customerType the customer type (null for deletes)
+     * @return the entry
+     */
+    public static LogEntry customer(LogAction action, String customerId, String fullName, String customerType) {
+        LogEntry e = now(action);
+        e.customerId = customerId;
+        e.name = fullName;
+        e.customerType = customerType;
+        return e;
+    }
+
+    /**
+     * Creates a product or inventory entry (ADD_PRODUCT, ADD_PRODUCT_TO_INVENTORY,
+     * REMOVE_FROM_INVENTORY, DELETE_PRODUCT).
+     *
+     * @param action the product action
+     * @param productId the product ID
+     * @param productName the product name (ADD_PRODUCT only)
+     * @param branchId the branch (null for DELETE_PRODUCT)
+     * @param quantity the quantity added or removed
+     * @param price the product price (ADD_PRODUCT only)
+     * @return the entry
+     */
+    public static LogEntry product(LogAction action, String productId, String productName,
+                                   String branchId, int quantity, double price) {
+        LogEntry e = now(action);
+        e.productId = productId;
+        e.name = productName;
+        e.branchId = branchId;
+        e.quantity = quantity;
+        e.price = price;
+        return e;
+    }
+
+    /**
+     * Creates a SALE entry.
+     *
+     * @param productId the product sold
+     * @param price the unit price
+     * @param quantity the quantity sold
+     * @param basePrice the price before discount
+     * @param finalPrice the price after discount
+     * @param branchId the branch
+     * @param customerId the customer's ID number
+     * @param customerType the customer type
+     * @param employeeNumber the seller's employee number
+     * @return the entry
+     */
+    public static LogEntry sale(String productId, double price, int quantity, double basePrice, double finalPrice,
+                                String branchId, String customerId, String customerType, String employeeNumber) {
+        LogEntry e = now(LogAction.SALE);
+        e.productId = productId;
+        e.price = price;
+        e.quantity = quantity;
+        e.basePrice = basePrice;
+        e.finalPrice = finalPrice;
+        e.branchId = branchId;
+        e.customerId = customerId;
+        e.customerType = customerType;
+        e.employeeNumber = employeeNumber;
+        return e;
+    }
+
+    /**
+     * Creates a SALE_CART entry.
+     *
+     * @param saleGroupId the cart's sale group ID
+     * @param lineSummary the cart lines ("productIdxqty, ...")
+     * @param basePrice the basket price before discount
+     * @param finalPrice the basket price after discount
+     * @param branchId the branch
+     * @param customerId the customer's ID number
+     * @param customerType the customer type
+     * @param employeeNumber the seller's employee number
+     * @return the entry
+     */
+    public static LogEntry cartSale(String saleGroupId, String lineSummary, double basePrice, double finalPrice,
+                                    String branchId, String customerId, String customerType, String employeeNumber) {
+        LogEntry e = now(LogAction.SALE_CART);
+        e.referenceId = saleGroupId;
+        e.text = lineSummary;
+        e.basePrice = basePrice;
+        e.finalPrice = finalPrice;
+        e.branchId = branchId;
+        e.customerId = customerId;
+        e.customerType = customerType;
+        e.employeeNumber = employeeNumber;
+        return e;
+    }
+
+    /**
+     * Creates a CREATE_USER, UPDATE_USER or DELETE_USER entry.
+     *
+     * @param action the user action
+     * @param username the user
+     * @param role the role (CREATE_USER only)
+     * @param branchId the branch (CREATE_USER only)
+     * @return the entry
+     */
+    public static LogEntry user(LogAction action, String username, String role, String branchId) {
+        LogEntry e = now(action);
+        e.username = username;
+        e.role = role;
+        e.branchId = branchId;
+        return e;
+    }
+
+    /**
+     * Creates a SET_USER_ACTIVE entry.
+     *
+     * @param username the user
+     * @param active the new state
+     * @return the entry
+     */
+    public static LogEntry userActive(String username, boolean active) {
+        LogEntry e = now(LogAction.SET_USER_ACTIVE);
+        e.username = username;
+        e.text = active ? "active" : "inactive";
+        return e;
+    }
+
+    /**
+     * Creates a CREATE_EMPLOYEE, UPDATE_EMPLOYEE or DELETE_EMPLOYEE entry.
+     *
+     * @param action the employee action
+     * @param employeeNumber the employee number
+     * @param fullName the employee's name (CREATE_EMPLOYEE only)
+     * @param role the role (CREATE_EMPLOYEE only)
+     * @param branchId the branch (CREATE_EMPLOYEE only)
+     * @param username the linked username (CREATE_EMPLOYEE only)
+     * @return the entry
+     */
+    public static LogEntry employee(LogAction action, String employeeNumber, String fullName,
+                                    String role, String branchId, String username) {
+        LogEntry e = now(action);
+        e.employeeNumber = employeeNumber;
+        e.name = fullName;
+        e.role = role;
+        e.branchId = branchId;
+        e.username = username;
+        return e;
+    }
+
+    /**
+     * Creates a CHAT_REQUESTED entry.
+     *
+     * @param username the requesting user
+     * @param branchId the requester's branch
+     * @return the entry
+     */
+    public static LogEntry chatRequested(String username, String branchId) {
+        LogEntry e = now(LogAction.CHAT_REQUESTED);
+        e.username = username;
+        e.branchId = branchId;
+        return e;
+    }
+
+    /**
+     * Creates a CHAT_ACCEPTED entry.
+     *
+     * @param username the accepting user
+     * @param requestId the accepted request
+     * @param chatId the chat that was created, or null
+     * @return the entry
+     */
+    public static LogEntry chatAccepted(String username, String requestId, String chatId) {
+        LogEntry e = now(LogAction.CHAT_ACCEPTED);
+        e.username = username;
+        e.referenceId = requestId;
+        e.chatId = chatId;
+        return e;
+    }
+
+    /**
+     * Creates a chat session entry (CHAT_STARTED, CHAT_ENDED, MANAGER_JOINED).
+     *
+     * @param action the chat action
+     * @param chatId the chat
+     * @param username the user concerned (null for CHAT_ENDED)
+     * @return the entry
+     */
+    public static LogEntry chat(LogAction action, String chatId, String username) {
+        LogEntry e = now(action);
+        e.chatId = chatId;
+        e.username = username;
+        return e;
+    }
+
+    /**
+     * Creates an UPDATE_DISCOUNT entry.
+     *
+     * @param customerType the customer type
+     * @param percentage the new discount percentage
+     * @return the entry
+     */
+    public static LogEntry discount(String customerType, double percentage) {
+        LogEntry e = now(LogAction.UPDATE_DISCOUNT);
+        e.customerType = customerType;
+        e.percentage = percentage;
+        return e;
+    }
+
+    /**
+     * Recreates a stored entry from its fields. Used by storage only.
+     *
+     * @return the entry
+     */
+    public static LogEntry restore(LogAction action, long timestamp, String chatId,
+                                   String username, String role, String branchId, String productId,
+                                   String customerId, String customerType, String employeeNumber,
+                                   String name, String referenceId, String text, int quantity,
+                                   double price, double basePrice, double finalPrice, double percentage) {
+        LogEntry e = new LogEntry(action, timestamp);
+        e.chatId = chatId;
+        e.username = username;
+        e.role = role;
+        e.branchId = branchId;
+        e.productId = productId;
+        e.customerId = customerId;
+        e.customerType = customerType;
+        e.employeeNumber = employeeNumber;
+        e.name = name;
+        e.referenceId = referenceId;
+        e.text = text;
+        e.quantity = quantity;
+        e.price = price;
+        e.basePrice = basePrice;
+        e.finalPrice = finalPrice;
+        e.percentage = percentage;
+        return e;
+    }
+
+    /**
+     * Recreates a CHAT_MESSAGE entry from an older, text-only log line, keeping its stored text.
+     * Lets exports read the sender and message from fields for old and new entries alike.
+     *
+     * @return the entry
+     */
+    public static LogEntry restoreChatMessage(String description, String dateTime, String chatId,
+                                              String sender, String message) {
+        LogEntry e = new LogEntry(LogAction.CHAT_MESSAGE.name(), description, dateTime, chatId);
+        e.username = sender;
+        e.text = message;
+        return e;
+    }
+
+    // ========== Getters ==========
+
+    /**
+     * Gets the action, or null for an entry whose type is not a known LogAction.
+     *
+     * @return the action
+     */
+    public LogAction getAction() {
+        return action;
+    }
+
     public String getActionType() {
         return actionType;
     }
 
-   
+    /**
+     * Gets the description, building it from the typed fields on first use.
+     *
+     * @return the description
+     */
     public String getDescription() {
-        return description;
+        String d = description;
+        if (d == null) {
+            d = action != null ? action.describe(this) : "";
+            description = d;
+        }
+        return d;
     }
 
+    /**
+     * Gets the date and time as an ISO string, formatted from the timestamp on first use.
+     *
+     * @return the date and time
+     */
     public String getDateTime() {
-        return dateTime;
+        String d = dateTime;
+        if (d == null) {
+            d = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()).toString();
+            dateTime = d;
+        }
+        return d;
+    }
+
+    /**
+     * Gets the time of the action in epoch milliseconds (0 if a stored date could not be parsed).
+     *
+     * @return the timestamp
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Checks whether the entry has typed fields (false for entries known only as text).
+     *
+     * @return true if the description is built from fields
+     */
+    public boolean isStructured() {
+        return structured;
     }
 
     public String getChatId() {
         return chatId;
     }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getBranchId() {
+        return branchId;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public String getCustomerType() {
+        return customerType;
+    }
+
+    public String getEmployeeNumber() {
+        return employeeNumber;
+    }
+
+    /**
+     * Gets the customer, employee or product name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the sale group ID (SALE_CART) or chat request ID (CHAT_ACCEPTED).
+     *
+     * @return the reference ID
+     */
+    public String getReferenceId() {
+        return referenceId;
+    }
+
+    /**
+     * Gets the free text of the action - the chat message, the cart lines,
+     * the login address or the new user state.
+     *
+     * @return the text
+     */
+    public String getText() {
+        return text;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public double getBasePrice() {
+        return basePrice;
+    }
+
+    public double getFinalPrice() {
+        return finalPrice;
+    }
+
+    public double getPercentage() {
+        return percentage;
+    }
+
+    private static long parseTimestamp(String dateTime) {
+        try {
+            return LocalDateTime.parse(dateTime).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
 }
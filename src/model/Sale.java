@@ -1,9 +1,14 @@
 package model;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
 /**
  * Represents a sale transaction in the system.
  * Stores complete sale information including product, quantity, pricing (before and after discount),
  * branch, employee, customer, and timestamp.
+ * The day of the sale is also kept as an epoch-day number, computed once, so reports can group
+ * and range-filter sales by day without parsing the timestamp again.
  * 
  * @author FinalProject
  */
@@ -17,6 +22,8 @@ public class Sale {
     private String dateTime;
     private double basePrice;  // Price before discount (product price * quantity)
     private double finalPrice; // Final price after customer discount
+    private String saleGroupId; // Shared by all lines of one cart checkout, null for single-item sales
+    private final long epochDay; // Day of the sale (days since 1970-01-01)
 
     public Sale(Product product,
                 int quantity,
@@ -27,6 +34,19 @@ public class Sale {
                 double basePrice,
                 double finalPrice) {
 
+        this(product, quantity, branchId, employeeNumber, customerId, dateTime, basePrice, finalPrice, null);
+    }
+
+    public Sale(Product product,
+                int quantity,
+                String branchId,
+                String employeeNumber,
+                String customerId,
+                String dateTime,
+                double basePrice,
+                double finalPrice,
+                String saleGroupId) {
+
         this.product = product;
         this.quantity = quantity;
         this.branchId = branchId;
@@ -35,6 +55,8 @@ public class Sale {
         this.dateTime = dateTime;
         this.basePrice = basePrice;
         this.finalPrice = finalPrice;
+        this.saleGroupId = saleGroupId;
+        this.epochDay = epochDayOf(dateTime);
     }
 
   
@@ -73,4 +95,39 @@ public class Sale {
     public double getFinalPrice() {
         return finalPrice;
     }
+
+    /**
+     * Gets the ID of the cart checkout this sale line belongs to.
+     *
+     * @return the sale group ID, or null if the sale was a single-item SELL
+     */
+    public String getSaleGroupId() {
+        return saleGroupId;
+    }
+
+    /**
+     * Gets the day of the sale as an epoch-day number (LocalDate.toEpochDay()).
+     *
+     * @return the epoch day, or Long.MIN_VALUE if the sale's date cannot be read
+     */
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * Gets the epoch day of an ISO date-time ("YYYY-MM-DDTHH:MM:SS...") or date ("YYYY-MM-DD").
+     *
+     * @param dateTime the date-time
+     * @return the epoch day, or Long.MIN_VALUE if the date cannot be read
+     */
+    public static long epochDayOf(String dateTime) {
+        if (dateTime == null || dateTime.length() < 10) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return LocalDate.parse(dateTime.substring(0, 10)).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package model;
 
 import java.net.Socket;
+import java.security.SecureRandom;
 
 /**
  * Represents an active user session in the system.
@@ -10,11 +11,14 @@ import java.net.Socket;
  * @author FinalProject
  */
 public class Session {
+    private static final SecureRandom TOKEN_RANDOM = new SecureRandom();
+
     private String username;
     private String branchId;
     private String role;  // admin, manager, salesman, cashier
     private Socket socket;
     private long loginTime;
+    private final String channelToken;  // lets a second connection of the same client attach to this session
 
     /**
      * Constructs a new Session for a logged-in user
@@ -28,6 +32,7 @@ public class Session {
         this.role = role;
         this.socket = socket;
         this.loginTime = System.currentTimeMillis();
+        this.channelToken = newToken();
     }
 
   
@@ -55,4 +60,23 @@ public class Session {
     public boolean isSameUser(String username) {
         return this.username.equals(username);
     }
+
+    /**
+     * Gets the secret token that lets another connection of the same client attach to this session.
+     *
+     * @return the channel token
+     */
+    public String getChannelToken() {
+        return channelToken;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        TOKEN_RANDOM.nextBytes(bytes);
+        StringBuilder token = new StringBuilder(32);
+        for (byte b : bytes) {
+            token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return token.toString();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A time-limited reservation of stock for one product in one branch.
+ * Created when a price is calculated at the counter, so the quantity cannot be sold
+ * to someone else before the sale is completed.
+ * A hold finishes exactly once - it is either consumed by a sale, released by its owner,
+ * or expired by the hold timer; the state change is a compare-and-set so these can race safely.
+ *
+ * @author FinalProject
+ */
+public class StockHold {
+
+    /**
+     * Enumeration of possible hold states.
+     */
+    public enum HoldStatus {
+        ACTIVE,     // Stock is reserved
+        CONSUMED,   // Reserved stock was sold
+        RELEASED,   // Owner gave the stock back
+        EXPIRED     // Hold timed out and the stock was returned
+    }
+
+    private final String holdId;
+    private final Branch branch;
+    private final String productId;
+    private final int quantity;
+    private final String owner;
+    private final long expiresAt;
+    private final AtomicInteger status = new AtomicInteger(HoldStatus.ACTIVE.ordinal());
+
+    /**
+     * Constructs a new active StockHold.
+     *
+     * @param holdId the unique hold identifier
+     * @param branch the branch whose stock is held
+     * @param productId the held product
+     * @param quantity the held quantity
+     * @param owner username of the user who created the hold
+     * @param expiresAt expiry time in epoch milliseconds
+     */
+    public StockHold(String holdId, Branch branch, String productId, int quantity, String owner, long expiresAt) {
+        this.holdId = holdId;
+        this.branch = branch;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.owner = owner;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getHoldId() {
+        return holdId;
+    }
+
+    public Branch getBranch() {
+        return branch;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public HoldStatus getStatus() {
+        return HoldStatus.values()[status.get()];
+    }
+
+    public boolean isActive() {
+        return status.get() == HoldStatus.ACTIVE.ordinal();
+    }
+
+    /**
+     * Finishes an active hold.
+     *
+     * @param newStatus the final status (CONSUMED, RELEASED or EXPIRED)
+     * @return true if this call finished the hold, false if it was already finished
+     */
+    public boolean finish(HoldStatus newStatus) {
+        return status.compareAndSet(HoldStatus.ACTIVE.ordinal(), newStatus.ordinal());
+    }
+}
@@ -0,0 +1,65 @@
+package model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cross-branch stock totals.
+ * Keeps one counter per product holding the quantity available in all branches together.
+ * Every branch Inventory reports each change of its available quantity here in the same
+ * call that makes the change, so an all-branch quantity is a single lookup instead of a
+ * walk over every branch. Counters are LongAdders, so branches selling the same product
+ * concurrently do not contend on one memory word.
+ * The totals are advisory. A change is applied to the branch's packed counter first (by
+ * compare-and-set) and reported here right after, so while changes are in flight a total
+ * can lag the branch counters by those changes - and two reports can arrive in the opposite
+ * order, so a total may even dip below zero for a moment. Every change is reported exactly
+ * once, so the totals never drift. They are used for display only; selling, reserving and
+ * releasing always decide on the branch's packed counter, and a caller that needs an exact
+ * quantity reads it from the branch Inventory.
+ * One instance is shared by all branches of a BranchManager.
+ *
+ * @author FinalProject
+ */
+public class StockIndex {
+
+    private final Map<String, LongAdder> totals = new ConcurrentHashMap<>();
+
+    /**
+     * Applies a change in a branch's available quantity.
+     *
+     * @param productId the product whose quantity changed
+     * @param delta the change (negative when stock was taken)
+     */
+    public void add(String productId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        LongAdder total = totals.get(productId);
+        if (total == null) {
+            total = totals.computeIfAbsent(productId, id -> new LongAdder());
+        }
+        total.add(delta);
+    }
+
+    /**
+     * Gets the quantity of a product available in all branches together.
+     * Advisory - see the class comment.
+     *
+     * @param productId the product ID
+     * @return the total available quantity (never negative), or 0 if the product is not stocked anywhere
+     */
+    public int getTotal(String productId) {
+        LongAdder total = totals.get(productId);
+        // Reports of concurrent changes may arrive out of order - never show a negative total
+        return total == null ? 0 : (int) Math.max(0, total.sum());
+    }
+
+    /**
+     * Removes all totals. Used when branches are reloaded from storage.
+     */
+    public void clear() {
+        totals.clear();
+    }
+}
@@ -4,27 +4,32 @@ import model.User;
 import model.exceptions.InvalidCredentialsException;
 import model.exceptions.WeakPasswordException;
 import model.exceptions.UserNotFoundException;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
+import util.Snapshot;
+
 /**
  * Manages user authentication and user account operations.
  * Validates passwords according to password policy (minimum 6 characters).
  * All users must be created manually - no default users are created.
+ * Users are published as an immutable, versioned Snapshot that is replaced on every write,
+ * so logins, lookups and list views take no lock and copy nothing. Changes to a User object
+ * go through this manager so they are re-published with a new version.
  * 
  * @author FinalProject
  */
 public class AuthenticationManager {
     
-    private Map<String, User> users;  // username -> User
+    private volatile Snapshot<String, User> users = Snapshot.empty();  // username -> User
+    
+    /** Serializes writers; readers never take it */
+    private final Object writeLock = new Object();
     
     /**
      * Constructs a new AuthenticationManager with empty user map.
      * No default users are created - all users must be created manually.
      */
     public AuthenticationManager() {
-        users = Collections.synchronizedMap(new HashMap<>());
     }
     
     /**
@@ -41,25 +46,26 @@ public class AuthenticationManager {
         // Normalize username (lowercase + trim) to prevent case-sensitivity issues
         String normalizedUsername = username.trim().toLowerCase();
         
-        synchronized (users) {
-            // Try to find user with normalized username first
-            User user = users.get(normalizedUsername);
-            
-            // If not found, try original username (for backward compatibility)
-            if (user == null) {
-                user = users.get(username);
-            }
-            
-            if (user == null || !user.isActive()) {
-                throw new InvalidCredentialsException("Invalid username");
-            }
-            
-            if (!user.checkPassword(password)) {
-                throw new InvalidCredentialsException("Invalid password");
-            }
-            
-            return user;
+        // One volatile read - the lookups below see a single consistent snapshot
+        Map<String, User> current = users.getMap();
+
+        // Try to find user with normalized username first
+        User user = current.get(normalizedUsername);
+        
+        // If not found, try original username (for backward compatibility)
+        if (user == null) {
+            user = current.get(username);
+        }
+        
+        if (user == null || !user.isActive()) {
+            throw new InvalidCredentialsException("Invalid username");
+        }
+        
+        if (!user.checkPassword(password)) {
+            throw new InvalidCredentialsException("Invalid password");
         }
+        
+        return user;
     }
     
     /**
@@ -89,12 +95,12 @@ public class AuthenticationManager {
         
         User user = new User(username, password, role, branchId);
         
-        // Synchronize for atomic check-and-put operation
-        synchronized (users) {
-            if (users.containsKey(username)) {
+        // Synchronize writers for atomic check-and-put operation
+        synchronized (writeLock) {
+            if (users.getMap().containsKey(username)) {
                 throw new IllegalArgumentException("User " + username + " already exists");
             }
-            users.put(username, user);
+            users = users.with(username, user);
         }
     }
     
@@ -106,9 +112,9 @@ public class AuthenticationManager {
      */
     public void addUserDirectly(User user) {
         if (user != null) {
-            synchronized (users) {
-                if (!users.containsKey(user.getUsername())) {
-                    users.put(user.getUsername(), user);
+            synchronized (writeLock) {
+                if (!users.getMap().containsKey(user.getUsername())) {
+                    users = users.with(user.getUsername(), user);
                 }
             }
         }
@@ -139,9 +145,7 @@ public class AuthenticationManager {
      * @return the User object, or null if not found
      */
     public User getUser(String username) {
-        synchronized (users) {
-            return users.get(username);
-        }
+        return users.getMap().get(username);
     }
     
     /**
@@ -151,34 +155,73 @@ public class AuthenticationManager {
      * @return true if user exists, false otherwise
      */
     public boolean userExists(String username) {
-        synchronized (users) {
-            return users.containsKey(username);
-        }
+        return users.getMap().containsKey(username);
     }
     
     /**
      * Gets all users (for admin operations).
-     * Returns a defensive copy to prevent external modification.
+     * Returns the current immutable snapshot - O(1), no copy.
      * 
-     * @return a Map of username to User
+     * @return a read-only Map of username to User
      */
     public Map<String, User> getAllUsers() {
-        synchronized (users) {
-            return new HashMap<>(users);
+        return users.getMap();
+    }
+    
+    /**
+     * Gets the current users together with their version.
+     * 
+     * @return the current snapshot
+     */
+    public Snapshot<String, User> getSnapshot() {
+        return users;
+    }
+    
+    /**
+     * Updates user details. Only updates fields that are provided (not null).
+     * Publishes an updated copy; the published User is never modified.
+     * 
+     * @param username the username to update
+     * @param newPassword the new password (null or empty to keep current)
+     * @param newBranchId the new branch ID (null or empty to keep current)
+     * @param active the new active status (null to keep current)
+     * @throws UserNotFoundException if user not found
+     */
+    public void updateUser(String username, String newPassword, String newBranchId, Boolean active)
+            throws UserNotFoundException {
+        synchronized (writeLock) {
+            User user = users.getMap().get(username);
+            if (user == null) {
+                throw new UserNotFoundException("User " + username + " not found");
+            }
+            User updated = copyOf(user);
+            if (newPassword != null && !newPassword.trim().isEmpty()) {
+                updated.setPassword(newPassword);
+            }
+            if (newBranchId != null && !newBranchId.trim().isEmpty()) {
+                updated.setBranchId(newBranchId);
+            }
+            if (active != null) {
+                updated.setActive(active);
+            }
+            users = users.with(username, updated);
         }
     }
     
     /**
      * Activates or deactivates a user account.
+     * Publishes an updated copy; the published User is never modified.
      * 
      * @param username the username
      * @param active true to activate, false to deactivate
      */
     public void setUserActive(String username, boolean active) {
-        synchronized (users) {
-            User user = users.get(username);
+        synchronized (writeLock) {
+            User user = users.getMap().get(username);
             if (user != null) {
-                user.setActive(active);
+                User updated = copyOf(user);
+                updated.setActive(active);
+                users = users.with(username, updated);
             }
         }
     }
@@ -190,13 +233,19 @@ public class AuthenticationManager {
      * @throws UserNotFoundException if user not found
      */
     public void deleteUser(String username) throws UserNotFoundException {
-        synchronized (users) {
-            User user = users.get(username);
-            if (user == null) {
+        synchronized (writeLock) {
+            if (!users.getMap().containsKey(username)) {
                 throw new UserNotFoundException("User " + username + " not found");
             }
             
-            users.remove(username);
+            users = users.without(username);
         }
     }
-}
\ No newline at end of file
+    
+    private static User copyOf(User user) {
+        User copy = new User(user.getUsername(), user.getPassword(), user.getRole(), user.getBranchId());
+        copy.setActive(user.isActive());
+        copy.setMustChangePassword(user.isMustChangePassword());
+        return copy;
+    }
+}
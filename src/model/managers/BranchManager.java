@@ -1,27 +1,35 @@
 package model.managers;
 import model.Branch;
-import java.util.Collections;
+import model.StockIndex;
+import util.PersistentHashMap;
+import util.Snapshot;
 import java.util.*;
 
 /**
  * Manages branch data and operations.
  * Creates default branches B1 and B2 on initialization.
- * Each branch maintains its own separate inventory.
+ * Each branch maintains its own separate inventory; all branch inventories report to one
+ * StockIndex, which answers cross-branch stock totals without visiting the branches.
+ * Branches are published as an immutable, versioned Snapshot that is replaced on every write,
+ * so lookups take no lock and copy nothing.
  * 
  * @author FinalProject
  */
 public class BranchManager {
 
-    private Map<String, Branch> branches;
+    private volatile Snapshot<String, Branch> branches = Snapshot.empty();
+    private final StockIndex stockIndex = new StockIndex();
+    
+    /** Serializes writers; readers never take it */
+    private final Object writeLock = new Object();
 
     /**
      * Constructs a new BranchManager with default branches B1 and B2.
      */
     public BranchManager() {
-        branches = Collections.synchronizedMap(new HashMap<>());
         // Create default branches
-        branches.put("B1", new Branch("B1"));
-        branches.put("B2", new Branch("B2"));
+        branches = branches.with("B1", new Branch("B1", stockIndex))
+                           .with("B2", new Branch("B2", stockIndex));
     }
     
     /**
@@ -31,9 +39,9 @@ public class BranchManager {
      * @param branchId the unique branch identifier
      */
     public void addBranch(String branchId) {
-        synchronized (branches) {
-            if (!branches.containsKey(branchId)) {
-                branches.put(branchId, new Branch(branchId));
+        synchronized (writeLock) {
+            if (!branches.getMap().containsKey(branchId)) {
+                branches = branches.with(branchId, new Branch(branchId, stockIndex));
             }
         }
     }
@@ -45,21 +53,17 @@ public class BranchManager {
      * @return the Branch object, or null if not found
      */
     public Branch getBranch(String branchId) {
-        synchronized (branches) {
-            return branches.get(branchId);
-        }
+        return branches.getMap().get(branchId);
     }
     
     /**
      * Gets all branches (for saving to storage).
-     * Returns a defensive copy to prevent external modification.
+     * Returns the current immutable snapshot - O(1), no copy.
      * 
-     * @return a Map of branchId to Branch
+     * @return a read-only Map of branchId to Branch
      */
     public Map<String, Branch> getAllBranches() {
-        synchronized (branches) {
-            return new HashMap<>(branches);
-        }
+        return branches.getMap();
     }
     
     /**
@@ -68,9 +72,7 @@ public class BranchManager {
      * @return a list of branch IDs
      */
     public List<String> getBranchIds() {
-        synchronized (branches) {
-            return new ArrayList<>(branches.keySet());
-        }
+        return new ArrayList<>(branches.getMap().keySet());
     }
     
     /**
@@ -80,16 +82,30 @@ public class BranchManager {
      * @param branchIds the list of branch IDs to load
      */
     public void loadBranches(List<String> branchIds) {
-        synchronized (branches) {
-            branches.clear();
+        synchronized (writeLock) {
+            stockIndex.clear();
+            PersistentHashMap<String, Branch> loaded = PersistentHashMap.empty();
             for (String branchId : branchIds) {
-                branches.put(branchId, new Branch(branchId));
+                loaded = loaded.plus(branchId, new Branch(branchId, stockIndex));
             }
             // If no branches, create defaults
-            if (branches.isEmpty()) {
-                branches.put("B1", new Branch("B1"));
-                branches.put("B2", new Branch("B2"));
+            if (loaded.isEmpty()) {
+                loaded = loaded.plus("B1", new Branch("B1", stockIndex))
+                               .plus("B2", new Branch("B2", stockIndex));
             }
+            branches = branches.replaceAll(loaded);
         }
     }
+    
+    /**
+     * Gets the quantity of a product available in all branches together.
+     * O(1) - read from the shared StockIndex, no branch is visited. The total is advisory:
+     * it may lag changes that are still being applied (see StockIndex). For display only.
+     * 
+     * @param productId the product ID
+     * @return the total available quantity
+     */
+    public int getTotalQuantity(String productId) {
+        return stockIndex.getTotal(productId);
+    }
 }
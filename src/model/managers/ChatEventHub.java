@@ -0,0 +1,133 @@
+package model.managers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivers chat events to logged-in users that wait for them (long-poll).
+ * Every logged-in user has a mailbox of pending events. A waiting user parks on its own
+ * mailbox until an event is published to it or the timeout passes, so idle users cost no
+ * work at all. Pending events are kept as a set, so repeated events (e.g. many messages in
+ * the same chat) collapse into one and a mailbox never grows beyond a few entries.
+ * Events are strings of the form "TYPE" or "TYPE:chatId".
+ *
+ * @author FinalProject
+ */
+public class ChatEventHub {
+
+    /** A new message in a chat the user takes part in */
+    public static final String MESSAGE = "MESSAGE";
+
+    /** The user was matched into a new chat */
+    public static final String MATCHED = "MATCHED";
+
+    /** A manager joined a chat the user takes part in */
+    public static final String JOINED = "JOINED";
+
+    /** A chat the user takes part in has ended */
+    public static final String ENDED = "ENDED";
+
+    /** The waiting requests the user may accept have changed */
+    public static final String WAITING = "WAITING";
+
+    /** Pending events of one user; also the monitor a waiting user parks on */
+    private static final class Mailbox {
+        final LinkedHashSet<String> pending = new LinkedHashSet<>();
+        boolean closed = false;
+    }
+
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    /**
+     * Opens a mailbox for a user. Called on login.
+     *
+     * @param username the username
+     */
+    public void open(String username) {
+        mailboxes.computeIfAbsent(username, k -> new Mailbox());
+    }
+
+    /**
+     * Closes a user's mailbox, drops its pending events and wakes the user if waiting.
+     * Called on logout.
+     *
+     * @param username the username
+     */
+    public void close(String username) {
+        Mailbox mailbox = mailboxes.remove(username);
+        if (mailbox != null) {
+            synchronized (mailbox) {
+                mailbox.closed = true;
+                mailbox.pending.clear();
+                mailbox.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Publishes an event to one user. Ignored if the user is not logged in.
+     *
+     * @param username the receiving user
+     * @param event the event
+     */
+    public void publish(String username, String event) {
+        Mailbox mailbox = mailboxes.get(username);
+        if (mailbox == null) {
+            return;
+        }
+        synchronized (mailbox) {
+            if (!mailbox.closed && mailbox.pending.add(event)) {
+                mailbox.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Publishes an event to several users.
+     *
+     * @param usernames the receiving users
+     * @param event the event
+     */
+    public void publish(Collection<String> usernames, String event) {
+        for (String username : usernames) {
+            publish(username, event);
+        }
+    }
+
+    /**
+     * Waits for events of a user and takes them.
+     * Returns at once if events are already pending.
+     *
+     * @param username the user
+     * @param timeoutMs the longest time to wait, in milliseconds
+     * @return the pending events, oldest first; empty if the timeout passed or the user is not
+     *         logged in
+     */
+    public List<String> await(String username, long timeoutMs) {
+        Mailbox mailbox = mailboxes.get(username);
+        if (mailbox == null) {
+            // Logged out (or never logged in) - do not recreate the mailbox
+            return new ArrayList<>();
+        }
+        synchronized (mailbox) {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            long remaining = timeoutMs;
+            while (mailbox.pending.isEmpty() && !mailbox.closed && remaining > 0) {
+                try {
+                    mailbox.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            List<String> events = new ArrayList<>(mailbox.pending);
+            mailbox.pending.clear();
+            return events;
+        }
+    }
+}
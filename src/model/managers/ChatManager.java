@@ -6,62 +6,261 @@ import model.ChatRequest;
 import model.ChatUserStatus;
 import model.Session;
 import model.Employee;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manages the chat system - active chats, request queues, and user statuses.
  * Implements the Queue Pattern (Producer-Consumer) for managing chat request queues.
  * Uses FIFO (First In First Out) ordering to ensure fair matching between users from different branches.
- * Thread-safe implementation using ConcurrentHashMap and LinkedBlockingQueue.
+ * Matching works on per-branch indexes: a FIFO queue of waiting requests and a set of available
+ * logged-in users for every branch, kept up to date on login, logout and status changes.
+ * Finding a partner is a pick from another branch's non-empty set - no scan of sessions or queues.
+ * Queue, set and status changes are made under one lock; status reads take no lock.
+ * Each chat keeps its messages in a bounded, thread-safe buffer of recent messages with
+ * per-chat sequence numbers. Every message is also written to the chat's append-only
+ * transcript, which serves older messages and chats that are no longer in memory.
+ * The audit log only records session events (started, ended, manager joined).
+ * An ended chat stays in memory for a grace period (late reads of its last messages), then
+ * moves to the archive tier: a bounded LRU cache of recently ended chats, backed by the
+ * session metadata and transcript on disk. Chats are always found by ID, never by scanning.
+ * Messages, matches, joins, ends and queue changes are published to the users concerned
+ * through the ChatEventHub, so clients wait for events instead of polling.
  * 
  * @author FinalProject
  */
 public class ChatManager {
     
-    /** Active chat sessions: chatId -> ChatSession */
-    private Map<String, ChatSession> activeChats;
+    /**
+     * Append-only storage of chat transcripts, one per chat.
+     */
+    public interface TranscriptStore {
+        /**
+         * Appends messages to a chat's transcript, in sequence order.
+         * 
+         * @param chatId the chat ID
+         * @param messages the messages to store
+         * @throws IOException if writing fails
+         */
+        void append(String chatId, List<ChatMessage> messages) throws IOException;
+        
+        /**
+         * Reads messages of a chat's transcript within a sequence range.
+         * 
+         * @param chatId the chat ID
+         * @param fromSequence the first sequence number to include
+         * @param toSequence the last sequence number to include
+         * @return the messages, oldest first (empty if the chat has no transcript)
+         * @throws IOException if reading fails
+         */
+        List<ChatMessage> read(String chatId, long fromSequence, long toSequence) throws IOException;
+        
+        /**
+         * Stores the metadata of an ended chat (participants, start and end time).
+         * 
+         * @param session the ended session
+         * @throws IOException if writing fails
+         */
+        void saveSession(ChatSession session) throws IOException;
+        
+        /**
+         * Loads the metadata of an ended chat.
+         * 
+         * @param chatId the chat ID
+         * @return the ended session, or null if the chat is not archived
+         * @throws IOException if reading fails
+         */
+        ChatSession loadSession(String chatId) throws IOException;
+    }
+    
+    /** Recent messages kept in memory per chat */
+    public static final int DEFAULT_BUFFER_CAPACITY = 256;
     
-    /** Request queue (FIFO) for matching users from different branches */
-    private Queue<ChatRequest> chatQueue;
+    /** Time an ended chat stays in memory before it is archived */
+    public static final long DEFAULT_ENDED_CHAT_GRACE_MS = 5 * 60 * 1000;
     
-    /** User statuses: username -> ChatUserStatus */
+    /** Archived chats kept in memory for quick export */
+    public static final int DEFAULT_RECENT_CHAT_CACHE = 64;
+    
+    /** An archived chat kept in the recently ended cache */
+    private static final class ArchivedChat {
+        final ChatSession session;
+        /** Recent messages, or null if the chat was loaded from disk */
+        final ChatMessageBuffer messages;
+        
+        ArchivedChat(ChatSession session, ChatMessageBuffer messages) {
+            this.session = session;
+            this.messages = messages;
+        }
+    }
+    
+    /** Active chat sessions and ended ones still in their grace period: chatId -> ChatSession */
+    private Map<String, ChatSession> activeChats;
+    
+    /** User statuses: username -> ChatUserStatus (written under matchLock, read without it) */
     private Map<String, ChatUserStatus> userStatus;
     
     /** Pending requests: requestId -> ChatRequest */
     private Map<String, ChatRequest> pendingRequests;
     
-    /** Chat messages: chatId -> List<ChatMessage> */
-    private Map<String, List<ChatMessage>> chatMessages;
+    /** Pending request of each user in queue: username -> ChatRequest */
+    private Map<String, ChatRequest> requestByUser;
+    
+    /** Chat messages: chatId -> recent messages (older ones in the archive) */
+    private Map<String, ChatMessageBuffer> chatMessages;
     
     /** User to chat mapping: username -> chatId (for finding user's active chat) */
     private Map<String, String> userToChat;
     
-    /** Waiting requests by branch: branchId -> Queue<ChatRequest> */
-    private Map<String, Queue<ChatRequest>> waitingForUser;
+    /** Waiting requests by branch, oldest first: branchId -> (requestId -> ChatRequest) */
+    private Map<String, LinkedHashMap<String, ChatRequest>> waitingForUser;
+    
+    /** Logged-in users that are AVAILABLE, by branch: branchId -> usernames */
+    private Map<String, LinkedHashSet<String>> availableByBranch;
+    
+    /** Branch of each logged-in user: username -> branchId */
+    private Map<String, String> userBranch;
+    
+    /** Logged-in users by branch: branchId -> usernames */
+    private Map<String, LinkedHashSet<String>> usersByBranch;
+    
+    /** Branches whose waiting queue changed since WAITING was last published */
+    private final Set<String> waitingChanged = new HashSet<>();
+    
+    /** Guards the queues, the availability sets and status changes */
+    private final Object matchLock = new Object();
     
     private SessionManager sessionManager;
+    private final TranscriptStore transcriptStore;
+    private final long endedChatGraceMs;
+    
+    /** Recently ended chats, least recently used first (guarded by itself) */
+    private final LinkedHashMap<String, ArchivedChat> recentlyEnded;
+    
+    /** Moves ended chats to the archive tier when their grace period is over */
+    private final ScheduledExecutorService archiver;
+    
+    /** Single writer of the chat transcripts, so appending a message never waits for the disk */
+    private final ScheduledExecutorService transcriptWriter;
+    /** Writes the queued messages if the server is stopped without shutdown(); null without transcripts */
+    private final Thread shutdownHook;
+    private final ChatEventHub eventHub = new ChatEventHub();
+    private final int bufferCapacity;
     private int chatIdCounter;
     private final Object counterLock = new Object();  // Lock object for counter
     
     /**
-     * Constructs a new ChatManager.
+     * Constructs a new ChatManager that keeps only recent messages (no transcripts).
      * 
      * @param sessionManager the session manager for accessing active sessions
      */
     public ChatManager(SessionManager sessionManager) {
+        this(sessionManager, null, DEFAULT_BUFFER_CAPACITY);
+    }
+    
+    /**
+     * Constructs a new ChatManager with the default grace period and archive cache size.
+     * 
+     * @param sessionManager the session manager for accessing active sessions
+     * @param transcriptStore where every message is written, or null to keep recent messages only
+     * @param bufferCapacity the number of recent messages kept in memory per chat
+     */
+    public ChatManager(SessionManager sessionManager, TranscriptStore transcriptStore, int bufferCapacity) {
+        this(sessionManager, transcriptStore, bufferCapacity, DEFAULT_ENDED_CHAT_GRACE_MS, DEFAULT_RECENT_CHAT_CACHE);
+    }
+    
+    /**
+     * Constructs a new ChatManager.
+     * 
+     * @param sessionManager the session manager for accessing active sessions
+     * @param transcriptStore where every message and ended chat is written, or null to keep memory only
+     * @param bufferCapacity the number of recent messages kept in memory per chat
+     * @param endedChatGraceMs how long an ended chat stays in memory before it is archived
+     * @param recentChatCache the number of archived chats kept in memory
+     */
+    public ChatManager(SessionManager sessionManager, TranscriptStore transcriptStore, int bufferCapacity,
+                       long endedChatGraceMs, int recentChatCache) {
         this.activeChats = new ConcurrentHashMap<>();
-        this.chatQueue = new LinkedBlockingQueue<>();
         this.userStatus = new ConcurrentHashMap<>();
         this.pendingRequests = new ConcurrentHashMap<>();
+        this.requestByUser = new HashMap<>();
         this.chatMessages = new ConcurrentHashMap<>();
         this.userToChat = new ConcurrentHashMap<>();
-        this.waitingForUser = new ConcurrentHashMap<>();
+        this.waitingForUser = new HashMap<>();
+        this.availableByBranch = new HashMap<>();
+        this.userBranch = new HashMap<>();
+        this.usersByBranch = new HashMap<>();
         this.sessionManager = sessionManager;
+        this.transcriptStore = transcriptStore;
+        this.bufferCapacity = bufferCapacity;
+        this.endedChatGraceMs = endedChatGraceMs;
+        this.recentlyEnded = new LinkedHashMap<String, ArchivedChat>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ArchivedChat> eldest) {
+                return size() > recentChatCache;
+            }
+        };
+        this.archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.transcriptWriter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-transcript-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (transcriptStore != null) {
+            this.shutdownHook = new Thread(this::writeAndStop, "chat-transcript-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } else {
+            this.shutdownHook = null;
+        }
         this.chatIdCounter = 1;
     }
     
+    /**
+     * Registers a logged-in user as a possible chat partner.
+     * Called on login.
+     * 
+     * @param username the username
+     * @param branchId the user's branch
+     */
+    public void userLoggedIn(String username, String branchId) {
+        eventHub.open(username);
+        synchronized (matchLock) {
+            userBranch.put(username, branchId);
+            usersByBranch.computeIfAbsent(branchId, k -> new LinkedHashSet<>()).add(username);
+            if (getUserStatus(username) == ChatUserStatus.AVAILABLE) {
+                availableByBranch.computeIfAbsent(branchId, k -> new LinkedHashSet<>()).add(username);
+            }
+        }
+    }
+    
+    /**
+     * Removes a user from matching and cancels the user's waiting request.
+     * Called on logout.
+     * 
+     * @param username the username
+     */
+    public void userLoggedOut(String username) {
+        synchronized (matchLock) {
+            cancelWaiting(username);
+            removeAvailable(username);
+            String branchId = userBranch.remove(username);
+            Set<String> branchUsers = branchId == null ? null : usersByBranch.get(branchId);
+            if (branchUsers != null && branchUsers.remove(username) && branchUsers.isEmpty()) {
+                usersByBranch.remove(branchId);
+            }
+        }
+        eventHub.close(username);
+        publishWaitingChanges();
+    }
+    
     /**
      * User requests a chat - added to queue.
      * Attempts immediate matching; if no match found, request is queued for the requester's branch.
@@ -71,126 +270,89 @@ public class ChatManager {
      * @return "OK;MATCHED;chatId;user1;user2" if matched, "OK;QUEUE;requestId" if queued, "ERROR;..." on failure
      */
     public String requestChat(String requesterUsername, String requesterBranchId) {
-        // Check if user is already in a chat or in queue
-        ChatUserStatus currentStatus = userStatus.get(requesterUsername);
-        if (currentStatus == ChatUserStatus.IN_CHAT) {
-            return "ERROR;User is already in a chat";
-        }
-        if (currentStatus == ChatUserStatus.IN_QUEUE) {
-            return "ERROR;User is already in queue";
-        }
-        
-        // Create new request - synchronize counter increment
-        String requestId;
-        synchronized (counterLock) {
-            requestId = "REQ_" + System.currentTimeMillis() + "_" + chatIdCounter++;
+        try {
+            return enqueueRequest(requesterUsername, requesterBranchId);
+        } finally {
+            publishWaitingChanges();
         }
-        ChatRequest request = new ChatRequest(requestId, requesterUsername, requesterBranchId);
-        
-        // Add to queue
-        chatQueue.offer(request);
-        pendingRequests.put(requestId, request);
-        userStatus.put(requesterUsername, ChatUserStatus.IN_QUEUE);
-        
-        // Attempt immediate matching
-        String matchResult = matchUsers();
-        if (matchResult != null && !matchResult.startsWith("ERROR")) {
-            return matchResult; // Match found
+    }
+    
+    private String enqueueRequest(String requesterUsername, String requesterBranchId) {
+        synchronized (matchLock) {
+            // Check if user is already in a chat or in queue
+            ChatUserStatus currentStatus = userStatus.get(requesterUsername);
+            if (currentStatus == ChatUserStatus.IN_CHAT) {
+                return "ERROR;User is already in a chat";
+            }
+            if (currentStatus == ChatUserStatus.IN_QUEUE) {
+                return "ERROR;User is already in queue";
+            }
+            
+            // Create new request - synchronize counter increment
+            String requestId;
+            synchronized (counterLock) {
+                requestId = "REQ_" + System.currentTimeMillis() + "_" + chatIdCounter++;
+            }
+            ChatRequest request = new ChatRequest(requestId, requesterUsername, requesterBranchId);
+            
+            // Add to the requester's branch queue
+            waitingForUser.computeIfAbsent(requesterBranchId, k -> new LinkedHashMap<>()).put(requestId, request);
+            pendingRequests.put(requestId, request);
+            requestByUser.put(requesterUsername, request);
+            setStatus(requesterUsername, ChatUserStatus.IN_QUEUE);
+            waitingChanged.add(requesterBranchId);
+            
+            // Attempt immediate matching - an older request may be served first
+            String matchResult = matchOldest();
+            if (matchResult != null && request.getStatus() == ChatRequest.RequestStatus.MATCHED) {
+                return matchResult; // Match found
+            }
+            
+            return "OK;QUEUE;" + requestId; // Added to queue
         }
-        
-        // If no match found, save request to branch queue
-        waitingForUser.computeIfAbsent(requesterBranchId, k -> new LinkedBlockingQueue<>()).offer(request);
-        
-        return "OK;QUEUE;" + requestId; // Added to queue
     }
     
     /**
      * Matches users in queue (FIFO, only from different branches).
-     * Called automatically after each new request.
-     * Implements FIFO matching algorithm: takes first pending request, finds available user from different branch.
+     * Called automatically after each new request and when a chat ends.
+     * Takes the oldest waiting request that has an available user in another branch.
+     * Only the head of each branch queue and one user per branch set are looked at,
+     * so the cost depends on the number of branches, not on users or queue length.
      * 
      * @return "OK;MATCHED;chatId;user1;user2" if match found, null if no match available
      */
     public String matchUsers() {
-        if (chatQueue.isEmpty()) {
-            return null; // No requests in queue
+        try {
+            return matchOldest();
+        } finally {
+            publishWaitingChanges();
         }
-        
-        // Find first pending request in queue (FIFO)
-        ChatRequest req1 = null;
-        for (ChatRequest req : chatQueue) {
-            if (req.getStatus() == ChatRequest.RequestStatus.PENDING) {
-                req1 = req;
-                break;
-            }
-        }
-        
-        if (req1 == null) {
-            return null; // No pending requests
-        }
-        
-        // Find available user from different branch
-        String matchedUsername = null;
-        String matchedBranchId = null;
-        
-        Map<String, Session> allSessions = sessionManager.getAllActiveSessions();
-        for (Session session : allSessions.values()) {
-            String username = session.getUsername();
-            String branchId = session.getBranchId();
+    }
+    
+    private String matchOldest() {
+        synchronized (matchLock) {
+            ChatRequest req1 = null;
+            String matchedUsername = null;
             
-            // Only from different branch and available
-            if (!branchId.equals(req1.getRequesterBranchId()) && 
-                getUserStatus(username) == ChatUserStatus.AVAILABLE) {
-                matchedUsername = username;
-                matchedBranchId = branchId;
-                break;
+            for (LinkedHashMap<String, ChatRequest> queue : waitingForUser.values()) {
+                ChatRequest head = queue.values().iterator().next();
+                if (req1 != null && head.getRequestTime() >= req1.getRequestTime()) {
+                    continue; // An older request already has a partner
+                }
+                String partner = findAvailableOutside(head.getRequesterBranchId());
+                if (partner != null) {
+                    req1 = head;
+                    matchedUsername = partner;
+                }
             }
-        }
-        
-        if (matchedUsername == null) {
-            return null; // No available user from different branch found
-        }
-        
-        // Create new chat - synchronize counter increment
-        String chatId;
-        synchronized (counterLock) {
-            chatId = "CHAT_" + System.currentTimeMillis() + "_" + chatIdCounter++;
-        }
-        ChatSession session = new ChatSession(chatId, req1.getRequesterUsername(), matchedUsername);
-        activeChats.put(chatId, session);
-        
-        // Update user statuses
-        userStatus.put(req1.getRequesterUsername(), ChatUserStatus.IN_CHAT);
-        userStatus.put(matchedUsername, ChatUserStatus.IN_CHAT);
-        userToChat.put(req1.getRequesterUsername(), chatId);
-        userToChat.put(matchedUsername, chatId);
-        
-        // Update request status
-        req1.setStatus(ChatRequest.RequestStatus.MATCHED);
-        
-        // Remove from queue
-        chatQueue.remove(req1);
-        pendingRequests.remove(req1.getRequestId());
-        
-        // Remove from branch queue
-        Queue<ChatRequest> branchQueue = waitingForUser.get(req1.getRequesterBranchId());
-        if (branchQueue != null) {
-            branchQueue.remove(req1);
-            if (branchQueue.isEmpty()) {
-                waitingForUser.remove(req1.getRequesterBranchId());
+            
+            if (req1 == null) {
+                return null; // No request with an available user from a different branch
             }
+            
+            String chatId = openChat(req1, matchedUsername);
+            return "OK;MATCHED;" + chatId + ";" + req1.getRequesterUsername() + ";" + matchedUsername;
         }
-        
-        // Create empty message list
-        chatMessages.put(chatId, new ArrayList<>());
-        
-        // System message
-        ChatMessage systemMsg = new ChatMessage(chatId, "SYSTEM", 
-            "Chat started between " + req1.getRequesterUsername() + " and " + matchedUsername,
-            ChatMessage.MessageType.SYSTEM);
-        chatMessages.get(chatId).add(systemMsg);
-        
-        return "OK;MATCHED;" + chatId + ";" + req1.getRequesterUsername() + ";" + matchedUsername;
     }
     
     /**
@@ -210,12 +372,15 @@ public class ChatManager {
         ChatSession session = new ChatSession(chatId, user1, user2);
         activeChats.put(chatId, session);
         
-        userStatus.put(user1, ChatUserStatus.IN_CHAT);
-        userStatus.put(user2, ChatUserStatus.IN_CHAT);
+        synchronized (matchLock) {
+            setStatus(user1, ChatUserStatus.IN_CHAT);
+            setStatus(user2, ChatUserStatus.IN_CHAT);
+        }
         userToChat.put(user1, chatId);
         userToChat.put(user2, chatId);
         
-        chatMessages.put(chatId, new ArrayList<>());
+        chatMessages.put(chatId, new ChatMessageBuffer(chatId, bufferCapacity, transcriptStore, transcriptWriter));
+        eventHub.publish(session.getParticipants(), ChatEventHub.MATCHED + ":" + chatId);
         
         return chatId;
     }
@@ -227,9 +392,10 @@ public class ChatManager {
      * @param chatId the chat ID
      * @param sender the sender's username
      * @param message the message content
+     * @return the stored message, with its sequence number
      * @throws IllegalArgumentException if chat not found, not active, or sender is not a participant
      */
-    public void addMessage(String chatId, String sender, String message) {
+    public ChatMessage addMessage(String chatId, String sender, String message) {
         ChatSession session = activeChats.get(chatId);
         if (session == null || !session.isActive()) {
             throw new IllegalArgumentException("Chat not found or not active: " + chatId);
@@ -239,32 +405,47 @@ public class ChatManager {
             throw new IllegalArgumentException("User " + sender + " is not a participant in chat " + chatId);
         }
         
-        ChatMessage chatMessage = new ChatMessage(chatId, sender, message, ChatMessage.MessageType.TEXT);
-        chatMessages.get(chatId).add(chatMessage);
+        ChatMessage stored = chatMessages.get(chatId).append(sender, message, ChatMessage.MessageType.TEXT);
+        eventHub.publish(session.getParticipants(), ChatEventHub.MESSAGE + ":" + chatId);
+        return stored;
     }
     
     /**
      * Ends a chat session.
-     * Updates user statuses to AVAILABLE and attempts to match waiting users.
+     * Updates user statuses to AVAILABLE, attempts to match waiting users, stores the chat's
+     * metadata and schedules the chat to leave memory after the grace period.
      * 
      * @param chatId the chat ID to end
      */
     public void endChat(String chatId) {
         ChatSession session = activeChats.get(chatId);
-        if (session == null) {
-            return;
+        if (session == null || !session.end()) {
+            return; // Unknown or already ended
         }
         
-        session.end();
-        
-        // Update user statuses
-        for (String username : session.getParticipants()) {
-            userStatus.put(username, ChatUserStatus.AVAILABLE);
-            userToChat.remove(username);
+        if (transcriptStore != null) {
+            try {
+                transcriptStore.saveSession(session);
+            } catch (IOException e) {
+                System.err.println("Error saving chat " + chatId + ": " + e.getMessage());
+            }
         }
+        archiver.schedule(() -> archiveChat(chatId), endedChatGraceMs, TimeUnit.MILLISECONDS);
+        eventHub.publish(session.getParticipants(), ChatEventHub.ENDED + ":" + chatId);
         
-        // Attempt new matching for users in queue
-        matchUsers();
+        synchronized (matchLock) {
+            // Update user statuses
+            for (String username : session.getParticipants()) {
+                setStatus(username, ChatUserStatus.AVAILABLE);
+                userToChat.remove(username);
+            }
+            
+            // Attempt new matching for users in queue - the freed users may serve several requests
+            while (matchOldest() != null) {
+                // keep matching
+            }
+        }
+        publishWaitingChanges();
     }
     
     /**
@@ -294,15 +475,19 @@ public class ChatManager {
         
         // Add user to chat
         session.addParticipant(username);
-        userStatus.put(username, ChatUserStatus.IN_CHAT);
+        synchronized (matchLock) {
+            setStatus(username, ChatUserStatus.IN_CHAT);
+        }
         userToChat.put(username, chatId);
         
         // System message
         String roleLabel = "admin".equals(role) ? "Admin" : "Shift manager";
-        ChatMessage systemMsg = new ChatMessage(chatId, "SYSTEM",
+        chatMessages.get(chatId).append("SYSTEM",
             roleLabel + " " + username + " joined the chat",
             ChatMessage.MessageType.SYSTEM);
-        chatMessages.get(chatId).add(systemMsg);
+        Set<String> participants = session.getParticipants();
+        eventHub.publish(participants, ChatEventHub.JOINED + ":" + chatId);
+        eventHub.publish(participants, ChatEventHub.MESSAGE + ":" + chatId);
     }
     
     /**
@@ -317,17 +502,67 @@ public class ChatManager {
     
     /**
      * Gets the chat history (all messages) for a specific chat.
-     * Returns a defensive copy to prevent external modification.
+     * Returns a new list - messages that are not in memory are read from the transcript.
      * 
      * @param chatId the chat ID
      * @return a list of chat messages, or empty list if chat not found
      */
     public List<ChatMessage> getChatHistory(String chatId) {
-        List<ChatMessage> messages = chatMessages.get(chatId);
+        return getChatMessagesSince(chatId, 0);
+    }
+    
+    /**
+     * Gets the messages of a chat that are newer than a given sequence number.
+     * 
+     * @param chatId the chat ID
+     * @param afterSequence the last sequence number the caller already has (0 for all messages)
+     * @return the newer messages, oldest first, or empty list if chat not found
+     */
+    public List<ChatMessage> getChatMessagesSince(String chatId, long afterSequence) {
+        ChatMessageBuffer messages = chatMessages.get(chatId);
         if (messages == null) {
+            ArchivedChat archived;
+            synchronized (recentlyEnded) {
+                archived = recentlyEnded.get(chatId);
+            }
+            messages = archived != null ? archived.messages : null;
+        }
+        if (messages != null) {
+            return messages.since(afterSequence);
+        }
+        if (transcriptStore == null) {
+            return new ArrayList<>();
+        }
+        // Chat from before the last restart - only its transcript is left
+        try {
+            return transcriptStore.read(chatId, afterSequence + 1, Long.MAX_VALUE);
+        } catch (IOException e) {
+            System.err.println("Error reading chat transcript " + chatId + ": " + e.getMessage());
             return new ArrayList<>();
         }
-        return new ArrayList<>(messages);
+    }
+    
+    /**
+     * Gets the sequence number of the newest message in a chat.
+     * 
+     * @param chatId the chat ID
+     * @return the last sequence number, or 0 if the chat has no messages or is not found
+     */
+    public long getLastSequence(String chatId) {
+        ChatMessageBuffer messages = chatMessages.get(chatId);
+        return messages == null ? 0 : messages.getLastSequence();
+    }
+    
+    /**
+     * Waits for chat events of a user (long-poll).
+     * 
+     * @param username the user
+     * @param timeoutMs the longest time to wait, in milliseconds
+     * @return the events (e.g. "MESSAGE:chatId", "WAITING"), or empty list on timeout
+     * @see ChatEventHub
+     */
+    public List<String> awaitEvents(String username, long timeoutMs) {
+        return eventHub.await(username, timeoutMs);
     }
     
     /**
@@ -346,46 +581,35 @@ public class ChatManager {
     
     /**
      * Cancels a chat request in the queue.
-     * Removes the request from both the main queue and the branch queue.
+     * Removes the request from the branch queue and makes the user available again.
      * 
      * @param username the username whose request to cancel
      * @return true if request was found and cancelled, false otherwise
      */
     public boolean cancelChatRequest(String username) {
-        ChatUserStatus status = userStatus.get(username);
-        if (status != ChatUserStatus.IN_QUEUE) {
-            return false;
+        try {
+            return cancelWaiting(username);
+        } finally {
+            publishWaitingChanges();
         }
-        
-        // Find the request in queue
-        ChatRequest toRemove = null;
-        for (ChatRequest req : chatQueue) {
-            if (req.getRequesterUsername().equals(username) && 
-                req.getStatus() == ChatRequest.RequestStatus.PENDING) {
-                toRemove = req;
-                break;
+    }
+    
+    private boolean cancelWaiting(String username) {
+        synchronized (matchLock) {
+            if (userStatus.get(username) != ChatUserStatus.IN_QUEUE) {
+                return false;
             }
-        }
-        
-        if (toRemove != null) {
-            chatQueue.remove(toRemove);
-            pendingRequests.remove(toRemove.getRequestId());
-            toRemove.setStatus(ChatRequest.RequestStatus.CANCELLED);
             
-            // Remove from branch queue
-            Queue<ChatRequest> branchQueue = waitingForUser.get(toRemove.getRequesterBranchId());
-            if (branchQueue != null) {
-                branchQueue.remove(toRemove);
-                if (branchQueue.isEmpty()) {
-                    waitingForUser.remove(toRemove.getRequesterBranchId());
-                }
+            ChatRequest toRemove = requestByUser.get(username);
+            if (toRemove == null || toRemove.getStatus() != ChatRequest.RequestStatus.PENDING) {
+                return false;
             }
             
-            userStatus.put(username, ChatUserStatus.AVAILABLE);
+            removeWaiting(toRemove);
+            toRemove.setStatus(ChatRequest.RequestStatus.CANCELLED);
+            setStatus(username, ChatUserStatus.AVAILABLE);
             return true;
         }
-        
-        return false;
     }
     
     /**
@@ -395,7 +619,96 @@ public class ChatManager {
      * @return a Map of chatId to ChatSession
      */
     public Map<String, ChatSession> getAllActiveChats() {
-        return new HashMap<>(activeChats);
+        Map<String, ChatSession> result = new HashMap<>();
+        for (ChatSession session : activeChats.values()) {
+            if (session.isActive()) {
+                result.put(session.getChatId(), session);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Finds a chat by ID - active, recently ended or archived on disk.
+     * 
+     * @param chatId the chat ID
+     * @return the ChatSession, or null if no such chat exists
+     */
+    public ChatSession findChat(String chatId) {
+        ChatSession session = activeChats.get(chatId);
+        if (session != null) {
+            return session;
+        }
+        synchronized (recentlyEnded) {
+            ArchivedChat archived = recentlyEnded.get(chatId);
+            if (archived != null) {
+                return archived.session;
+            }
+        }
+        if (transcriptStore == null) {
+            return null;
+        }
+        try {
+            session = transcriptStore.loadSession(chatId);
+        } catch (IOException e) {
+            System.err.println("Error loading chat " + chatId + ": " + e.getMessage());
+            return null;
+        }
+        if (session != null) {
+            synchronized (recentlyEnded) {
+                recentlyEnded.putIfAbsent(chatId, new ArchivedChat(session, null));
+            }
+        }
+        return session;
+    }
+    
+    /**
+     * Writes a chat's queued messages to its transcript on the calling thread.
+     * Used before reading the transcript file directly (e.g. to export the chat).
+     * 
+     * @param chatId the chat ID
+     * @return true if the transcript now has every message of the chat (also if the chat is not in memory)
+     */
+    public boolean flushTranscript(String chatId) {
+        ChatMessageBuffer messages = chatMessages.get(chatId);
+        if (messages == null) {
+            synchronized (recentlyEnded) {
+                ArchivedChat archived = recentlyEnded.get(chatId);
+                messages = archived != null ? archived.messages : null;
+            }
+        }
+        return messages == null || messages.writePending();
+    }
+    
+    /**
+     * Stops the archiver and transcript writer threads and writes the messages still queued.
+     * Ended chats that are still in their grace period stay in memory.
+     */
+    public void shutdown() {
+        writeAndStop();
+        if (shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down - the hook is running or has run
+            }
+        }
+    }
+    
+    private void writeAndStop() {
+        archiver.shutdownNow();
+        transcriptWriter.shutdownNow();
+        List<ChatMessageBuffer> buffers = new ArrayList<>(chatMessages.values());
+        synchronized (recentlyEnded) {
+            for (ArchivedChat archived : recentlyEnded.values()) {
+                if (archived.messages != null) {
+                    buffers.add(archived.messages);
+                }
+            }
+        }
+        for (ChatMessageBuffer messages : buffers) {
+            messages.writePending();
+        }
     }
     
     /**
@@ -417,119 +730,203 @@ public class ChatManager {
      * @return a list of pending ChatRequests, or empty list if none
      */
     public List<ChatRequest> getWaitingRequestsForBranch(String branchId) {
-        Queue<ChatRequest> queue = waitingForUser.get(branchId);
-        if (queue == null || queue.isEmpty()) {
-            return new ArrayList<>();
-        }
-        // Return list of pending requests (PENDING status)
-        List<ChatRequest> result = new ArrayList<>();
-        for (ChatRequest req : queue) {
-            if (req.getStatus() == ChatRequest.RequestStatus.PENDING) {
-                result.add(req);
+        synchronized (matchLock) {
+            LinkedHashMap<String, ChatRequest> queue = waitingForUser.get(branchId);
+            if (queue == null) {
+                return new ArrayList<>();
             }
+            // Queues hold only PENDING requests, oldest first
+            return new ArrayList<>(queue.values());
         }
-        return result;
     }
     
     /**
      * User accepts a chat request.
-     * The request is located in the queue of the requester's branch (not the acceptor's branch).
-     * Searches all other branch queues to find the request.
+     * The request must come from a branch other than the acceptor's branch.
      * 
      * @param acceptingUsername the username of the user accepting the request
      * @param requestId the request ID to accept
      * @return "OK;MATCHED;chatId;requester;acceptor" if successful, "ERROR;..." on failure
      */
     public String acceptChatRequest(String acceptingUsername, String requestId) {
-        // Check that user is available
-        if (getUserStatus(acceptingUsername) != ChatUserStatus.AVAILABLE) {
-            return "ERROR;User is not available";
+        try {
+            return acceptWaiting(acceptingUsername, requestId);
+        } finally {
+            publishWaitingChanges();
         }
-        
+    }
+    
+    private String acceptWaiting(String acceptingUsername, String requestId) {
         Session acceptingSession = sessionManager.getSessionByUsername(acceptingUsername);
-        if (acceptingSession == null) {
-            return "ERROR;User not logged in";
-        }
-        
-        String acceptingBranchId = acceptingSession.getBranchId();
-        
-        // Search for request in all queues (request is in requester's branch queue)
-        ChatRequest request = null;
-        String requesterBranchId = null;
         
-        for (Map.Entry<String, Queue<ChatRequest>> entry : waitingForUser.entrySet()) {
-            String branchId = entry.getKey();
-            // Only queues from other branches
-            if (!branchId.equals(acceptingBranchId)) {
-                Queue<ChatRequest> branchQueue = entry.getValue();
-                for (ChatRequest req : branchQueue) {
-                    if (req.getRequestId().equals(requestId) && 
-                        req.getStatus() == ChatRequest.RequestStatus.PENDING) {
-                        request = req;
-                        requesterBranchId = branchId;
-                        break;
-                    }
-                }
-                if (request != null) break;
+        synchronized (matchLock) {
+            // Check that user is available
+            if (getUserStatus(acceptingUsername) != ChatUserStatus.AVAILABLE) {
+                return "ERROR;User is not available";
             }
+            
+            if (acceptingSession == null) {
+                return "ERROR;User not logged in";
+            }
+            
+            // Only requests from other branches
+            ChatRequest request = pendingRequests.get(requestId);
+            if (request == null ||
+                request.getStatus() != ChatRequest.RequestStatus.PENDING ||
+                request.getRequesterBranchId().equals(acceptingSession.getBranchId())) {
+                return "ERROR;Request not found or already processed";
+            }
+            
+            // Check that requester is still in queue
+            if (getUserStatus(request.getRequesterUsername()) != ChatUserStatus.IN_QUEUE) {
+                // Requester is no longer in queue - remove the request
+                removeWaiting(request);
+                return "ERROR;Requester is no longer in queue";
+            }
+            
+            String chatId = openChat(request, acceptingUsername);
+            return "OK;MATCHED;" + chatId + ";" + request.getRequesterUsername() + ";" + acceptingUsername;
         }
-        
-        if (request == null) {
-            return "ERROR;Request not found or already processed";
+    }
+    
+    /**
+     * Moves an ended chat from the active maps to the recently ended cache.
+     * Runs on the archiver thread when the chat's grace period is over.
+     */
+    private void archiveChat(String chatId) {
+        ChatSession session = activeChats.get(chatId);
+        if (session == null || session.isActive()) {
+            return;
         }
-        
-        // Check that requester is still in queue
-        if (getUserStatus(request.getRequesterUsername()) != ChatUserStatus.IN_QUEUE) {
-            // Requester is no longer in queue - remove the request
-            Queue<ChatRequest> branchQueue = waitingForUser.get(requesterBranchId);
-            if (branchQueue != null) {
-                branchQueue.remove(request);
-                if (branchQueue.isEmpty()) {
-                    waitingForUser.remove(requesterBranchId);
-                }
-            }
-            return "ERROR;Requester is no longer in queue";
+        ChatMessageBuffer messages = chatMessages.get(chatId);
+        synchronized (recentlyEnded) {
+            recentlyEnded.put(chatId, new ArchivedChat(session, messages));
         }
-        
+        // Remove only after the cache has it, so readers always find the chat somewhere
+        activeChats.remove(chatId);
+        chatMessages.remove(chatId);
+    }
+    
+    // ========== Matching helpers (called with matchLock held) ==========
+    
+    /**
+     * Starts a chat between a waiting requester and a partner and removes the request from the queues.
+     * 
+     * @return the new chat ID
+     */
+    private String openChat(ChatRequest request, String partnerUsername) {
         // Create chat - synchronize counter increment
         String chatId;
         synchronized (counterLock) {
             chatId = "CHAT_" + System.currentTimeMillis() + "_" + chatIdCounter++;
         }
-        ChatSession session = new ChatSession(chatId, request.getRequesterUsername(), acceptingUsername);
+        String requesterUsername = request.getRequesterUsername();
+        ChatSession session = new ChatSession(chatId, requesterUsername, partnerUsername);
         activeChats.put(chatId, session);
         
         // Update user statuses
-        userStatus.put(request.getRequesterUsername(), ChatUserStatus.IN_CHAT);
-        userStatus.put(acceptingUsername, ChatUserStatus.IN_CHAT);
-        userToChat.put(request.getRequesterUsername(), chatId);
-        userToChat.put(acceptingUsername, chatId);
+        setStatus(requesterUsername, ChatUserStatus.IN_CHAT);
+        setStatus(partnerUsername, ChatUserStatus.IN_CHAT);
+        userToChat.put(requesterUsername, chatId);
+        userToChat.put(partnerUsername, chatId);
         
-        // Update request status
+        // Update request status and remove from queues
+        removeWaiting(request);
         request.setStatus(ChatRequest.RequestStatus.MATCHED);
         
-        // Remove from queue
-        chatQueue.remove(request);
-        pendingRequests.remove(request.getRequestId());
+        // Create message buffer with system message
+        ChatMessageBuffer messages = new ChatMessageBuffer(chatId, bufferCapacity, transcriptStore, transcriptWriter);
+        messages.append("SYSTEM",
+            "Chat started between " + requesterUsername + " and " + partnerUsername,
+            ChatMessage.MessageType.SYSTEM);
+        chatMessages.put(chatId, messages);
+        eventHub.publish(session.getParticipants(), ChatEventHub.MATCHED + ":" + chatId);
         
-        // Remove from branch queue
-        Queue<ChatRequest> branchQueue = waitingForUser.get(requesterBranchId);
+        return chatId;
+    }
+    
+    /**
+     * Finds an available logged-in user outside a branch.
+     * 
+     * @return the username, or null if every available user is in that branch
+     */
+    private String findAvailableOutside(String branchId) {
+        for (Map.Entry<String, LinkedHashSet<String>> entry : availableByBranch.entrySet()) {
+            if (!entry.getKey().equals(branchId)) {
+                // Sets are removed when they become empty
+                return entry.getValue().iterator().next();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Changes a user's status and keeps the availability sets in step.
+     */
+    private void setStatus(String username, ChatUserStatus status) {
+        userStatus.put(username, status);
+        if (status == ChatUserStatus.AVAILABLE) {
+            String branchId = userBranch.get(username);
+            if (branchId != null) {
+                availableByBranch.computeIfAbsent(branchId, k -> new LinkedHashSet<>()).add(username);
+            }
+        } else {
+            removeAvailable(username);
+        }
+    }
+    
+    private void removeAvailable(String username) {
+        String branchId = userBranch.get(username);
+        if (branchId == null) {
+            return;
+        }
+        Set<String> available = availableByBranch.get(branchId);
+        if (available != null && available.remove(username) && available.isEmpty()) {
+            availableByBranch.remove(branchId);
+        }
+    }
+    
+    private void removeWaiting(ChatRequest request) {
+        pendingRequests.remove(request.getRequestId());
+        requestByUser.remove(request.getRequesterUsername(), request);
+        LinkedHashMap<String, ChatRequest> branchQueue = waitingForUser.get(request.getRequesterBranchId());
         if (branchQueue != null) {
-            branchQueue.remove(request);
+            branchQueue.remove(request.getRequestId());
             if (branchQueue.isEmpty()) {
-                waitingForUser.remove(requesterBranchId);
+                waitingForUser.remove(request.getRequesterBranchId());
             }
         }
-        
-        // Create empty message list
-        chatMessages.put(chatId, new ArrayList<>());
-        
-        // System message
-        ChatMessage systemMsg = new ChatMessage(chatId, "SYSTEM",
-            "Chat started between " + request.getRequesterUsername() + " and " + acceptingUsername,
-            ChatMessage.MessageType.SYSTEM);
-        chatMessages.get(chatId).add(systemMsg);
-        
-        return "OK;MATCHED;" + chatId + ";" + request.getRequesterUsername() + ";" + acceptingUsername;
+        waitingChanged.add(request.getRequesterBranchId());
+    }
+    
+    // ========== Waiting notifications ==========
+    
+    /**
+     * Tells the logged-in users who may accept requests of a changed queue - the users of
+     * every other branch - that the waiting requests changed.
+     * The recipients are taken from the branch index under matchLock, and the events are
+     * published after it is released. Does nothing while the caller still holds matchLock;
+     * the outermost public method publishes once its changes are complete.
+     */
+    private void publishWaitingChanges() {
+        if (Thread.holdsLock(matchLock)) {
+            return;
+        }
+        List<String> recipients = new ArrayList<>();
+        synchronized (matchLock) {
+            if (waitingChanged.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<String, LinkedHashSet<String>> branch : usersByBranch.entrySet()) {
+                for (String changedBranchId : waitingChanged) {
+                    if (!branch.getKey().equals(changedBranchId)) {
+                        recipients.addAll(branch.getValue());
+                        break;
+                    }
+                }
+            }
+            waitingChanged.clear();
+        }
+        eventHub.publish(recipients, ChatEventHub.WAITING);
     }
 }
@@ -0,0 +1,211 @@
+package model.managers;
+
+import model.ChatMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages of one chat: a bounded ring of the most recent messages in front of the chat's
+ * transcript (disk).
+ * Every message gets the next sequence number of the chat. append() only adds it to memory
+ * and hands the transcript write to the chat manager's single transcript writer thread, so
+ * a caller holding ChatManager's matchLock never waits for the disk. Messages stay in an
+ * "unwritten" list until the transcript has them; if a write fails they are kept and the
+ * write is retried, so the ring can drop its oldest message when full without losing it.
+ * Readers ask for "everything after N" and receive only what is new; messages older than the
+ * ring come from the unwritten list or the transcript. Writers and ring readers are serialized
+ * on the buffer; the transcript is read and written outside that lock.
+ *
+ * @author FinalProject
+ */
+class ChatMessageBuffer {
+
+    private final String chatId;
+    private final ChatMessage[] ring;
+    private final ChatManager.TranscriptStore transcript;
+    private final ScheduledExecutorService transcriptWriter;
+
+    /** Index of the oldest message in the ring */
+    private int head = 0;
+    private int count = 0;
+    private long nextSequence = 1;
+
+    /** Messages not yet in the transcript, oldest first */
+    private final List<ChatMessage> unwritten = new ArrayList<>();
+    /** Highest sequence number the transcript has */
+    private long writtenSequence = 0;
+    /** True while a transcript write is queued and has not started */
+    private boolean writeQueued = false;
+    /** Serializes transcript writes of this chat, so they stay in sequence order */
+    private final Object writeLock = new Object();
+
+    /** Delay before a failed transcript write is tried again */
+    private static final long RETRY_DELAY_MS = 1000;
+
+    /**
+     * Constructs an empty buffer.
+     *
+     * @param chatId the chat ID
+     * @param capacity the number of recent messages kept in memory
+     * @param transcript where every message is written, or null to keep recent messages only
+     * @param transcriptWriter the thread that writes the transcript (unused without a transcript)
+     */
+    ChatMessageBuffer(String chatId, int capacity, ChatManager.TranscriptStore transcript,
+                      ScheduledExecutorService transcriptWriter) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.chatId = chatId;
+        this.ring = new ChatMessage[capacity];
+        this.transcript = transcript;
+        this.transcriptWriter = transcriptWriter;
+    }
+
+    /**
+     * Appends a message, assigns it the next sequence number and queues its transcript write.
+     * When the ring is full, the oldest message leaves the ring; it is in the transcript or
+     * still in the unwritten list.
+     *
+     * @param sender the sender's username (or "SYSTEM")
+     * @param text the message content
+     * @param type the message type
+     * @return the stored message
+     */
+    synchronized ChatMessage append(String sender, String text, ChatMessage.MessageType type) {
+        ChatMessage message = new ChatMessage(chatId, sender, text, type, nextSequence++);
+        if (transcript != null) {
+            unwritten.add(message);
+            scheduleWrite(0);
+        }
+        if (count == ring.length) {
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            count--;
+        }
+        ring[(head + count) % ring.length] = message;
+        count++;
+        return message;
+    }
+
+    /**
+     * Gets the messages with a sequence number greater than a given one, oldest first.
+     *
+     * @param afterSequence the last sequence number the caller already has (0 for all messages)
+     * @return a new list of the newer messages
+     */
+    List<ChatMessage> since(long afterSequence) {
+        List<ChatMessage> recent;
+        List<ChatMessage> pending = new ArrayList<>();
+        long oldestInRing;
+        long written;
+        synchronized (this) {
+            oldestInRing = nextSequence - count;
+            long from = Math.max(afterSequence + 1, oldestInRing);
+            recent = new ArrayList<>((int) Math.max(0, nextSequence - from));
+            for (long seq = from; seq < nextSequence; seq++) {
+                recent.add(ring[(int) ((head + (seq - oldestInRing)) % ring.length)]);
+            }
+            written = writtenSequence;
+            // Messages that left the ring before they reached the transcript
+            for (ChatMessage message : unwritten) {
+                if (message.getSequence() >= oldestInRing) {
+                    break;
+                }
+                if (message.getSequence() > afterSequence) {
+                    pending.add(message);
+                }
+            }
+        }
+        if (afterSequence + 1 >= oldestInRing || transcript == null) {
+            return recent;
+        }
+        List<ChatMessage> result = new ArrayList<>();
+        long lastOnDisk = Math.min(written, oldestInRing - 1);
+        if (afterSequence + 1 <= lastOnDisk) {
+            try {
+                result.addAll(transcript.read(chatId, afterSequence + 1, lastOnDisk));
+            } catch (IOException e) {
+                System.err.println("Error reading chat transcript " + chatId + ": " + e.getMessage());
+            }
+        }
+        result.addAll(pending);
+        result.addAll(recent);
+        return result;
+    }
+
+    /**
+     * Writes the unwritten messages to the transcript.
+     * Runs on the transcript writer thread; ChatManager also calls it directly when a chat's
+     * transcript must be complete on disk (e.g. before an export). If the write fails, the
+     * messages stay unwritten and the write is tried again after RETRY_DELAY_MS.
+     *
+     * @return true if every message appended before the call is in the transcript
+     */
+    boolean writePending() {
+        if (transcript == null) {
+            return true;
+        }
+        synchronized (writeLock) {
+            List<ChatMessage> batch;
+            synchronized (this) {
+                writeQueued = false;
+                if (unwritten.isEmpty()) {
+                    return true;
+                }
+                batch = new ArrayList<>(unwritten);
+            }
+            try {
+                transcript.append(chatId, batch);
+            } catch (IOException | RuntimeException e) {
+                // Kept in memory - readers still get them, and the next write retries
+                System.err.println("Error writing chat transcript " + chatId + " (" + batch.size()
+                        + " messages kept for retry): " + e.getMessage());
+                synchronized (this) {
+                    scheduleWrite(RETRY_DELAY_MS);
+                }
+                return false;
+            }
+            synchronized (this) {
+                unwritten.subList(0, batch.size()).clear();
+                writtenSequence = batch.get(batch.size() - 1).getSequence();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Gets the number of messages not yet in the transcript.
+     *
+     * @return the unwritten message count
+     */
+    synchronized int getUnwrittenCount() {
+        return unwritten.size();
+    }
+
+    /** Queues a transcript write unless one is already queued. Called with the buffer lock held. */
+    private void scheduleWrite(long delayMs) {
+        if (writeQueued || transcriptWriter == null) {
+            return;
+        }
+        try {
+            transcriptWriter.schedule(this::writePending, delayMs, TimeUnit.MILLISECONDS);
+            writeQueued = true;
+        } catch (RejectedExecutionException e) {
+            // Writer stopped - the messages stay unwritten until written directly
+        }
+    }
+
+    /**
+     * Gets the sequence number of the newest message.
+     *
+     * @return the last sequence number, or 0 if the chat has no messages
+     */
+    synchronized long getLastSequence() {
+        return nextSequence - 1;
+    }
+}
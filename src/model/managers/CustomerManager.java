@@ -1,7 +1,5 @@
 package model.managers;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
 import model.Customer;
@@ -10,23 +8,29 @@ import model.ReturningCustomer;
 import model.VipCustomer;
 
 import model.exceptions.DuplicateCustomerException;
+import util.Snapshot;
 
 /**
  * Manages customer data and operations.
  * Implements Factory Pattern - creates different customer types (NewCustomer, ReturningCustomer, VipCustomer)
  * based on the customerType parameter.
+ * Customers are published as an immutable, versioned Snapshot that is replaced on every write,
+ * so lookups and list views take no lock and copy nothing.
  * 
  * @author FinalProject
  */
 public class CustomerManager {
 
-    private Map<String, Customer> customers;
+    /** Current customers - replaced, never modified */
+    private volatile Snapshot<String, Customer> customers = Snapshot.empty();
+
+    /** Serializes writers; readers never take it */
+    private final Object writeLock = new Object();
 
     /**
      * Constructs a new CustomerManager with an empty customer map.
      */
     public CustomerManager() {
-        customers = Collections.synchronizedMap(new HashMap<>());
     }
 
     /**
@@ -65,14 +69,14 @@ public class CustomerManager {
                 throw new IllegalArgumentException("Unknown customer type");
         }
 
-        // Synchronize for atomic check-and-put operation
-        synchronized (customers) {
-            if (customers.containsKey(idNumber)) {
+        // Synchronize writers for atomic check-and-put operation
+        synchronized (writeLock) {
+            if (customers.getMap().containsKey(idNumber)) {
                 throw new DuplicateCustomerException(
                         "Customer with ID " + idNumber + " already exists"
                 );
             }
-            customers.put(idNumber, customer);
+            customers = customers.with(idNumber, customer);
         }
     }
 
@@ -83,14 +87,13 @@ public class CustomerManager {
      * @return the Customer object, or null if not found
      */
     public Customer getCustomerById(String idNumber) {
-        synchronized (customers) {
-            return customers.get(idNumber);
-        }
+        return customers.getMap().get(idNumber);
     }
     
     /**
      * Updates customer details.
-     * If customer type changes, creates a new customer object of the new type.
+     * Publishes a new customer object (of the new type if the type changes); the published
+     * object is never modified, so earlier snapshots keep the old details.
      * 
      * @param idNumber the customer's ID number
      * @param fullName the new full name (null or empty to keep current)
@@ -102,9 +105,9 @@ public class CustomerManager {
                                String fullName,
                                String phone,
                                String customerType) {
-        // Synchronize for atomic update operation
-        synchronized (customers) {
-            Customer customer = customers.get(idNumber);
+        // Synchronize writers for atomic update operation
+        synchronized (writeLock) {
+            Customer customer = customers.getMap().get(idNumber);
             if (customer == null) {
                 throw new IllegalArgumentException("Customer with ID " + idNumber + " not found");
             }
@@ -114,30 +117,21 @@ public class CustomerManager {
             String newPhone = (phone != null && !phone.trim().isEmpty()) ? phone : customer.getPhone();
             String newType = (customerType != null && !customerType.trim().isEmpty()) ? customerType.toUpperCase() : getCustomerType(customer);
             
-            // If customer type changed, create new customer object of new type
-            String currentType = getCustomerType(customer);
-            if (!currentType.equals(newType)) {
-                // Create new customer of different type
-                Customer newCustomer;
-                switch (newType) {
-                    case "NEW":
-                        newCustomer = new NewCustomer(newFullName, idNumber, newPhone);
-                        break;
-                    case "RETURNING":
-                        newCustomer = new ReturningCustomer(newFullName, idNumber, newPhone);
-                        break;
-                    case "VIP":
-                        newCustomer = new VipCustomer(newFullName, idNumber, newPhone);
-                        break;
-                    default:
-                        throw new IllegalArgumentException("Invalid customer type: " + newType);
-                }
-                customers.put(idNumber, newCustomer);
-            } else {
-                // Only update name and phone
-                customer.setFullName(newFullName);
-                customer.setPhone(newPhone);
+            Customer newCustomer;
+            switch (newType) {
+                case "NEW":
+                    newCustomer = new NewCustomer(newFullName, idNumber, newPhone);
+                    break;
+                case "RETURNING":
+                    newCustomer = new ReturningCustomer(newFullName, idNumber, newPhone);
+                    break;
+                case "VIP":
+                    newCustomer = new VipCustomer(newFullName, idNumber, newPhone);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid customer type: " + newType);
             }
+            customers = customers.with(idNumber, newCustomer);
         }
     }
     
@@ -165,23 +159,30 @@ public class CustomerManager {
      * @throws IllegalArgumentException if customer not found
      */
     public void deleteCustomer(String idNumber) {
-        synchronized (customers) {
-            Customer customer = customers.remove(idNumber);
-            if (customer == null) {
+        synchronized (writeLock) {
+            if (!customers.getMap().containsKey(idNumber)) {
                 throw new IllegalArgumentException("Customer with ID " + idNumber + " not found");
             }
+            customers = customers.without(idNumber);
         }
     }
     
     /**
-     * Gets all customers (for saving to storage).
-     * Returns a defensive copy to prevent external modification.
+     * Gets all customers (for display and saving to storage).
+     * Returns the current immutable snapshot - O(1), no copy.
      * 
-     * @return a Map of idNumber to Customer
+     * @return a read-only Map of idNumber to Customer
      */
     public Map<String, Customer> getAllCustomers() {
-        synchronized (customers) {
-            return new HashMap<>(customers);
-        }
+        return customers.getMap();
+    }
+    
+    /**
+     * Gets the current customers together with their version.
+     * 
+     * @return the current snapshot
+     */
+    public Snapshot<String, Customer> getSnapshot() {
+        return customers;
     }
 }
@@ -9,24 +9,31 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import util.Snapshot;
+
 /**
  * Manages employee data and operations.
  * Maintains maps for efficient lookup: by employeeNumber, by idNumber, and by phone (for duplicate checking).
+ * The main map is published as an immutable, versioned Snapshot that is replaced on every write,
+ * so lookups and list views take no lock and copy nothing. The secondary maps are only
+ * used by writers and are guarded by the same write lock.
  * 
  * @author FinalProject
  */
 public class EmployeeManager {
     
-    private Map<String, Employee> employees;  // employeeNumber -> Employee
+    private volatile Snapshot<String, Employee> employees = Snapshot.empty();  // employeeNumber -> Employee
     private Map<String, Employee> employeesByIdNumber;  // idNumber -> Employee (for duplicate checking)
     private Map<String, Employee> employeesByPhone;  // phone -> Employee (for duplicate checking)
     private Map<String, String> usernameToEmployeeNumber;  // username -> employeeNumber
     
+    /** Serializes writers; readers never take it */
+    private final Object writeLock = new Object();
+    
     /**
      * Constructs a new EmployeeManager with empty employee maps.
      */
     public EmployeeManager() {
-        employees = Collections.synchronizedMap(new HashMap<>());
         employeesByIdNumber = Collections.synchronizedMap(new HashMap<>());
         employeesByPhone = Collections.synchronizedMap(new HashMap<>());
         usernameToEmployeeNumber = Collections.synchronizedMap(new HashMap<>());
@@ -60,10 +67,10 @@ public class EmployeeManager {
         // Validate phone number (must be exactly 10 digits)
         validatePhoneNumber(phone);
         
-        // Synchronize on employees (main map) - ALWAYS use same lock order to prevent deadlock
-        synchronized (employees) {
+        // All writers hold the write lock, so the check and the updates of all maps are atomic
+        synchronized (writeLock) {
             // Check if employee already exists (by employee number, ID number, or phone)
-            if (employees.containsKey(employeeNumber)) {
+            if (employees.getMap().containsKey(employeeNumber)) {
                 throw new DuplicateEmployeeException("Employee with number " + employeeNumber + " already exists");
             }
             
@@ -80,7 +87,7 @@ public class EmployeeManager {
                 fullName, idNumber, phone, bankAccount, 
                 employeeNumber, role, branchId
             );
-            employees.put(employeeNumber, employee);
+            employees = employees.with(employeeNumber, employee);
             employeesByIdNumber.put(idNumber, employee);
             employeesByPhone.put(phone, employee);
         }
@@ -141,25 +148,30 @@ public class EmployeeManager {
      */
     public Employee getEmployee(String employeeNumber) 
             throws EmployeeNotFoundException {
-        synchronized (employees) {
-            Employee employee = employees.get(employeeNumber);
-            if (employee == null) {
-                throw new EmployeeNotFoundException("Employee with number " + employeeNumber + " not found");
-            }
-            return employee;
+        Employee employee = employees.getMap().get(employeeNumber);
+        if (employee == null) {
+            throw new EmployeeNotFoundException("Employee with number " + employeeNumber + " not found");
         }
+        return employee;
     }
     
     /**
-     * Gets all employees (for saving to storage).
-     * Returns a defensive copy to prevent external modification.
+     * Gets all employees (for display and saving to storage).
+     * Returns the current immutable snapshot - O(1), no copy.
      * 
-     * @return a Map of employeeNumber to Employee
+     * @return a read-only Map of employeeNumber to Employee
      */
     public Map<String, Employee> getAllEmployees() {
-        synchronized (employees) {
-            return new HashMap<>(employees);
-        }
+        return employees.getMap();
+    }
+    
+    /**
+     * Gets the current employees together with their version.
+     * 
+     * @return the current snapshot
+     */
+    public Snapshot<String, Employee> getSnapshot() {
+        return employees;
     }
     
     /**
@@ -184,15 +196,13 @@ public class EmployeeManager {
                               String role,
                               String branchId)
             throws EmployeeNotFoundException, InvalidPhoneException, DuplicateEmployeeException {
-        synchronized (employees) {
-            Employee employee = employees.get(employeeNumber);
+        synchronized (writeLock) {
+            Employee employee = employees.getMap().get(employeeNumber);
             if (employee == null) {
                 throw new EmployeeNotFoundException("Employee with number " + employeeNumber + " not found");
             }
             
-            if (fullName != null && !fullName.trim().isEmpty()) {
-                employee.setFullName(fullName);
-            }
+            String newPhone = employee.getPhone();
             if (phone != null && !phone.trim().isEmpty()) {
                 validatePhoneNumber(phone);  // Validate before updating
                 
@@ -201,24 +211,21 @@ public class EmployeeManager {
                 if (existingEmployee != null && !existingEmployee.getEmployeeNumber().equals(employeeNumber)) {
                     throw new DuplicateEmployeeException("Employee with phone number " + phone + " already exists");
                 }
-                
-                // Remove old phone from map if it changed
-                String oldPhone = employee.getPhone();
-                if (!oldPhone.equals(phone)) {
-                    employeesByPhone.remove(oldPhone);
-                    employee.setPhone(phone);
-                    employeesByPhone.put(phone, employee);
-                }
-            }
-            if (bankAccount != null && !bankAccount.trim().isEmpty()) {
-                employee.setBankAccount(bankAccount);
-            }
-            if (role != null && !role.trim().isEmpty()) {
-                employee.setRole(role);
-            }
-            if (branchId != null && !branchId.trim().isEmpty()) {
-                employee.setBranchId(branchId);
+                newPhone = phone;
             }
+            
+            // Publish an updated copy - the published Employee is never modified
+            Employee updated = new Employee(
+                    (fullName != null && !fullName.trim().isEmpty()) ? fullName : employee.getFullName(),
+                    employee.getIdNumber(),
+                    newPhone,
+                    (bankAccount != null && !bankAccount.trim().isEmpty()) ? bankAccount : employee.getBankAccount(),
+                    employeeNumber,
+                    (role != null && !role.trim().isEmpty()) ? role : employee.getRole(),
+                    (branchId != null && !branchId.trim().isEmpty()) ? branchId : employee.getBranchId());
+            employeesByPhone.remove(employee.getPhone());
+            employeesByPhone.put(newPhone, updated);
+            employees = employees.with(employeeNumber, updated);
         }
     }
     
@@ -231,12 +238,12 @@ public class EmployeeManager {
      */
     public void deleteEmployee(String employeeNumber)
             throws EmployeeNotFoundException {
-        synchronized (employees) {
-            Employee employee = employees.get(employeeNumber);
+        synchronized (writeLock) {
+            Employee employee = employees.getMap().get(employeeNumber);
             if (employee == null) {
                 throw new EmployeeNotFoundException("Employee with number " + employeeNumber + " not found");
             }
-            employees.remove(employeeNumber);
+            employees = employees.without(employeeNumber);
             employeesByIdNumber.remove(employee.getIdNumber());
             employeesByPhone.remove(employee.getPhone());
             
@@ -262,15 +269,13 @@ public class EmployeeManager {
      * @return a Map of employeeNumber to Employee for the specified branch
      */
     public Map<String, Employee> getEmployeesByBranch(String branchId) {
-        synchronized (employees) {
-            Map<String, Employee> result = new HashMap<>();
-            for (Employee emp : employees.values()) {
-                if (emp.getBranchId().equals(branchId)) {
-                    result.put(emp.getEmployeeNumber(), emp);
-                }
+        Map<String, Employee> result = new HashMap<>();
+        for (Employee emp : employees.getMap().values()) {
+            if (emp.getBranchId().equals(branchId)) {
+                result.put(emp.getEmployeeNumber(), emp);
             }
-            return result;
         }
+        return result;
     }
     
     /**
@@ -280,9 +285,7 @@ public class EmployeeManager {
      * @return true if employee exists, false otherwise
      */
     public boolean employeeExists(String employeeNumber) {
-        synchronized (employees) {
-            return employees.containsKey(employeeNumber);
-        }
+        return employees.getMap().containsKey(employeeNumber);
     }
     
     /**
@@ -293,7 +296,7 @@ public class EmployeeManager {
      * @param employeeNumber the employee number
      */
     public void registerUsernameMapping(String username, String employeeNumber) {
-        synchronized (employees) {
+        synchronized (writeLock) {
             usernameToEmployeeNumber.put(username, employeeNumber);
         }
     }
@@ -305,8 +308,6 @@ public class EmployeeManager {
      * @return the employee number, or null if not found
      */
     public String getEmployeeNumberByUsername(String username) {
-        synchronized (employees) {
-            return usernameToEmployeeNumber.get(username);
-        }
+        return usernameToEmployeeNumber.get(username);
     }
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+package model.managers;
+
+import model.StockHold;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel that expires stock holds.
+ * One daemon thread advances the wheel every TICK_MS; each slot holds the holds whose
+ * deadline falls on that slot, with a round counter for deadlines further away than one turn.
+ * Scheduling is an O(1) append to a lock-free queue that the timer thread moves into the
+ * wheel on its next tick, so thousands of holds cost one small object each and no threads.
+ * Holds that finish early (sold or released) are not removed from their slot - the timer
+ * skips them when their slot comes round, which keeps cancellation free.
+ *
+ * @author FinalProject
+ */
+public class HoldTimerWheel {
+
+    /** Resolution of the wheel */
+    static final long TICK_MS = 100;
+
+    /** Number of slots (one turn = WHEEL_SIZE * TICK_MS) */
+    private static final int WHEEL_SIZE = 512;
+
+    /** A scheduled hold and the number of full turns left before it is due */
+    private static class Timeout {
+        final StockHold hold;
+        long remainingRounds;
+
+        Timeout(StockHold hold) {
+            this.hold = hold;
+        }
+    }
+
+    private final Consumer<StockHold> onExpire;
+    private final Queue<StockHold> pending = new ConcurrentLinkedQueue<>();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Timeout>[] wheel = new ArrayDeque[WHEEL_SIZE];  // timer thread only
+    private final long startTime = System.currentTimeMillis();
+    private final Thread timerThread;
+    private volatile boolean running = true;
+    private long tick = 0;  // timer thread only
+
+    /**
+     * Constructs and starts a HoldTimerWheel.
+     *
+     * @param onExpire called on the timer thread for every hold whose deadline has passed
+     *                 (the hold may already be finished - the callback decides)
+     */
+    public HoldTimerWheel(Consumer<StockHold> onExpire) {
+        this.onExpire = onExpire;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.timerThread = new Thread(this::runTimer, "stock-hold-timer");
+        this.timerThread.setDaemon(true);
+        this.timerThread.start();
+    }
+
+    /**
+     * Schedules a hold to expire at its getExpiresAt() time.
+     *
+     * @param hold the hold to schedule
+     */
+    public void schedule(StockHold hold) {
+        pending.add(hold);
+    }
+
+    /**
+     * Stops the timer thread. Holds still on the wheel are not expired.
+     */
+    public void shutdown() {
+        running = false;
+        timerThread.interrupt();
+    }
+
+    private void runTimer() {
+        while (running) {
+            long deadline = startTime + (tick + 1) * TICK_MS;
+            long sleep = deadline - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            tick++;
+            transferPending();
+            expireSlot(wheel[(int) (tick % WHEEL_SIZE)]);
+        }
+    }
+
+    private void transferPending() {
+        StockHold hold;
+        while ((hold = pending.poll()) != null) {
+            if (!hold.isActive()) {
+                continue;
+            }
+            long dueTick = Math.max(tick, (hold.getExpiresAt() - startTime + TICK_MS - 1) / TICK_MS);
+            Timeout timeout = new Timeout(hold);
+            timeout.remainingRounds = (dueTick - tick) / WHEEL_SIZE;
+            wheel[(int) (dueTick % WHEEL_SIZE)].add(timeout);
+        }
+    }
+
+    private void expireSlot(ArrayDeque<Timeout> slot) {
+        Iterator<Timeout> iterator = slot.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (!timeout.hold.isActive()) {
+                iterator.remove();
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                iterator.remove();
+                try {
+                    onExpire.accept(timeout.hold);
+                } catch (RuntimeException e) {
+                    System.err.println("Error expiring stock hold " + timeout.hold.getHoldId() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
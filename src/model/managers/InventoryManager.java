@@ -3,6 +3,11 @@ package model.managers;
 import model.Branch;
 import model.Inventory;
 import model.Product;
+import model.StockHold;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import model.exceptions.InvalidQuantityException;
 import model.exceptions.InsufficientStockException;
@@ -11,11 +16,20 @@ import model.exceptions.InsufficientStockException;
  * Manages inventory operations for branches.
  * Acts as a facade to Branch and Inventory classes, providing a clean API for inventory management.
  * Each branch maintains its own separate inventory.
+ * Also manages time-limited stock holds: a hold reserves stock between price calculation
+ * and sale, and is expired by a HoldTimerWheel if the sale never happens.
  * 
  * @author FinalProject
  */
 public class InventoryManager {
 
+    /** How long a stock hold lasts if it is not sold or released */
+    public static final long HOLD_TTL_MS = 120_000;
+
+    private final Map<String, StockHold> holds = new ConcurrentHashMap<>();
+    private final AtomicLong holdCounter = new AtomicLong();
+    private final HoldTimerWheel holdTimer = new HoldTimerWheel(this::expireHold);
+
     /**
      * Adds a product to a branch's inventory.
      * 
@@ -68,6 +82,22 @@ public class InventoryManager {
         inventory.sellProduct(product, quantity);
     }
 
+    /**
+     * Sells several products from a branch's inventory atomically (all lines or none).
+     * 
+     * @param branch the branch to sell from
+     * @param items the products to sell and their quantities
+     * @throws InvalidQuantityException if any quantity is less than or equal to 0
+     * @throws InsufficientStockException if there is not enough stock for any of the lines
+     */
+    public void sellProducts(Branch branch,
+                             Map<Product, Integer> items)
+            throws InvalidQuantityException,
+            InsufficientStockException {
+
+        branch.getInventory().sellProducts(items);
+    }
+
     /**
      * Gets the current quantity of a product in a branch's inventory.
      * 
@@ -96,4 +126,118 @@ public class InventoryManager {
         Inventory inventory = branch.getInventory();
         inventory.removeProduct(product, quantity);
     }
+
+    // ========== Stock Holds ==========
+
+    /**
+     * Reserves stock in a branch for a limited time.
+     * 
+     * @param branch the branch to hold stock in
+     * @param product the product to hold
+     * @param quantity the quantity to hold (must be greater than 0)
+     * @param owner username of the user creating the hold
+     * @return the new hold
+     * @throws InvalidQuantityException if quantity is less than or equal to 0
+     * @throws InsufficientStockException if there is not enough available stock
+     */
+    public StockHold holdStock(Branch branch,
+                               Product product,
+                               int quantity,
+                               String owner)
+            throws InvalidQuantityException,
+            InsufficientStockException {
+
+        branch.getInventory().reserve(product.getProductId(), quantity);
+        long now = System.currentTimeMillis();
+        StockHold hold = new StockHold("HOLD_" + now + "_" + holdCounter.incrementAndGet(),
+                branch, product.getProductId(), quantity, owner, now + HOLD_TTL_MS);
+        holds.put(hold.getHoldId(), hold);
+        holdTimer.schedule(hold);
+        return hold;
+    }
+
+    /**
+     * Releases a hold and returns its stock to the branch.
+     * Releasing a hold that is unknown, finished or owned by another user does nothing.
+     * 
+     * @param holdId the hold ID
+     * @param owner username of the user releasing the hold
+     * @return true if the hold was released by this call
+     */
+    public boolean releaseHold(String holdId, String owner) {
+        StockHold hold = holds.get(holdId);
+        if (hold == null || !hold.getOwner().equals(owner) || !hold.finish(StockHold.HoldStatus.RELEASED)) {
+            return false;
+        }
+        holds.remove(holdId);
+        hold.getBranch().getInventory().releaseReserved(hold.getProductId(), hold.getQuantity());
+        return true;
+    }
+
+    /**
+     * Sells a product using a stock hold.
+     * If the hold is still active and matches the sale (same owner, branch and product),
+     * the held units are sold - any quantity above the hold is taken from available stock
+     * and any quantity below it goes back to available stock.
+     * Otherwise (hold unknown, expired or for something else) this is a normal sale.
+     * 
+     * @param branch the branch to sell from
+     * @param product the product to sell
+     * @param quantity the quantity to sell (must be greater than 0)
+     * @param holdId the hold to use
+     * @param owner username of the user making the sale
+     * @throws InvalidQuantityException if quantity is less than or equal to 0
+     * @throws InsufficientStockException if there is not enough stock available
+     */
+    public void sellProduct(Branch branch,
+                            Product product,
+                            int quantity,
+                            String holdId,
+                            String owner)
+            throws InvalidQuantityException,
+            InsufficientStockException {
+
+        if (quantity <= 0) {
+            throw new InvalidQuantityException("Quantity must be greater than 0");
+        }
+        StockHold hold = holds.get(holdId);
+        if (hold == null
+                || hold.getBranch() != branch
+                || !hold.getProductId().equals(product.getProductId())
+                || !hold.getOwner().equals(owner)
+                || !hold.finish(StockHold.HoldStatus.CONSUMED)) {
+            sellProduct(branch, product, quantity);
+            return;
+        }
+        holds.remove(holdId);
+        Inventory inventory = branch.getInventory();
+        if (!inventory.sellReserved(hold.getProductId(), hold.getQuantity(), quantity)) {
+            // Not enough extra stock beyond the hold - give the held units back and fail the sale
+            inventory.releaseReserved(hold.getProductId(), hold.getQuantity());
+            throw new InsufficientStockException("Not enough stock for product");
+        }
+    }
+
+    /**
+     * Gets the number of holds that are currently active.
+     * 
+     * @return the active hold count
+     */
+    public int getActiveHoldCount() {
+        return holds.size();
+    }
+
+    /**
+     * Stops the hold timer thread.
+     */
+    public void shutdown() {
+        holdTimer.shutdown();
+    }
+
+    private void expireHold(StockHold hold) {
+        if (hold.finish(StockHold.HoldStatus.EXPIRED)) {
+            holds.remove(hold.getHoldId());
+            hold.getBranch().getInventory().releaseReserved(hold.getProductId(), hold.getQuantity());
+        }
+    }
 }
@@ -2,30 +2,143 @@ package model.managers;
 
 import model.LogEntry;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+import util.ChunkedAppendLog;
+import util.MultiProducerRingBuffer;
+import util.MultiProducerRingBuffer.BackpressurePolicy;
+import util.MultiProducerRingBuffer.WaitStrategy;
 
 /**
  * Manages system log entries.
  * Maintains a list of all log entries for tracking system activities.
- * 
+ * Logging is asynchronous: addLog() only publishes the entry into a preallocated ring buffer,
+ * and a single consumer thread appends entries, in batches, to the in-memory log and to the
+ * log file. Readers see their own writes - getLogs() first waits for the consumer to catch up
+ * with everything published before the call.
+ * Secondary indexes (chatId and actionType to the positions of their entries) are updated as
+ * entries reach memory, so the entries of one chat or one action type are found without
+ * scanning the whole log.
+ *
  * @author FinalProject
  */
 public class LogManager {
 
-    private List<LogEntry> logs;
+    /**
+     * Destination for log entries taken off the ring (the log file).
+     */
+    @FunctionalInterface
+    public interface LogWriter {
+        /**
+         * Persists a batch of entries, in order.
+         *
+         * @param entries the entries to persist
+         * @throws IOException if writing fails
+         */
+        void append(List<LogEntry> entries) throws IOException;
+    }
+
+    /** Default ring size - enough to absorb a burst without blocking producers */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /** Maximum entries written to the file in one append */
+    private static final int MAX_BATCH = 512;
+
+    private static final long CATCH_UP_PARK_NANOS = 50_000;
+
+    /** Idle count is capped so it never wraps back into the spinning range */
+    private static final int MAX_IDLE_ROUNDS = 1_000;
+
+    /**
+     * Positions in the log of the entries with one index key, in log order.
+     * Appended by one writer at a time (under the LogManager lock) and read without locking:
+     * the array is written before the size is published, and a grown array is a copy, so a
+     * reader that reads the size first sees every position below it.
+     */
+    private static final class Postings {
+        private volatile int[] positions = new int[4];
+        private volatile int size = 0;
+
+        void add(int position) {
+            int[] current = positions;
+            int n = size;
+            if (n == current.length) {
+                current = Arrays.copyOf(current, n * 2);
+                positions = current;
+            }
+            current[n] = position;
+            size = n + 1;
+        }
+
+        int[] toArray() {
+            int n = size;
+            return Arrays.copyOf(positions, n);
+        }
+    }
+
+    private final ChunkedAppendLog<LogEntry> logs = new ChunkedAppendLog<>();
+    private final Map<String, Postings> byChatId = new ConcurrentHashMap<>();
+    private final Map<String, Postings> byActionType = new ConcurrentHashMap<>();
+    private final MultiProducerRingBuffer<LogEntry> ring;
+    private final LogWriter writer;
+    private final Thread consumer;
+    private final Thread shutdownHook;
+
+    /** Highest ring sequence that is in memory and was handed to the writer */
+    private volatile long processed = -1;
+    private volatile boolean running = true;
 
     /**
-     * Constructs a new LogManager with an empty logs list.
+     * Constructs a new LogManager that keeps logs in memory only.
      */
     public LogManager() {
-        this.logs = Collections.synchronizedList(new ArrayList<>());
+        this(null);
+    }
+
+    /**
+     * Constructs a new LogManager with the default ring size, a blocking consumer (parked until
+     * an entry is published, so an idle server does not keep waking it) and blocking
+     * backpressure (no log entry is ever dropped).
+     *
+     * @param writer where to persist entries, or null to keep them in memory only
+     */
+    public LogManager(LogWriter writer) {
+        this(writer, DEFAULT_CAPACITY, WaitStrategy.BLOCKING, BackpressurePolicy.BLOCK);
+    }
+
+    /**
+     * Constructs a new LogManager and starts its consumer thread.
+     *
+     * @param writer where to persist entries, or null to keep them in memory only
+     * @param capacity the ring size (rounded up to a power of two)
+     * @param waitStrategy how the consumer waits for new entries
+     * @param backpressurePolicy what addLog() does when the ring is full
+     */
+    public LogManager(LogWriter writer, int capacity, WaitStrategy waitStrategy,
+                      BackpressurePolicy backpressurePolicy) {
+        this.writer = writer;
+        this.ring = new MultiProducerRingBuffer<>(capacity, waitStrategy, backpressurePolicy);
+        this.consumer = new Thread(this::consumeLoop, "log-writer");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+        // Write what is still on the ring if the server is stopped without shutdown()
+        this.shutdownHook = new Thread(this::drainAndStop, "log-writer-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
     }
 
     /**
      * Adds a log entry to the logs.
-     * 
+     * Returns after publishing to the ring; the entry is written by the consumer thread.
+     *
      * @param logEntry the log entry to add (ignored if null)
      */
     public void addLog(LogEntry logEntry) {
@@ -33,18 +146,240 @@ public class LogManager {
             return;
         }
 
-        logs.add(logEntry);
+        if (!running) {
+            // Consumer is gone - write through so the entry is not lost
+            synchronized (this) {
+                appendToMemory(Collections.singletonList(logEntry));
+                persist(Collections.singletonList(logEntry));
+            }
+            return;
+        }
+        ring.publish(logEntry);
+        if (!running) {
+            // Stopped while this entry was being published - the consumer may have exited
+            // without seeing it
+            drainAfterStop();
+        }
+    }
+
+    /**
+     * Adds a log entry loaded from storage.
+     * Goes straight to memory and is not written back to the log file.
+     *
+     * @param logEntry the stored log entry (ignored if null)
+     */
+    public void restoreLog(LogEntry logEntry) {
+        if (logEntry != null) {
+            appendToMemory(Collections.singletonList(logEntry));
+        }
     }
 
     /**
      * Gets all log entries.
-     * Returns a defensive copy to prevent external modification and ensure thread-safe iteration.
-     * 
-     * @return a copy of the list of all log entries
+     * Includes every entry added before the call. Returns a read-only view - no copy.
+     *
+     * @return a read-only list of all log entries
      */
     public List<LogEntry> getLogs() {
-        synchronized (logs) {
-            return new ArrayList<>(logs);
+        awaitProcessed(ring.getClaimedSequence());
+        return logs.snapshot();
+    }
+
+    /**
+     * Gets the entries of one chat, in log order.
+     * Includes every entry added before the call. Costs O(entries of the chat).
+     *
+     * @param chatId the chat ID
+     * @return a new list of the chat's entries (empty if none)
+     */
+    public List<LogEntry> getLogsByChatId(String chatId) {
+        awaitProcessed(ring.getClaimedSequence());
+        return entriesAt(chatId == null ? null : byChatId.get(chatId));
+    }
+
+    /**
+     * Gets the entries of one action type, in log order.
+     * Includes every entry added before the call. Costs O(entries of the type).
+     *
+     * @param actionType the action type name (e.g. "SALE")
+     * @return a new list of the entries (empty if none)
+     */
+    public List<LogEntry> getLogsByActionType(String actionType) {
+        awaitProcessed(ring.getClaimedSequence());
+        return entriesAt(actionType == null ? null : byActionType.get(actionType));
+    }
+
+    /**
+     * Gets the entries of several action types, in log order.
+     * A type named more than once is read once, so no entry is returned twice.
+     *
+     * @param actionTypes the action type names
+     * @return a new list of the entries (empty if none)
+     */
+    public List<LogEntry> getLogsByActionTypes(Collection<String> actionTypes) {
+        awaitProcessed(ring.getClaimedSequence());
+        List<int[]> lists = new ArrayList<>();
+        int total = 0;
+        for (String actionType : new LinkedHashSet<>(actionTypes)) {
+            Postings postings = byActionType.get(actionType);
+            if (postings != null) {
+                int[] positions = postings.toArray();
+                lists.add(positions);
+                total += positions.length;
+            }
+        }
+        if (lists.size() == 1) {
+            return entriesAt(lists.get(0));
+        }
+        // Each list is in log order - merge them instead of sorting
+        int[] merged = new int[total];
+        int[] cursor = new int[lists.size()];
+        for (int out = 0; out < total; out++) {
+            int best = -1;
+            for (int i = 0; i < lists.size(); i++) {
+                if (cursor[i] < lists.get(i).length
+                        && (best < 0 || lists.get(i)[cursor[i]] < lists.get(best)[cursor[best]])) {
+                    best = i;
+                }
+            }
+            merged[out] = lists.get(best)[cursor[best]++];
+        }
+        return entriesAt(merged);
+    }
+
+    /**
+     * Waits until every entry added before the call has been handed to the log writer.
+     */
+    public void flush() {
+        awaitProcessed(ring.getClaimedSequence());
+    }
+
+    /**
+     * Gets the number of entries dropped because the ring was full
+     * (only with BackpressurePolicy.DROP).
+     *
+     * @return the drop count
+     */
+    public long getDroppedCount() {
+        return ring.getDroppedCount();
+    }
+
+    /**
+     * Writes the remaining entries and stops the consumer thread.
+     * Entries added afterwards are written synchronously.
+     */
+    public void shutdown() {
+        drainAndStop();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down - the hook is running or has run
+        }
+    }
+
+    private void drainAndStop() {
+        running = false;
+        ring.wakeConsumer();
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes entries left on the ring after the consumer has stopped, on the calling thread.
+     * Waits for the consumer to exit first, so the ring still has a single consumer.
+     */
+    private void drainAfterStop() {
+        boolean interrupted = false;
+        while (consumer.isAlive()) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        synchronized (this) {
+            List<LogEntry> batch = new ArrayList<>();
+            while (ring.drainTo(batch, MAX_BATCH) > 0) {
+                appendToMemory(batch);
+                persist(batch);
+                processed = ring.getConsumedSequence();
+                batch.clear();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitProcessed(long sequence) {
+        while (processed < sequence && consumer.isAlive()) {
+            LockSupport.parkNanos(CATCH_UP_PARK_NANOS);
+        }
+    }
+
+    private void consumeLoop() {
+        List<LogEntry> batch = new ArrayList<>(MAX_BATCH);
+        int idleRounds = 0;
+        while (true) {
+            int count = ring.drainTo(batch, MAX_BATCH);
+            if (count == 0) {
+                // Stop only when no producer is between claiming and publishing a slot
+                if (!running && ring.getClaimedSequence() == ring.getConsumedSequence()) {
+                    break;
+                }
+                ring.waitForData(idleRounds);
+                idleRounds = Math.min(idleRounds + 1, MAX_IDLE_ROUNDS);
+                continue;
+            }
+            idleRounds = 0;
+            appendToMemory(batch);
+            persist(batch);
+            processed = ring.getConsumedSequence();
+            batch.clear();
+        }
+    }
+
+    /**
+     * Appends entries to the in-memory log and indexes them.
+     * Synchronized so the consumer, restoreLog() and the write-through path never index concurrently.
+     */
+    private synchronized void appendToMemory(List<LogEntry> entries) {
+        int position = logs.appendAll(entries);
+        for (LogEntry entry : entries) {
+            if (entry.getChatId() != null) {
+                byChatId.computeIfAbsent(entry.getChatId(), k -> new Postings()).add(position);
+            }
+            if (entry.getActionType() != null) {
+                byActionType.computeIfAbsent(entry.getActionType(), k -> new Postings()).add(position);
+            }
+            position++;
+        }
+    }
+
+    private List<LogEntry> entriesAt(Postings postings) {
+        return postings == null ? new ArrayList<>() : entriesAt(postings.toArray());
+    }
+
+    private List<LogEntry> entriesAt(int[] positions) {
+        List<LogEntry> entries = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            entries.add(logs.get(position));
+        }
+        return entries;
+    }
+
+    private void persist(List<LogEntry> entries) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.append(entries);
+        } catch (IOException | RuntimeException e) {
+            // Keep the consumer alive - a dead consumer would stall every producer
+            System.err.println("Error saving logs: " + e.getMessage());
         }
     }
 }
@@ -1,50 +1,59 @@
 package model.managers;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
 import model.Product;
+import util.Snapshot;
 
 /**
  * Manages product data and operations.
  * Products are identified by their productId.
+ * Products are published as an immutable, versioned Snapshot that is replaced on every write,
+ * so lookups and list views take no lock and copy nothing. A published Product is never
+ * changed - a re-price publishes a new one - so a sale always keeps the price it was made at.
  * 
  * @author FinalProject
  */
 public class ProductManager {
 
-    private Map<String, Product> products;
+    /** Current products - replaced, never modified */
+    private volatile Snapshot<String, Product> products = Snapshot.empty();
+
+    /** Serializes writers; readers never take it */
+    private final Object writeLock = new Object();
 
     /**
      * Constructs a new ProductManager with an empty product map.
      */
     public ProductManager() {
-        products = Collections.synchronizedMap(new HashMap<>());
     }
 
     /**
      * Gets a product by ID, creating it if it doesn't exist.
-     * If the product exists, updates its price if different (tolerance: 0.01).
+     * If the product exists with a different price (tolerance: 0.01), a re-priced copy
+     * replaces it; the existing Product object is never changed.
      * 
      * @param productId the product ID
      * @param name the product name
      * @param category the product category
      * @param price the product price
-     * @return the Product object (existing or newly created)
+     * @return the current Product object (existing, re-priced or newly created)
      */
     public Product getProduct(String productId, String name, String category, double price) {
-        // Synchronize for atomic check-and-put operation
-        synchronized (products) {
-            Product product = products.get(productId);
+        // Synchronize writers for atomic check-and-put operation
+        synchronized (writeLock) {
+            Product product = products.getMap().get(productId);
 
             if (product == null) {
                 product = new Product(productId, name, category, price);
-                products.put(productId, product);
+                products = products.with(productId, product);
             } else {
-                // Update price if different (tolerance: 0.01)
+                // Update price if different (tolerance: 0.01). A new Product is published
+                // instead of changing the old one: sales and earlier snapshots keep the
+                // Product they were made with, and with it the price they were sold at.
                 if (Math.abs(product.getPrice() - price) > 0.01) {
-                    product.setPrice(price);
+                    product = new Product(productId, product.getName(), product.getCategory(), price);
+                    products = products.with(productId, product);
                 }
             }
 
@@ -59,21 +68,26 @@ public class ProductManager {
      * @return the Product object, or null if not found
      */
     public Product getExistingProduct(String productId) {
-        synchronized (products) {
-            return products.get(productId);
-        }
+        return products.getMap().get(productId);
     }
     
     /**
-     * Gets all products (for saving to storage).
-     * Returns a defensive copy to prevent external modification.
+     * Gets all products (for display and saving to storage).
+     * Returns the current immutable snapshot - O(1), no copy.
      * 
-     * @return a Map of productId to Product
+     * @return a read-only Map of productId to Product
      */
     public Map<String, Product> getAllProducts() {
-        synchronized (products) {
-            return new HashMap<>(products);
-        }
+        return products.getMap();
+    }
+    
+    /**
+     * Gets the current products together with their version.
+     * 
+     * @return the current snapshot
+     */
+    public Snapshot<String, Product> getSnapshot() {
+        return products;
     }
     
     /**
@@ -84,8 +98,8 @@ public class ProductManager {
      */
     public void addProductDirectly(Product product) {
         if (product != null) {
-            synchronized (products) {
-                products.put(product.getProductId(), product);
+            synchronized (writeLock) {
+                products = products.with(product.getProductId(), product);
             }
         }
     }
@@ -96,8 +110,8 @@ public class ProductManager {
      * @param productId the product ID to delete
      */
     public void deleteProduct(String productId) {
-        synchronized (products) {
-            products.remove(productId);
+        synchronized (writeLock) {
+            products = products.without(productId);
         }
     }
 
@@ -0,0 +1,606 @@
+package model.managers;
+
+import model.Product;
+import model.Sale;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column store of the sales - the only place recorded sales are kept.
+ * Every sale is one row spread over parallel primitive arrays, and the string fields (product,
+ * product name, category, branch, employee, customer, cart) are dictionary-encoded to small int
+ * ordinals. The product's name, category and price are stored per row, as the product had them
+ * when sold, so a re-priced or recategorized product never changes its earlier sales.
+ * Reports scan the columns in tight loops over int/long arrays, with no Sale, Product or String
+ * object touched per row; sale(row) rebuilds a Sale only when one is needed (saving).
+ * Rows live in fixed-size chunks that are never moved, like ChunkedAppendLog: one writer
+ * appends (under the SalesManager lock) and publishes the new row count through a volatile
+ * field, and scans read any published prefix without locking. Each chunk also keeps the
+ * lowest and highest day of its rows, so a scan limited to some days skips chunks without
+ * any of those days.
+ *
+ * @author FinalProject
+ */
+public final class SalesColumns {
+
+    /** The dimensions a scan can group by */
+    public enum Dimension {
+        PRODUCT,
+        BRANCH,
+        CATEGORY
+    }
+
+    /** Ordinal stored for a null value */
+    private static final int NONE = -1;
+
+    /** Day stored for a sale whose date cannot be read */
+    static final int NO_DAY = Integer.MIN_VALUE;
+
+    /**
+     * Maps the values of one string dimension to dense ordinals 0..size-1.
+     * Written by the column writer only; read without locking.
+     */
+    public static final class Dictionary {
+        private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[16];
+        private volatile int size = 0;
+
+        int ordinal(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer ordinal = ordinals.get(value);
+            if (ordinal != null) {
+                return ordinal;
+            }
+            int next = size;
+            String[] current = values;
+            if (next == current.length) {
+                current = Arrays.copyOf(current, next * 2);
+                values = current;
+            }
+            current[next] = value;
+            size = next + 1;
+            ordinals.put(value, next);
+            return next;
+        }
+
+        /**
+         * Gets the ordinal of a value.
+         *
+         * @param value the value
+         * @return the ordinal, or -1 if the value never occurred
+         */
+        public int lookup(String value) {
+            Integer ordinal = value == null ? null : ordinals.get(value);
+            return ordinal == null ? NONE : ordinal;
+        }
+
+        /**
+         * Gets the value of an ordinal.
+         *
+         * @param ordinal an ordinal below size(), or -1
+         * @return the value, or null for -1
+         */
+        public String value(int ordinal) {
+            return ordinal == NONE ? null : values[ordinal];
+        }
+
+        /** @return the number of distinct values */
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Quantity and revenue per ordinal of the grouped dimension.
+     */
+    public static final class GroupTotals {
+        public final long[] quantity;
+        public final long[] revenueAgorot;
+
+        public GroupTotals(int groups) {
+            this.quantity = new long[groups];
+            this.revenueAgorot = new long[groups];
+        }
+
+        /**
+         * Adds another partial result into this one.
+         *
+         * @param other totals of the same dimension (may have fewer groups)
+         */
+        public void add(GroupTotals other) {
+            for (int i = 0; i < other.quantity.length; i++) {
+                quantity[i] += other.quantity[i];
+                revenueAgorot[i] += other.revenueAgorot[i];
+            }
+        }
+    }
+
+    /**
+     * Quantity and revenue per (day, branch, product) cell, in an open-addressing table keyed
+     * by the packed cell, so a scan adds a row without allocating. Each cell also remembers its
+     * first row, which gives the cell's labels and the order the cells appeared in.
+     */
+    public static final class CellTotals {
+        private long[] keys = new long[64];
+        private long[] quantity = new long[64];
+        private long[] revenueAgorot = new long[64];
+        private int[] firstRow = new int[64];
+        private int count = 0;
+
+        public CellTotals() {
+            Arrays.fill(firstRow, NONE);
+        }
+
+        void add(long key, long cellQuantity, long cellRevenue, int row) {
+            int slot = slotOf(key);
+            if (firstRow[slot] == NONE) {
+                keys[slot] = key;
+                firstRow[slot] = row;
+                count++;
+            } else if (row < firstRow[slot]) {
+                firstRow[slot] = row;
+            }
+            quantity[slot] += cellQuantity;
+            revenueAgorot[slot] += cellRevenue;
+            if (count * 2 > keys.length) {
+                grow();
+            }
+        }
+
+        /**
+         * Adds another partial result into this one.
+         *
+         * @param other cells of another range of rows
+         */
+        public void add(CellTotals other) {
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                if (other.firstRow[slot] != NONE) {
+                    add(other.keys[slot], other.quantity[slot], other.revenueAgorot[slot], other.firstRow[slot]);
+                }
+            }
+        }
+
+        /** @return the number of cells */
+        public int size() {
+            return count;
+        }
+
+        /**
+         * Gets the first row of every cell, in row order - the order the cells appeared in.
+         *
+         * @return the first rows
+         */
+        public List<Integer> firstRows() {
+            int[] rows = new int[count];
+            int n = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (firstRow[slot] != NONE) {
+                    rows[n++] = firstRow[slot];
+                }
+            }
+            Arrays.sort(rows);
+            List<Integer> result = new ArrayList<>(count);
+            for (int row : rows) {
+                result.add(row);
+            }
+            return result;
+        }
+
+        /**
+         * Gets the quantity of the cell of a row.
+         *
+         * @param key the cell key of the row (SalesColumns.cellKey)
+         * @return the cell's quantity
+         */
+        public long quantity(long key) {
+            return quantity[slotOf(key)];
+        }
+
+        /**
+         * Gets the revenue of the cell of a row.
+         *
+         * @param key the cell key of the row (SalesColumns.cellKey)
+         * @return the cell's revenue in agorot
+         */
+        public long revenueAgorot(long key) {
+            return revenueAgorot[slotOf(key)];
+        }
+
+        private int slotOf(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (mix(key) & mask);
+            while (firstRow[slot] != NONE && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldQuantity = quantity;
+            long[] oldRevenue = revenueAgorot;
+            int[] oldFirst = firstRow;
+            int capacity = oldKeys.length * 2;
+            keys = new long[capacity];
+            quantity = new long[capacity];
+            revenueAgorot = new long[capacity];
+            firstRow = new int[capacity];
+            Arrays.fill(firstRow, NONE);
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldFirst[slot] != NONE) {
+                    int to = slotOf(oldKeys[slot]);
+                    keys[to] = oldKeys[slot];
+                    quantity[to] = oldQuantity[slot];
+                    revenueAgorot[to] = oldRevenue[slot];
+                    firstRow[to] = oldFirst[slot];
+                }
+            }
+        }
+
+        private static long mix(long key) {
+            key *= 0x9E3779B97F4A7C15L;
+            return key ^ (key >>> 29);
+        }
+    }
+
+    static final int CHUNK_BITS = 14;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** Rows of one chunk, column by column */
+    private static final class Chunk {
+        final int[] product = new int[CHUNK_SIZE];
+        final int[] productName = new int[CHUNK_SIZE];
+        final int[] category = new int[CHUNK_SIZE];
+        final double[] productPrice = new double[CHUNK_SIZE];
+        final int[] branch = new int[CHUNK_SIZE];
+        final int[] employee = new int[CHUNK_SIZE];
+        final int[] customer = new int[CHUNK_SIZE];
+        final int[] saleGroup = new int[CHUNK_SIZE];
+        final int[] quantity = new int[CHUNK_SIZE];
+        final int[] epochDay = new int[CHUNK_SIZE];
+        final long[] nanoOfDay = new long[CHUNK_SIZE];
+        final double[] basePrice = new double[CHUNK_SIZE];
+        final double[] finalPrice = new double[CHUNK_SIZE];
+        final long[] revenueAgorot = new long[CHUNK_SIZE];
+        /** Lowest and highest day of the rows written so far; only ever widened */
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = Integer.MIN_VALUE;
+    }
+
+    private final Dictionary products = new Dictionary();
+    private final Dictionary productNames = new Dictionary();
+    private final Dictionary categories = new Dictionary();
+    private final Dictionary branches = new Dictionary();
+    private final Dictionary employees = new Dictionary();
+    private final Dictionary customers = new Dictionary();
+    private final Dictionary saleGroups = new Dictionary();
+
+    /** Date-times that LocalDateTime.toString() would not give back as written, by row */
+    private final Map<Integer, String> rawDateTimes = new ConcurrentHashMap<>();
+
+    /** Chunk directory; replaced (not modified) when it has to grow */
+    private volatile Chunk[] chunks = new Chunk[4];
+
+    /** Number of published rows */
+    private volatile int size = 0;
+
+    /**
+     * Appends a sale as a row. Called by one writer at a time.
+     *
+     * @param sale the sale
+     */
+    void append(Sale sale) {
+        int row = size;
+        int chunkIndex = row >>> CHUNK_BITS;
+        Chunk[] directory = chunks;
+        if (chunkIndex >= directory.length) {
+            directory = Arrays.copyOf(directory, directory.length * 2);
+        }
+        if (directory[chunkIndex] == null) {
+            directory[chunkIndex] = new Chunk();
+        }
+        if (directory != chunks) {
+            chunks = directory;
+        }
+        Chunk chunk = directory[chunkIndex];
+        int i = row & CHUNK_MASK;
+        Product product = sale.getProduct();
+        chunk.product[i] = products.ordinal(product.getProductId());
+        chunk.productName[i] = productNames.ordinal(product.getName());
+        chunk.category[i] = categories.ordinal(product.getCategory());
+        chunk.productPrice[i] = product.getPrice();
+        chunk.branch[i] = branches.ordinal(sale.getBranchId());
+        chunk.employee[i] = employees.ordinal(sale.getEmployeeNumber());
+        chunk.customer[i] = customers.ordinal(sale.getCustomerId());
+        chunk.saleGroup[i] = saleGroups.ordinal(sale.getSaleGroupId());
+        chunk.quantity[i] = sale.getQuantity();
+        chunk.basePrice[i] = sale.getBasePrice();
+        chunk.finalPrice[i] = sale.getFinalPrice();
+        chunk.revenueAgorot[i] = Math.round(sale.getFinalPrice() * 100);
+
+        int day = (int) Math.max(NO_DAY, sale.getEpochDay());
+        chunk.epochDay[i] = day;
+        chunk.nanoOfDay[i] = encodeTime(sale.getDateTime(), row);
+        if (day < chunk.minDay) {
+            chunk.minDay = day;
+        }
+        if (day > chunk.maxDay) {
+            chunk.maxDay = day;
+        }
+        size = row + 1;
+    }
+
+    /**
+     * Gets the time of day of a date-time, or keeps the text as written when the time of day
+     * cannot give it back exactly (an unreadable or non-canonical date-time).
+     */
+    private long encodeTime(String dateTime, int row) {
+        if (dateTime != null) {
+            try {
+                LocalDateTime parsed = LocalDateTime.parse(dateTime);
+                if (parsed.toString().equals(dateTime)) {
+                    return parsed.toLocalTime().toNanoOfDay();
+                }
+            } catch (DateTimeParseException e) {
+                // Kept as written below
+            }
+            rawDateTimes.put(row, dateTime);
+        }
+        return NONE;
+    }
+
+    /** @return the number of rows published so far */
+    public int size() {
+        return size;
+    }
+
+    public Dictionary getProducts() {
+        return products;
+    }
+
+    public Dictionary getBranches() {
+        return branches;
+    }
+
+    public Dictionary getCategories() {
+        return categories;
+    }
+
+    /**
+     * Rebuilds the Sale of a row, with a Product as it was when sold.
+     * A new object is returned on every call; nothing keeps it.
+     *
+     * @param row a row below size()
+     * @return the sale
+     */
+    public Sale sale(int row) {
+        Chunk chunk = chunks[row >>> CHUNK_BITS];
+        int i = row & CHUNK_MASK;
+        Product product = new Product(products.value(chunk.product[i]), productNames.value(chunk.productName[i]),
+                categories.value(chunk.category[i]), chunk.productPrice[i]);
+        return new Sale(product, chunk.quantity[i], branches.value(chunk.branch[i]),
+                employees.value(chunk.employee[i]), customers.value(chunk.customer[i]),
+                dateTime(chunk, i, row), chunk.basePrice[i], chunk.finalPrice[i],
+                saleGroups.value(chunk.saleGroup[i]));
+    }
+
+    private String dateTime(Chunk chunk, int i, int row) {
+        long nanoOfDay = chunk.nanoOfDay[i];
+        if (nanoOfDay == NONE) {
+            return rawDateTimes.get(row);
+        }
+        return LocalDateTime.of(LocalDate.ofEpochDay(chunk.epochDay[i]), LocalTime.ofNanoOfDay(nanoOfDay)).toString();
+    }
+
+    /**
+     * Gets the number of groups of a dimension (the size of its dictionary).
+     *
+     * @param by the dimension
+     * @return the number of ordinals
+     */
+    public int groupCount(Dimension by) {
+        switch (by) {
+            case PRODUCT: return products.size();
+            case BRANCH: return branches.size();
+            default: return categories.size();
+        }
+    }
+
+    /**
+     * Totals quantity and revenue per group over all published rows.
+     *
+     * @param by the dimension to group by
+     * @param fromDay the first epoch day to include
+     * @param toDay the last epoch day to include
+     * @param branch a branch ordinal, or -1 for all branches
+     * @return the totals, indexed by the dimension's ordinals
+     */
+    public GroupTotals totals(Dimension by, int fromDay, int toDay, int branch) {
+        int rows = size;
+        GroupTotals totals = new GroupTotals(groupCount(by));
+        accumulate(0, rows, by, fromDay, toDay, branch, totals);
+        return totals;
+    }
+
+    /**
+     * Adds the rows [fromRow, toRow) that match the filter into a result.
+     * The caller must have read size() before the dictionaries, so every ordinal of
+     * those rows fits in the result.
+     *
+     * @param fromRow the first row
+     * @param toRow the row after the last, at most size()
+     * @param by the dimension to group by
+     * @param fromDay the first epoch day to include
+     * @param toDay the last epoch day to include
+     * @param branch a branch ordinal, or -1 for all branches
+     * @param totals where to add
+     */
+    public void accumulate(int fromRow, int toRow, Dimension by, int fromDay, int toDay, int branch,
+                           GroupTotals totals) {
+        Chunk[] directory = chunks;
+        long[] quantitySum = totals.quantity;
+        long[] revenueSum = totals.revenueAgorot;
+        int row = fromRow;
+        while (row < toRow) {
+            Chunk chunk = directory[row >>> CHUNK_BITS];
+            int start = row & CHUNK_MASK;
+            int end = Math.min(CHUNK_SIZE, start + (toRow - row));
+            row += end - start;
+            if (chunk.maxDay < fromDay || chunk.minDay > toDay) {
+                continue;
+            }
+            int[] productCol = chunk.product;
+            int[] branchCol = chunk.branch;
+            int[] categoryCol = chunk.category;
+            int[] quantityCol = chunk.quantity;
+            int[] dayCol = chunk.epochDay;
+            long[] revenueCol = chunk.revenueAgorot;
+            for (int i = start; i < end; i++) {
+                int day = dayCol[i];
+                if (day < fromDay || day > toDay || (branch >= 0 && branchCol[i] != branch)) {
+                    continue;
+                }
+                int group;
+                switch (by) {
+                    case PRODUCT: group = productCol[i]; break;
+                    case BRANCH: group = branchCol[i]; break;
+                    default: group = categoryCol[i]; break;
+                }
+                quantitySum[group] += quantityCol[i];
+                revenueSum[group] += revenueCol[i];
+            }
+        }
+    }
+
+    /**
+     * Totals quantity and revenue per (day, branch, product) cell over all published rows.
+     *
+     * @param fromDay the first epoch day to include
+     * @param toDay the last epoch day to include
+     * @param branch a branch ordinal, or -1 for all branches
+     * @param product a product ordinal, or -1 for all products
+     * @return the cells
+     */
+    public CellTotals cells(int fromDay, int toDay, int branch, int product) {
+        int rows = size;
+        CellTotals cells = new CellTotals();
+        accumulateCells(0, rows, fromDay, toDay, branch, product, cells);
+        return cells;
+    }
+
+    /**
+     * Adds the rows [fromRow, toRow) that match the filter into per-cell totals.
+     *
+     * @param fromRow the first row
+     * @param toRow the row after the last, at most size()
+     * @param fromDay the first epoch day to include
+     * @param toDay the last epoch day to include
+     * @param branch a branch ordinal, or -1 for all branches
+     * @param product a product ordinal, or -1 for all products
+     * @param cells where to add
+     */
+    public void accumulateCells(int fromRow, int toRow, int fromDay, int toDay, int branch, int product,
+                                CellTotals cells) {
+        Chunk[] directory = chunks;
+        int row = fromRow;
+        while (row < toRow) {
+            Chunk chunk = directory[row >>> CHUNK_BITS];
+            int start = row & CHUNK_MASK;
+            int end = Math.min(CHUNK_SIZE, start + (toRow - row));
+            int base = row - start;
+            row += end - start;
+            if (chunk.maxDay < fromDay || chunk.minDay > toDay) {
+                continue;
+            }
+            int[] productCol = chunk.product;
+            int[] branchCol = chunk.branch;
+            int[] quantityCol = chunk.quantity;
+            int[] dayCol = chunk.epochDay;
+            long[] revenueCol = chunk.revenueAgorot;
+            for (int i = start; i < end; i++) {
+                int day = dayCol[i];
+                if (day < fromDay || day > toDay
+                        || (branch >= 0 && branchCol[i] != branch)
+                        || (product >= 0 && productCol[i] != product)) {
+                    continue;
+                }
+                cells.add(cellKey(day, branchCol[i], productCol[i]), quantityCol[i], revenueCol[i], base + i);
+            }
+        }
+    }
+
+    /**
+     * Gets the cell key of a row: its day, branch and product packed into one long.
+     *
+     * @param row a row below size()
+     * @return the cell key
+     */
+    public long cellKey(int row) {
+        Chunk chunk = chunks[row >>> CHUNK_BITS];
+        int i = row & CHUNK_MASK;
+        return cellKey(chunk.epochDay[i], chunk.branch[i], chunk.product[i]);
+    }
+
+    private static long cellKey(int day, int branch, int product) {
+        // 24 bits each for the day (NO_DAY becomes the lowest value, below any real date)
+        // and the product ordinal, 16 bits for the branch ordinal
+        long dayBits = (day == NO_DAY ? -(1 << 23) : day) & 0xFFFFFFL;
+        return dayBits << 40 | (branch & 0xFFFFL) << 24 | (product & 0xFFFFFFL);
+    }
+
+    /** @return the epoch day of a row (NO_DAY if its date cannot be read) */
+    public int day(int row) {
+        return chunks[row >>> CHUNK_BITS].epochDay[row & CHUNK_MASK];
+    }
+
+    /** @return the branch ID of a row */
+    public String branchId(int row) {
+        return branches.value(chunks[row >>> CHUNK_BITS].branch[row & CHUNK_MASK]);
+    }
+
+    /** @return the product ID of a row */
+    public String productId(int row) {
+        return products.value(chunks[row >>> CHUNK_BITS].product[row & CHUNK_MASK]);
+    }
+
+    /** @return the product name of a row, as the product was named when sold */
+    public String productName(int row) {
+        return productNames.value(chunks[row >>> CHUNK_BITS].productName[row & CHUNK_MASK]);
+    }
+
+    /** @return the category of a row, as the product was categorized when sold */
+    public String category(int row) {
+        return categories.value(chunks[row >>> CHUNK_BITS].category[row & CHUNK_MASK]);
+    }
+
+    /**
+     * Gets the date of a row (YYYY-MM-DD), or the date part of its date-time as written
+     * when the date cannot be read.
+     *
+     * @param row a row below size()
+     * @return the date text
+     */
+    public String date(int row) {
+        int day = day(row);
+        if (day != NO_DAY) {
+            return LocalDate.ofEpochDay(day).toString();
+        }
+        String dateTime = rawDateTimes.get(row);
+        if (dateTime == null) {
+            return "";
+        }
+        int t = dateTime.indexOf('T');
+        return t < 0 ? dateTime : dateTime.substring(0, t);
+    }
+}
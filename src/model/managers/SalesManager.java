@@ -1,26 +1,72 @@
 package model.managers;
 
+import model.ReportEntry;
 import model.Sale;
 
-import java.util.Collections;
-import java.util.List;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Manages sales records.
- * Maintains a list of all sales transactions in the system.
+ * Sales are kept only in a column store (SalesColumns): recording a sale appends one row and
+ * never moves earlier rows, no Sale or Product object is kept, and readers (saving, reports)
+ * read a published prefix without a lock and without copying. Reports are scans of the
+ * columns, run on the report scan threads of a SalesScanEngine. Recording is serialized on this object's lock; the report getters take no lock,
+ * so a long report never holds up a checkout and checkouts never wait for reports.
  * 
  * @author FinalProject
  */
 public class SalesManager {
 
-    private List<Sale> sales;
+    private final SalesColumns columns = new SalesColumns();
+    private final SalesScanEngine scanEngine;
+    /** Incremented after each recorded sale or cart, once the columns include it */
+    private volatile long version = 0;
 
     /**
-     * Constructs a new SalesManager with an empty sales list.
+     * Read-only list of the rows [from, to); each get() rebuilds the Sale of a row.
+     */
+    private static final class SalesView extends AbstractList<Sale> {
+        private final SalesColumns columns;
+        private final int from;
+        private final int to;
+
+        SalesView(SalesColumns columns, int from, int to) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Sale get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+            }
+            return columns.sale(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * Constructs a new SalesManager with no sales and the configured report parallelism.
      */
     public SalesManager() {
-        this.sales = Collections.synchronizedList(new ArrayList<>());
+        this(SalesScanEngine.configuredParallelism());
+    }
+
+    /**
+     * Constructs a new SalesManager with no sales.
+     *
+     * @param reportParallelism the most threads a report scan may use
+     */
+    public SalesManager(int reportParallelism) {
+        this.scanEngine = new SalesScanEngine(columns, reportParallelism);
     }
 
     /**
@@ -28,23 +74,223 @@ public class SalesManager {
      * 
      * @param sale the sale to add (ignored if null)
      */
-    public void addSale(Sale sale) {
+    public synchronized void addSale(Sale sale) {
         if (sale == null) {
             return;
         }
 
-        sales.add(sale);
+        columns.append(sale);
+        version++;
+    }
+
+    /**
+     * Adds the lines of one checkout to the sales records as a single step,
+     * so the version never counts only part of a cart.
+     * 
+     * @param cartSales the sale lines to add
+     */
+    public synchronized void addSales(List<Sale> cartSales) {
+        for (Sale sale : cartSales) {
+            columns.append(sale);
+        }
+        version++;
     }
 
     /**
      * Gets all sales records.
-     * Returns a defensive copy to prevent external modification and ensure thread-safe iteration.
+     * Returns a read-only view of the sales recorded so far - O(1), no copy. Each element
+     * is rebuilt from the columns when it is read.
+     * The view does not change when more sales are added.
      * 
-     * @return a copy of the list of all sales
+     * @return a read-only list of all sales
      */
     public List<Sale> getSales() {
-        synchronized (sales) {
-            return new ArrayList<>(sales);
+        return new SalesView(columns, 0, columns.size());
+    }
+
+    /**
+     * Gets the sales recorded at or after a position in the records.
+     * Lets a caller that remembers getSaleCount() process only new sales.
+     * 
+     * @param index the position to start from
+     * @return a read-only list of the newer sales, no copy is made
+     */
+    public List<Sale> getSalesSince(int index) {
+        int size = columns.size();
+        return new SalesView(columns, Math.min(Math.max(0, index), size), size);
+    }
+
+    /**
+     * Gets the number of sales recorded so far.
+     * 
+     * @return the sales count
+     */
+    public int getSaleCount() {
+        return columns.size();
+    }
+
+    /**
+     * Gets the sales version: a number that grows whenever sales are recorded.
+     * A report computed after reading version v includes at least the sales of version v,
+     * so a result tagged with v is current as long as the version is still v.
+     *
+     * @return the sales version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the column store of the sales.
+     * Scans read it without a lock; see SalesColumns.
+     *
+     * @return the sales columns
+     */
+    public SalesColumns getColumns() {
+        return columns;
+    }
+
+    /**
+     * Stops the report scan threads. Reports fail after this.
+     */
+    public void shutdown() {
+        scanEngine.shutdown();
+    }
+
+    // ========== Report Totals ==========
+
+    /**
+     * Gets the sales totals per branch.
+     *
+     * @param branchId one branch, or null/empty/"ALL" for all branches
+     * @return one entry per branch, ordered by branch ID
+     */
+    public List<ReportEntry> getTotalsByBranch(String branchId) {
+        SalesColumns.GroupTotals totals = totals(SalesColumns.Dimension.BRANCH);
+        List<ReportEntry> result = new ArrayList<>();
+        for (int group = 0; group < totals.quantity.length; group++) {
+            String groupBranch = columns.getBranches().value(group);
+            if (isAll(branchId) || groupBranch.equals(branchId)) {
+                result.add(new ReportEntry(groupBranch, "", "", "", (int) totals.quantity[group],
+                        totals.revenueAgorot[group] / 100.0, ""));
+            }
         }
+        result.sort(Comparator.comparing(ReportEntry::getBranchId));
+        return result;
+    }
+
+    /**
+     * Gets the sales totals per category.
+     *
+     * @param category one category, or null/empty for all categories
+     * @return one entry per category, ordered by category
+     */
+    public List<ReportEntry> getTotalsByCategory(String category) {
+        SalesColumns.GroupTotals totals = totals(SalesColumns.Dimension.CATEGORY);
+        List<ReportEntry> result = new ArrayList<>();
+        for (int group = 0; group < totals.quantity.length; group++) {
+            String groupCategory = columns.getCategories().value(group);
+            if (category == null || category.isEmpty() || groupCategory.equals(category)) {
+                result.add(new ReportEntry("", "", "", groupCategory, (int) totals.quantity[group],
+                        totals.revenueAgorot[group] / 100.0, ""));
+            }
+        }
+        result.sort(Comparator.comparing(ReportEntry::getCategory));
+        return result;
+    }
+
+    /**
+     * Gets the sales totals of a product per branch and day.
+     *
+     * @param productId one product, or null/empty for all products
+     * @return one entry per (product, branch, day), in the order the cells first had a sale
+     */
+    public List<ReportEntry> getTotalsByProduct(String productId) {
+        if (productId == null || productId.isEmpty()) {
+            return getDailyTotals(null, null);
+        }
+        int product = columns.getProducts().lookup(productId);
+        if (product < 0) {
+            return new ArrayList<>();
+        }
+        SalesColumns.CellTotals cells = cells(Integer.MIN_VALUE, Integer.MAX_VALUE, -1, product);
+        return entries(cells, cells.firstRows());
+    }
+
+    /**
+     * Gets the sales totals per product of a day and branch.
+     *
+     * @param date one day (YYYY-MM-DD), or null/empty for all days
+     * @param branchId one branch, or null/empty/"ALL" for all branches
+     * @return one entry per (product, branch, day), in date order
+     */
+    public List<ReportEntry> getDailyTotals(String date, String branchId) {
+        if (date == null || date.isEmpty()) {
+            return cellsByDay(Integer.MIN_VALUE, Integer.MAX_VALUE, branchId);
+        }
+        long day = Sale.epochDayOf(date);
+        if (day == Long.MIN_VALUE) {
+            return new ArrayList<>();
+        }
+        return getTotalsBetween(day, day, branchId);
+    }
+
+    /**
+     * Gets the sales totals per product and branch of every day in a range.
+     * Chunks of rows without any day in the range are skipped.
+     *
+     * @param fromDay the first epoch day to include
+     * @param toDay the last epoch day to include
+     * @param branchId one branch, or null/empty/"ALL" for all branches
+     * @return one entry per (product, branch, day), in date order
+     */
+    public List<ReportEntry> getTotalsBetween(long fromDay, long toDay, String branchId) {
+        // Sales without a readable date are only reported when no day is asked for
+        int from = (int) Math.max(SalesColumns.NO_DAY + 1L, fromDay);
+        int to = (int) Math.min(Integer.MAX_VALUE, toDay);
+        if (from > to) {
+            return new ArrayList<>();
+        }
+        return cellsByDay(from, to, branchId);
+    }
+
+    private List<ReportEntry> cellsByDay(int fromDay, int toDay, String branchId) {
+        int branch = -1;
+        if (!isAll(branchId)) {
+            branch = columns.getBranches().lookup(branchId);
+            if (branch < 0) {
+                return new ArrayList<>();
+            }
+        }
+        SalesColumns.CellTotals cells = cells(fromDay, toDay, branch, -1);
+        List<Integer> rows = cells.firstRows();
+        rows.sort(Comparator.comparingInt(columns::day)
+                .thenComparing(columns::branchId)
+                .thenComparing(columns::productId));
+        return entries(cells, rows);
+    }
+
+    private SalesColumns.GroupTotals totals(SalesColumns.Dimension by) {
+        return scanEngine.totals(by, Integer.MIN_VALUE, Integer.MAX_VALUE, -1);
+    }
+
+    private SalesColumns.CellTotals cells(int fromDay, int toDay, int branch, int product) {
+        return scanEngine.cells(fromDay, toDay, branch, product);
+    }
+
+    /** One entry per cell, labelled from the cell's first row, in the order of the given rows */
+    private List<ReportEntry> entries(SalesColumns.CellTotals cells, List<Integer> firstRows) {
+        List<ReportEntry> result = new ArrayList<>(firstRows.size());
+        for (int row : firstRows) {
+            long key = columns.cellKey(row);
+            result.add(new ReportEntry(columns.branchId(row), columns.productId(row), columns.productName(row),
+                    columns.category(row), (int) cells.quantity(key), cells.revenueAgorot(key) / 100.0,
+                    columns.date(row)));
+        }
+        return result;
+    }
+
+    private static boolean isAll(String branchId) {
+        return branchId == null || branchId.isEmpty() || branchId.equals("ALL");
     }
 }
@@ -0,0 +1,188 @@
+package model.managers;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs the report scans of the sales column store in parallel.
+ * The published rows are split into slices, each slice is totalled into its own partial
+ * result (GroupTotals or CellTotals) on a dedicated ForkJoinPool, and the partial results
+ * are added together as the tasks join. Totals are integer sums and a cell keeps its
+ * lowest row, so the result is the same as a sequential scan whatever the split.
+ * The pool has its own parallelism cap (default: half the cores, at least one), so a large
+ * report never occupies every core while checkouts are being served. The cap can be set
+ * with -Dreports.parallelism=N.
+ *
+ * @author FinalProject
+ */
+public class SalesScanEngine {
+
+    /** Rows one task scans itself instead of splitting further */
+    static final int SLICE_ROWS = 4 * SalesColumns.CHUNK_SIZE;
+
+    private final SalesColumns columns;
+    private final ForkJoinPool pool;
+
+    /**
+     * One scan: how to start a partial result, fill it from a range of rows and add two
+     * partial results together.
+     */
+    private interface RowScan<R> {
+        R empty();
+
+        void scan(int fromRow, int toRow, R into);
+
+        void merge(R into, R from);
+    }
+
+    /** Task that scans the rows [fromRow, toRow) */
+    private static final class ScanTask<R> extends RecursiveTask<R> {
+        private final RowScan<R> scan;
+        private final int fromRow;
+        private final int toRow;
+
+        ScanTask(RowScan<R> scan, int fromRow, int toRow) {
+            this.scan = scan;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected R compute() {
+            if (toRow - fromRow <= SLICE_ROWS) {
+                R result = scan.empty();
+                scan.scan(fromRow, toRow, result);
+                return result;
+            }
+            // Split on a chunk boundary so no slice shares a chunk's arrays with its sibling
+            int middle = ((fromRow + toRow) >>> 1) & ~(SalesColumns.CHUNK_SIZE - 1);
+            if (middle <= fromRow) {
+                middle = fromRow + SalesColumns.CHUNK_SIZE;
+            }
+            ScanTask<R> left = new ScanTask<>(scan, fromRow, middle);
+            ScanTask<R> right = new ScanTask<>(scan, middle, toRow);
+            left.fork();
+            R result = right.compute();
+            scan.merge(result, left.join());
+            return result;
+        }
+    }
+
+    /**
+     * Constructs a scan engine with the configured parallelism.
+     *
+     * @param columns the sales columns to scan
+     */
+    public SalesScanEngine(SalesColumns columns) {
+        this(columns, configuredParallelism());
+    }
+
+    /**
+     * Constructs a scan engine.
+     *
+     * @param columns the sales columns to scan
+     * @param parallelism the most threads a scan may use
+     */
+    public SalesScanEngine(SalesColumns columns, int parallelism) {
+        this.columns = columns;
+        this.pool = new ForkJoinPool(Math.max(1, parallelism), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("report-scan-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Totals quantity and revenue per group over all published rows.
+     *
+     * @param by the dimension to group by
+     * @param fromDay the first epoch day to include
+     * @param toDay the last epoch day to include
+     * @param branch a branch ordinal, or -1 for all branches
+     * @return the totals, indexed by the dimension's ordinals
+     */
+    public SalesColumns.GroupTotals totals(SalesColumns.Dimension by, int fromDay, int toDay, int branch) {
+        // Rows first, then the dictionary size, so every ordinal in those rows has a slot
+        int rows = columns.size();
+        int groups = columns.groupCount(by);
+        return run(rows, new RowScan<SalesColumns.GroupTotals>() {
+            @Override
+            public SalesColumns.GroupTotals empty() {
+                return new SalesColumns.GroupTotals(groups);
+            }
+
+            @Override
+            public void scan(int fromRow, int toRow, SalesColumns.GroupTotals into) {
+                columns.accumulate(fromRow, toRow, by, fromDay, toDay, branch, into);
+            }
+
+            @Override
+            public void merge(SalesColumns.GroupTotals into, SalesColumns.GroupTotals from) {
+                into.add(from);
+            }
+        });
+    }
+
+    /**
+     * Totals quantity and revenue per (day, branch, product) cell over all published rows.
+     *
+     * @param fromDay the first epoch day to include
+     * @param toDay the last epoch day to include
+     * @param branch a branch ordinal, or -1 for all branches
+     * @param product a product ordinal, or -1 for all products
+     * @return the cells
+     */
+    public SalesColumns.CellTotals cells(int fromDay, int toDay, int branch, int product) {
+        int rows = columns.size();
+        return run(rows, new RowScan<SalesColumns.CellTotals>() {
+            @Override
+            public SalesColumns.CellTotals empty() {
+                return new SalesColumns.CellTotals();
+            }
+
+            @Override
+            public void scan(int fromRow, int toRow, SalesColumns.CellTotals into) {
+                columns.accumulateCells(fromRow, toRow, fromDay, toDay, branch, product, into);
+            }
+
+            @Override
+            public void merge(SalesColumns.CellTotals into, SalesColumns.CellTotals from) {
+                into.add(from);
+            }
+        });
+    }
+
+    /** Small stores, and a pool of one thread, are scanned on the calling thread */
+    private <R> R run(int rows, RowScan<R> scan) {
+        if (rows <= SLICE_ROWS || pool.getParallelism() == 1) {
+            R result = scan.empty();
+            scan.scan(0, rows, result);
+            return result;
+        }
+        return pool.invoke(new ScanTask<>(scan, 0, rows));
+    }
+
+    /** @return the most threads a scan may use */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stops the scan threads.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Gets the parallelism cap: -Dreports.parallelism if set, else half the cores.
+     *
+     * @return the parallelism (at least 1)
+     */
+    public static int configuredParallelism() {
+        int fallback = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return Math.max(1, Integer.getInteger("reports.parallelism", fallback));
+    }
+}
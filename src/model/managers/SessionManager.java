@@ -7,28 +7,37 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import util.Snapshot;
+
 /**
  * Manages active user sessions.
  * Prevents duplicate logins by tracking active sessions per username.
- * Uses synchronized collections for thread-safety in multi-threaded server environment.
- * Maintains two maps: one by username (for quick duplicate check), one by socket (for retrieval by connection).
+ * Sessions by username are published as an immutable, versioned Snapshot that is replaced on every
+ * login and logout, so "who is online" checks and listings take no lock and copy nothing.
+ * The socket and token maps are synchronized maps updated under the same write lock.
  * 
  * @author FinalProject
  */
 public class SessionManager {
     
     /** username -> Session (for quick check if user already logged in) */
-    private Map<String, Session> activeSessions;
+    private volatile Snapshot<String, Session> activeSessions = Snapshot.empty();
     
     /** socket -> Session (for retrieval by connection) */
     private Map<Socket, Session> sessionsBySocket;
     
+    /** channel token -> Session (for attaching a client's background connection) */
+    private Map<String, Session> sessionsByToken;
+    
+    /** Serializes writers; readers never take it */
+    private final Object writeLock = new Object();
+    
     /**
      * Constructs a new SessionManager with empty session maps.
      */
     public SessionManager() {
-        this.activeSessions = Collections.synchronizedMap(new HashMap<>());
         this.sessionsBySocket = Collections.synchronizedMap(new HashMap<>());
+        this.sessionsByToken = Collections.synchronizedMap(new HashMap<>());
     }
     
     /**
@@ -51,18 +60,19 @@ public class SessionManager {
         // Normalize username (lowercase + trim) to prevent case-sensitivity issues
         String normalizedUsername = username.trim().toLowerCase();
         
-        // Synchronize for atomic check-and-put operation
-        synchronized (activeSessions) {
+        // Synchronize writers for atomic check-and-put operation
+        synchronized (writeLock) {
             // Check if user is already logged in
-            if (activeSessions.containsKey(normalizedUsername)) {
+            if (activeSessions.getMap().containsKey(normalizedUsername)) {
                 throw new UserAlreadyLoggedInException(
                     "User " + username + " is already logged in from another location"
                 );
             }
             
             Session session = new Session(normalizedUsername, branchId, role, socket);
-            activeSessions.put(normalizedUsername, session);
+            activeSessions = activeSessions.with(normalizedUsername, session);
             sessionsBySocket.put(socket, session);
+            sessionsByToken.put(session.getChannelToken(), session);
             
             return session;
         }
@@ -75,12 +85,13 @@ public class SessionManager {
      * @param socket the socket connection to remove
      */
     public void removeSession(Socket socket) {
-        synchronized (activeSessions) {
+        synchronized (writeLock) {
             Session session = sessionsBySocket.remove(socket);
             if (session != null) {
                 // Normalize username for removal
                 String normalizedUsername = session.getUsername().trim().toLowerCase();
-                activeSessions.remove(normalizedUsername);
+                activeSessions = activeSessions.without(normalizedUsername);
+                sessionsByToken.remove(session.getChannelToken());
             }
         }
     }
@@ -95,6 +106,17 @@ public class SessionManager {
         return sessionsBySocket.get(socket);
     }
     
+    /**
+     * Gets a session by its channel token.
+     * Used when a client opens a second (background) connection for an existing login.
+     * 
+     * @param token the channel token returned at login
+     * @return the Session object, or null if no active session has this token
+     */
+    public Session getSessionByToken(String token) {
+        return sessionsByToken.get(token);
+    }
+    
     /**
      * Gets a session by username.
      * 
@@ -103,7 +125,7 @@ public class SessionManager {
      */
     public Session getSessionByUsername(String username) {
         String normalizedUsername = username.trim().toLowerCase();
-        return activeSessions.get(normalizedUsername);
+        return activeSessions.getMap().get(normalizedUsername);
     }
     
     /**
@@ -114,7 +136,7 @@ public class SessionManager {
      */
     public boolean isUserLoggedIn(String username) {
         String normalizedUsername = username.trim().toLowerCase();
-        return activeSessions.containsKey(normalizedUsername);
+        return activeSessions.getMap().containsKey(normalizedUsername);
     }
     
     /**
@@ -129,13 +151,21 @@ public class SessionManager {
     
     /**
      * Gets all active sessions (for management/debugging).
-     * Returns a defensive copy to prevent external modification.
+     * Returns the current immutable snapshot - O(1), no copy.
      * 
-     * @return a Map of username to Session
+     * @return a read-only Map of username to Session
      */
     public Map<String, Session> getAllActiveSessions() {
-        synchronized (activeSessions) {
-            return new HashMap<>(activeSessions);
-        }
+        return activeSessions.getMap();
+    }
+    
+    /**
+     * Gets the current sessions together with their version.
+     * The version changes on every login and logout.
+     * 
+     * @return the current snapshot
+     */
+    public Snapshot<String, Session> getSnapshot() {
+        return activeSessions;
     }
 }
\ No newline at end of file
@@ -0,0 +1,289 @@
+package server;
+
+import model.Session;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Server-wide admission control for client commands.
+ * Applies two layers of protection before a command reaches the SystemController:
+ * <ul>
+ *   <li>Token-bucket rate limits per user, with separate buckets for cheap commands
+ *       (status polls, price calculation, lists) and heavy commands (logs, reports, exports).
+ *       Each user has buckets of their own, so one busy client never throttles the other
+ *       users of its role. The bucket sizes depend on the user's role and can be set with
+ *       system properties, e.g. -Dadmission.cashier.heavy.burst=5 and
+ *       -Dadmission.cashier.heavy.rate=1 (tokens per second); the other keys are
+ *       cheap.burst and cheap.rate, and the role "default" applies to unknown roles.
+ *       A user keeps the same buckets across logouts, logins and connections; they are
+ *       only dropped once they have stayed idle long enough to refill completely, when a
+ *       new pair would be no different.</li>
+ *   <li>A token-bucket limit on LOGIN per client address (-Dadmission.login.burst and
+ *       -Dadmission.login.rate), so logging in again cannot be used to get fresh buckets
+ *       and passwords cannot be guessed at full speed.</li>
+ *   <li>Global load shedding - when the CommandScheduler queue grows past a threshold
+ *       (-Dadmission.maxQueued, default DEFAULT_MAX_QUEUED), every command except checkout
+ *       (SELL, SELL_CART) is rejected until the backlog drains.</li>
+ * </ul>
+ * Rejected commands are answered with {@code RETRY_AFTER;<milliseconds>} so clients
+ * can back off instead of treating the rejection as an error.
+ * One instance is shared by all ClientHandler threads.
+ *
+ * @author FinalProject
+ */
+public class AdmissionController {
+
+    /** Cost class of a command, which decides which token bucket pays for it */
+    public enum CommandCost {
+        /** Never throttled (checkout) */
+        FREE,
+        /** Short, frequent commands such as status polls and lists */
+        CHEAP,
+        /** Commands that scan logs or sales history */
+        HEAVY
+    }
+
+    /** Default number of queued commands above which non-checkout commands are shed */
+    public static final int DEFAULT_MAX_QUEUED = 64;
+
+    /** Back-off suggested to clients when the server sheds load */
+    private static final long SHED_RETRY_AFTER_MS = 500;
+
+    /** Prefix of the system properties that override the rate limits */
+    private static final String PROPERTY_PREFIX = "admission.";
+
+    /** Built-in LOGIN limits per client address: burst, and tokens per second */
+    private static final double LOGIN_BURST = 20;
+    private static final double LOGIN_PER_SECOND = 0.5;
+
+    /** How often admit() looks for buckets that have refilled, in nanoseconds */
+    private static final long SWEEP_INTERVAL_NANOS = 60_000_000_000L;
+
+    /** Rate-limit settings for one role */
+    private static class RoleLimits {
+        final double cheapBurst;
+        final double cheapPerSecond;
+        final double heavyBurst;
+        final double heavyPerSecond;
+
+        RoleLimits(double cheapBurst, double cheapPerSecond,
+                   double heavyBurst, double heavyPerSecond) {
+            this.cheapBurst = cheapBurst;
+            this.cheapPerSecond = cheapPerSecond;
+            this.heavyBurst = heavyBurst;
+            this.heavyPerSecond = heavyPerSecond;
+        }
+
+        /**
+         * Applies the system property overrides of a role to these limits.
+         *
+         * @param role the role name (or "default")
+         * @return the configured limits
+         */
+        RoleLimits configured(String role) {
+            String prefix = PROPERTY_PREFIX + role + ".";
+            return new RoleLimits(
+                    property(prefix + "cheap.burst", cheapBurst),
+                    property(prefix + "cheap.rate", cheapPerSecond),
+                    property(prefix + "heavy.burst", heavyBurst),
+                    property(prefix + "heavy.rate", heavyPerSecond));
+        }
+    }
+
+    /** A user's pair of cheap/heavy buckets */
+    private static class Buckets {
+        final TokenBucket cheap;
+        final TokenBucket heavy;
+
+        Buckets(double cheapBurst, double cheapPerSecond, double heavyBurst, double heavyPerSecond) {
+            this.cheap = new TokenBucket(cheapBurst, cheapPerSecond);
+            this.heavy = new TokenBucket(heavyBurst, heavyPerSecond);
+        }
+
+        TokenBucket forCost(CommandCost cost) {
+            return cost == CommandCost.HEAVY ? heavy : cheap;
+        }
+
+        boolean isFull() {
+            return cheap.isFull() && heavy.isFull();
+        }
+    }
+
+    /** Built-in limits of roles without their own entry */
+    private static final RoleLimits DEFAULT_LIMITS = new RoleLimits(40, 20, 3, 0.5);
+
+    /** Built-in limits per role, before system property overrides */
+    private static final Map<String, RoleLimits> BUILT_IN_LIMITS = new ConcurrentHashMap<>();
+
+    static {
+        // The chat tab polls four commands every 500ms and the other tabs poll once a second,
+        // so the cheap bucket leaves comfortable headroom for a normal client.
+        BUILT_IN_LIMITS.put("admin", new RoleLimits(40, 20, 6, 1.5));
+        BUILT_IN_LIMITS.put("manager", new RoleLimits(40, 20, 6, 1.5));
+        BUILT_IN_LIMITS.put("cashier", new RoleLimits(40, 20, 3, 0.5));
+        BUILT_IN_LIMITS.put("salesman", new RoleLimits(40, 20, 3, 0.5));
+    }
+
+    /** Configured limits per role, resolved on first use */
+    private final Map<String, RoleLimits> limits = new ConcurrentHashMap<>();
+    /** Buckets of each user: username -> buckets */
+    private final Map<String, Buckets> userBuckets = new ConcurrentHashMap<>();
+    /** LOGIN bucket of each client address */
+    private final Map<String, TokenBucket> loginBuckets = new ConcurrentHashMap<>();
+    private final double loginBurst = property(PROPERTY_PREFIX + "login.burst", LOGIN_BURST);
+    private final double loginPerSecond = property(PROPERTY_PREFIX + "login.rate", LOGIN_PER_SECOND);
+    private final AtomicLong nextSweepNanos = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+    private final IntSupplier queueDepth;
+    private final int maxQueued;
+
+    /**
+     * Constructs a new AdmissionController with the configured queue threshold
+     * (-Dadmission.maxQueued, default DEFAULT_MAX_QUEUED).
+     *
+     * @param queueDepth supplies the current length of the worker queue
+     */
+    public AdmissionController(IntSupplier queueDepth) {
+        this(queueDepth, Integer.getInteger(PROPERTY_PREFIX + "maxQueued", DEFAULT_MAX_QUEUED));
+    }
+
+    /**
+     * Constructs a new AdmissionController.
+     *
+     * @param queueDepth supplies the current length of the worker queue
+     * @param maxQueued number of queued commands above which load is shed
+     */
+    public AdmissionController(IntSupplier queueDepth, int maxQueued) {
+        this.queueDepth = queueDepth;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Classifies a command by its cost.
+     *
+     * @param command the command name (first field of the protocol line)
+     * @return the cost class of the command
+     */
+    public static CommandCost classify(String command) {
+        if ("SELL".equals(command) || "SELL_CART".equals(command)) {
+            return CommandCost.FREE;
+        }
+        if ("REPORT_STATUS".equals(command) || "FETCH_REPORT".equals(command)) {
+            return CommandCost.CHEAP;
+        }
+        if ("GET_LOGS".equals(command) || "SAVE_CHAT_TO_RTF".equals(command)
+                || "EXPORT_CHAT".equals(command) || "EXPORT_CHATS".equals(command)
+                || "SUBMIT_REPORT".equals(command) || command.startsWith("REPORT_")) {
+            return CommandCost.HEAVY;
+        }
+        return CommandCost.CHEAP;
+    }
+
+    /**
+     * Decides whether an authenticated command may run now.
+     * Checkout (SELL, SELL_CART) is always admitted. Other commands are shed while the server is overloaded,
+     * then charged to the bucket of the session's user.
+     *
+     * @param session the session issuing the command
+     * @param command the command name
+     * @return null if the command is admitted, otherwise the RETRY_AFTER response to send
+     */
+    public String admit(Session session, String command) {
+        CommandCost cost = classify(command);
+        if (cost == CommandCost.FREE) {
+            return null;
+        }
+
+        if (queueDepth.getAsInt() > maxQueued) {
+            return retryAfter(SHED_RETRY_AFTER_MS);
+        }
+
+        sweepIfDue();
+        long[] wait = new long[1];
+        // Charged inside compute() so a sweep can never drop the buckets while they are charged
+        userBuckets.compute(String.valueOf(session.getUsername()), (user, buckets) -> {
+            if (buckets == null) {
+                RoleLimits roleLimits = limitsOf(session.getRole());
+                buckets = new Buckets(roleLimits.cheapBurst, roleLimits.cheapPerSecond,
+                        roleLimits.heavyBurst, roleLimits.heavyPerSecond);
+            }
+            wait[0] = buckets.forCost(cost).tryConsume();
+            return buckets;
+        });
+        return wait[0] > 0 ? retryAfter(wait[0]) : null;
+    }
+
+    /**
+     * Decides whether a LOGIN attempt may run now, charging the bucket of the client's address.
+     * Checked before the credentials, so failed attempts are charged too.
+     *
+     * @param address the client's address
+     * @return null if the attempt is admitted, otherwise the RETRY_AFTER response to send
+     */
+    public String admitLogin(String address) {
+        sweepIfDue();
+        long[] wait = new long[1];
+        loginBuckets.compute(String.valueOf(address), (key, bucket) -> {
+            if (bucket == null) {
+                bucket = new TokenBucket(loginBurst, loginPerSecond);
+            }
+            wait[0] = bucket.tryConsume();
+            return bucket;
+        });
+        return wait[0] > 0 ? retryAfter(wait[0]) : null;
+    }
+
+    /**
+     * Drops, at most once per SWEEP_INTERVAL_NANOS, the buckets that have refilled completely.
+     * A full bucket is what a new one would be, so dropping it changes no limit; it only keeps
+     * the maps to the users and addresses that were active recently.
+     */
+    private void sweepIfDue() {
+        long now = System.nanoTime();
+        long due = nextSweepNanos.get();
+        if (now - due < 0 || !nextSweepNanos.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+        for (String user : userBuckets.keySet()) {
+            userBuckets.computeIfPresent(user, (key, buckets) -> buckets.isFull() ? null : buckets);
+        }
+        for (String address : loginBuckets.keySet()) {
+            loginBuckets.computeIfPresent(address, (key, bucket) -> bucket.isFull() ? null : bucket);
+        }
+    }
+
+    /** Gets the configured limits of a role, resolving them on first use */
+    private RoleLimits limitsOf(String role) {
+        String key = role != null && BUILT_IN_LIMITS.containsKey(role) ? role : "default";
+        return limits.computeIfAbsent(key,
+                k -> BUILT_IN_LIMITS.getOrDefault(k, DEFAULT_LIMITS).configured(k));
+    }
+
+    /**
+     * Reads a positive number from a system property.
+     *
+     * @return the property's value, or the fallback if it is unset or invalid
+     */
+    private static double property(String name, double fallback) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        System.err.println("Ignoring invalid " + name + "=" + value + " (using " + fallback + ")");
+        return fallback;
+    }
+
+    private static String retryAfter(long millis) {
+        return "RETRY_AFTER;" + millis;
+    }
+}
@@ -8,24 +8,39 @@ import model.Employee;
 import model.Customer;
 import model.Product;
 import model.Branch;
+import model.Sale;
+import model.StockHold;
 import model.VipCustomer;
 import model.ReturningCustomer;
 
 import java.io.*;
 import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import model.ReportEntry;
 import model.ChatMessage;
 import model.ChatSession;
 import model.ChatUserStatus;
 import model.ChatRequest;
 import model.managers.PermissionChecker;
+import storage.ChatExporter;
 
 /**
  * Handles communication with a single client.
  * Implements Runnable for Thread-per-Client architecture.
+ * Each command is admitted by the AdmissionController and executed on the CommandScheduler
+ * lane matching its priority, while this thread waits for the response.
+ * WAIT_CHAT_EVENTS is the exception: it parks on this thread until a chat event arrives.
+ * REPORT_STREAM answers with several lines: the worker computes the report and returns its
+ * header, and this thread then writes the rows in batches followed by an END line.
  * Reads commands from the client, routes them to SystemController, and sends responses.
  * Uses a simple text protocol with commands separated by semicolons.
  * 
@@ -33,11 +48,65 @@ import model.managers.PermissionChecker;
  */
 public class ClientHandler implements Runnable {
 
+    /** Default number of report rows returned by FETCH_REPORT */
+    private static final int DEFAULT_REPORT_PAGE_SIZE = 200;
+
+    /** Largest page FETCH_REPORT will return */
+    private static final int MAX_REPORT_PAGE_SIZE = 1000;
+
+    /** Longest WAIT_CHAT_EVENTS may park a connection */
+    private static final long MAX_CHAT_EVENT_WAIT_MS = 30000;
+
+    /** Back-off suggested when the report queue is full */
+    private static final long REPORT_QUEUE_FULL_RETRY_MS = 2000;
+
+    /** Back-off suggested when the export queue is full */
+    private static final long EXPORT_QUEUE_FULL_RETRY_MS = 2000;
+
+    /** Number of report rows in each ROWS line of REPORT_STREAM */
+    private static final int REPORT_STREAM_BATCH_ROWS = 500;
+
+    /** Rendered LIST_* responses shared by all connections, keyed by the snapshot they came from */
+    private static final ListResponseCache LIST_CACHE = new ListResponseCache();
+
+    /** Rendered REPORT_* responses shared by all connections, valid until the next sale */
+    private static final ReportResponseCache<String> REPORT_CACHE =
+            new ReportResponseCache<>(128, 8L * 1024 * 1024, String::length);
+
+    /**
+     * Report rows shared by all connections, valid until the next sale. REPORT_STREAM streams
+     * from it, and REPORT_* responses are rendered from it.
+     */
+    private static final ReportResponseCache<List<ReportEntry>> REPORT_ROWS_CACHE =
+            new ReportResponseCache<>(64, 200_000, List::size);
+
     private final Socket socket;
     private final SystemController controller;
     private final Vector<Socket> connectedClients;
-    private Session currentSession;
-    private boolean isAuthenticated = false;
+    private final AdmissionController admissionController;
+    private final CommandScheduler scheduler;
+    private final ReportJobManager reportJobManager;
+    private final ExportJobManager exportJobManager;
+    private volatile Session currentSession;
+    private volatile boolean isAuthenticated = false;
+    /** True if this connection is a client's background channel attached to an existing login */
+    private volatile boolean attached = false;
+    /**
+     * Report rows still to be written after a REPORT_STREAM header. Set by the worker and
+     * taken by this connection's thread once the header response has been received.
+     */
+    private volatile ReportStream pendingStream;
+
+    /** A computed report whose rows are streamed after its header */
+    private static final class ReportStream {
+        final ReportQuery query;
+        final List<ReportEntry> entries;
+
+        ReportStream(ReportQuery query, List<ReportEntry> entries) {
+            this.query = query;
+            this.entries = entries;
+        }
+    }
 
     /**
      * Constructs a new ClientHandler for a client connection.
@@ -45,11 +114,21 @@ public class ClientHandler implements Runnable {
      * @param socket the socket connection to the client
      * @param controller the SystemController to route commands to
      * @param connectedClients the Vector containing all connected client sockets
+     * @param admissionController the shared rate limiter / load shedder
+     * @param scheduler the shared worker pool that executes commands by priority
+     * @param reportJobManager the shared executor and result store for asynchronous reports
+     * @param exportJobManager the shared executor for asynchronous chat exports
      */
-    public ClientHandler(Socket socket, SystemController controller, Vector<Socket> connectedClients) {
+    public ClientHandler(Socket socket, SystemController controller, Vector<Socket> connectedClients,
+                         AdmissionController admissionController, CommandScheduler scheduler,
+                         ReportJobManager reportJobManager, ExportJobManager exportJobManager) {
         this.socket = socket;
         this.controller = controller;
         this.connectedClients = connectedClients;
+        this.admissionController = admissionController;
+        this.scheduler = scheduler;
+        this.reportJobManager = reportJobManager;
+        this.exportJobManager = exportJobManager;
     }
 
     /**
@@ -77,24 +156,11 @@ public class ClientHandler implements Runnable {
                     break;
                 }
                 
-                try {
-                    String response = handleCommand(line);
-                    out.println(response);
-                } catch (InvalidCredentialsException | 
-                         UserAlreadyLoggedInException |
-                         UnauthorizedException e) {
-                    out.println("AUTH_ERROR;" + e.getMessage());
-                } catch (DuplicateCustomerException |
-                         DuplicateUserException |
-                         DuplicateEmployeeException |
-                         InvalidQuantityException |
-                         InsufficientStockException |
-                         WeakPasswordException |
-                         UserNotFoundException |
-                         EmployeeNotFoundException |
-                         InvalidIdNumberException |
-                         InvalidPhoneException e) {
-                    out.println("ERROR;" + e.getMessage());
+                out.println(dispatch(line));
+                ReportStream stream = pendingStream;
+                if (stream != null) {
+                    pendingStream = null;
+                    writeReportStream(out, stream);
                 }
             }
 
@@ -119,6 +185,127 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    /**
+     * Writes the rows of a streamed report as "ROWS;[...]" lines of REPORT_STREAM_BATCH_ROWS
+     * entries each, then "END;total". Each line is flushed as it is written, and only one
+     * batch is serialized at a time.
+     *
+     * @param out the client output
+     * @param stream the computed report
+     */
+    private static void writeReportStream(PrintWriter out, ReportStream stream) {
+        List<ReportEntry> entries = stream.entries;
+        for (int from = 0; from < entries.size(); from += REPORT_STREAM_BATCH_ROWS) {
+            int to = Math.min(entries.size(), from + REPORT_STREAM_BATCH_ROWS);
+            out.println("ROWS;" + stream.query.toJsonRows(entries, from, to));
+        }
+        out.println("END;" + entries.size());
+    }
+
+    /**
+     * Gets the rows of a report from the shared row cache, computing them only if no
+     * connection has computed them since the last sale.
+     *
+     * @param query the scoped report query
+     * @param salesVersion the sales version, read before computing
+     * @return the report entries (shared - not to be modified)
+     */
+    private List<ReportEntry> reportRows(ReportQuery query, long salesVersion) {
+        return REPORT_ROWS_CACHE.get(query.getCacheKey(), salesVersion, () -> query.execute(controller));
+    }
+
+    /**
+     * Runs one command line through admission control and the CommandScheduler.
+     * The connection thread waits here while a worker of the command's priority lane
+     * executes it, so long reports never delay checkout commands of other clients.
+     * Commands submitted after the scheduler was shut down, or cancelled in its queue by the
+     * shutdown, are answered with an ERROR line instead of ending the connection thread.
+     *
+     * @param line the command line from the client
+     * @return the response line to send to the client
+     * @throws IOException if the command failed with an I/O error or the wait was interrupted
+     */
+    private String dispatch(String line) throws IOException {
+        String command = line.split(";", 2)[0];
+        String rejection = null;
+        if ("LOGIN".equals(command)) {
+            rejection = admissionController.admitLogin(socket.getInetAddress().getHostAddress());
+        } else if (isAuthenticated && currentSession != null && !"LOGOUT".equals(command)) {
+            // LOGOUT is never refused; the user's buckets outlive the session anyway
+            rejection = admissionController.admit(currentSession, command);
+        }
+        if (rejection != null) {
+            return rejection;
+        }
+
+        if ("WAIT_CHAT_EVENTS".equals(command)) {
+            // Long-poll parks on this connection's own thread - it must not hold a worker
+            try {
+                return process(line);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        Future<String> response;
+        try {
+            response = scheduler.submit(CommandPriority.classify(command), () -> process(line));
+        } catch (RejectedExecutionException e) {
+            return "ERROR;Server is shutting down";
+        }
+        try {
+            return response.get();
+        } catch (CancellationException e) {
+            // Still queued when the scheduler was shut down
+            return "ERROR;Server is shutting down";
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for command");
+        }
+    }
+
+    /**
+     * Executes a command and maps business exceptions to protocol responses.
+     * Runs on a CommandScheduler worker thread.
+     *
+     * @param line the command line from the client
+     * @return the response line to send to the client
+     */
+    private String process(String line) {
+        try {
+            return handleCommand(line);
+        } catch (InvalidCredentialsException |
+                 UserAlreadyLoggedInException |
+                 UnauthorizedException e) {
+            return "AUTH_ERROR;" + e.getMessage();
+        } catch (DuplicateCustomerException |
+                 DuplicateUserException |
+                 DuplicateEmployeeException |
+                 InvalidQuantityException |
+                 InsufficientStockException |
+                 WeakPasswordException |
+                 UserNotFoundException |
+                 EmployeeNotFoundException |
+                 InvalidIdNumberException |
+                 InvalidPhoneException e) {
+            return "ERROR;" + e.getMessage();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Handles a command from the client.
      * Parses the command string and routes to appropriate handler.
@@ -152,10 +339,35 @@ public class ClientHandler implements Runnable {
                 }
                 currentSession = controller.login(parts[1], parts[2], socket);
                 isAuthenticated = true;
-                return "LOGIN_SUCCESS;" + currentSession.getRole() + ";" + currentSession.getBranchId();
+                return "LOGIN_SUCCESS;" + currentSession.getRole() + ";" + currentSession.getBranchId()
+                        + ";" + currentSession.getChannelToken();
+            
+            case "ATTACH": {
+                if (parts.length < 2) {
+                    throw new IllegalArgumentException("ATTACH requires: channelToken");
+                }
+                if (isAuthenticated) {
+                    throw new UnauthorizedException("Connection is already logged in");
+                }
+                Session session = controller.getSessionManager().getSessionByToken(parts[1]);
+                if (session == null) {
+                    throw new UnauthorizedException("Invalid or expired channel token");
+                }
+                currentSession = session;
+                isAuthenticated = true;
+                attached = true;
+                // Broadcasts go to the client's login connection only
+                connectedClients.remove(socket);
+                return "ATTACH_SUCCESS";
+            }
             
             case "LOGOUT":
-                controller.logout(socket);
+                if (attached) {
+                    // Detach the background channel only - the login connection stays logged in
+                    attached = false;
+                } else {
+                    controller.logout(socket);
+                }
                 isAuthenticated = false;
                 currentSession = null;
                 return "LOGOUT_SUCCESS";
@@ -164,6 +376,13 @@ public class ClientHandler implements Runnable {
                 if (!isAuthenticated) {
                     throw new UnauthorizedException("You must login first");
                 }
+                if (attached && controller.getSessionManager()
+                        .getSessionByToken(currentSession.getChannelToken()) != currentSession) {
+                    // The login connection logged out or disconnected
+                    isAuthenticated = false;
+                    currentSession = null;
+                    throw new UnauthorizedException("Session expired");
+                }
                 return handleAuthenticatedCommand(line);
         }
     }
@@ -346,7 +565,7 @@ public class ClientHandler implements Runnable {
 
         case "SELL":
             if (parts.length < 5) {
-                throw new IllegalArgumentException("SELL requires: productId;quantity;branchId;customerId");
+                throw new IllegalArgumentException("SELL requires: productId;quantity;branchId;customerId[;holdId]");
             }
             String sellBranchId = parts[3];
             if (!PermissionChecker.canAccessBranch(role, userBranchId, sellBranchId)) {
@@ -364,10 +583,71 @@ public class ClientHandler implements Runnable {
                 throw new InvalidQuantityException("Invalid quantity format: " + parts[2]);
             }
             
-            controller.sellProduct(parts[1], sellQuantity, sellBranchId, sellEmployeeNumber, parts[4]);
+            String sellHoldId = (parts.length > 5 && !parts[5].isEmpty()) ? parts[5] : null;
+            controller.sellProduct(parts[1], sellQuantity, sellBranchId, sellEmployeeNumber, parts[4], sellHoldId, username);
             
             return "OK;Sale completed successfully";
 
+        case "HOLD_STOCK": {
+            if (parts.length < 4) {
+                throw new IllegalArgumentException("HOLD_STOCK requires: productId;quantity;branchId");
+            }
+            if (!PermissionChecker.canAccessBranch(role, userBranchId, parts[3])) {
+                throw new UnauthorizedException("You can only hold stock in your own branch (" + userBranchId + ")");
+            }
+            int holdQuantity;
+            try {
+                holdQuantity = Integer.parseInt(parts[2]);
+            } catch (NumberFormatException e) {
+                throw new InvalidQuantityException("Invalid quantity format: " + parts[2]);
+            }
+            StockHold hold = controller.holdStock(parts[1], holdQuantity, parts[3], currentSession.getUsername());
+            return "OK;" + hold.getHoldId() + ";" + (hold.getExpiresAt() - System.currentTimeMillis());
+        }
+
+        case "RELEASE_HOLD": {
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("RELEASE_HOLD requires: holdId");
+            }
+            // Releasing is idempotent - an expired or already sold hold is not an error
+            controller.releaseHold(parts[1], currentSession.getUsername());
+            return "OK;Hold released";
+        }
+
+        case "SELL_CART": {
+            if (parts.length < 3) {
+                throw new IllegalArgumentException("SELL_CART requires: customerId;productId:quantity,...[;branchId]");
+            }
+            String cartBranchId = (parts.length > 3 && !parts[3].isEmpty()) ? parts[3] : userBranchId;
+            if (!PermissionChecker.canAccessBranch(role, userBranchId, cartBranchId)) {
+                throw new UnauthorizedException("You can only sell products from your own branch (" + userBranchId + "). Only admin can sell from any branch");
+            }
+            Map<String, Integer> cartItems = new LinkedHashMap<>();
+            for (String item : parts[2].split(",")) {
+                String[] cartLine = item.split(":");
+                if (cartLine.length != 2 || cartLine[0].trim().isEmpty()) {
+                    throw new IllegalArgumentException("Invalid cart line: " + item);
+                }
+                int lineQuantity;
+                try {
+                    lineQuantity = Integer.parseInt(cartLine[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new InvalidQuantityException("Invalid quantity format: " + cartLine[1]);
+                }
+                if (lineQuantity <= 0) {
+                    throw new InvalidQuantityException("Quantity must be greater than 0");
+                }
+                cartItems.merge(cartLine[0].trim(), lineQuantity, Integer::sum);
+            }
+            String cartEmployeeNumber = controller.getEmployeeNumberByUsername(currentSession.getUsername(), role);
+            List<Sale> cartSales = controller.sellCart(cartItems, cartBranchId, cartEmployeeNumber, parts[1]);
+            double cartTotal = 0;
+            for (Sale sale : cartSales) {
+                cartTotal += sale.getFinalPrice();
+            }
+            return "OK;" + cartSales.get(0).getSaleGroupId() + ";" + String.format("%.2f", cartTotal);
+        }
+
         case "GET_DISCOUNTS": {
             Map<String, Double> discounts = controller.getAllDiscounts();
             StringBuilder discountsList = new StringBuilder("OK;");
@@ -396,21 +676,22 @@ public class ClientHandler implements Runnable {
         }
         
         case "LIST_CUSTOMERS": {
-            Map<String, Customer> customers = controller.getAllCustomersForDisplay();
-            StringBuilder customersList = new StringBuilder("OK;");
-            for (Customer c : customers.values()) {
-                String customerType = "NEW";
-                if (c instanceof VipCustomer) {
-                    customerType = "VIP";
-                } else if (c instanceof ReturningCustomer) {
-                    customerType = "RETURNING";
+            return LIST_CACHE.get(parts[0], controller.getCustomersSnapshot(), customers -> {
+                StringBuilder customersList = new StringBuilder("OK;");
+                for (Customer c : customers.values()) {
+                    String customerType = "NEW";
+                    if (c instanceof VipCustomer) {
+                        customerType = "VIP";
+                    } else if (c instanceof ReturningCustomer) {
+                        customerType = "RETURNING";
+                    }
+                    customersList.append(c.getIdNumber()).append(":")
+                                 .append(c.getFullName()).append(":")
+                                 .append(c.getPhone()).append(":")
+                                 .append(customerType).append("|");
                 }
-                customersList.append(c.getIdNumber()).append(":")
-                             .append(c.getFullName()).append(":")
-                             .append(c.getPhone()).append(":")
-                             .append(customerType).append("|");
-            }
-            return customersList.toString();
+                return customersList.toString();
+            });
         }
             
         case "LIST_PRODUCTS": {
@@ -456,92 +737,95 @@ public class ClientHandler implements Runnable {
             return productsList.toString();
         }
 
-        case "REPORT_SALES_BY_BRANCH": {
-            String branchId = (parts.length > 1 && !parts[1].isEmpty()) ? parts[1] : null;
-            if (!PermissionChecker.canViewAllBranches(role) && (branchId == null || !branchId.equals(userBranchId))) {
-                branchId = userBranchId;
+        case "REPORT_SALES_BY_BRANCH":
+        case "REPORT_SALES_BY_PRODUCT":
+        case "REPORT_SALES_BY_CATEGORY":
+        case "REPORT_DAILY_SALES":
+        case "REPORT_SALES_RANGE": {
+            ReportQuery query;
+            try {
+                query = ReportQuery.parse(parts, 0, role, userBranchId);
+            } catch (IllegalArgumentException e) {
+                return "ERROR;" + e.getMessage();
+            }
+            long salesVersion = controller.getSalesVersion();
+            return REPORT_CACHE.get(query.getCacheKey(), salesVersion,
+                    () -> "OK;" + query.toJson(reportRows(query, salesVersion)));
+        }
+
+        case "REPORT_STREAM": {
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("REPORT_STREAM requires: reportCommand[;params...]");
             }
-            List<ReportEntry> report = controller.getSalesReportByBranch(branchId);
-            StringBuilder json = new StringBuilder("{\"reportType\":\"SALES_BY_BRANCH\",\"branchId\":\"" + 
-                escapeJson(branchId != null ? branchId : "ALL") + "\",\"entries\":[");
-            for (int i = 0; i < report.size(); i++) {
-                ReportEntry entry = report.get(i);
-                if (i > 0) json.append(",");
-                json.append("{\"branchId\":\"").append(escapeJson(entry.getBranchId()))
-                    .append("\",\"quantity\":").append(entry.getQuantity())
-                    .append(",\"totalRevenue\":").append(String.format("%.2f", entry.getTotalRevenue()))
-                    .append("}");
+            ReportQuery query;
+            try {
+                query = ReportQuery.parse(parts, 1, role, userBranchId);
+            } catch (IllegalArgumentException e) {
+                return "ERROR;" + e.getMessage();
             }
-            json.append("]}");
-            
-            return "OK;" + json.toString();
-        }
-
-        case "REPORT_SALES_BY_PRODUCT": {
-            String productId = (parts.length > 1 && !parts[1].isEmpty()) ? parts[1] : null;
-            List<ReportEntry> report = controller.getSalesReportByProduct(productId);
-            StringBuilder json = new StringBuilder("{\"reportType\":\"SALES_BY_PRODUCT\",\"productId\":\"" + 
-                escapeJson(productId != null ? productId : "ALL") + "\",\"entries\":[");
-            for (int i = 0; i < report.size(); i++) {
-                ReportEntry entry = report.get(i);
-                if (i > 0) json.append(",");
-                json.append("{\"branchId\":\"").append(escapeJson(entry.getBranchId()))
-                    .append("\",\"productId\":\"").append(escapeJson(entry.getProductId()))
-                    .append("\",\"productName\":\"").append(escapeJson(entry.getProductName()))
-                    .append("\",\"category\":\"").append(escapeJson(entry.getCategory()))
-                    .append("\",\"quantity\":").append(entry.getQuantity())
-                    .append(",\"totalRevenue\":").append(String.format("%.2f", entry.getTotalRevenue()))
-                    .append(",\"date\":\"").append(escapeJson(entry.getDate()))
-                    .append("\"}");
+            List<ReportEntry> entries = reportRows(query, controller.getSalesVersion());
+            pendingStream = new ReportStream(query, entries);
+            return "OK;BEGIN;" + query.toJsonHeader(entries.size());
+        }
+
+        case "SUBMIT_REPORT": {
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("SUBMIT_REPORT requires: reportCommand[;params...]");
             }
-            json.append("]}");
-            
-            return "OK;" + json.toString();
-        }
-
-        case "REPORT_SALES_BY_CATEGORY": {
-            String category = (parts.length > 1 && !parts[1].isEmpty()) ? parts[1] : null;
-            List<ReportEntry> report = controller.getSalesReportByCategory(category);
-            StringBuilder json = new StringBuilder("{\"reportType\":\"SALES_BY_CATEGORY\",\"category\":\"" + 
-                escapeJson(category != null ? category : "ALL") + "\",\"entries\":[");
-            for (int i = 0; i < report.size(); i++) {
-                ReportEntry entry = report.get(i);
-                if (i > 0) json.append(",");
-                json.append("{\"category\":\"").append(escapeJson(entry.getCategory()))
-                    .append("\",\"quantity\":").append(entry.getQuantity())
-                    .append(",\"totalRevenue\":").append(String.format("%.2f", entry.getTotalRevenue()))
-                    .append("}");
+            ReportQuery query;
+            try {
+                query = ReportQuery.parse(parts, 1, role, userBranchId);
+            } catch (IllegalArgumentException e) {
+                return "ERROR;" + e.getMessage();
             }
-            json.append("]}");
-            
-            return "OK;" + json.toString();
-        }
-
-        case "REPORT_DAILY_SALES": {
-            String date = (parts.length > 1 && !parts[1].isEmpty()) ? parts[1] : null;
-            String branchId = (parts.length > 2 && !parts[2].isEmpty()) ? parts[2] : null;
-            if (!PermissionChecker.canViewAllBranches(role) && (branchId == null || !branchId.equals(userBranchId))) {
-                branchId = userBranchId;
-            }
-            List<ReportEntry> report = controller.getDailySalesReport(date, branchId);
-            StringBuilder json = new StringBuilder("{\"reportType\":\"DAILY_SALES\",\"date\":\"" + 
-                escapeJson(date != null ? date : "ALL") + "\",\"branchId\":\"" + 
-                escapeJson(branchId != null ? branchId : "ALL") + "\",\"entries\":[");
-            for (int i = 0; i < report.size(); i++) {
-                ReportEntry entry = report.get(i);
-                if (i > 0) json.append(",");
-                json.append("{\"branchId\":\"").append(escapeJson(entry.getBranchId()))
-                    .append("\",\"productId\":\"").append(escapeJson(entry.getProductId()))
-                    .append("\",\"productName\":\"").append(escapeJson(entry.getProductName()))
-                    .append("\",\"category\":\"").append(escapeJson(entry.getCategory()))
-                    .append("\",\"quantity\":").append(entry.getQuantity())
-                    .append(",\"totalRevenue\":").append(String.format("%.2f", entry.getTotalRevenue()))
-                    .append(",\"date\":\"").append(escapeJson(entry.getDate()))
-                    .append("\"}");
+            try {
+                ReportJobManager.ReportJob job = reportJobManager.submit(query, currentSession.getUsername());
+                return "OK;" + job.getJobId();
+            } catch (RejectedExecutionException e) {
+                return "RETRY_AFTER;" + REPORT_QUEUE_FULL_RETRY_MS;
             }
-            json.append("]}");
-            
-            return "OK;" + json.toString();
+        }
+
+        case "REPORT_STATUS": {
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("REPORT_STATUS requires: jobId");
+            }
+            ReportJobManager.ReportJob job = reportJobManager.getJob(parts[1], currentSession.getUsername());
+            if (job == null) {
+                return "ERROR;Unknown or expired report job: " + parts[1];
+            }
+            switch (job.getStatus()) {
+                case DONE:
+                    return "OK;DONE;" + job.getResult().size();
+                case FAILED:
+                    // The error text must stay one field of one line, as in EXPORT_STATUS
+                    return "OK;FAILED;" + job.getError().replace(';', ',').replace('\n', ' ');
+                default:
+                    return "OK;" + job.getStatus();
+            }
+        }
+
+        case "FETCH_REPORT": {
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("FETCH_REPORT requires: jobId[;offset;limit]");
+            }
+            ReportJobManager.ReportJob job = reportJobManager.getJob(parts[1], currentSession.getUsername());
+            if (job == null) {
+                return "ERROR;Unknown or expired report job: " + parts[1];
+            }
+            if (job.getStatus() != ReportJobManager.JobStatus.DONE) {
+                return "ERROR;Report is not ready (" + job.getStatus() + ")";
+            }
+            int offset;
+            int limit;
+            try {
+                offset = parts.length > 2 ? Integer.parseInt(parts[2]) : 0;
+                limit = parts.length > 3 ? Integer.parseInt(parts[3]) : DEFAULT_REPORT_PAGE_SIZE;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid page parameters");
+            }
+            limit = Math.min(Math.max(limit, 1), MAX_REPORT_PAGE_SIZE);
+            return "OK;" + job.getQuery().toJson(job.getResult(), offset, limit, true);
         }
 
         case "CREATE_USER":
@@ -583,15 +867,16 @@ public class ClientHandler implements Runnable {
             if (!PermissionChecker.canManageUsers(role)) {
                 throw new UnauthorizedException("Only admin can list users");
             }
-            Map<String, User> users = controller.getAllUsers();
-            StringBuilder usersList = new StringBuilder("OK;");
-            for (User u : users.values()) {
-                usersList.append(u.getUsername()).append(":")
-                         .append(u.getRole()).append(":")
-                         .append(u.getBranchId()).append(":")
-                         .append(u.isActive() ? "active" : "inactive").append("|");
-            }
-            return usersList.toString();
+            return LIST_CACHE.get(parts[0], controller.getUsersSnapshot(), users -> {
+                StringBuilder usersList = new StringBuilder("OK;");
+                for (User u : users.values()) {
+                    usersList.append(u.getUsername()).append(":")
+                             .append(u.getRole()).append(":")
+                             .append(u.getBranchId()).append(":")
+                             .append(u.isActive() ? "active" : "inactive").append("|");
+                }
+                return usersList.toString();
+            });
 
         case "GET_USER":
             if (!PermissionChecker.canManageUsers(role)) {
@@ -656,18 +941,19 @@ public class ClientHandler implements Runnable {
             if (!PermissionChecker.canViewEmployees(role)) {
                 throw new UnauthorizedException("Only admin and cashier can list employees");
             }
-            Map<String, Employee> employees = controller.getAllEmployees();
-            StringBuilder employeesList = new StringBuilder("OK;");
-            for (Employee emp : employees.values()) {
-                employeesList.append(emp.getEmployeeNumber()).append(":")
-                             .append(emp.getFullName()).append(":")
-                             .append(emp.getIdNumber()).append(":")
-                             .append(emp.getPhone()).append(":")
-                             .append(emp.getBankAccount()).append(":")
-                             .append(emp.getRole()).append(":")
-                             .append(emp.getBranchId()).append("|");
-            }
-            return employeesList.toString();
+            return LIST_CACHE.get(parts[0], controller.getEmployeesSnapshot(), employees -> {
+                StringBuilder employeesList = new StringBuilder("OK;");
+                for (Employee emp : employees.values()) {
+                    employeesList.append(emp.getEmployeeNumber()).append(":")
+                                 .append(emp.getFullName()).append(":")
+                                 .append(emp.getIdNumber()).append(":")
+                                 .append(emp.getPhone()).append(":")
+                                 .append(emp.getBankAccount()).append(":")
+                                 .append(emp.getRole()).append(":")
+                                 .append(emp.getBranchId()).append("|");
+                }
+                return employeesList.toString();
+            });
 
         case "GET_EMPLOYEE":
             if (!PermissionChecker.canManageEmployees(role)) {
@@ -742,6 +1028,53 @@ public class ClientHandler implements Runnable {
             return json.toString();
         }
 
+        case "GET_CHAT_MESSAGES_SINCE": {
+            if (parts.length < 3) {
+                throw new IllegalArgumentException("GET_CHAT_MESSAGES_SINCE requires: chatId;sequence");
+            }
+            String chatId = parts[1];
+            long afterSequence;
+            try {
+                afterSequence = Long.parseLong(parts[2]);
+            } catch (NumberFormatException e) {
+                return "ERROR;Invalid sequence format: " + parts[2];
+            }
+            if (afterSequence < 0) {
+                return "ERROR;Sequence cannot be negative";
+            }
+            List<model.ChatMessage> messages = controller.getChatMessagesSince(chatId, afterSequence);
+            // The client continues from the last message it actually received
+            long lastSequence = messages.isEmpty() ? afterSequence : messages.get(messages.size() - 1).getSequence();
+            StringBuilder json = new StringBuilder("OK;{\"chatId\":\"").append(escapeJson(chatId))
+                .append("\",\"lastSequence\":").append(lastSequence)
+                .append(",\"messages\":[");
+            for (int i = 0; i < messages.size(); i++) {
+                model.ChatMessage msg = messages.get(i);
+                json.append(msg.toJson());
+                if (i < messages.size() - 1) json.append(",");
+            }
+            json.append("]}");
+            return json.toString();
+        }
+
+        case "WAIT_CHAT_EVENTS": {
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("WAIT_CHAT_EVENTS requires: timeoutMs");
+            }
+            long timeoutMs;
+            try {
+                timeoutMs = Long.parseLong(parts[1]);
+            } catch (NumberFormatException e) {
+                return "ERROR;Invalid timeout format: " + parts[1];
+            }
+            timeoutMs = Math.max(0, Math.min(timeoutMs, MAX_CHAT_EVENT_WAIT_MS));
+            List<String> events = controller.waitChatEvents(currentSession.getUsername(), timeoutMs);
+            if (events.isEmpty()) {
+                return "OK;NONE";
+            }
+            return "OK;EVENTS;" + String.join("|", events);
+        }
+
         case "END_CHAT": {
             if (parts.length < 2) {
                 throw new IllegalArgumentException("END_CHAT requires: chatId");
@@ -857,7 +1190,10 @@ public class ClientHandler implements Runnable {
         }
 
         case "GET_LOGS": {
-            List<model.LogEntry> logs = controller.getAllLogs();
+            // GET_LOGS[;actionType1,actionType2,...] - the filter is served from the action type index
+            List<model.LogEntry> logs = parts.length > 1 && !parts[1].isEmpty()
+                ? controller.getLogsByActionTypes(Arrays.asList(parts[1].split(",")))
+                : controller.getAllLogs();
             StringBuilder json = new StringBuilder("OK;[");
             for (int i = 0; i < logs.size(); i++) {
                 model.LogEntry log = logs.get(i);
@@ -896,6 +1232,39 @@ public class ClientHandler implements Runnable {
             }
         }
 
+        case "EXPORT_CHAT": {
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("EXPORT_CHAT requires: chatId[;format]");
+            }
+            return submitExport(Collections.singletonList(parts[1]), parts.length > 2 ? parts[2] : "RTF");
+        }
+
+        case "EXPORT_CHATS": {
+            if (parts.length < 3) {
+                throw new IllegalArgumentException("EXPORT_CHATS requires: format;chatId1,chatId2,...");
+            }
+            return submitExport(Arrays.asList(parts[2].split(",")), parts[1]);
+        }
+
+        case "EXPORT_STATUS": {
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("EXPORT_STATUS requires: jobId");
+            }
+            ExportJobManager.ExportJob job = exportJobManager.getJob(parts[1], currentSession.getUsername());
+            if (job == null) {
+                return "ERROR;Unknown or expired export job: " + parts[1];
+            }
+            // OK;status;completed/total;file1,file2,...[;error1|error2...]
+            StringBuilder response = new StringBuilder("OK;").append(job.getStatus())
+                .append(';').append(job.getCompleted()).append('/').append(job.getTotal())
+                .append(';').append(String.join(",", job.getFiles()));
+            List<String> errors = job.getErrors();
+            if (!errors.isEmpty()) {
+                response.append(';').append(String.join("|", errors).replace(';', ',').replace('\n', ' '));
+            }
+            return response.toString();
+        }
+
         case "BROADCAST": {
             if (parts.length < 2) {
                 throw new IllegalArgumentException("BROADCAST requires: message");
@@ -951,6 +1320,26 @@ public class ClientHandler implements Runnable {
         return null;
     }
     
+    /**
+     * Submits an export job for EXPORT_CHAT / EXPORT_CHATS.
+     */
+    private String submitExport(List<String> chatIds, String formatName) {
+        ChatExporter.Format format;
+        try {
+            format = ChatExporter.Format.parse(formatName);
+        } catch (IllegalArgumentException e) {
+            return "ERROR;" + e.getMessage();
+        }
+        if (chatIds.size() > ExportJobManager.QUEUE_CAPACITY) {
+            return "ERROR;Too many chats in one export (max " + ExportJobManager.QUEUE_CAPACITY + ")";
+        }
+        try {
+            return "OK;" + exportJobManager.submit(chatIds, format, currentSession.getUsername()).getJobId();
+        } catch (RejectedExecutionException e) {
+            return "RETRY_AFTER;" + EXPORT_QUEUE_FULL_RETRY_MS;
+        }
+    }
+
     private String escapeJson(String str) {
         if (str == null) return "";
         return str.replace("\\", "\\\\")
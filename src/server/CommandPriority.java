@@ -0,0 +1,43 @@
+package server;
+
+/**
+ * Scheduling class of a client command.
+ * Decides which lane of the CommandScheduler a command waits in.
+ *
+ * @author FinalProject
+ */
+public enum CommandPriority {
+
+    /** Checkout and user-initiated actions - a person is waiting for the answer */
+    INTERACTIVE,
+
+    /** Periodic refreshes issued by the client tabs (lists, chat status polls) */
+    BACKGROUND,
+
+    /** Commands that scan the whole sales or log history (reports, logs, exports) */
+    BULK;
+
+    /**
+     * Classifies a command by its name.
+     *
+     * @param command the command name (first field of the protocol line)
+     * @return the scheduling class of the command
+     */
+    public static CommandPriority classify(String command) {
+        if ("REPORT_STATUS".equals(command) || "FETCH_REPORT".equals(command)
+                || "EXPORT_STATUS".equals(command)) {
+            return BACKGROUND;
+        }
+        if (command.startsWith("REPORT_")
+                || "GET_LOGS".equals(command)
+                || "SAVE_CHAT_TO_RTF".equals(command)
+                || "GET_CHAT_DETAILS".equals(command)
+                || "GET_CHAT_HISTORY".equals(command)) {
+            return BULK;
+        }
+        if (command.startsWith("LIST_") || command.startsWith("GET_")) {
+            return BACKGROUND;
+        }
+        return INTERACTIVE;
+    }
+}
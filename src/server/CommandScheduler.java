@@ -0,0 +1,277 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Executes client commands on a shared worker pool, one queue (lane) per CommandPriority.
+ * Connection threads only read and write the socket; the actual command work is queued here.
+ *
+ * Scheduling rules:
+ * <ul>
+ *   <li>General workers pick lanes by weighted round robin (interactive 6, background 3, bulk 1),
+ *       so no lane starves and checkout gets most of the capacity.</li>
+ *   <li>If the oldest interactive command has waited longer than the latency SLO,
+ *       workers serve the interactive lane first until it catches up.</li>
+ *   <li>At most half of the general workers run bulk commands at the same time.</li>
+ *   <li>A few reserved workers serve only the interactive lane, so SELL and CALCULATE_PRICE
+ *       always find a free thread even while every general worker is busy with reports.</li>
+ * </ul>
+ *
+ * @author FinalProject
+ */
+public class CommandScheduler {
+
+    /** Queueing delay the interactive lane should stay under */
+    public static final long INTERACTIVE_SLO_MS = 50;
+
+    private static final CommandPriority[] LANES = CommandPriority.values();
+    private static final int[] WEIGHTS = {6, 3, 1};
+    private static final int RESERVED_INTERACTIVE_WORKERS = 2;
+
+    /** A queued command together with the time it was enqueued */
+    private static class Task extends FutureTask<String> {
+        final CommandPriority priority;
+        final long enqueuedNanos = System.nanoTime();
+
+        Task(CommandPriority priority, Callable<String> work) {
+            super(work);
+            this.priority = priority;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final List<ArrayDeque<Task>> lanes = new ArrayList<>();
+    private final int[] credits = new int[LANES.length];
+    private final int maxConcurrentBulk;
+    private int runningBulk = 0;
+    private int queued = 0;
+    private int cursor = 0;
+    private boolean shutdown = false;
+
+    private final AtomicLong interactiveCompleted = new AtomicLong();
+    private final AtomicLong interactiveSloViolations = new AtomicLong();
+
+    /**
+     * Constructs a scheduler sized to the number of available processors.
+     */
+    public CommandScheduler() {
+        this(Math.max(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Constructs a scheduler and starts its worker threads.
+     *
+     * @param generalWorkers number of workers shared by all lanes
+     */
+    public CommandScheduler(int generalWorkers) {
+        for (int i = 0; i < LANES.length; i++) {
+            lanes.add(new ArrayDeque<>());
+        }
+        System.arraycopy(WEIGHTS, 0, credits, 0, WEIGHTS.length);
+        this.maxConcurrentBulk = Math.max(1, generalWorkers / 2);
+
+        for (int i = 0; i < generalWorkers; i++) {
+            startWorker("command-worker-" + i, false);
+        }
+        for (int i = 0; i < RESERVED_INTERACTIVE_WORKERS; i++) {
+            startWorker("command-interactive-" + i, true);
+        }
+    }
+
+    /**
+     * Queues a command for execution.
+     *
+     * @param priority the lane to queue the command in
+     * @param work the command to run
+     * @return a Future holding the command response
+     * @throws RejectedExecutionException if the scheduler was shut down
+     */
+    public Future<String> submit(CommandPriority priority, Callable<String> work) {
+        Task task = new Task(priority, work);
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("Scheduler is shut down");
+            }
+            lanes.get(priority.ordinal()).addLast(task);
+            queued++;
+            // Reserved workers ignore non-interactive lanes, so a single signal could be lost on them
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return task;
+    }
+
+    /**
+     * Gets the number of commands waiting for a worker.
+     *
+     * @return the total queue length over all lanes
+     */
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of interactive commands completed so far.
+     *
+     * @return the interactive completion count
+     */
+    public long getInteractiveCompleted() {
+        return interactiveCompleted.get();
+    }
+
+    /**
+     * Gets how many interactive commands waited in the queue longer than the SLO.
+     *
+     * @return the SLO violation count
+     */
+    public long getInteractiveSloViolations() {
+        return interactiveSloViolations.get();
+    }
+
+    /**
+     * Describes the interactive latency counters, for the server's log.
+     *
+     * @return how many interactive commands completed and how many waited longer than the SLO
+     */
+    public String getLatencySummary() {
+        return "Interactive commands: " + getInteractiveCompleted() + " completed, "
+                + getInteractiveSloViolations() + " waited over " + INTERACTIVE_SLO_MS + " ms";
+    }
+
+    /**
+     * Stops accepting commands and stops the workers once their current command finishes.
+     * Commands still in the queue are cancelled.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            for (ArrayDeque<Task> lane : lanes) {
+                for (Task task : lane) {
+                    task.cancel(false);
+                }
+                lane.clear();
+            }
+            queued = 0;
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startWorker(String name, boolean interactiveOnly) {
+        Thread worker = new Thread(() -> workLoop(interactiveOnly), name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void workLoop(boolean interactiveOnly) {
+        while (true) {
+            Task task;
+            lock.lock();
+            try {
+                while ((task = interactiveOnly ? pollLane(CommandPriority.INTERACTIVE) : pickNext()) == null) {
+                    if (shutdown) {
+                        return;
+                    }
+                    workAvailable.awaitUninterruptibly();
+                }
+                if (task.priority == CommandPriority.BULK) {
+                    runningBulk++;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (task.priority == CommandPriority.INTERACTIVE) {
+                long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - task.enqueuedNanos);
+                if (waitedMs > INTERACTIVE_SLO_MS) {
+                    interactiveSloViolations.incrementAndGet();
+                }
+            }
+
+            try {
+                task.run();
+            } finally {
+                if (task.priority == CommandPriority.INTERACTIVE) {
+                    interactiveCompleted.incrementAndGet();
+                }
+                if (task.priority == CommandPriority.BULK) {
+                    lock.lock();
+                    try {
+                        runningBulk--;
+                        // A bulk slot was freed - a waiting worker may now take a bulk task
+                        workAvailable.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks the next task for a general worker. Must be called with the lock held.
+     */
+    private Task pickNext() {
+        if (queued == 0) {
+            return null;
+        }
+
+        // Latency guard: an interactive task over its SLO jumps the weighted order
+        Task oldestInteractive = lanes.get(CommandPriority.INTERACTIVE.ordinal()).peekFirst();
+        if (oldestInteractive != null
+                && System.nanoTime() - oldestInteractive.enqueuedNanos > TimeUnit.MILLISECONDS.toNanos(INTERACTIVE_SLO_MS)) {
+            return pollLane(CommandPriority.INTERACTIVE);
+        }
+
+        // Weighted round robin; at most two passes (the second after refilling credits)
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < LANES.length; i++) {
+                int lane = (cursor + i) % LANES.length;
+                if (credits[lane] > 0 && isRunnable(lane)) {
+                    credits[lane]--;
+                    if (credits[lane] == 0) {
+                        cursor = (lane + 1) % LANES.length;
+                    }
+                    return pollLane(LANES[lane]);
+                }
+            }
+            System.arraycopy(WEIGHTS, 0, credits, 0, WEIGHTS.length);
+        }
+        return null;
+    }
+
+    private boolean isRunnable(int lane) {
+        if (lanes.get(lane).isEmpty()) {
+            return false;
+        }
+        return lane != CommandPriority.BULK.ordinal() || runningBulk < maxConcurrentBulk;
+    }
+
+    private Task pollLane(CommandPriority priority) {
+        Task task = lanes.get(priority.ordinal()).pollFirst();
+        if (task != null) {
+            queued--;
+        }
+        return task;
+    }
+}
@@ -0,0 +1,230 @@
+package server;
+
+import controller.SystemController;
+import storage.ChatExporter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs chat exports asynchronously for the EXPORT_CHAT / EXPORT_CHATS / EXPORT_STATUS commands.
+ * Every chat of a job is a separate task on a small bounded executor of its own, so a batch of
+ * chats is exported in parallel and no export holds a connection thread or a CommandScheduler
+ * worker. A job finishes when its last chat is written; chats that fail are reported with the
+ * job and do not stop the others. A job belongs to the user who submitted it: job IDs are
+ * random and getJob does not reveal another user's job.
+ *
+ * @author FinalProject
+ */
+public class ExportJobManager {
+
+    /** Lifecycle of an export job */
+    public enum JobStatus {
+        PENDING,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    /**
+     * A submitted export of one or more chats.
+     */
+    public static class ExportJob {
+        private final String jobId;
+        private final List<String> chatIds;
+        private final ChatExporter.Format format;
+        private final String owner;
+        /** Created file of each chat, by position in chatIds (null until written or if it failed) */
+        private final String[] files;
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger completed = new AtomicInteger();
+        private volatile JobStatus status = JobStatus.PENDING;
+        private volatile long completedAt;
+
+        ExportJob(String jobId, List<String> chatIds, ChatExporter.Format format, String owner) {
+            this.jobId = jobId;
+            this.chatIds = chatIds;
+            this.format = format;
+            this.owner = owner;
+            this.files = new String[chatIds.size()];
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        public ChatExporter.Format getFormat() {
+            return format;
+        }
+
+        /** @return the username of the user who submitted the job */
+        public String getOwner() {
+            return owner;
+        }
+
+        public JobStatus getStatus() {
+            return status;
+        }
+
+        /** @return the number of chats in the job */
+        public int getTotal() {
+            return chatIds.size();
+        }
+
+        /** @return the number of chats finished so far (written or failed) */
+        public int getCompleted() {
+            return completed.get();
+        }
+
+        /**
+         * Gets the files written so far, in the order the chats were submitted.
+         *
+         * @return the file paths
+         */
+        public List<String> getFiles() {
+            List<String> result = new ArrayList<>(files.length);
+            synchronized (files) {
+                for (String file : files) {
+                    if (file != null) {
+                        result.add(file);
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Gets the errors of chats that could not be exported, as "chatId: message".
+         *
+         * @return a copy of the errors
+         */
+        public List<String> getErrors() {
+            synchronized (errors) {
+                return new ArrayList<>(errors);
+            }
+        }
+
+        public long getCompletedAt() {
+            return completedAt;
+        }
+    }
+
+    /** Number of chats exported at the same time */
+    private static final int EXPORT_THREADS = 4;
+
+    /** Number of chats that may wait for a free export thread (also the largest batch) */
+    public static final int QUEUE_CAPACITY = 64;
+
+    /** How long a finished job stays available for EXPORT_STATUS */
+    private static final long JOB_RETENTION_MS = 10 * 60_000;
+
+    private final SystemController controller;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ExportJob> jobsById = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new ExportJobManager.
+     *
+     * @param controller the system controller used to export chats
+     */
+    public ExportJobManager(SystemController controller) {
+        this.controller = controller;
+        this.executor = new ThreadPoolExecutor(EXPORT_THREADS, EXPORT_THREADS,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "export-job");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Submits an export of one or more chats. Duplicate chat IDs are exported once.
+     * Either all chats of the job are queued or none is.
+     *
+     * @param chatIds the chats to export
+     * @param format the document format
+     * @param owner the username of the submitting user
+     * @return the job
+     * @throws IllegalArgumentException if there are no chats or more than QUEUE_CAPACITY
+     * @throws RejectedExecutionException if the export queue has no room for the job
+     */
+    public ExportJob submit(List<String> chatIds, ChatExporter.Format format, String owner) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(chatIds));
+        if (distinct.isEmpty() || distinct.size() > QUEUE_CAPACITY) {
+            throw new IllegalArgumentException("An export job must have 1 to " + QUEUE_CAPACITY + " chats");
+        }
+        purgeExpired();
+
+        ExportJob job = new ExportJob("EXP_" + UUID.randomUUID(),
+                Collections.unmodifiableList(distinct), format, owner);
+        // Workers only take from the queue, so once room is checked under the lock it stays available
+        synchronized (executor) {
+            if (executor.getQueue().remainingCapacity() < distinct.size()) {
+                throw new RejectedExecutionException("Export queue is full");
+            }
+            jobsById.put(job.getJobId(), job);
+            for (int i = 0; i < distinct.size(); i++) {
+                int index = i;
+                executor.execute(() -> run(job, index));
+            }
+        }
+        return job;
+    }
+
+    /**
+     * Gets a job of a user by its ID.
+     *
+     * @param jobId the job ID
+     * @param owner the username of the requesting user
+     * @return the job, or null if it does not exist, has expired or belongs to another user
+     */
+    public ExportJob getJob(String jobId, String owner) {
+        ExportJob job = jobsById.get(jobId);
+        return job != null && job.owner.equals(owner) ? job : null;
+    }
+
+    /**
+     * Stops the export executor. Running exports are interrupted.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ExportJob job, int index) {
+        String chatId = job.chatIds.get(index);
+        if (job.status == JobStatus.PENDING) {
+            job.status = JobStatus.RUNNING;
+        }
+        try {
+            String file = controller.exportChat(chatId, job.format);
+            synchronized (job.files) {
+                job.files[index] = file;
+            }
+        } catch (IOException | RuntimeException e) {
+            job.errors.add(chatId + ": " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+        } finally {
+            if (job.completed.incrementAndGet() == job.getTotal()) {
+                job.status = job.errors.size() == job.getTotal() ? JobStatus.FAILED : JobStatus.DONE;
+                job.completedAt = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        jobsById.values().removeIf(job -> job.completedAt > 0 && now - job.completedAt > JOB_RETENTION_MS);
+    }
+}
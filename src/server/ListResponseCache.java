@@ -0,0 +1,50 @@
+package server;
+
+import util.Snapshot;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Reuses rendered list responses (LIST_CUSTOMERS, LIST_USERS, LIST_EMPLOYEES) across clients.
+ * A response is rebuilt only when the manager snapshot it was rendered from has been replaced,
+ * so the tabs' once-a-second polling by every client costs one volatile read and a map lookup
+ * while nothing changes. Snapshots are compared by identity - each write publishes a new one
+ * with a higher version, and a restarted server never shares snapshot objects with the old one.
+ *
+ * @author FinalProject
+ */
+public class ListResponseCache {
+
+    /** A rendered response and the snapshot it was built from */
+    private static class Entry {
+        final Snapshot<?, ?> snapshot;
+        final String response;
+
+        Entry(Snapshot<?, ?> snapshot, String response) {
+            this.snapshot = snapshot;
+            this.response = response;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the response for a list command, rendering it only if the snapshot changed.
+     *
+     * @param command the list command (cache key)
+     * @param snapshot the current snapshot of the listed collection
+     * @param render builds the response from the snapshot's entries
+     * @return the response line
+     */
+    public <K, V> String get(String command, Snapshot<K, V> snapshot, Function<Map<K, V>, String> render) {
+        Entry entry = entries.get(command);
+        if (entry != null && entry.snapshot == snapshot) {
+            return entry.response;
+        }
+        String response = render.apply(snapshot.getMap());
+        entries.put(command, new Entry(snapshot, response));
+        return response;
+    }
+}
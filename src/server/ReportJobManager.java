@@ -0,0 +1,218 @@
+package server;
+
+import controller.SystemController;
+import model.ReportEntry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs sales reports asynchronously for the SUBMIT_REPORT / REPORT_STATUS / FETCH_REPORT commands.
+ * Reports execute on a small bounded executor of their own, so a long report never holds a
+ * connection thread or a CommandScheduler worker. Finished results are kept for reuse:
+ * submitting the same scoped report again within RESULT_TTL_MS returns the existing job as
+ * long as no sale has been recorded since it ran, and identical submissions while a job is
+ * still running share that job. Jobs belong to the user who submitted them: job IDs are random,
+ * jobs are shared only between identical submissions of the same user, and getJob does not
+ * reveal another user's job.
+ *
+ * @author FinalProject
+ */
+public class ReportJobManager {
+
+    /** Lifecycle of a report job */
+    public enum JobStatus {
+        PENDING,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    /**
+     * A submitted report and, once finished, its result.
+     */
+    public static class ReportJob {
+        private final String jobId;
+        private final ReportQuery query;
+        private final String owner;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile JobStatus status = JobStatus.PENDING;
+        private volatile List<ReportEntry> result;
+        private volatile String error;
+        private volatile long completedAt;
+        /** Sales version read before the report was computed */
+        private volatile long salesVersion;
+
+        ReportJob(String jobId, ReportQuery query, String owner) {
+            this.jobId = jobId;
+            this.query = query;
+            this.owner = owner;
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        public ReportQuery getQuery() {
+            return query;
+        }
+
+        /** @return the username of the user who submitted the job */
+        public String getOwner() {
+            return owner;
+        }
+
+        public JobStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * Gets the report entries.
+         *
+         * @return the entries, or null if the job has not finished successfully
+         */
+        public List<ReportEntry> getResult() {
+            return result;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public long getCompletedAt() {
+            return completedAt;
+        }
+    }
+
+    /** Number of reports that may run at the same time */
+    private static final int REPORT_THREADS = 2;
+
+    /** Number of reports that may wait for a free report thread */
+    private static final int QUEUE_CAPACITY = 16;
+
+    /** How long a finished result is reused for identical submissions */
+    private static final long RESULT_TTL_MS = 60_000;
+
+    /** How long a finished job stays available for REPORT_STATUS / FETCH_REPORT */
+    private static final long JOB_RETENTION_MS = 10 * 60_000;
+
+    private final SystemController controller;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ReportJob> jobsById = new ConcurrentHashMap<>();
+    private final Map<String, ReportJob> jobsByKey = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new ReportJobManager.
+     *
+     * @param controller the system controller used to compute reports
+     */
+    public ReportJobManager(SystemController controller) {
+        this.controller = controller;
+        this.executor = new ThreadPoolExecutor(REPORT_THREADS, REPORT_THREADS,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-job");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Submits a report, or returns an existing job of the same user for the same scoped report.
+     *
+     * @param query the scoped report query
+     * @param owner the username of the submitting user
+     * @return the job computing (or holding) the report
+     * @throws RejectedExecutionException if the report queue is full
+     */
+    public ReportJob submit(ReportQuery query, String owner) {
+        purgeExpired();
+
+        long now = System.currentTimeMillis();
+        long salesVersion = controller.getSalesVersion();
+        ReportJob[] created = new ReportJob[1];
+        String jobKey = owner + ";" + query.getCacheKey();
+        ReportJob job = jobsByKey.compute(jobKey, (key, existing) -> {
+            if (existing != null && isReusable(existing, now, salesVersion)) {
+                return existing;
+            }
+            created[0] = new ReportJob("REP_" + UUID.randomUUID(), query, owner);
+            return created[0];
+        });
+
+        if (created[0] != null) {
+            jobsById.put(job.getJobId(), job);
+            try {
+                executor.execute(() -> run(job));
+            } catch (RejectedExecutionException e) {
+                jobsById.remove(job.getJobId());
+                jobsByKey.remove(jobKey, job);
+                throw e;
+            }
+        }
+        return job;
+    }
+
+    /**
+     * Gets a job of a user by its ID.
+     *
+     * @param jobId the job ID
+     * @param owner the username of the requesting user
+     * @return the job, or null if it does not exist, has expired or belongs to another user
+     */
+    public ReportJob getJob(String jobId, String owner) {
+        ReportJob job = jobsById.get(jobId);
+        return job != null && job.owner.equals(owner) ? job : null;
+    }
+
+    /**
+     * Stops the report executor. Running reports are interrupted.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ReportJob job) {
+        job.status = JobStatus.RUNNING;
+        job.salesVersion = controller.getSalesVersion();
+        try {
+            job.result = job.query.execute(controller);
+            job.status = JobStatus.DONE;
+        } catch (RuntimeException e) {
+            job.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            job.status = JobStatus.FAILED;
+        } finally {
+            job.completedAt = System.currentTimeMillis();
+        }
+    }
+
+    private static boolean isReusable(ReportJob job, long now, long salesVersion) {
+        switch (job.status) {
+            case PENDING:
+            case RUNNING:
+                return true;
+            case DONE:
+                return now - job.completedAt < RESULT_TTL_MS && job.salesVersion == salesVersion;
+            default:
+                return false;
+        }
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        long salesVersion = controller.getSalesVersion();
+        jobsById.values().removeIf(job -> job.completedAt > 0 && now - job.completedAt > JOB_RETENTION_MS);
+        jobsByKey.values().removeIf(job -> job.completedAt > 0 && !isReusable(job, now, salesVersion));
+    }
+}
@@ -0,0 +1,274 @@
+package server;
+
+import controller.SystemController;
+import model.ReportEntry;
+import model.Sale;
+import model.managers.PermissionChecker;
+
+import java.util.List;
+
+/**
+ * A sales report request with its parameters already scoped to the caller's permissions.
+ * Shared by the synchronous REPORT_* commands and the asynchronous report jobs, so both
+ * apply the same branch restrictions and produce the same JSON format.
+ *
+ * @author FinalProject
+ */
+public class ReportQuery {
+
+    private final String command;
+    private final String reportType;
+    private final String[] paramNames;
+    private final String[] paramValues;
+
+    private ReportQuery(String command, String reportType, String[] paramNames, String[] paramValues) {
+        this.command = command;
+        this.reportType = reportType;
+        this.paramNames = paramNames;
+        this.paramValues = paramValues;
+    }
+
+    /**
+     * Parses a report command and scopes it to the caller.
+     * Users who cannot view all branches are restricted to their own branch.
+     *
+     * @param parts the command fields; parts[offset] is the REPORT_* command name
+     * @param offset index of the command name within parts
+     * @param role the caller's role
+     * @param userBranchId the caller's branch
+     * @return the scoped report query
+     * @throws IllegalArgumentException if the command is not a known report or a date is invalid
+     */
+    public static ReportQuery parse(String[] parts, int offset, String role, String userBranchId) {
+        String command = parts[offset];
+        String first = param(parts, offset + 1);
+        String second = param(parts, offset + 2);
+        String third = param(parts, offset + 3);
+
+        switch (command) {
+            case "REPORT_SALES_BY_BRANCH":
+                return new ReportQuery(command, "SALES_BY_BRANCH",
+                        new String[] {"branchId"},
+                        new String[] {scopeBranch(first, role, userBranchId)});
+            case "REPORT_SALES_BY_PRODUCT":
+                return new ReportQuery(command, "SALES_BY_PRODUCT",
+                        new String[] {"productId"},
+                        new String[] {first});
+            case "REPORT_SALES_BY_CATEGORY":
+                return new ReportQuery(command, "SALES_BY_CATEGORY",
+                        new String[] {"category"},
+                        new String[] {first});
+            case "REPORT_DAILY_SALES":
+                return new ReportQuery(command, "DAILY_SALES",
+                        new String[] {"date", "branchId"},
+                        new String[] {first, scopeBranch(second, role, userBranchId)});
+            case "REPORT_SALES_RANGE":
+                requireDate(first);
+                requireDate(second);
+                return new ReportQuery(command, "SALES_RANGE",
+                        new String[] {"from", "to", "branchId"},
+                        new String[] {first, second, scopeBranch(third, role, userBranchId)});
+            default:
+                throw new IllegalArgumentException("Unknown report: " + command);
+        }
+    }
+
+    /**
+     * Runs the report against the SystemController.
+     *
+     * @param controller the system controller
+     * @return the report entries
+     */
+    public List<ReportEntry> execute(SystemController controller) {
+        switch (reportType) {
+            case "SALES_BY_BRANCH":
+                return controller.getSalesReportByBranch(paramValues[0]);
+            case "SALES_BY_PRODUCT":
+                return controller.getSalesReportByProduct(paramValues[0]);
+            case "SALES_BY_CATEGORY":
+                return controller.getSalesReportByCategory(paramValues[0]);
+            case "SALES_RANGE":
+                return controller.getSalesReportByDateRange(paramValues[0], paramValues[1], paramValues[2]);
+            default:
+                return controller.getDailySalesReport(paramValues[0], paramValues[1]);
+        }
+    }
+
+    /**
+     * Gets a key identifying this report and its scoped parameters.
+     * Two queries with the same key always produce the same result for the same sales data.
+     *
+     * @return the cache key
+     */
+    public String getCacheKey() {
+        StringBuilder key = new StringBuilder(command);
+        for (String value : paramValues) {
+            key.append(';').append(value != null ? value : "ALL");
+        }
+        return key.toString();
+    }
+
+    /**
+     * Gets the report type (SALES_BY_BRANCH, SALES_BY_PRODUCT, SALES_BY_CATEGORY, DAILY_SALES or SALES_RANGE).
+     *
+     * @return the report type
+     */
+    public String getReportType() {
+        return reportType;
+    }
+
+    /**
+     * Serializes a full report in the REPORT_* response format.
+     *
+     * @param entries the report entries
+     * @return the report JSON
+     */
+    public String toJson(List<ReportEntry> entries) {
+        return toJson(entries, 0, entries.size(), false);
+    }
+
+    /**
+     * Serializes one page of a report. Paged responses also carry the total row count
+     * and the page offset before the entries array.
+     *
+     * @param entries all report entries
+     * @param offset index of the first entry to include
+     * @param limit maximum number of entries to include
+     * @param paged whether to include the total/offset fields
+     * @return the report JSON
+     */
+    public String toJson(List<ReportEntry> entries, int offset, int limit, boolean paged) {
+        int from = Math.max(0, Math.min(offset, entries.size()));
+        int to = Math.min(entries.size(), from + Math.max(0, limit));
+        StringBuilder json = new StringBuilder(64 + (to - from) * 160);
+        appendHeader(json);
+        if (paged) {
+            json.append(",\"total\":").append(entries.size())
+                .append(",\"offset\":").append(from);
+        }
+        json.append(",\"entries\":");
+        appendEntries(json, entries, from, to);
+        json.append("}");
+        return json.toString();
+    }
+
+    /**
+     * Serializes the header of a streamed report: the report type, its parameters and the
+     * number of rows that will follow.
+     *
+     * @param total the number of report entries
+     * @return the header JSON
+     */
+    public String toJsonHeader(int total) {
+        StringBuilder json = new StringBuilder(128);
+        appendHeader(json);
+        json.append(",\"total\":").append(total).append("}");
+        return json.toString();
+    }
+
+    /**
+     * Serializes a batch of report entries as a JSON array, in the same entry format as toJson.
+     *
+     * @param entries all report entries
+     * @param from index of the first entry to include
+     * @param to index after the last entry to include
+     * @return the entries JSON array
+     */
+    public String toJsonRows(List<ReportEntry> entries, int from, int to) {
+        StringBuilder json = new StringBuilder(16 + (to - from) * 160);
+        appendEntries(json, entries, from, to);
+        return json.toString();
+    }
+
+    private void appendHeader(StringBuilder json) {
+        json.append("{\"reportType\":\"").append(reportType).append("\"");
+        for (int i = 0; i < paramNames.length; i++) {
+            json.append(",\"").append(paramNames[i]).append("\":\"")
+                .append(escapeJson(paramValues[i] != null ? paramValues[i] : "ALL")).append("\"");
+        }
+    }
+
+    private void appendEntries(StringBuilder json, List<ReportEntry> entries, int from, int to) {
+        json.append("[");
+        for (int i = from; i < to; i++) {
+            if (i > from) json.append(",");
+            appendEntry(json, entries.get(i));
+        }
+        json.append("]");
+    }
+
+    private void appendEntry(StringBuilder json, ReportEntry entry) {
+        switch (reportType) {
+            case "SALES_BY_BRANCH":
+                json.append("{\"branchId\":\"").append(escapeJson(entry.getBranchId()))
+                    .append("\",\"quantity\":").append(entry.getQuantity())
+                    .append(",\"totalRevenue\":");
+                appendMoney(json, entry.getTotalRevenue());
+                json.append("}");
+                break;
+            case "SALES_BY_CATEGORY":
+                json.append("{\"category\":\"").append(escapeJson(entry.getCategory()))
+                    .append("\",\"quantity\":").append(entry.getQuantity())
+                    .append(",\"totalRevenue\":");
+                appendMoney(json, entry.getTotalRevenue());
+                json.append("}");
+                break;
+            default:
+                json.append("{\"branchId\":\"").append(escapeJson(entry.getBranchId()))
+                    .append("\",\"productId\":\"").append(escapeJson(entry.getProductId()))
+                    .append("\",\"productName\":\"").append(escapeJson(entry.getProductName()))
+                    .append("\",\"category\":\"").append(escapeJson(entry.getCategory()))
+                    .append("\",\"quantity\":").append(entry.getQuantity())
+                    .append(",\"totalRevenue\":");
+                appendMoney(json, entry.getTotalRevenue());
+                json.append(",\"date\":\"").append(escapeJson(entry.getDate()))
+                    .append("\"}");
+                break;
+        }
+    }
+
+    /**
+     * Appends an amount with two decimals, without going through String.format.
+     */
+    private static void appendMoney(StringBuilder json, double amount) {
+        long agorot = Math.round(amount * 100);
+        if (agorot < 0) {
+            json.append('-');
+            agorot = -agorot;
+        }
+        long cents = agorot % 100;
+        json.append(agorot / 100).append('.');
+        if (cents < 10) {
+            json.append('0');
+        }
+        json.append(cents);
+    }
+
+    private static String param(String[] parts, int index) {
+        return (parts.length > index && !parts[index].isEmpty()) ? parts[index] : null;
+    }
+
+    private static void requireDate(String date) {
+        if (date != null && (date.length() != 10 || Sale.epochDayOf(date) == Long.MIN_VALUE)) {
+            throw new IllegalArgumentException("Invalid date (expected YYYY-MM-DD): " + date);
+        }
+    }
+
+    private static String scopeBranch(String branchId, String role, String userBranchId) {
+        if (!PermissionChecker.canViewAllBranches(role) && (branchId == null || !branchId.equals(userBranchId))) {
+            return userBranchId;
+        }
+        return branchId;
+    }
+
+    private static String escapeJson(String str) {
+        if (str == null) {
+            return "";
+        }
+        return str.replace("\\", "\\\\")
+                  .replace("\"", "\\\"")
+                  .replace("\n", "\\n")
+                  .replace("\r", "\\r")
+                  .replace("\t", "\\t");
+    }
+}
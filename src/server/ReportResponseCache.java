@@ -0,0 +1,119 @@
+package server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reuses computed reports across clients.
+ * A result is keyed by the report's scoped cache key (report, parameters and the branch the
+ * caller is limited to) and tagged with the sales version it was computed at. It is served
+ * again until a sale is recorded; the next request after that recomputes it. Managers rerunning
+ * the same report on an idle branch therefore cost one volatile read and a map lookup.
+ * ClientHandler keeps one cache of rendered REPORT_* response lines and one of report rows,
+ * which REPORT_STREAM streams from and REPORT_* responses are rendered from.
+ * The cache is bounded both by entry count and by the total weight of the results it holds
+ * (characters of a response, rows of a report), and evicts the least recently used entries first.
+ *
+ * @param <V> the cached result type
+ * @author FinalProject
+ */
+public class ReportResponseCache<V> {
+
+    /** A result and the sales version it was computed at */
+    private static class Entry<V> {
+        final long salesVersion;
+        final V value;
+        final long weight;
+
+        Entry(long salesVersion, V value, long weight) {
+            this.salesVersion = salesVersion;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    /** Access-ordered, so iteration starts at the least recently used entry */
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+
+    /**
+     * Constructs a cache.
+     *
+     * @param maxEntries the most results kept
+     * @param maxWeight the most total weight kept over all results
+     * @param weigher the weight of one result
+     */
+    public ReportResponseCache(int maxEntries, long maxWeight, ToLongFunction<V> weigher) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Gets the result for a report, computing it only if there is no result of the
+     * current sales version.
+     *
+     * @param key the report's scoped cache key
+     * @param salesVersion the sales version, read before computing
+     * @param compute computes the report
+     * @return the result
+     */
+    public V get(String key, long salesVersion, Supplier<V> compute) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.salesVersion == salesVersion) {
+                return entry.value;
+            }
+        }
+        // Computed outside the lock so a slow report does not hold up cached ones
+        V value = compute.get();
+        put(key, salesVersion, value);
+        return value;
+    }
+
+    /**
+     * Gets the number of cached results.
+     *
+     * @return the entry count
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void put(String key, long salesVersion, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        if (valueWeight > maxWeight) {
+            return;
+        }
+        synchronized (entries) {
+            Entry<V> existing = entries.get(key);
+            if (existing != null) {
+                if (existing.salesVersion > salesVersion) {
+                    // A request that started later already stored a newer result
+                    return;
+                }
+                weight -= existing.weight;
+            }
+            entries.put(key, new Entry<>(salesVersion, value, valueWeight));
+            weight += valueWeight;
+
+            Iterator<Map.Entry<String, Entry<V>>> eldest = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+                Map.Entry<String, Entry<V>> evicted = eldest.next();
+                if (evicted.getKey().equals(key)) {
+                    continue;
+                }
+                weight -= evicted.getValue().weight;
+                eldest.remove();
+            }
+        }
+    }
+}
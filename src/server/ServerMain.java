@@ -9,8 +9,12 @@ import java.util.Vector;
 /**
  * Main server class for the clothing store network management system.
  * Implements Thread-per-Client architecture - each client connection gets its own thread.
+ * Connection threads only do socket I/O; the commands themselves run on a shared
+ * CommandScheduler so checkout commands are not delayed by reports and log pulls.
  * Listens on port 5000 and creates a new ClientHandler thread for each incoming connection.
  * Maintains a Vector<Socket> to track all connected clients for Broadcast functionality.
+ * A shutdown hook stops the server the way LocalServerRunner.stopServer() does: the scheduler
+ * and job workers are stopped and all data is saved before the process exits.
  * 
  * @author FinalProject
  */
@@ -22,6 +26,12 @@ public class ServerMain {
     /** Vector to store all connected client sockets (thread-safe) */
     private static Vector<Socket> connectedClients = new Vector<>();
 
+    /** Worker pool that executes client commands by priority */
+    private static CommandScheduler scheduler = new CommandScheduler();
+
+    /** Rate limiter and load shedder shared by all client handlers */
+    private static AdmissionController admissionController = new AdmissionController(scheduler::getQueuedCount);
+
     /**
      * Main entry point for the server.
      * Creates a SystemController, starts listening on port 5000,
@@ -33,6 +43,10 @@ public class ServerMain {
     public static void main(String[] args) {
 
         SystemController controller = new SystemController();
+        ReportJobManager reportJobManager = new ReportJobManager(controller);
+        ExportJobManager exportJobManager = new ExportJobManager(controller);
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> stop(controller, reportJobManager, exportJobManager), "server-shutdown"));
 
         try (ServerSocket serverSocket = new ServerSocket(PORT)) {
             System.out.println("Server listening on port " + PORT);
@@ -45,7 +59,7 @@ public class ServerMain {
                 connectedClients.add(clientSocket);
                 
                 // Create handler and start thread
-                ClientHandler handler = new ClientHandler(clientSocket, controller, connectedClients);
+                ClientHandler handler = new ClientHandler(clientSocket, controller, connectedClients, admissionController, scheduler, reportJobManager, exportJobManager);
                 new Thread(handler).start();
             }
 
@@ -53,4 +67,22 @@ public class ServerMain {
             System.out.println("Server error: " + e.getMessage());
         }
     }
+
+    /**
+     * Stops the workers, saves all data and prints the interactive latency counters.
+     * Runs from the shutdown hook.
+     */
+    private static void stop(SystemController controller, ReportJobManager reportJobManager,
+                             ExportJobManager exportJobManager) {
+        try {
+            scheduler.shutdown();
+            reportJobManager.shutdown();
+            exportJobManager.shutdown();
+            controller.saveAllData();
+            controller.shutdown();
+        } catch (Exception e) {
+            System.err.println("Error stopping server: " + e.getMessage());
+        }
+        System.out.println(scheduler.getLatencySummary());
+    }
 }
@@ -0,0 +1,66 @@
+package server;
+
+/**
+ * Classic token bucket used for request rate limiting.
+ * The bucket holds up to {@code capacity} tokens and is refilled continuously at
+ * {@code refillPerSecond} tokens per second. Each admitted request consumes one token.
+ * Refill is computed lazily from {@link System#nanoTime()} on every call, so an idle
+ * bucket costs nothing.
+ *
+ * @author FinalProject
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * Constructs a new full TokenBucket.
+     *
+     * @param capacity the maximum number of tokens (burst size)
+     * @param refillPerSecond the number of tokens added per second
+     */
+    public TokenBucket(double capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1_000_000_000.0;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Tries to take one token from the bucket.
+     *
+     * @return 0 if a token was taken, otherwise the number of milliseconds
+     *         until the next token becomes available
+     */
+    public synchronized long tryConsume() {
+        refill();
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return 0;
+        }
+        double missing = 1.0 - tokens;
+        return Math.max(1, (long) Math.ceil(missing / refillPerNano / 1_000_000.0));
+    }
+
+    /**
+     * Tells whether the bucket has refilled completely, i.e. it is in the state of a new bucket.
+     *
+     * @return true if the bucket holds its full capacity
+     */
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * refillPerNano);
+            lastRefillNanos = now;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package storage;
+
+import model.ChatMessage;
+import model.ChatSession;
+import model.LogAction;
+import model.LogEntry;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes one chat to an export document (RTF, plain text or HTML).
+ * The chat's lines come from two sources that are each already in time order: the transcript
+ * (sequence order) and the chat's log entries (log order). They are merged in a single pass,
+ * like the merge step of merge sort, and every line is written to the output as soon as it is
+ * chosen - nothing is collected or sorted in memory.
+ * Hebrew is written as RTF Unicode escapes (\\uN?) in RTF, so the document needs no
+ * post-processing to open correctly in Word.
+ *
+ * @author FinalProject
+ */
+public class ChatExporter {
+
+    /** Export document formats */
+    public enum Format {
+        RTF("rtf", Charset.forName("Windows-1255")),
+        TXT("txt", StandardCharsets.UTF_8),
+        HTML("html", StandardCharsets.UTF_8);
+
+        private final String extension;
+        private final Charset charset;
+
+        Format(String extension, Charset charset) {
+            this.extension = extension;
+            this.charset = charset;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public Charset getCharset() {
+            return charset;
+        }
+
+        /**
+         * Parses a format name (case-insensitive).
+         *
+         * @param name the format name, e.g. "rtf"
+         * @return the format
+         * @throws IllegalArgumentException if the name is not a known format
+         */
+        public static Format parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown export format: " + name);
+            }
+        }
+    }
+
+    private static final String SYSTEM_SENDER = "[מערכת]";
+
+    private final Format format;
+    private final Writer out;
+
+    /**
+     * Constructs an exporter writing to an open output.
+     *
+     * @param format the document format
+     * @param out the output, encoded with the format's charset
+     */
+    ChatExporter(Format format, Writer out) {
+        this.format = format;
+        this.out = out;
+    }
+
+    /**
+     * Writes the whole document.
+     * For a chat with a transcript, the messages (including the start and join system messages)
+     * come from the transcript and only the end of the chat comes from the log. Chats from before
+     * transcripts existed have everything in the log.
+     *
+     * @param chatId the chat ID
+     * @param session the chat session, or null if it is no longer known
+     * @param messages the transcript messages in sequence order (empty for old chats)
+     * @param chatLogs the chat's log entries in log order
+     * @param hasTranscript whether the chat has a transcript
+     * @throws IOException if writing fails
+     */
+    void export(String chatId, ChatSession session, Iterator<ChatMessage> messages,
+                List<LogEntry> chatLogs, boolean hasTranscript) throws IOException {
+        Iterator<LogEntry> events = chatLogs.iterator();
+        ChatMessage message = messages.hasNext() ? messages.next() : null;
+        LogEntry event = nextEvent(events, hasTranscript);
+
+        writeStart(chatId);
+        writeLine("תוכן שיחה - " + chatId);
+        writeBlank();
+        if (session != null) {
+            writeLine("תאריך התחלה: " + formatTimestamp(session.getStartTime()));
+            writeLine("משתתפים: " + String.join(", ", session.getParticipants()));
+        } else if (message != null || event != null) {
+            long first = message == null ? event.getTimestamp()
+                    : event == null ? message.getTimestamp()
+                    : Math.min(message.getTimestamp(), event.getTimestamp());
+            writeLine("תאריך התחלה: " + formatTimestamp(first));
+        }
+        writeBlank();
+        writeLine("הודעות:");
+        writeBlank();
+
+        while (message != null || event != null) {
+            if (event == null || (message != null && message.getTimestamp() <= event.getTimestamp())) {
+                String sender = message.getMessageType() == ChatMessage.MessageType.SYSTEM
+                        ? SYSTEM_SENDER : message.getSenderUsername();
+                writeLine("[" + formatTimestamp(message.getTimestamp()) + "] " + sender + ": " + message.getMessage());
+                message = messages.hasNext() ? messages.next() : null;
+            } else {
+                if (event.getAction() == LogAction.CHAT_MESSAGE) {
+                    writeLine("[" + event.getDateTime() + "] " + event.getUsername() + ": " + event.getText());
+                } else {
+                    writeLine("[" + event.getDateTime() + "] " + SYSTEM_SENDER + ": " + event.getDescription());
+                }
+                event = nextEvent(events, hasTranscript);
+            }
+        }
+        writeEnd();
+    }
+
+    /**
+     * Gets the next log entry that belongs in the document.
+     */
+    private static LogEntry nextEvent(Iterator<LogEntry> events, boolean hasTranscript) {
+        while (events.hasNext()) {
+            LogEntry log = events.next();
+            LogAction action = log.getAction();
+            if (action == LogAction.CHAT_ENDED) {
+                return log;
+            }
+            if (!hasTranscript) {
+                if ((action == LogAction.CHAT_MESSAGE && log.getUsername() != null)
+                        || action == LogAction.CHAT_STARTED
+                        || action == LogAction.MANAGER_JOINED) {
+                    return log;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void writeStart(String chatId) throws IOException {
+        switch (format) {
+            case RTF:
+                out.write("{\\rtf1\\ansi\\ansicpg1255\\deff0\\nouicompat\\deflang1037{\\fonttbl{\\f0\\fnil\\fcharset177 Arial;}}\n");
+                out.write("{\\colortbl ;\\red0\\green0\\blue0;}\n");
+                out.write("\\viewkind4\\uc1\n");
+                out.write("\\pard\\sa200\\sl276\\slmult1\\f0\\fs22\\lang1037\\cf1\n");
+                break;
+            case HTML:
+                out.write("<!DOCTYPE html>\n<html dir=\"rtl\" lang=\"he\">\n<head>\n<meta charset=\"UTF-8\">\n");
+                out.write("<title>" + escapeHtml(chatId) + "</title>\n</head>\n<body>\n");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void writeLine(String text) throws IOException {
+        switch (format) {
+            case RTF:
+                out.write(escapeRtf(text));
+                out.write("\\par\n");
+                break;
+            case HTML:
+                out.write("<p>");
+                out.write(escapeHtml(text));
+                out.write("</p>\n");
+                break;
+            default:
+                out.write(text);
+                out.write('\n');
+                break;
+        }
+    }
+
+    private void writeBlank() throws IOException {
+        switch (format) {
+            case RTF:
+                out.write("\\par\n");
+                break;
+            case HTML:
+                out.write("<br>\n");
+                break;
+            default:
+                out.write('\n');
+                break;
+        }
+    }
+
+    private void writeEnd() throws IOException {
+        switch (format) {
+            case RTF:
+                out.write("}\n");
+                break;
+            case HTML:
+                out.write("</body>\n</html>\n");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String formatTimestamp(long timestamp) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()).toString();
+    }
+
+    /**
+     * Escapes text for RTF. Non-ASCII characters (Hebrew) become \\uN? escapes,
+     * where N is the signed 16-bit value RTF expects.
+     */
+    private static String escapeRtf(String text) {
+        if (text == null) return "";
+        StringBuilder result = new StringBuilder(text.length() * 2);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                result.append("\\\\");
+            } else if (c == '{') {
+                result.append("\\{");
+            } else if (c == '}') {
+                result.append("\\}");
+            } else if (c == '\n') {
+                result.append("\\par\n");
+            } else if (c < 128) {
+                result.append(c);
+            } else {
+                result.append("\\u").append((int) (short) c).append('?');
+            }
+        }
+        return result.toString();
+    }
+
+    private static String escapeHtml(String text) {
+        if (text == null) return "";
+        StringBuilder result = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': result.append("&amp;"); break;
+                case '<': result.append("&lt;"); break;
+                case '>': result.append("&gt;"); break;
+                case '"': result.append("&quot;"); break;
+                case '\n': result.append("<br>"); break;
+                default: result.append(c); break;
+            }
+        }
+        return result.toString();
+    }
+}
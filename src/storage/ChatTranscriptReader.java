@@ -0,0 +1,73 @@
+package storage;
+
+import model.ChatMessage;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a chat transcript one message at a time, in sequence order.
+ * Only the current line is held in memory, so a transcript of any length can be streamed
+ * into an export without loading it first.
+ *
+ * @author FinalProject
+ */
+class ChatTranscriptReader implements Iterator<ChatMessage>, Closeable {
+
+    private final BufferedReader reader;
+    private final JsonSerializer jsonSerializer;
+    private ChatMessage next;
+
+    /**
+     * Opens a transcript file.
+     *
+     * @param file the transcript file
+     * @param jsonSerializer parses the message lines
+     * @throws IOException if the file cannot be opened
+     */
+    ChatTranscriptReader(Path file, JsonSerializer jsonSerializer) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        this.jsonSerializer = jsonSerializer;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    next = jsonSerializer.fromJsonChatMessage(line);
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public ChatMessage next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ChatMessage message = next;
+        next = null;
+        return message;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
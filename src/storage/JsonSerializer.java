@@ -127,21 +127,63 @@ public class JsonSerializer {
     }
     
     private String toJsonSaleData(SaleData sale) {
+        String saleGroupJson = sale.saleGroupId != null && !sale.saleGroupId.isEmpty() ?
+            String.format(",\n  \"saleGroupId\": \"%s\"", escapeJson(sale.saleGroupId)) : "";
         return String.format(
-            "{\n  \"productId\": \"%s\",\n  \"productName\": \"%s\",\n  \"productCategory\": \"%s\",\n  \"productPrice\": %.2f,\n  \"quantity\": %d,\n  \"branchId\": \"%s\",\n  \"employeeNumber\": \"%s\",\n  \"customerId\": \"%s\",\n  \"dateTime\": \"%s\",\n  \"basePrice\": %.2f,\n  \"finalPrice\": %.2f\n}",
+            "{\n  \"productId\": \"%s\",\n  \"productName\": \"%s\",\n  \"productCategory\": \"%s\",\n  \"productPrice\": %.2f,\n  \"quantity\": %d,\n  \"branchId\": \"%s\",\n  \"employeeNumber\": \"%s\",\n  \"customerId\": \"%s\",\n  \"dateTime\": \"%s\",\n  \"basePrice\": %.2f,\n  \"finalPrice\": %.2f%s\n}",
             escapeJson(sale.productId), escapeJson(sale.productName), escapeJson(sale.productCategory),
             sale.productPrice, sale.quantity, escapeJson(sale.branchId), escapeJson(sale.employeeNumber),
-            escapeJson(sale.customerId), escapeJson(sale.dateTime), sale.basePrice, sale.finalPrice
+            escapeJson(sale.customerId), escapeJson(sale.dateTime), sale.basePrice, sale.finalPrice, saleGroupJson
         );
     }
     
     private String toJsonLogEntry(LogEntry log) {
-        String chatIdJson = log.getChatId() != null ? 
-            String.format(",\n  \"chatId\": \"%s\"", escapeJson(log.getChatId())) : "";
-        return String.format(
-            "{\n  \"actionType\": \"%s\",\n  \"description\": \"%s\",\n  \"dateTime\": \"%s\"%s\n}",
-            escapeJson(log.getActionType()), escapeJson(log.getDescription()), escapeJson(log.getDateTime()), chatIdJson
-        );
+        if (!log.isStructured()) {
+            // רשומה ישנה - נשמרת כטקסט כמו שהייתה
+            String chatIdJson = log.getChatId() != null ? 
+                String.format(",\n  \"chatId\": \"%s\"", escapeJson(log.getChatId())) : "";
+            return String.format(
+                "{\n  \"actionType\": \"%s\",\n  \"description\": \"%s\",\n  \"dateTime\": \"%s\"%s\n}",
+                escapeJson(log.getActionType()), escapeJson(log.getDescription()), escapeJson(log.getDateTime()), chatIdJson
+            );
+        }
+        // רשומה מובנית - רק השדות שיש להם ערך, בלי תיאור (נבנה בהצגה)
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"actionType\": \"").append(escapeJson(log.getActionType())).append("\"");
+        sb.append(",\n  \"timestamp\": ").append(log.getTimestamp());
+        appendLogField(sb, "chatId", log.getChatId());
+        appendLogField(sb, "username", log.getUsername());
+        appendLogField(sb, "role", log.getRole());
+        appendLogField(sb, "branchId", log.getBranchId());
+        appendLogField(sb, "productId", log.getProductId());
+        appendLogField(sb, "customerId", log.getCustomerId());
+        appendLogField(sb, "customerType", log.getCustomerType());
+        appendLogField(sb, "employeeNumber", log.getEmployeeNumber());
+        appendLogField(sb, "name", log.getName());
+        appendLogField(sb, "referenceId", log.getReferenceId());
+        if (log.getQuantity() != 0) {
+            sb.append(",\n  \"quantity\": ").append(log.getQuantity());
+        }
+        appendLogNumber(sb, "price", log.getPrice());
+        appendLogNumber(sb, "basePrice", log.getBasePrice());
+        appendLogNumber(sb, "finalPrice", log.getFinalPrice());
+        appendLogNumber(sb, "percentage", log.getPercentage());
+        // טקסט חופשי אחרון - כדי שתוכן הודעה לא יתפרש כשדה אחר
+        appendLogField(sb, "text", log.getText());
+        sb.append("\n}");
+        return sb.toString();
+    }
+    
+    private void appendLogField(StringBuilder sb, String key, String value) {
+        if (value != null) {
+            sb.append(",\n  \"").append(key).append("\": \"").append(escapeJson(value)).append("\"");
+        }
+    }
+    
+    private void appendLogNumber(StringBuilder sb, String key, double value) {
+        if (value != 0) {
+            sb.append(",\n  \"").append(key).append("\": ").append(java.math.BigDecimal.valueOf(value).toPlainString());
+        }
     }
     
     private String escapeJson(String str) {
@@ -182,7 +224,7 @@ public class JsonSerializer {
     
     private String extractString(String json, String key) {
         // Find "key": "value" pattern, handling escaped quotes
-        String pattern = "\"" + key + "\"\\s*:\\s*\"([^\"]*(?:\\\\.[^\"]*)*)\"";
+        String pattern = "\"" + key + "\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"";
         Pattern p = Pattern.compile(pattern);
         Matcher matcher = p.matcher(json);
         if (matcher.find()) {
@@ -191,6 +233,24 @@ public class JsonSerializer {
         return "";
     }
     
+    private String optionalString(String json, String key) {
+        String value = extractString(json, key);
+        return value.isEmpty() ? null : value;
+    }
+    
+    private long extractLong(String json, String key) {
+        Pattern pattern = Pattern.compile("\"" + key + "\"\\s*:\\s*([0-9]+)");
+        Matcher matcher = pattern.matcher(json);
+        if (matcher.find()) {
+            try {
+                return Long.parseLong(matcher.group(1));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+    
     private boolean extractBoolean(String json, String key) {
         Pattern pattern = Pattern.compile("\"" + key + "\"\\s*:\\s*(true|false)");
         Matcher matcher = pattern.matcher(json);
@@ -481,6 +541,9 @@ public class JsonSerializer {
             sale.basePrice = sale.productPrice * sale.quantity;
             sale.finalPrice = sale.basePrice; // ללא הנחה (לא נדע מה היה)
         }
+        // מזהה עגלה - רק למכירות שבוצעו ב-SELL_CART
+        String saleGroupId = extractString(json, "saleGroupId");
+        sale.saleGroupId = saleGroupId.isEmpty() ? null : saleGroupId;
         return sale;
     }
     
@@ -490,16 +553,73 @@ public class JsonSerializer {
     
     private LogEntry parseLogEntry(String json) {
         String actionType = extractString(json, "actionType");
+        String chatId = optionalString(json, "chatId");
+        LogAction action = LogAction.fromName(actionType);
+        long timestamp = extractLong(json, "timestamp");
+        if (action != null && timestamp > 0) {
+            return LogEntry.restore(action, timestamp, chatId,
+                optionalString(json, "username"), optionalString(json, "role"),
+                optionalString(json, "branchId"), optionalString(json, "productId"),
+                optionalString(json, "customerId"), optionalString(json, "customerType"),
+                optionalString(json, "employeeNumber"), optionalString(json, "name"),
+                optionalString(json, "referenceId"), optionalString(json, "text"),
+                extractInt(json, "quantity"), extractDouble(json, "price"),
+                extractDouble(json, "basePrice"), extractDouble(json, "finalPrice"),
+                extractDouble(json, "percentage"));
+        }
+        // פורמט ישן - תיאור טקסטואלי
         String description = extractString(json, "description");
         String dateTime = extractString(json, "dateTime");
-        String chatId = extractString(json, "chatId");
-        // אם chatId ריק או null, נשתמש בקונסטרקטור ללא chatId
-        if (chatId == null || chatId.isEmpty()) {
-            return new LogEntry(actionType, description, dateTime);
+        if (action == LogAction.CHAT_MESSAGE) {
+            // "Chat <id>: <sender> sent: <message>" - מפורק פעם אחת בטעינה, כדי שייצוא יעבוד על שדות
+            int colonIdx = description.indexOf(": ");
+            int sentIdx = colonIdx > 0 ? description.indexOf(" sent: ", colonIdx + 2) : -1;
+            if (sentIdx > 0) {
+                return LogEntry.restoreChatMessage(description, dateTime, chatId,
+                    description.substring(colonIdx + 2, sentIdx), description.substring(sentIdx + 7));
+            }
         }
         return new LogEntry(actionType, description, dateTime, chatId);
     }
     
+    public ChatMessage fromJsonChatMessage(String json) {
+        ChatMessage.MessageType type = "SYSTEM".equals(extractString(json, "messageType"))
+            ? ChatMessage.MessageType.SYSTEM : ChatMessage.MessageType.TEXT;
+        return new ChatMessage(extractString(json, "chatId"), extractString(json, "senderUsername"),
+            extractString(json, "message"), type, extractLong(json, "sequence"), extractLong(json, "timestamp"));
+    }
+    
+    public String toJsonChatSession(ChatSession session) {
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("  \"chatId\": \"").append(escapeJson(session.getChatId())).append("\",\n");
+        sb.append("  \"startTime\": ").append(session.getStartTime()).append(",\n");
+        sb.append("  \"endTime\": ").append(session.getEndTime()).append(",\n");
+        sb.append("  \"participants\": [");
+        boolean first = true;
+        for (String participant : session.getParticipants()) {
+            if (!first) sb.append(", ");
+            sb.append("\"").append(escapeJson(participant)).append("\"");
+            first = false;
+        }
+        sb.append("]\n}");
+        return sb.toString();
+    }
+    
+    public ChatSession fromJsonChatSession(String json) {
+        Set<String> participants = new LinkedHashSet<>();
+        int start = json.indexOf("\"participants\"");
+        if (start >= 0) {
+            int open = json.indexOf('[', start);
+            int close = json.indexOf(']', open);
+            Matcher matcher = Pattern.compile("\"((?:[^\"\\\\]|\\\\.)*)\"").matcher(json.substring(open + 1, close));
+            while (matcher.find()) {
+                participants.add(unescapeJson(matcher.group(1)));
+            }
+        }
+        return new ChatSession(extractString(json, "chatId"), participants,
+            extractLong(json, "startTime"), extractLong(json, "endTime"));
+    }
+    
     public List<String> fromJsonBranches(String json) {
         List<String> result = new ArrayList<>();
         if (json == null || json.trim().isEmpty() || json.equals("[]")) {
@@ -22,6 +22,7 @@ public class SaleData {
     public String dateTime;
     public double basePrice;   // Price before discount
     public double finalPrice; // Final price after customer discount
+    public String saleGroupId; // Cart checkout ID, null for single-item sales
     
     /**
      * Default constructor for JSON deserialization.
@@ -47,6 +48,7 @@ public class SaleData {
         this.dateTime = sale.getDateTime();
         this.basePrice = sale.getBasePrice();
         this.finalPrice = sale.getFinalPrice();
+        this.saleGroupId = sale.getSaleGroupId();
     }
     
     /**
@@ -62,6 +64,6 @@ public class SaleData {
         double calculatedFinalPrice = finalPrice > 0 ? finalPrice : calculatedBasePrice;
         // If customerId doesn't exist (for old sales), use empty string
         String saleCustomerId = (customerId != null && !customerId.isEmpty()) ? customerId : "";
-        return new Sale(product, quantity, branchId, employeeNumber, saleCustomerId, dateTime, calculatedBasePrice, calculatedFinalPrice);
+        return new Sale(product, quantity, branchId, employeeNumber, saleCustomerId, dateTime, calculatedBasePrice, calculatedFinalPrice, saleGroupId);
     }
 }
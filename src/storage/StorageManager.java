@@ -2,8 +2,14 @@ package storage;
 
 import model.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 /**
@@ -27,6 +33,10 @@ public class StorageManager {
     private static final String LOGS_FILE = DATA_DIR + "/logs.json";
     private static final String BRANCHES_FILE = DATA_DIR + "/branches.json";
     private static final String DISCOUNTS_FILE = DATA_DIR + "/discounts.json";
+    /** Chat transcripts, one JSON line per message: chats/<chatId>.log; ended chat metadata: chats/<chatId>.json */
+    private static final String CHATS_DIR = DATA_DIR + "/chats";
+    /** Exported chat documents (RTF / TXT / HTML) */
+    private static final String EXPORTS_DIR = DATA_DIR + "/exports";
     
     private JsonSerializer jsonSerializer;
     
@@ -197,15 +207,8 @@ public class StorageManager {
             Branch branch = entry.getValue();
             Inventory inventory = branch.getInventory();
             
-            // המרת Inventory ל-Map של productId -> quantity
-            Map<String, Integer> branchInventory = new HashMap<>();
-            Map<Product, Integer> products = inventory.getAllProducts();
-            
-            for (Map.Entry<Product, Integer> productEntry : products.entrySet()) {
-                branchInventory.put(productEntry.getKey().getProductId(), productEntry.getValue());
-            }
-            
-            inventoryData.put(branchId, branchInventory);
+            // Inventory כבר שמור כ-Map של productId -> quantity
+            inventoryData.put(branchId, inventory.getAllQuantities());
         }
         
         String json = jsonSerializer.toJson(inventoryData);
@@ -266,14 +269,121 @@ public class StorageManager {
     // ========== Logs Storage ==========
     
     /**
-     * Saves logs to JSON file.
+     * Appends logs to the JSON file without rewriting it.
+     * Overwrites the closing bracket of the stored array with the new entries and a new
+     * closing bracket, so the file stays a valid array and the cost depends only on the batch.
+     * If an earlier append was interrupted (no closing bracket), the incomplete tail after the
+     * last complete entry is dropped and the append continues from there; stored entries are
+     * never discarded. Creates the file if it doesn't exist.
      * 
-     * @param logs a List of LogEntry objects
-     * @throws IOException if file write fails
+     * @param logs the LogEntry objects to append, in order
+     * @throws IOException if file write fails, or the file is damaged in a way that cannot be
+     *         repaired without losing entries (the file is then left untouched)
+     */
+    public void appendLogs(List<LogEntry> logs) throws IOException {
+        if (logs.isEmpty()) {
+            return;
+        }
+        String array = jsonSerializer.toJson(logs);
+        // Items only - without the opening "[\n" and closing "\n]"
+        String items = array.substring(2, array.length() - 2);
+        try (RandomAccessFile file = new RandomAccessFile(LOGS_FILE, "rw")) {
+            long end = lastNonWhitespace(file, file.length());
+            if (end < 0) {
+                // Empty or missing file - nothing to lose
+                file.setLength(0);
+                file.write(array.getBytes("UTF-8"));
+                return;
+            }
+            boolean emptyArray;
+            if (file.readByte() == ']') {
+                long previous = lastNonWhitespace(file, end);
+                emptyArray = previous >= 0 && file.readByte() == '[';
+            } else {
+                // Interrupted append: continue after the last complete entry
+                long lastEntryEnd = lastCompleteEntryEnd(file, end + 1);
+                if (lastEntryEnd < 0) {
+                    throw new IOException(LOGS_FILE + " is damaged (no complete entry found) - logs not appended");
+                }
+                file.seek(lastEntryEnd);
+                emptyArray = file.readByte() == '[';
+                end = lastEntryEnd + 1;
+            }
+            file.seek(end);
+            file.setLength(end);
+            String tail = (emptyArray ? "\n" : ",\n") + items + "\n]";
+            file.write(tail.getBytes("UTF-8"));
+        }
+    }
+    
+    /**
+     * Finds the end of the last complete entry of the logs array.
+     * Entries are flat objects whose closing brace is alone on its line (string values never
+     * contain raw line breaks), so that line marks a complete entry. If there is no entry,
+     * the opening bracket of the array is returned instead.
+     * 
+     * @param file the logs file
+     * @param before the position to search back from
+     * @return the position of the entry's closing brace (or of the opening bracket), or -1
+     */
+    private long lastCompleteEntryEnd(RandomAccessFile file, long before) throws IOException {
+        int window = 64 * 1024;
+        while (true) {
+            long start = Math.max(0, before - window);
+            byte[] bytes = new byte[(int) (before - start)];
+            file.seek(start);
+            file.readFully(bytes);
+            for (int i = bytes.length - 1; i >= 0; i--) {
+                if (bytes[i] == '}' && onlyWhitespaceBefore(bytes, i, start == 0)) {
+                    return start + i;
+                }
+            }
+            if (start == 0) {
+                for (int i = 0; i < bytes.length; i++) {
+                    if (bytes[i] == '[') {
+                        return i;
+                    }
+                    if (bytes[i] != ' ' && bytes[i] != '\n' && bytes[i] != '\r' && bytes[i] != '\t') {
+                        return -1;
+                    }
+                }
+                return -1;
+            }
+            // The brace line may straddle the window - search a larger window from the same end
+            window *= 2;
+        }
+    }
+    
+    /**
+     * Checks that a position is preceded only by whitespace on its line.
+     */
+    private static boolean onlyWhitespaceBefore(byte[] bytes, int index, boolean atFileStart) {
+        for (int i = index - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                return true;
+            }
+            if (bytes[i] != ' ' && bytes[i] != '\t' && bytes[i] != '\r') {
+                return false;
+            }
+        }
+        return atFileStart;
+    }
+    
+    /**
+     * Finds the last non-whitespace byte before a position and leaves the file pointer on it.
+     * 
+     * @return the byte's position, or -1 if there is none
      */
-    public void saveLogs(List<LogEntry> logs) throws IOException {
-        String json = jsonSerializer.toJson(logs);
-        Files.write(Paths.get(LOGS_FILE), json.getBytes("UTF-8"));
+    private long lastNonWhitespace(RandomAccessFile file, long before) throws IOException {
+        for (long pos = before - 1; pos >= 0; pos--) {
+            file.seek(pos);
+            int b = file.read();
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                file.seek(pos);
+                return pos;
+            }
+        }
+        return -1;
     }
     
     /**
@@ -349,4 +459,166 @@ public class StorageManager {
         String json = new String(Files.readAllBytes(Paths.get(DISCOUNTS_FILE)), "UTF-8");
         return jsonSerializer.fromJsonDiscounts(json);
     }
+    
+    // ========== Chat Transcripts Storage ==========
+    
+    /**
+     * Appends chat messages to the chat's transcript file.
+     * Each message is written as one JSON line, so appending never rewrites the file.
+     * 
+     * @param chatId the chat ID
+     * @param messages the messages to append, in sequence order
+     * @throws IOException if file write fails
+     */
+    public void appendChatTranscript(String chatId, List<ChatMessage> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Path file = chatFile(chatId);
+        if (file == null) {
+            throw new IllegalArgumentException("Invalid chat ID: " + chatId);
+        }
+        File dir = new File(CHATS_DIR);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        StringBuilder lines = new StringBuilder();
+        for (ChatMessage message : messages) {
+            lines.append(message.toJson()).append('\n');
+        }
+        Files.write(file, lines.toString().getBytes("UTF-8"),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+    
+    /**
+     * Loads messages of a chat's transcript within a sequence range.
+     * Returns empty list if the chat has no transcript file.
+     * 
+     * @param chatId the chat ID
+     * @param fromSequence the first sequence number to include
+     * @param toSequence the last sequence number to include
+     * @return the messages, oldest first
+     * @throws IOException if file read fails
+     */
+    public List<ChatMessage> loadChatTranscript(String chatId, long fromSequence, long toSequence) throws IOException {
+        Path file = chatFile(chatId);
+        List<ChatMessage> result = new ArrayList<>();
+        if (file == null || !Files.exists(file)) {
+            return result;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                ChatMessage message = jsonSerializer.fromJsonChatMessage(line);
+                if (message.getSequence() > toSequence) {
+                    break; // Lines are in sequence order
+                }
+                if (message.getSequence() >= fromSequence) {
+                    result.add(message);
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Saves the metadata of an ended chat to its own JSON file.
+     * 
+     * @param session the ended chat session
+     * @throws IOException if file write fails
+     */
+    public void saveChatSession(ChatSession session) throws IOException {
+        Path file = chatFile(session.getChatId(), ".json");
+        if (file == null) {
+            throw new IllegalArgumentException("Invalid chat ID: " + session.getChatId());
+        }
+        File dir = new File(CHATS_DIR);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        Files.write(file, jsonSerializer.toJsonChatSession(session).getBytes("UTF-8"));
+    }
+    
+    /**
+     * Loads the metadata of an ended chat.
+     * Returns null if the chat has no metadata file.
+     * 
+     * @param chatId the chat ID
+     * @return the ended ChatSession, or null
+     * @throws IOException if file read fails
+     */
+    public ChatSession loadChatSession(String chatId) throws IOException {
+        Path file = chatFile(chatId, ".json");
+        if (file == null || !Files.exists(file)) {
+            return null;
+        }
+        String json = new String(Files.readAllBytes(file), "UTF-8");
+        return jsonSerializer.fromJsonChatSession(json);
+    }
+    
+    // ========== Chat Export ==========
+    
+    /**
+     * Exports a chat to a document in data/exports.
+     * The transcript is streamed line by line into the document and merged with the chat's
+     * log entries on the way, so memory use does not grow with the length of the chat.
+     * The document is written to a temporary file and moved into place when complete.
+     * 
+     * @param chatId the chat ID
+     * @param format the document format
+     * @param session the chat session, or null if it is no longer known
+     * @param chatLogs the chat's log entries in log order
+     * @return the path of the created document
+     * @throws IOException if reading the transcript or writing the document fails
+     * @throws IllegalArgumentException if the chat ID is invalid or nothing is recorded for the chat
+     */
+    public String exportChat(String chatId, ChatExporter.Format format, ChatSession session,
+                             List<LogEntry> chatLogs) throws IOException {
+        Path transcript = chatFile(chatId);
+        if (transcript == null) {
+            throw new IllegalArgumentException("Invalid chat ID: " + chatId);
+        }
+        boolean hasTranscript = Files.exists(transcript);
+        if (!hasTranscript && chatLogs.isEmpty()) {
+            throw new IllegalArgumentException("No logs found for chat: " + chatId);
+        }
+        Path dir = Paths.get(EXPORTS_DIR);
+        Files.createDirectories(dir);
+        String dateStr = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+        Path file = dir.resolve("chat_" + chatId.replace("CHAT_", "") + "_" + dateStr + "." + format.getExtension());
+        
+        Path temp = Files.createTempFile(dir, "export_", ".tmp");
+        try {
+            try (ChatTranscriptReader messages = hasTranscript ? new ChatTranscriptReader(transcript, jsonSerializer) : null;
+                 Writer out = Files.newBufferedWriter(temp, format.getCharset())) {
+                new ChatExporter(format, out).export(chatId, session,
+                    messages != null ? messages : Collections.emptyIterator(), chatLogs, hasTranscript);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return file.toString();
+    }
+    
+    private Path chatFile(String chatId) {
+        return chatFile(chatId, ".log");
+    }
+    
+    /**
+     * Gets the path of a chat's file.
+     * 
+     * @return the path, or null if the chat ID cannot be a file name
+     */
+    private Path chatFile(String chatId, String extension) {
+        if (chatId == null || !chatId.matches("[A-Za-z0-9_-]+")) {
+            return null;
+        }
+        return Paths.get(CHATS_DIR, chatId + extension);
+    }
 }
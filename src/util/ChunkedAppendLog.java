@@ -0,0 +1,147 @@
+package util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Append-only list stored in fixed-size chunks, with lock-free readers.
+ * Elements are never moved or removed: appending fills the last chunk and adds a new chunk
+ * when it is full, so existing elements are never copied. After writing, the appender
+ * publishes the new size through a volatile high-water mark; a reader that reads the size
+ * first sees every element below it, so any prefix can be read without a lock and without
+ * copying. Appenders are serialized with a short synchronized section.
+ *
+ * @param <T> the element type
+ * @author FinalProject
+ */
+public final class ChunkedAppendLog<T> {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** Chunk directory; replaced (not modified) when it has to grow */
+    private volatile Object[][] chunks = new Object[4][];
+
+    /** Number of published elements (the high-water mark) */
+    private volatile int size = 0;
+
+    /**
+     * Appends an element.
+     *
+     * @param element the element to append
+     * @return the index of the element
+     */
+    public synchronized int append(T element) {
+        int index = size;
+        store(index, element);
+        size = index + 1;
+        return index;
+    }
+
+    /**
+     * Appends several elements and publishes them together, so a reader sees all or none of them.
+     *
+     * @param elements the elements to append
+     * @return the index of the first element
+     */
+    public synchronized int appendAll(Collection<? extends T> elements) {
+        int first = size;
+        int index = first;
+        for (T element : elements) {
+            store(index++, element);
+        }
+        size = index;
+        return first;
+    }
+
+    /**
+     * Gets the number of published elements.
+     *
+     * @return the current size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets an element by index.
+     *
+     * @param index the element index
+     * @return the element
+     * @throws IndexOutOfBoundsException if index is not below size()
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return (T) chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    /**
+     * Gets a read-only view of all elements published so far.
+     * The view is fixed at the current size - later appends do not change it.
+     *
+     * @return a read-only List view, no copy is made
+     */
+    public List<T> snapshot() {
+        return new View(0, size);
+    }
+
+    /**
+     * Gets a read-only view of the elements appended at or after an index.
+     * Used by incremental consumers that remember how far they have read.
+     *
+     * @param fromIndex the first index to include (clamped to [0, size])
+     * @return a read-only List view of [fromIndex, size), no copy is made
+     */
+    public List<T> since(int fromIndex) {
+        int end = size;
+        return new View(Math.max(0, Math.min(fromIndex, end)), end);
+    }
+
+    private void store(int index, T element) {
+        int chunkIndex = index >>> CHUNK_BITS;
+        Object[][] directory = chunks;
+        if (chunkIndex >= directory.length) {
+            directory = Arrays.copyOf(directory, directory.length * 2);
+        }
+        if (directory[chunkIndex] == null) {
+            directory[chunkIndex] = new Object[CHUNK_SIZE];
+        }
+        directory[chunkIndex][index & CHUNK_MASK] = element;
+        if (directory != chunks) {
+            chunks = directory;
+        }
+    }
+
+    /** Fixed range of the log, read without locking */
+    private final class View extends AbstractList<T> implements RandomAccess {
+        private final int from;
+        private final int to;
+
+        View(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + (to - from));
+            }
+            int absolute = from + index;
+            return (T) chunks[absolute >>> CHUNK_BITS][absolute & CHUNK_MASK];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
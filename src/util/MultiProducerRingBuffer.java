@@ -0,0 +1,256 @@
+package util;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated ring buffer with many producers and a single consumer.
+ * A producer claims the next sequence with one CAS, stores its element in the slot and marks
+ * the slot published with the sequence's lap number, so producers never wait for each other.
+ * The consumer drains published slots in sequence order and only then frees them by advancing
+ * its cursor. How the consumer waits for data and what a producer does when the ring is full
+ * are configurable.
+ *
+ * @param <T> the element type
+ * @author FinalProject
+ */
+public final class MultiProducerRingBuffer<T> {
+
+    /** How the consumer waits when the ring is empty */
+    public enum WaitStrategy {
+        /** Spin - lowest latency, burns a core */
+        BUSY_SPIN,
+        /** Spin briefly, then yield the CPU */
+        YIELDING,
+        /** Spin, yield, then sleep for short periods - low CPU, sub-millisecond latency */
+        SLEEPING,
+        /** Park until a producer wakes the consumer */
+        BLOCKING
+    }
+
+    /** What a producer does when the ring is full */
+    public enum BackpressurePolicy {
+        /** Wait until the consumer frees a slot */
+        BLOCK,
+        /** Discard the element and count it */
+        DROP
+    }
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = 100_000;
+    private static final long BLOCKING_PARK_NANOS = 10_000_000;
+
+    private final Object[] slots;
+    private final int mask;
+    private final int indexShift;
+    private final WaitStrategy waitStrategy;
+    private final BackpressurePolicy backpressurePolicy;
+
+    /** Lap number of the sequence last published in each slot (-1 = never) */
+    private final AtomicIntegerArray published;
+
+    /** Highest sequence claimed by a producer */
+    private final AtomicLong claimed = new AtomicLong(-1);
+
+    /** Highest sequence the consumer has taken; slots up to it may be reused */
+    private volatile long consumed = -1;
+
+    private volatile boolean consumerWaiting = false;
+    private volatile Thread consumerThread;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Constructs a ring buffer.
+     *
+     * @param capacity the number of slots (rounded up to a power of two)
+     * @param waitStrategy how the consumer waits for data
+     * @param backpressurePolicy what producers do when the ring is full
+     */
+    public MultiProducerRingBuffer(int capacity, WaitStrategy waitStrategy, BackpressurePolicy backpressurePolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Object[size];
+        this.mask = size - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(size);
+        this.waitStrategy = waitStrategy;
+        this.backpressurePolicy = backpressurePolicy;
+        this.published = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Publishes an element. Safe to call from any thread.
+     *
+     * @param element the element to publish
+     * @return true if published, false if dropped because the ring was full
+     */
+    public boolean publish(T element) {
+        long sequence;
+        int attempts = 0;
+        while (true) {
+            long current = claimed.get();
+            long next = current + 1;
+            if (next - slots.length > consumed) {
+                if (backpressurePolicy == BackpressurePolicy.DROP) {
+                    dropped.increment();
+                    return false;
+                }
+                backOff(attempts++);
+                continue;
+            }
+            if (claimed.compareAndSet(current, next)) {
+                sequence = next;
+                break;
+            }
+        }
+
+        int index = (int) sequence & mask;
+        slots[index] = element;
+        published.set(index, (int) (sequence >>> indexShift));
+
+        if (consumerWaiting) {
+            consumerWaiting = false;
+            Thread consumer = consumerThread;
+            if (consumer != null) {
+                LockSupport.unpark(consumer);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the published elements that follow the consumer cursor into a list.
+     * Must only be called by one consumer thread at a time (the ring has a single consumer).
+     *
+     * @param target the list to add the elements to
+     * @param maxElements the maximum number of elements to take
+     * @return the number of elements taken
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(List<? super T> target, int maxElements) {
+        long next = consumed + 1;
+        int count = 0;
+        while (count < maxElements) {
+            int index = (int) next & mask;
+            if (published.get(index) != (int) (next >>> indexShift)) {
+                break;
+            }
+            target.add((T) slots[index]);
+            slots[index] = null;
+            next++;
+            count++;
+        }
+        if (count > 0) {
+            consumed = next - 1;
+        }
+        return count;
+    }
+
+    /**
+     * Waits for the next element according to the wait strategy.
+     * Must only be called by the consumer thread; may return without data (callers loop).
+     *
+     * @param idleRounds how many times in a row the consumer found no data
+     */
+    public void waitForData(int idleRounds) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                Thread.onSpinWait();
+                break;
+            case YIELDING:
+                if (idleRounds < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+                break;
+            case SLEEPING:
+                if (idleRounds < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else if (idleRounds < SPIN_TRIES + YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(SLEEP_NANOS);
+                }
+                break;
+            case BLOCKING:
+            default:
+                consumerThread = Thread.currentThread();
+                consumerWaiting = true;
+                // Re-check after announcing, so a producer that published just before sees the flag
+                int index = (int) (consumed + 1) & mask;
+                if (published.get(index) != (int) ((consumed + 1) >>> indexShift)) {
+                    LockSupport.parkNanos(this, BLOCKING_PARK_NANOS);
+                }
+                consumerWaiting = false;
+                break;
+        }
+    }
+
+    /**
+     * Wakes the consumer if it is parked (e.g. on shutdown).
+     */
+    public void wakeConsumer() {
+        Thread consumer = consumerThread;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Gets the highest sequence claimed by a producer (-1 if none).
+     *
+     * @return the claimed sequence
+     */
+    public long getClaimedSequence() {
+        return claimed.get();
+    }
+
+    /**
+     * Gets the highest sequence taken by the consumer (-1 if none).
+     *
+     * @return the consumed sequence
+     */
+    public long getConsumedSequence() {
+        return consumed;
+    }
+
+    /**
+     * Gets the number of elements dropped because the ring was full.
+     *
+     * @return the drop count
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Gets the number of slots.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    private void backOff(int attempts) {
+        if (attempts < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (attempts < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(SLEEP_NANOS);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable hash map with structural sharing (hash array mapped trie).
+ * plus() and minus() return a new map that shares every untouched branch of the trie with
+ * the old one, so an update copies only the O(log32 n) nodes on the path to the key.
+ * Old versions stay valid and unchanged, which makes an instance safe to hand to any number
+ * of reader threads without locking or copying.
+ * Implements the read-only part of java.util.Map; mutating Map methods throw
+ * UnsupportedOperationException.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ * @author FinalProject
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    /** Key/value pair stored in the trie, with its spread hash */
+    private static final class Leaf<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+        final int hash;
+
+        Leaf(int hash, K key, V value) {
+            super(key, value);
+            this.hash = hash;
+        }
+    }
+
+    /** Inner node: a 32-bit bitmap of occupied positions and a compact array of Leafs / child nodes */
+    private static final class BitmapNode {
+        final int bitmap;
+        final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    /** Node for keys whose 32-bit hashes are identical */
+    private static final class CollisionNode {
+        final Leaf<?, ?>[] leaves;
+
+        CollisionNode(Leaf<?, ?>[] leaves) {
+            this.leaves = leaves;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashMap EMPTY = new PersistentHashMap<>(null, 0);
+
+    private final Object root;  // null, or a BitmapNode
+    private final int size;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    private PersistentHashMap(Object root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Gets the empty map.
+     *
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Builds a map with the same entries as another map.
+     *
+     * @param source the entries to copy
+     * @return a new persistent map
+     */
+    public static <K, V> PersistentHashMap<K, V> copyOf(Map<? extends K, ? extends V> source) {
+        PersistentHashMap<K, V> result = empty();
+        for (Map.Entry<? extends K, ? extends V> entry : source.entrySet()) {
+            result = result.plus(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a map that also maps key to value (replacing any previous value).
+     *
+     * @param key the key
+     * @param value the value
+     * @return the updated map (this map if nothing changed)
+     */
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        int hash = spread(key);
+        Leaf<K, V> leaf = new Leaf<>(hash, key, value);
+        boolean[] added = new boolean[1];
+        Object newRoot = root == null
+                ? new BitmapNode(bit(hash, 0), new Object[] {leaf})
+                : put(root, 0, leaf, added);
+        if (root == null) {
+            added[0] = true;
+        }
+        return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map without the given key.
+     *
+     * @param key the key to remove
+     * @return the updated map (this map if the key was not present)
+     */
+    public PersistentHashMap<K, V> minus(Object key) {
+        if (root == null) {
+            return this;
+        }
+        int hash = spread(key);
+        Object newRoot = remove(root, 0, hash, key);
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return empty();
+        }
+        if (newRoot instanceof Leaf) {
+            newRoot = new BitmapNode(bit(((Leaf<?, ?>) newRoot).hash, 0), new Object[] {newRoot});
+        }
+        return new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    @Override
+    public V get(Object key) {
+        Leaf<K, V> leaf = find(key);
+        return leaf == null ? null : leaf.getValue();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    // ========== Trie operations ==========
+
+    private static int spread(Object key) {
+        int h = Objects.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Leaf<K, V> find(Object key) {
+        int hash = spread(key);
+        Object node = root;
+        int shift = 0;
+        while (node != null) {
+            if (node instanceof BitmapNode) {
+                BitmapNode bitmapNode = (BitmapNode) node;
+                int bit = bit(hash, shift);
+                if ((bitmapNode.bitmap & bit) == 0) {
+                    return null;
+                }
+                node = bitmapNode.slots[index(bitmapNode.bitmap, bit)];
+                shift += BITS;
+            } else if (node instanceof Leaf) {
+                Leaf<K, V> leaf = (Leaf<K, V>) node;
+                return leaf.hash == hash && Objects.equals(leaf.getKey(), key) ? leaf : null;
+            } else {
+                for (Leaf<?, ?> leaf : ((CollisionNode) node).leaves) {
+                    if (Objects.equals(leaf.getKey(), key)) {
+                        return (Leaf<K, V>) leaf;
+                    }
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Object put(Object node, int shift, Leaf<?, ?> leaf, boolean[] added) {
+        if (node instanceof CollisionNode) {
+            Leaf<?, ?>[] leaves = ((CollisionNode) node).leaves;
+            for (int i = 0; i < leaves.length; i++) {
+                if (Objects.equals(leaves[i].getKey(), leaf.getKey())) {
+                    if (leaves[i].getValue() == leaf.getValue()) {
+                        return node;
+                    }
+                    Leaf<?, ?>[] copy = leaves.clone();
+                    copy[i] = leaf;
+                    return new CollisionNode(copy);
+                }
+            }
+            Leaf<?, ?>[] grown = new Leaf<?, ?>[leaves.length + 1];
+            System.arraycopy(leaves, 0, grown, 0, leaves.length);
+            grown[leaves.length] = leaf;
+            added[0] = true;
+            return new CollisionNode(grown);
+        }
+
+        BitmapNode bitmapNode = (BitmapNode) node;
+        int bit = bit(leaf.hash, shift);
+        int idx = index(bitmapNode.bitmap, bit);
+        if ((bitmapNode.bitmap & bit) == 0) {
+            Object[] slots = new Object[bitmapNode.slots.length + 1];
+            System.arraycopy(bitmapNode.slots, 0, slots, 0, idx);
+            slots[idx] = leaf;
+            System.arraycopy(bitmapNode.slots, idx, slots, idx + 1, bitmapNode.slots.length - idx);
+            added[0] = true;
+            return new BitmapNode(bitmapNode.bitmap | bit, slots);
+        }
+
+        Object child = bitmapNode.slots[idx];
+        Object newChild;
+        if (child instanceof Leaf) {
+            Leaf<?, ?> existing = (Leaf<?, ?>) child;
+            if (existing.hash == leaf.hash && Objects.equals(existing.getKey(), leaf.getKey())) {
+                if (existing.getValue() == leaf.getValue()) {
+                    return node;
+                }
+                newChild = leaf;
+            } else {
+                newChild = merge(shift + BITS, existing, leaf);
+                added[0] = true;
+            }
+        } else {
+            newChild = put(child, shift + BITS, leaf, added);
+            if (newChild == child) {
+                return node;
+            }
+        }
+        Object[] slots = bitmapNode.slots.clone();
+        slots[idx] = newChild;
+        return new BitmapNode(bitmapNode.bitmap, slots);
+    }
+
+    private static Object merge(int shift, Leaf<?, ?> first, Leaf<?, ?> second) {
+        if (shift >= 32) {
+            return new CollisionNode(new Leaf<?, ?>[] {first, second});
+        }
+        int firstBit = bit(first.hash, shift);
+        int secondBit = bit(second.hash, shift);
+        if (firstBit == secondBit) {
+            return new BitmapNode(firstBit, new Object[] {merge(shift + BITS, first, second)});
+        }
+        Object[] slots = Integer.compareUnsigned(firstBit, secondBit) < 0
+                ? new Object[] {first, second}
+                : new Object[] {second, first};
+        return new BitmapNode(firstBit | secondBit, slots);
+    }
+
+    /**
+     * Removes a key below a node.
+     *
+     * @return the same node if the key was absent, null if the node became empty,
+     *         a single Leaf if only one entry is left (so the parent can inline it), or the new node
+     */
+    private static Object remove(Object node, int shift, int hash, Object key) {
+        if (node instanceof CollisionNode) {
+            Leaf<?, ?>[] leaves = ((CollisionNode) node).leaves;
+            for (int i = 0; i < leaves.length; i++) {
+                if (Objects.equals(leaves[i].getKey(), key)) {
+                    if (leaves.length == 2) {
+                        return leaves[1 - i];
+                    }
+                    Leaf<?, ?>[] shrunk = new Leaf<?, ?>[leaves.length - 1];
+                    System.arraycopy(leaves, 0, shrunk, 0, i);
+                    System.arraycopy(leaves, i + 1, shrunk, i, leaves.length - i - 1);
+                    return new CollisionNode(shrunk);
+                }
+            }
+            return node;
+        }
+
+        BitmapNode bitmapNode = (BitmapNode) node;
+        int bit = bit(hash, shift);
+        if ((bitmapNode.bitmap & bit) == 0) {
+            return node;
+        }
+        int idx = index(bitmapNode.bitmap, bit);
+        Object child = bitmapNode.slots[idx];
+        Object newChild;
+        if (child instanceof Leaf) {
+            Leaf<?, ?> leaf = (Leaf<?, ?>) child;
+            if (leaf.hash != hash || !Objects.equals(leaf.getKey(), key)) {
+                return node;
+            }
+            newChild = null;
+        } else {
+            newChild = remove(child, shift + BITS, hash, key);
+            if (newChild == child) {
+                return node;
+            }
+        }
+
+        if (newChild != null) {
+            if (bitmapNode.slots.length == 1 && newChild instanceof Leaf) {
+                return newChild;
+            }
+            Object[] slots = bitmapNode.slots.clone();
+            slots[idx] = newChild;
+            return new BitmapNode(bitmapNode.bitmap, slots);
+        }
+        if (bitmapNode.slots.length == 1) {
+            return null;
+        }
+        if (bitmapNode.slots.length == 2 && bitmapNode.slots[1 - idx] instanceof Leaf) {
+            return bitmapNode.slots[1 - idx];
+        }
+        Object[] slots = new Object[bitmapNode.slots.length - 1];
+        System.arraycopy(bitmapNode.slots, 0, slots, 0, idx);
+        System.arraycopy(bitmapNode.slots, idx + 1, slots, idx, bitmapNode.slots.length - idx - 1);
+        return new BitmapNode(bitmapNode.bitmap & ~bit, slots);
+    }
+
+    /** Depth-first iterator over the trie with an explicit stack (trie depth is at most 8) */
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Object[][] arrays = new Object[10][];
+        private final int[] positions = new int[10];
+        private int depth = -1;
+        private Leaf<K, V> next;
+
+        EntryIterator(Object root) {
+            if (root != null) {
+                push(root);
+                advance();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf<K, V> current = next;
+            advance();
+            return current;
+        }
+
+        private void push(Object node) {
+            depth++;
+            arrays[depth] = node instanceof BitmapNode ? ((BitmapNode) node).slots : ((CollisionNode) node).leaves;
+            positions[depth] = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                if (positions[depth] >= array.length) {
+                    arrays[depth--] = null;
+                    continue;
+                }
+                Object item = array[positions[depth]++];
+                if (item instanceof Leaf) {
+                    next = (Leaf<K, V>) item;
+                    return;
+                }
+                push(item);
+            }
+        }
+    }
+}
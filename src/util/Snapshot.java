@@ -0,0 +1,84 @@
+package util;
+
+/**
+ * An immutable, versioned view of a manager's collection.
+ * Managers keep the current Snapshot in a volatile field and replace it on every write,
+ * so a reader gets a consistent map with a single volatile read - no lock and no copy.
+ * The version increases by one with every change and can be used as a change token:
+ * two snapshots with the same version hold the same entries.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ * @author FinalProject
+ */
+public final class Snapshot<K, V> {
+
+    private final PersistentHashMap<K, V> map;
+    private final long version;
+
+    private Snapshot(PersistentHashMap<K, V> map, long version) {
+        this.map = map;
+        this.version = version;
+    }
+
+    /**
+     * Gets an empty snapshot at version 0.
+     *
+     * @return the empty snapshot
+     */
+    public static <K, V> Snapshot<K, V> empty() {
+        return new Snapshot<>(PersistentHashMap.empty(), 0);
+    }
+
+    /**
+     * Gets the entries of this snapshot.
+     *
+     * @return an immutable map
+     */
+    public PersistentHashMap<K, V> getMap() {
+        return map;
+    }
+
+    /**
+     * Gets the version of this snapshot.
+     *
+     * @return the change counter
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the next snapshot with key mapped to value.
+     * The version is bumped even if the value is the same object, because managers
+     * re-publish an entry after changing it in place.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the next snapshot
+     */
+    public Snapshot<K, V> with(K key, V value) {
+        return new Snapshot<>(map.plus(key, value), version + 1);
+    }
+
+    /**
+     * Returns the next snapshot without key.
+     *
+     * @param key the key to remove
+     * @return the next snapshot, or this snapshot if the key was not present
+     */
+    public Snapshot<K, V> without(K key) {
+        PersistentHashMap<K, V> removed = map.minus(key);
+        return removed == map ? this : new Snapshot<>(removed, version + 1);
+    }
+
+    /**
+     * Returns the next snapshot holding exactly the given entries.
+     *
+     * @param entries the new entries
+     * @return the next snapshot
+     */
+    public Snapshot<K, V> replaceAll(PersistentHashMap<K, V> entries) {
+        return new Snapshot<>(entries, version + 1);
+    }
+}